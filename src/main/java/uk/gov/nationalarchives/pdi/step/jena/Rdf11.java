@@ -84,4 +84,11 @@ public interface Rdf11 {
             "N3"
     };
     String DEFAULT_SERIALIZATION_FORMAT = "TURTLE";
+
+    String[] STREAMING_SERIALIZATION_FORMATS = new String[] {
+            "N-TRIPLES",
+            "N-QUADS",
+            "TURTLE-BLOCKS"
+    };
+    String DEFAULT_STREAMING_SERIALIZATION_FORMAT = "N-TRIPLES";
 }
@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena;
+
+import org.pentaho.di.core.exception.KettleException;
+
+import javax.annotation.Nullable;
+
+/**
+ * An error in the data of a single row, which the step
+ * may divert to its error handling rather than failing.
+ *
+ * No stack trace is captured, as the exception describes a problem
+ * with the data rather than the code, and rows with bad data may be
+ * common in a large input.
+ */
+public class RowException extends KettleException {
+    private static final long serialVersionUID = 1L;
+
+    private final String errorCode;
+    @Nullable private final String fieldName;
+
+    /**
+     * @param errorCode the error code, for the error handling of the step
+     * @param fieldName the name of the field in error, or null
+     * @param message the description of the error
+     */
+    public RowException(final String errorCode, @Nullable final String fieldName, final String message) {
+        super(message);
+        this.errorCode = errorCode;
+        this.fieldName = fieldName;
+    }
+
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    public @Nullable String getFieldName() {
+        return fieldName;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
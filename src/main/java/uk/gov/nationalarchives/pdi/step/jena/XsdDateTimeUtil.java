@@ -0,0 +1,341 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Validation and formatting of the lexical forms
+ * of xsd:date and xsd:dateTime, and formatting of
+ * the lexical form of xsd:gYear.
+ *
+ * The validation accepts the same lexical forms as the
+ * regular expressions that were previously used by the
+ * Create Jena Model step, but without allocating.
+ */
+public class XsdDateTimeUtil {
+
+    /**
+     * Check if a string is a valid lexical form of an xsd:date.
+     *
+     * @param s the string
+     *
+     * @return true if the string is a valid xsd:date, false otherwise
+     */
+    public static boolean isXsdDate(final CharSequence s) {
+        final int len = s.length();
+        int i = 0;
+        if (i < len && s.charAt(i) == '-') {
+            i++;
+        }
+
+        i = parseDate(s, i, len);
+        if (i < 0) {
+            return false;
+        }
+
+        return isTimezone(s, i, len);
+    }
+
+    /**
+     * Check if a string is a valid lexical form of an xsd:dateTime.
+     *
+     * @param s the string
+     *
+     * @return true if the string is a valid xsd:dateTime, false otherwise
+     */
+    public static boolean isXsdDateTime(final CharSequence s) {
+        final int len = s.length();
+        int i = 0;
+        if (i < len && s.charAt(i) == '-') {
+            i++;
+        }
+
+        i = parseDate(s, i, len);
+        if (i < 0) {
+            return false;
+        }
+
+        // T hh:mm:ss
+        if (i + 9 > len || s.charAt(i) != 'T') {
+            return false;
+        }
+        i++;
+        if (!isHour(s, i) || s.charAt(i + 2) != ':' || !isMinuteOrSecond(s, i + 3) || s.charAt(i + 5) != ':' || !isMinuteOrSecond(s, i + 6)) {
+            return false;
+        }
+        i += 8;
+
+        // optional fractional seconds, of 1 to 3 digits
+        if (i < len && s.charAt(i) == '.') {
+            i++;
+            final int fractionStart = i;
+            while (i < len && isDigit(s.charAt(i))) {
+                i++;
+            }
+            final int fractionLen = i - fractionStart;
+            if (fractionLen < 1 || fractionLen > 3) {
+                return false;
+            }
+        }
+
+        return isTimezone(s, i, len);
+    }
+
+    /**
+     * Format the lexical form of an xsd:date.
+     *
+     * A {@link java.sql.Date} is already a local date, and so
+     * is formatted without considering the {@code zone}.
+     *
+     * @param date the date
+     * @param zone the timezone in which to determine the date
+     *
+     * @return the lexical form of the xsd:date
+     */
+    public static String formatXsdDate(final java.util.Date date, final ZoneId zone) {
+        final LocalDate localDate;
+        if (date instanceof java.sql.Date) {
+            localDate = ((java.sql.Date) date).toLocalDate();
+        } else {
+            localDate = toLocalDateTime(date.getTime(), offset(date.getTime(), zone)).toLocalDate();
+        }
+
+        final StringBuilder builder = new StringBuilder(11);
+        appendDate(builder, localDate.getYear(), localDate.getMonthValue(), localDate.getDayOfMonth());
+        return builder.toString();
+    }
+
+    /**
+     * Format the lexical form of an xsd:dateTime.
+     *
+     * @param date the date
+     * @param zone the timezone in which to express the date and time
+     *
+     * @return the lexical form of the xsd:dateTime, including the offset of the timezone
+     */
+    public static String formatXsdDateTime(final java.util.Date date, final ZoneId zone) {
+        final long epochMilli = date.getTime();
+        final ZoneOffset offset = offset(epochMilli, zone);
+        final LocalDateTime localDateTime = toLocalDateTime(epochMilli, offset);
+
+        final StringBuilder builder = new StringBuilder(29);
+        appendDate(builder, localDateTime.getYear(), localDateTime.getMonthValue(), localDateTime.getDayOfMonth());
+        builder.append('T');
+        appendTwoDigits(builder, localDateTime.getHour());
+        builder.append(':');
+        appendTwoDigits(builder, localDateTime.getMinute());
+        builder.append(':');
+        appendTwoDigits(builder, localDateTime.getSecond());
+
+        int millis = localDateTime.getNano() / 1_000_000;
+        if (millis > 0) {
+            builder.append('.');
+            builder.append((char) ('0' + millis / 100));
+            millis %= 100;
+            if (millis > 0) {
+                builder.append((char) ('0' + millis / 10));
+                millis %= 10;
+                if (millis > 0) {
+                    builder.append((char) ('0' + millis));
+                }
+            }
+        }
+
+        final int offsetSeconds = offset.getTotalSeconds();
+        if (offsetSeconds == 0) {
+            builder.append('Z');
+        } else {
+            builder.append(offsetSeconds < 0 ? '-' : '+');
+            final int absOffsetMinutes = Math.abs(offsetSeconds) / 60;
+            appendTwoDigits(builder, absOffsetMinutes / 60);
+            builder.append(':');
+            appendTwoDigits(builder, absOffsetMinutes % 60);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Format the lexical form of an xsd:gYear.
+     *
+     * The year is padded to at least four digits, and a negative
+     * year is preceded by a minus sign. Note that year zero is
+     * formatted as 0000, which XML Schema 1.0 does not allow.
+     *
+     * @param year the year
+     *
+     * @return the lexical form of the xsd:gYear
+     */
+    public static String formatXsdGYear(final long year) {
+        final StringBuilder builder = new StringBuilder(5);
+        long absYear = year;
+        if (year < 0) {
+            builder.append('-');
+            absYear = -year;
+        }
+        if (absYear < 1000) {
+            builder.append('0');
+            if (absYear < 100) {
+                builder.append('0');
+                if (absYear < 10) {
+                    builder.append('0');
+                }
+            }
+        }
+        builder.append(absYear);
+        return builder.toString();
+    }
+
+    private static ZoneOffset offset(final long epochMilli, final ZoneId zone) {
+        if (zone instanceof ZoneOffset) {
+            return (ZoneOffset) zone;
+        }
+        return zone.getRules().getOffset(Instant.ofEpochMilli(epochMilli));
+    }
+
+    private static LocalDateTime toLocalDateTime(final long epochMilli, final ZoneOffset offset) {
+        final long epochSecond = Math.floorDiv(epochMilli, 1000);
+        final int nanos = (int) Math.floorMod(epochMilli, 1000) * 1_000_000;
+        return LocalDateTime.ofEpochSecond(epochSecond, nanos, offset);
+    }
+
+    private static void appendDate(final StringBuilder builder, int year, final int month, final int day) {
+        if (year < 0) {
+            builder.append('-');
+            year = -year;
+        }
+        if (year < 1000) {
+            builder.append('0');
+            if (year < 100) {
+                builder.append('0');
+                if (year < 10) {
+                    builder.append('0');
+                }
+            }
+        }
+        builder.append(year);
+        builder.append('-');
+        appendTwoDigits(builder, month);
+        builder.append('-');
+        appendTwoDigits(builder, day);
+    }
+
+    private static void appendTwoDigits(final StringBuilder builder, final int value) {
+        builder.append((char) ('0' + value / 10));
+        builder.append((char) ('0' + value % 10));
+    }
+
+    /**
+     * Parse the yyyy-mm-dd part of a date.
+     *
+     * @return the index after the date, or -1 if it is not valid
+     */
+    private static int parseDate(final CharSequence s, final int i, final int len) {
+        if (i + 10 > len) {
+            return -1;
+        }
+
+        if (!isDigit(s.charAt(i)) || !isDigit(s.charAt(i + 1)) || !isDigit(s.charAt(i + 2)) || !isDigit(s.charAt(i + 3))
+                || s.charAt(i + 4) != '-'
+                || !isDigit(s.charAt(i + 5)) || !isDigit(s.charAt(i + 6))
+                || s.charAt(i + 7) != '-'
+                || !isDigit(s.charAt(i + 8)) || !isDigit(s.charAt(i + 9))) {
+            return -1;
+        }
+
+        final int month = twoDigits(s, i + 5);
+        final int day = twoDigits(s, i + 8);
+        final int maxDay;
+        switch (month) {
+            case 1: case 3: case 5: case 7: case 8: case 10: case 12:
+                maxDay = 31;
+                break;
+
+            case 4: case 6: case 9: case 11:
+                maxDay = 30;
+                break;
+
+            case 2:
+                maxDay = 29;
+                break;
+
+            default:
+                return -1;
+        }
+
+        if (day < 1 || day > maxDay) {
+            return -1;
+        }
+
+        return i + 10;
+    }
+
+    /**
+     * Check for an optional timezone, i.e. Z, or (+|-)hh:mm,
+     * that must end the string.
+     */
+    private static boolean isTimezone(final CharSequence s, final int i, final int len) {
+        if (i == len) {
+            return true;
+        }
+
+        final char c = s.charAt(i);
+        if (c == 'Z') {
+            return i + 1 == len;
+        }
+
+        if (c == '+' || c == '-') {
+            return i + 6 == len
+                    && isHour(s, i + 1)
+                    && s.charAt(i + 3) == ':'
+                    && isMinuteOrSecond(s, i + 4);
+        }
+
+        return false;
+    }
+
+    private static boolean isHour(final CharSequence s, final int i) {
+        final char c0 = s.charAt(i);
+        final char c1 = s.charAt(i + 1);
+        return ((c0 == '0' || c0 == '1') && isDigit(c1))
+                || (c0 == '2' && c1 >= '0' && c1 <= '4');
+    }
+
+    private static boolean isMinuteOrSecond(final CharSequence s, final int i) {
+        final char c0 = s.charAt(i);
+        return c0 >= '0' && c0 <= '5' && isDigit(s.charAt(i + 1));
+    }
+
+    private static int twoDigits(final CharSequence s, final int i) {
+        return (s.charAt(i) - '0') * 10 + (s.charAt(i + 1) - '0');
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+}
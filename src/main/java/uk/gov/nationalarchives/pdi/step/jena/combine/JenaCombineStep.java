@@ -22,6 +22,7 @@
  */
 package uk.gov.nationalarchives.pdi.step.jena.combine;
 
+import org.apache.jena.graph.Graph;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.pentaho.di.core.exception.KettleException;
@@ -34,9 +35,12 @@ import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.*;
 import uk.gov.nationalarchives.pdi.step.jena.FieldModel;
 import uk.gov.nationalarchives.pdi.step.jena.ConstrainedField;
+import uk.gov.nationalarchives.pdi.step.jena.RowException;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static uk.gov.nationalarchives.pdi.step.jena.JenaUtil.closeAndThrow;
 import static uk.gov.nationalarchives.pdi.step.jena.Util.isNullOrEmpty;
@@ -44,6 +48,11 @@ import static uk.gov.nationalarchives.pdi.step.jena.Util.isNullOrEmpty;
 public class JenaCombineStep extends BaseStep implements StepInterface {
     private static Class<?> PKG = JenaCombineStepMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
 
+    // error codes for rows diverted to the error handling of the step
+    static final String ERROR_CODE_NULL_VALUE = "JENA_COMBINE_01";
+    static final String ERROR_CODE_NOT_A_MODEL = "JENA_COMBINE_02";
+    static final String ERROR_CODE_CLOSED_MODEL = "JENA_COMBINE_03";
+
     public JenaCombineStep(final StepMeta stepMeta, final StepDataInterface stepDataInterface, final int copyNr,
                            final TransMeta transMeta, final Trans trans) {
         super(stepMeta, stepDataInterface, copyNr, transMeta, trans);
@@ -80,8 +89,20 @@ public class JenaCombineStep extends BaseStep implements StepInterface {
         }
 
         // get all Jena models from fields and combine
-        final List<FieldModel> fieldModels = getModels(meta, row, inputRowMeta);
-        final FieldModel combinedFieldModel = combineModels(meta, fieldModels);
+        final List<FieldModel> fieldModels;
+        final FieldModel combinedFieldModel;
+        try {
+            fieldModels = getModels(meta, row, inputRowMeta);
+            combinedFieldModel = combineModels(meta, fieldModels);
+        } catch (final RowException e) {
+            if (!getStepMeta().isDoingErrorHandling()) {
+                throw e;
+            }
+
+            // divert the row to the error handling of the step
+            putError(inputRowMeta, row, 1, e.getSuperMessage(), e.getFieldName(), e.getErrorCode());
+            return true;
+        }
 
         // remap any fields that we are keeping from the input row to the output row
         row = prepareOutputRow(meta, data, row);
@@ -90,6 +111,13 @@ public class JenaCombineStep extends BaseStep implements StepInterface {
         if (!meta.isMutateFirstModel()) {
             // Set combined Jena model in target field of the output row
             row[data.getTargetFieldIndex()] = combinedFieldModel.model;
+
+        } else if (!fieldModels.isEmpty() && combinedFieldModel != fieldModels.get(0)) {
+            // we took ownership of a larger model than the first, so it replaces the first model in the output row
+            final int firstFieldIndex = data.getOutputRowMeta().indexOfValue(fieldModels.get(0).fieldName);
+            if (firstFieldIndex > -1) {
+                row[firstFieldIndex] = combinedFieldModel.model;
+            }
         }
 
         // output the row
@@ -260,13 +288,13 @@ public class JenaCombineStep extends BaseStep implements StepInterface {
 
                         case ERROR:
                             // throw an exception
-                            throw new KettleException("Could not combine model in row: " + getLinesRead() + ", field: " + jenaModelField.fieldName + ", value is null!");
+                            throw new RowException(ERROR_CODE_NULL_VALUE, jenaModelFieldName, "Could not combine model in row: " + getLinesRead() + ", field: " + jenaModelField.fieldName + ", value is null!");
                     }
                 } else {
                     if (jenaModelFieldValue instanceof Model) {
                         models.add(new FieldModel(jenaModelFieldName, (Model) jenaModelFieldValue));
                     } else {
-                        throw new KettleException("Expected row: " + getLinesRead() + ", field: " + jenaModelFieldName + " to contain a Jena Model, but found "
+                        throw new RowException(ERROR_CODE_NOT_A_MODEL, jenaModelFieldName, "Expected row: " + getLinesRead() + ", field: " + jenaModelFieldName + " to contain a Jena Model, but found "
                                 + jenaModelFieldValue.getClass());
                     }
                 }
@@ -277,23 +305,42 @@ public class JenaCombineStep extends BaseStep implements StepInterface {
     }
 
     private FieldModel combineModels(final JenaCombineStepMeta meta, final List<FieldModel> fieldModels) throws KettleException {
+        if (meta.isUnionView() && !meta.isMutateFirstModel() && meta.isRemoveSelectedFields()) {
+            return viewModels(meta, fieldModels);
+        }
+
         // get the Head Jena Model
-        final int tailIdx;
+        final int headIdx;
         final FieldModel headModel;
-        if (meta.isMutateFirstModel()) {
+        if (meta.isRemoveSelectedFields() && !fieldModels.isEmpty()) {
+            /*
+                the models will be closed after they are combined anyway,
+                so rather than copying them all into the head model, we take
+                ownership of the largest model and copy the others into it
+             */
+            headIdx = indexOfLargest(fieldModels);
+            headModel = fieldModels.get(headIdx);
+
+            if (headModel.model.isClosed()) {
+                throw new RowException(ERROR_CODE_CLOSED_MODEL, headModel.fieldName, "Head Model[" + headIdx + "] (removeSelectedFields=true) is already closed in row: " + getLinesRead() + " for field: " + headModel.fieldName);
+            }
+        } else if (meta.isMutateFirstModel()) {
             // get first model
             headModel = fieldModels.get(0);
-            tailIdx = 1;
+            headIdx = 0;
 
             if (headModel.model.isClosed()) {
-                throw new KettleException("Head Model (mutateFirstModel=true) is already closed in row: " + getLinesRead() + " for field: " + headModel.fieldName);
+                throw new RowException(ERROR_CODE_CLOSED_MODEL, headModel.fieldName, "Head Model (mutateFirstModel=true) is already closed in row: " + getLinesRead() + " for field: " + headModel.fieldName);
             }
         } else {
             // create new model
             headModel = new FieldModel(ModelFactory.createDefaultModel());
-            tailIdx = 0;
+            headIdx = -1;
         }
 
+        // NOTE: if the head model is not the first model, its prefixes must be re-applied after the models before it
+        @Nullable final Map<String, String> headPrefixes = headIdx > 0 ? headModel.model.getNsPrefixMap() : null;
+
         try {
             // start a transaction on the model
             if (headModel.model.supportsTransactions()) {
@@ -301,11 +348,18 @@ public class JenaCombineStep extends BaseStep implements StepInterface {
             }
 
             // first, add each Jena model filed from tail to the headModel
-            for (int i = tailIdx; i < fieldModels.size(); i++) {
+            for (int i = 0; i < fieldModels.size(); i++) {
+                if (i == headIdx) {
+                    if (headPrefixes != null) {
+                        headModel.model.setNsPrefixes(headPrefixes);
+                    }
+                    continue;
+                }
+
                 final FieldModel fieldModel = fieldModels.get(i);
 
                 if (fieldModel.model.isClosed()) {
-                    throw new KettleException("Tail Model[" + i + "] (mutateFirstModel=" + meta.isMutateFirstModel() + ") is already closed in row: " + getLinesRead() + " for field: " + fieldModel.fieldName);
+                    throw new RowException(ERROR_CODE_CLOSED_MODEL, fieldModel.fieldName, "Tail Model[" + i + "] (mutateFirstModel=" + meta.isMutateFirstModel() + ") is already closed in row: " + getLinesRead() + " for field: " + fieldModel.fieldName);
                 }
 
                 if (fieldModel.model.supportsTransactions()) {
@@ -337,4 +391,63 @@ public class JenaCombineStep extends BaseStep implements StepInterface {
             throw e; // needed for the compiler to pass
         }
     }
+
+    /**
+     * Finds the model with the most statements.
+     *
+     * @param fieldModels the models
+     *
+     * @return the index of the largest model
+     */
+    private static int indexOfLargest(final List<FieldModel> fieldModels) {
+        int largestIdx = 0;
+        long largestSize = -1;
+        for (int i = 0; i < fieldModels.size(); i++) {
+            final Model model = fieldModels.get(i).model;
+            if (model.isClosed()) {
+                continue;  // reported when it is combined
+            }
+
+            final long size = model.size();
+            if (size > largestSize) {
+                largestIdx = i;
+                largestSize = size;
+            }
+        }
+        return largestIdx;
+    }
+
+    /**
+     * Combines the models as a read-only union view over them,
+     * rather than copying their statements into a new model.
+     *
+     * The view is only copied into a new model if it is
+     * later modified. The selected fields are removed from
+     * the output row, so the view takes ownership of their
+     * models, and no later step can modify or close them
+     * underneath the view.
+     *
+     * The first call to {@link Model#size()} on a view of
+     * more than one model walks the whole union, after
+     * which the size is cached.
+     *
+     * @param meta the metadata
+     * @param fieldModels the models to combine
+     *
+     * @return the view of the combined models
+     *
+     * @throws KettleException if any of the models is closed
+     */
+    private FieldModel viewModels(final JenaCombineStepMeta meta, final List<FieldModel> fieldModels) throws KettleException {
+        final Graph[] graphs = new Graph[fieldModels.size()];
+        for (int i = 0; i < graphs.length; i++) {
+            final FieldModel fieldModel = fieldModels.get(i);
+            if (fieldModel.model.isClosed()) {
+                throw new RowException(ERROR_CODE_CLOSED_MODEL, fieldModel.fieldName, "Tail Model[" + i + "] (unionView=true) is already closed in row: " + getLinesRead() + " for field: " + fieldModel.fieldName);
+            }
+            graphs[i] = fieldModel.model.getGraph();
+        }
+
+        return new FieldModel(ModelFactory.createModelForGraph(new UnionViewGraph(graphs, true)));
+    }
 }
@@ -79,11 +79,14 @@ public class JenaCombineStepDialog extends BaseStepDialog implements StepDialogI
     private Label wFieldsLabel;
     private Label wRemoveSelectedLabel;
     private Button wRemoveSelectedCheckbox;
+    private Label wUnionViewLabel;
+    private Button wUnionViewCheckbox;
     private TableView wFieldsTableView;
     private Button wGetFieldsButton;
     private Button wCancel;
     private Button wOK;
     private Listener lsModifyFirstModel;
+    private Listener lsRemoveSelected;
     private ModifyListener lsFieldsTableModify;
     private Listener lsGetFields;
     private Listener lsCancel;
@@ -234,11 +237,28 @@ public class JenaCombineStepDialog extends BaseStepDialog implements StepDialogI
                 .result();
         wRemoveSelectedCheckbox.setLayoutData(fdRemoveSelectedCheckbox);
 
+        // union view label/checkbox
+        wUnionViewLabel = new Label(group, SWT.LEFT);
+        props.setLook(wUnionViewLabel);
+        wUnionViewLabel.setText(BaseMessages.getString(PKG, "JenaCombineStepDialog.CheckboxUnionView"));
+        final FormData fdUnionViewLabel = new FormDataBuilder().left()
+                .top(wRemoveSelectedCheckbox, ELEMENT_SPACING)
+                .result();
+        wUnionViewLabel.setLayoutData(fdUnionViewLabel);
+
+        wUnionViewCheckbox = new Button(group, SWT.CHECK);
+        props.setLook(wUnionViewCheckbox);
+        wUnionViewCheckbox.setBackground(display.getSystemColor(SWT.COLOR_TRANSPARENT));
+        final FormData fdUnionViewCheckbox = new FormDataBuilder().left(wUnionViewLabel, LABEL_SPACING)
+                .top(wRemoveSelectedCheckbox, ELEMENT_SPACING)
+                .result();
+        wUnionViewCheckbox.setLayoutData(fdUnionViewCheckbox);
+
         wFieldsLabel = new Label(group, SWT.LEFT);
         props.setLook(wFieldsLabel);
         wFieldsLabel.setText(BaseMessages.getString(PKG, "JenaCombineStepDialog.Fields"));
         final FormData fdFieldsLabel = new FormDataBuilder().left()
-                .top(wRemoveSelectedCheckbox, ELEMENT_SPACING)
+                .top(wUnionViewCheckbox, ELEMENT_SPACING)
                 .result();
         wFieldsLabel.setLayoutData(fdFieldsLabel);
 
@@ -322,6 +342,14 @@ public class JenaCombineStepDialog extends BaseStepDialog implements StepDialogI
                 // clear and enable/disable wTargetTextField
                 wTargetTextField.setText("");
                 wTargetTextField.setEnabled(!wMutateFirstModelCheckbox.getSelection());
+
+                enableUnionView();
+            }
+        };
+        lsRemoveSelected = new Listener() {
+            @Override
+            public void handleEvent(final Event e) {
+                enableUnionView();
             }
         };
         lsGetFields = new Listener() {
@@ -357,6 +385,7 @@ public class JenaCombineStepDialog extends BaseStepDialog implements StepDialogI
         };
 
         wMutateFirstModelCheckbox.addListener(SWT.Selection, lsModifyFirstModel);
+        wRemoveSelectedCheckbox.addListener(SWT.Selection, lsRemoveSelected);
         wGetFieldsButton.addListener(SWT.Selection, lsGetFields);
         wOK.addListener(SWT.Selection, lsOK);
         wCancel.addListener(SWT.Selection, lsCancel);
@@ -397,6 +426,9 @@ public class JenaCombineStepDialog extends BaseStepDialog implements StepDialogI
 
         wRemoveSelectedCheckbox.setSelection(meta.isRemoveSelectedFields());
 
+        wUnionViewCheckbox.setSelection(meta.isUnionView());
+        enableUnionView();
+
         if (meta.getJenaModelFields() != null) {
             wFieldsTableView.getTable().removeAll();
             for (final ConstrainedField jenaModelField : meta.getJenaModelFields()) {
@@ -405,6 +437,11 @@ public class JenaCombineStepDialog extends BaseStepDialog implements StepDialogI
         }
     }
 
+    private void enableUnionView() {
+        // a union view aliases the selected models, so is only possible when the step owns them and does not mutate the first model
+        wUnionViewCheckbox.setEnabled(!wMutateFirstModelCheckbox.getSelection() && wRemoveSelectedCheckbox.getSelection());
+    }
+
     private Image getImage() {
         final PluginInterface plugin =
                 PluginRegistry.getInstance().getPlugin(StepPluginType.class, stepMeta.getStepMetaInterface());
@@ -435,6 +472,7 @@ public class JenaCombineStepDialog extends BaseStepDialog implements StepDialogI
         meta.setMutateFirstModel(wMutateFirstModelCheckbox.getSelection());
         meta.setTargetFieldName(wTargetTextField.getText());
         meta.setRemoveSelectedFields(wRemoveSelectedCheckbox.getSelection());
+        meta.setUnionView(wUnionViewCheckbox.getSelection());
 
         final int fieldsLen = wFieldsTableView.getItemCount();
         final List<ConstrainedField> jenaModelFields = new ArrayList<>(fieldsLen);
@@ -68,6 +68,7 @@ public class JenaCombineStepMeta extends BaseStepMeta implements StepMetaInterfa
     private static final String ELEM_NAME_MUTATE_FIRST_MODEL = "mutateFirstModel";
     private static final String ELEM_NAME_TARGET_FIELD_NAME = "targetFieldName";
     private static final String ELEM_NAME_REMOVE_SELECTED_FIELDS = "removeSelectedFields";
+    private static final String ELEM_NAME_UNION_VIEW = "unionView";
     private static final String ELEM_NAME_JENA_MODEL_FIELDS = "jenaModelFields";
     private static final String ELEM_NAME_JENA_MODEL_FIELD = "jenaModelField";
     private static final String ELEM_NAME_FIELD_NAME = "fieldName";
@@ -79,6 +80,7 @@ public class JenaCombineStepMeta extends BaseStepMeta implements StepMetaInterfa
     private boolean mutateFirstModel;
     @Nullable private String targetFieldName;
     private boolean removeSelectedFields;
+    private boolean unionView;
     private List<ConstrainedField> jenaModelFields;
     // </editor-fold>
 
@@ -92,6 +94,7 @@ public class JenaCombineStepMeta extends BaseStepMeta implements StepMetaInterfa
         mutateFirstModel = true;
         targetFieldName = "";
         removeSelectedFields = false;
+        unionView = false;
         jenaModelFields = new ArrayList<>();
     }
 
@@ -101,6 +104,7 @@ public class JenaCombineStepMeta extends BaseStepMeta implements StepMetaInterfa
         retval.mutateFirstModel = mutateFirstModel;
         retval.targetFieldName = targetFieldName;
         retval.removeSelectedFields = removeSelectedFields;
+        retval.unionView = unionView;
         retval.jenaModelFields = new ArrayList<>();
         for (final ConstrainedField jenaModelField : jenaModelFields) {
             retval.jenaModelFields.add(jenaModelField.copy());
@@ -114,7 +118,8 @@ public class JenaCombineStepMeta extends BaseStepMeta implements StepMetaInterfa
         builder
             .append(XMLHandler.addTagValue(ELEM_NAME_MUTATE_FIRST_MODEL, mutateFirstModel))
             .append(XMLHandler.addTagValue(ELEM_NAME_TARGET_FIELD_NAME, emptyIfNull(targetFieldName)))
-            .append(XMLHandler.addTagValue(ELEM_NAME_REMOVE_SELECTED_FIELDS, removeSelectedFields));
+            .append(XMLHandler.addTagValue(ELEM_NAME_REMOVE_SELECTED_FIELDS, removeSelectedFields))
+            .append(XMLHandler.addTagValue(ELEM_NAME_UNION_VIEW, unionView));
 
         builder.append(XMLHandler.openTag(ELEM_NAME_JENA_MODEL_FIELDS));
         for (final ConstrainedField jenaModelField : jenaModelFields) {
@@ -142,6 +147,9 @@ public class JenaCombineStepMeta extends BaseStepMeta implements StepMetaInterfa
             final String xRemoveSelectedField = XMLHandler.getTagValue(stepnode, ELEM_NAME_REMOVE_SELECTED_FIELDS);
             this.removeSelectedFields = isNotEmpty(xRemoveSelectedField) ? xRemoveSelectedField.equals("Y") : false;
 
+            final String xUnionView = XMLHandler.getTagValue(stepnode, ELEM_NAME_UNION_VIEW);
+            this.unionView = isNotEmpty(xUnionView) ? xUnionView.equals("Y") : false;
+
             final Node jenaModelFieldsNode = XMLHandler.getSubNode(stepnode, ELEM_NAME_JENA_MODEL_FIELDS);
             if (jenaModelFieldsNode == null) {
                 this.jenaModelFields = new ArrayList<>();
@@ -263,6 +271,12 @@ public class JenaCombineStepMeta extends BaseStepMeta implements StepMetaInterfa
             cr = new CheckResult(CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString(PKG, "JenaCombineStepMeta.CheckResult.NoInputReceivedFromOtherSteps"), stepMeta);
             remarks.add(cr);
         }
+
+        // a union view aliases its models, so it is only used when the step owns them
+        if (unionView && (mutateFirstModel || !removeSelectedFields)) {
+            cr = new CheckResult(CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString(PKG, "JenaCombineStepMeta.CheckResult.UnionViewIgnored"), stepMeta);
+            remarks.add(cr);
+        }
     }
 
     @Override
@@ -275,6 +289,11 @@ public class JenaCombineStepMeta extends BaseStepMeta implements StepMetaInterfa
         return new JenaCombineStepData();
     }
 
+    @Override
+    public boolean supportsErrorHandling() {
+        return true;
+    }
+
     @Override
     public String getDialogClassName() {
         return "uk.gov.nationalarchives.pdi.step.jena.combine.JenaCombineStepDialog";
@@ -307,6 +326,14 @@ public class JenaCombineStepMeta extends BaseStepMeta implements StepMetaInterfa
         this.removeSelectedFields = removeSelectedFields;
     }
 
+    public boolean isUnionView() {
+        return unionView;
+    }
+
+    public void setUnionView(final boolean unionView) {
+        this.unionView = unionView;
+    }
+
     public List<ConstrainedField> getJenaModelFields() {
         return jenaModelFields;
     }
@@ -0,0 +1,200 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.combine;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphEvents;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.GraphBase;
+import org.apache.jena.mem.GraphMem;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.shared.impl.PrefixMappingImpl;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.util.iterator.NiceIterator;
+
+import javax.annotation.Nullable;
+
+/**
+ * A read-only union of several graphs, which
+ * avoids copying the triples of the graphs.
+ *
+ * A triple which is present in more than one graph
+ * is only returned from the first graph that contains it,
+ * so duplicates are suppressed whilst iterating
+ * rather than by keeping a set of the triples seen.
+ *
+ * The first time that the union is modified, its triples
+ * are copied into a new graph, and from then on the union
+ * delegates to that graph; the underlying graphs are never modified.
+ *
+ * The size of a union of more than one graph is found by walking
+ * the union, which is costly, so it is cached. The underlying graphs
+ * must therefore not be modified whilst the union is in use.
+ */
+class UnionViewGraph extends GraphBase {
+
+    private final Graph[] graphs;
+    private final boolean closeGraphs;
+    @Nullable private volatile Graph materialised;
+    private volatile int size = -1;
+
+    /**
+     * @param graphs the graphs to form a union of
+     * @param closeGraphs true if the union owns the graphs,
+     *     and so should close them when it is closed
+     */
+    UnionViewGraph(final Graph[] graphs, final boolean closeGraphs) {
+        this.graphs = graphs;
+        this.closeGraphs = closeGraphs;
+    }
+
+    /**
+     * Returns true if the union has been copied
+     * into a new graph because it was modified.
+     *
+     * @return true if the union has been materialised
+     */
+    boolean isMaterialised() {
+        return materialised != null;
+    }
+
+    @Override
+    protected ExtendedIterator<Triple> graphBaseFind(final Triple triplePattern) {
+        final Graph materialised = this.materialised;
+        if (materialised != null) {
+            return materialised.find(triplePattern);
+        }
+
+        if (graphs.length == 0) {
+            return NiceIterator.emptyIterator();
+        }
+
+        ExtendedIterator<Triple> it = graphs[0].find(triplePattern);
+        for (int i = 1; i < graphs.length; i++) {
+            final int idx = i;
+            it = it.andThen(graphs[i].find(triplePattern).filterDrop(triple -> containedBefore(idx, triple)));
+        }
+        return it;
+    }
+
+    @Override
+    protected boolean graphBaseContains(final Triple triple) {
+        final Graph materialised = this.materialised;
+        if (materialised != null) {
+            return materialised.contains(triple);
+        }
+
+        return containedBefore(graphs.length, triple);
+    }
+
+    @Override
+    protected int graphBaseSize() {
+        final Graph materialised = this.materialised;
+        if (materialised != null) {
+            return materialised.size();
+        }
+
+        if (graphs.length == 1) {
+            return graphs[0].size();
+        }
+
+        // counts the triples with duplicates suppressed
+        int size = this.size;
+        if (size == -1) {
+            size = super.graphBaseSize();
+            this.size = size;
+        }
+        return size;
+    }
+
+    @Override
+    public void performAdd(final Triple t) {
+        materialise().add(t);
+    }
+
+    @Override
+    public void performDelete(final Triple t) {
+        materialise().delete(t);
+    }
+
+    @Override
+    public void clear() {
+        materialise().clear();
+        getEventManager().notifyEvent(this, GraphEvents.removeAll);
+    }
+
+    @Override
+    protected PrefixMapping createPrefixMapping() {
+        // NOTE: as when adding models together, later prefixes replace earlier ones
+        final PrefixMapping prefixMapping = new PrefixMappingImpl();
+        for (final Graph graph : graphs) {
+            prefixMapping.setNsPrefixes(graph.getPrefixMapping());
+        }
+        return prefixMapping;
+    }
+
+    @Override
+    public void close() {
+        final Graph materialised = this.materialised;
+        if (materialised != null) {
+            materialised.close();
+        }
+
+        if (closeGraphs) {
+            for (final Graph graph : graphs) {
+                graph.close();
+            }
+        }
+
+        super.close();
+    }
+
+    /**
+     * Returns true if any of the first {@code end} graphs contains the triple.
+     */
+    private boolean containedBefore(final int end, final Triple triple) {
+        for (int i = 0; i < end; i++) {
+            if (graphs[i].contains(triple)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized Graph materialise() {
+        Graph materialised = this.materialised;
+        if (materialised == null) {
+            materialised = new GraphMem();
+            final ExtendedIterator<Triple> it = graphBaseFind(Triple.ANY);
+            try {
+                while (it.hasNext()) {
+                    materialised.add(it.next());
+                }
+            } finally {
+                it.close();
+            }
+            this.materialised = materialised;
+        }
+        return materialised;
+    }
+}
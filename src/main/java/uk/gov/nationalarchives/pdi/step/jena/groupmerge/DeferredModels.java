@@ -0,0 +1,158 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.groupmerge;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.rdf.model.Model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The models of the rows of an open group, collected so
+ * that they can be merged once when the group is output,
+ * rather than one at a time as each row arrives.
+ *
+ * Each list is indexed by the position of the merged model
+ * field in the output row.
+ */
+final class DeferredModels {
+
+    private final List<Model>[] models;
+
+    /**
+     * True if the field is a merge field which mutates the first model,
+     * and so the merged model may be any one of the models of the group.
+     */
+    private final boolean[] mutateFirstModel;
+
+    /**
+     * The number of triples in the collected models.
+     */
+    private long triples;
+
+    @SuppressWarnings("unchecked")
+    DeferredModels(final OutputFields outputFields) {
+        final int len = outputFields.mergedModelFields.length;
+        this.models = (List<Model>[]) new List[len];
+        this.mutateFirstModel = new boolean[len];
+        for (int i = 0; i < len; i++) {
+            if (outputFields.mergedModelFields[i]) {
+                models[i] = new ArrayList<>();
+                mutateFirstModel[i] = outputFields.mergeFields[i] != null
+                        && outputFields.mergeFields[i].mutateFirstModel == MutateFirstModel.YES;
+            }
+        }
+    }
+
+    /**
+     * Defer merging a model into the merged model field of the group.
+     *
+     * @param outputRowFieldIndex the index of the merged model field in the output row.
+     * @param model the model to merge.
+     */
+    void add(final int outputRowFieldIndex, final Model model) {
+        models[outputRowFieldIndex].add(model);
+        triples += model.size();
+    }
+
+    /**
+     * Get the number of triples in the collected models,
+     * which may include duplicates of the same triple.
+     *
+     * @return the number of triples.
+     */
+    long getTriples() {
+        return triples;
+    }
+
+    /**
+     * Merge the collected models into the merged model fields of the group row.
+     *
+     * The result is the same as if each model had been merged in turn,
+     * i.e. the namespace prefixes of a later model replace those of an earlier model.
+     *
+     * @param groupMergedRow the group row.
+     * @param closeMergedModels true if the collected models may be closed once they are merged,
+     *     in which case the largest model of a field which mutates the first model is merged into.
+     */
+    void materialise(final Object[] groupMergedRow, final boolean closeMergedModels) {
+        for (int i = 0; i < models.length; i++) {
+            final List<Model> fieldModels = models[i];
+            if (fieldModels == null || fieldModels.isEmpty()) {
+                continue;
+            }
+
+            final Model first = (Model) groupMergedRow[i];
+
+            // resolve the prefixes before any of the models are closed
+            final Map<String, String> prefixes = new HashMap<>(first.getNsPrefixMap());
+            for (final Model model : fieldModels) {
+                prefixes.putAll(model.getNsPrefixMap());
+            }
+
+            Model merged = first;
+            if (closeMergedModels && mutateFirstModel[i]) {
+                for (final Model model : fieldModels) {
+                    if (model.size() > merged.size()) {
+                        merged = model;
+                    }
+                }
+            }
+
+            final Graph mergedGraph = merged.getGraph();
+            if (merged != first) {
+                GraphUtil.addInto(mergedGraph, first.getGraph());
+                first.close();
+            }
+            for (final Model model : fieldModels) {
+                if (model != merged) {
+                    GraphUtil.addInto(mergedGraph, model.getGraph());
+                    if (closeMergedModels) {
+                        model.close();
+                    }
+                }
+            }
+            merged.setNsPrefixes(prefixes);
+
+            groupMergedRow[i] = merged;
+            fieldModels.clear();
+        }
+        triples = 0;
+    }
+
+    /**
+     * Forget the collected models, without merging them.
+     */
+    void clear() {
+        for (final List<Model> fieldModels : models) {
+            if (fieldModels != null) {
+                fieldModels.clear();
+            }
+        }
+        triples = 0;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.groupmerge;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import uk.gov.nationalarchives.pdi.step.jena.ConstrainedField;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+import static uk.gov.nationalarchives.pdi.step.jena.Util.isNullOrEmpty;
+
+/**
+ * The key of the current group, i.e. the values of the
+ * group fields of the first row in the group.
+ *
+ * The positions of the group fields in the input row are
+ * resolved once, so that deciding if a row continues the
+ * current group is an index-wise comparison of its values
+ * with those of the key.
+ *
+ * When there is a single group field of type Integer, its
+ * value is held as a primitive {@code long}.
+ */
+final class GroupKey {
+
+    /**
+     * The index of each group field in the input row,
+     * or -1 if the field is absent from the input row.
+     */
+    private final int[] fieldIndexes;
+
+    /**
+     * The index of the group field in the input row
+     * if the key is a single Integer field, else -1.
+     */
+    private final int longFieldIndex;
+
+    @Nullable private Object[] values;
+    private long longValue;
+    private boolean longValueNull;
+    private boolean set;
+
+    private GroupKey(final int[] fieldIndexes, final int longFieldIndex) {
+        this.fieldIndexes = fieldIndexes;
+        this.longFieldIndex = longFieldIndex;
+        if (longFieldIndex == -1) {
+            this.values = new Object[fieldIndexes.length];
+        }
+    }
+
+    /**
+     * Compile a group key against the input row meta.
+     *
+     * @param groupFields the user-specified group fields.
+     * @param inputRowMeta the input row meta.
+     *
+     * @return the group key.
+     *
+     * @throws KettleException if a group field is missing its field name.
+     */
+    static GroupKey compile(final List<ConstrainedField> groupFields, final RowMetaInterface inputRowMeta) throws KettleException {
+        final int[] fieldIndexes = indexesOf("Group", groupFields, inputRowMeta);
+
+        int longFieldIndex = -1;
+        if (fieldIndexes.length == 1 && fieldIndexes[0] > -1) {
+            final ValueMetaInterface valueMeta = inputRowMeta.getValueMeta(fieldIndexes[0]);
+            if (valueMeta.getType() == ValueMetaInterface.TYPE_INTEGER && valueMeta.isStorageNormal()) {
+                longFieldIndex = fieldIndexes[0];
+            }
+        }
+
+        return new GroupKey(fieldIndexes, longFieldIndex);
+    }
+
+    /**
+     * Find the indexes of fields in a row.
+     *
+     * @param fieldType the type of the fields, for error messages.
+     * @param fields the user-specified fields.
+     * @param rowMeta the row meta.
+     *
+     * @return the index of each field in the row, or -1 if the field is absent from the row.
+     *
+     * @throws KettleException if a field is missing its field name.
+     */
+    static int[] indexesOf(final String fieldType, final List<? extends ConstrainedField> fields, final RowMetaInterface rowMeta) throws KettleException {
+        final int[] fieldIndexes = new int[fields.size()];
+        for (int i = 0; i < fieldIndexes.length; i++) {
+            final ConstrainedField field = fields.get(i);
+            if (isNullOrEmpty(field.fieldName)) {
+                throw new KettleException(fieldType + " field: " + i + " is missing its field name");
+            }
+            fieldIndexes[i] = rowMeta.indexOfValue(field.fieldName);
+        }
+        return fieldIndexes;
+    }
+
+    /**
+     * Get the index of a group field in the input row.
+     *
+     * @param i the index of the group field in the user-specified group fields.
+     *
+     * @return the index of the field in the input row, or -1 if the field is absent.
+     */
+    int getFieldIndex(final int i) {
+        return fieldIndexes[i];
+    }
+
+    /**
+     * Get the values of the group fields of a row.
+     *
+     * @param row the row.
+     *
+     * @return the values of the group fields, with null for any field which is absent.
+     */
+    Object[] valuesOf(final Object[] row) {
+        final Object[] rowValues = new Object[fieldIndexes.length];
+        for (int i = 0; i < fieldIndexes.length; i++) {
+            rowValues[i] = fieldIndexes[i] > -1 ? row[fieldIndexes[i]] : null;
+        }
+        return rowValues;
+    }
+
+    /**
+     * Set the key from the group fields of a row.
+     *
+     * @param row the first row of a group.
+     */
+    void set(final Object[] row) {
+        if (longFieldIndex > -1) {
+            final Object value = row[longFieldIndex];
+            longValueNull = value == null;
+            longValue = longValueNull ? 0 : ((Long) value).longValue();
+
+        } else {
+            for (int i = 0; i < fieldIndexes.length; i++) {
+                values[i] = fieldIndexes[i] > -1 ? row[fieldIndexes[i]] : null;
+            }
+        }
+        set = true;
+    }
+
+    /**
+     * Clear the key, so that no row matches it.
+     */
+    void clear() {
+        if (values != null) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = null;
+            }
+        }
+        set = false;
+    }
+
+    /**
+     * Determine if the group fields of a row match the key.
+     *
+     * @param row the row.
+     *
+     * @return true if the row is a continuation of the group, false otherwise.
+     */
+    boolean matches(final Object[] row) {
+        if (!set) {
+            return false;
+        }
+
+        if (longFieldIndex > -1) {
+            final Object value = row[longFieldIndex];
+            if (value == null) {
+                return longValueNull;
+            }
+            return !longValueNull && ((Long) value).longValue() == longValue;
+        }
+
+        for (int i = 0; i < fieldIndexes.length; i++) {
+            if (fieldIndexes[i] > -1) {
+                final Object value = row[fieldIndexes[i]];
+                final Object keyValue = values[i];
+                if (value == null ^ keyValue == null) {
+                    return false;
+                }
+                if (value != null && !value.equals(keyValue)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -30,25 +30,34 @@ import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMetaInterface;
-import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.*;
 import uk.gov.nationalarchives.pdi.step.jena.ConstrainedField;
+import uk.gov.nationalarchives.pdi.step.jena.RowException;
 
 import javax.annotation.Nullable;
+import java.io.File;
 import java.util.*;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 
-import static uk.gov.nationalarchives.pdi.step.jena.Util.isNullOrEmpty;
+import static uk.gov.nationalarchives.pdi.step.jena.Util.isNotEmpty;
 
 //TODO(AR) make sure we are using environmentSubstitute on all fieldNames and targetFieldNames where appropriate
 
 public class JenaGroupMergeStep extends BaseStep implements StepInterface {
     private static final Class<?> PKG = JenaGroupMergeStepMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
 
+    static final String ERROR_CODE_NULL_VALUE = "JENA_GROUP_MERGE_01";
+
+    /**
+     * A rough estimate of the heap used by a triple in an in-memory
+     * graph, i.e. the triple, its nodes, and its entries in the indexes.
+     */
+    static final int ESTIMATED_BYTES_PER_TRIPLE = 200;
+
     public JenaGroupMergeStep(final StepMeta stepMeta, final StepDataInterface stepDataInterface, final int copyNr,
             final TransMeta transMeta, final Trans trans) {
         super(stepMeta, stepDataInterface, copyNr, transMeta, trans);
@@ -63,9 +72,16 @@ public class JenaGroupMergeStep extends BaseStep implements StepInterface {
         Object[] inputRowData = getRow(); // try and get a row
         if (inputRowData == null) {
 
-            // output the last group
-            if (data.getGroupMergedRow() != null) {
-                outputGroup(data);
+            if (data.getUnsortedGroups() != null) {
+                // output all of the groups
+                data.getUnsortedGroups().output((row, continued) -> {
+                    setContinuationField(data, row, continued);
+                    putRow(data.getOutputRowMeta(), row);
+                });
+
+            } else if (data.getGroupMergedRow() != null) {
+                // output the last group
+                outputGroup(meta, data, false);
             }
 
             // no more rows...
@@ -76,11 +92,29 @@ public class JenaGroupMergeStep extends BaseStep implements StepInterface {
         // process a row...
         final RowMetaInterface inputRowMeta = getInputRowMeta();
 
-        // get the group fields from the input row
-        final LinkedHashMap<String, Object> inputRowGroupFields = getGroupFields(meta, inputRowData, inputRowMeta, this::logBasic);
+        // resolve the positions of the group and merge fields in the input row
+        if (data.getGroupKey() == null) {
+            data.setGroupKey(GroupKey.compile(meta.getGroupFields(), inputRowMeta));
+            data.setMergeFieldIndexes(GroupKey.indexesOf("Merge", meta.getMergeFields(), inputRowMeta));
+        }
+        final GroupKey groupKey = data.getGroupKey();
+
+        try {
+            // check the group fields of the input row
+            checkGroupFields(meta, groupKey, inputRowData, this::logBasic);
 
-        // check for the merge fields
-        checkForMergeFields(meta, inputRowData, inputRowMeta, this::logBasic);
+            // check for the merge fields
+            checkForMergeFields(meta, data.getMergeFieldIndexes(), inputRowData, this::logBasic);
+
+        } catch (final RowException e) {
+            if (!getStepMeta().isDoingErrorHandling()) {
+                throw e;
+            }
+
+            // send the row to the error hop, it does not join or start a group
+            putError(inputRowMeta, inputRowData, 1, e.getSuperMessage(), e.getFieldName(), e.getErrorCode());
+            return true;
+        }
 
         // is this the first row this step has seen?
         if (first) {
@@ -93,26 +127,56 @@ public class JenaGroupMergeStep extends BaseStep implements StepInterface {
             // NOTE: this must come after createOutputRowMeta
             prepareForReMap(inputRowMeta, data);
 
-            // process the first row
-            processFirstRowForGroup(meta, data, inputRowData);
+            // resolve the limit on the size of a group, and the field which flags a partial group
+            data.setMaxTriplesPerGroup(maxTriplesPerGroup(meta));
+            if (isNotEmpty(meta.getContinuationFieldName())) {
+                data.setContinuationFieldIndex(data.getOutputRowMeta().indexOfValue(environmentSubstitute(meta.getContinuationFieldName())));
+            }
 
-            // continue onto the next row
-            return true;
-        }
+            if (meta.isSortedInput()) {
+                if (meta.isDeferMerge()) {
+                    // collect the models of each group, and merge them once at the end of the group
+                    data.setDeferredModels(new DeferredModels(data.getOutputFields(meta)));
+                }
 
-        final RowMetaInterface outputRowMeta = data.getOutputRowMeta();
+                // process the first row
+                processFirstRowForGroup(meta, data, inputRowData);
+                groupKey.set(inputRowData);
+
+                // continue onto the next row
+                return true;
+            }
+
+            // the rows of a group may be anywhere in the input, so we must keep all groups open until the end
+            final File spillDirectory = new File(environmentSubstitute(meta.getSpillDirectory()));
+            data.setUnsortedGroups(new UnsortedGroups(meta, data, groupKey, spillDirectory, this::logBasic));
+        }
 
-        // get the group fields from the groupMergedRow
         final Object[] groupMergedRow = data.getGroupMergedRow();
-        final LinkedHashMap<String, Object> groupMergedRowGroupFields = getGroupFields(meta, groupMergedRow, outputRowMeta, this::logBasic);
+
+        if (data.getUnsortedGroups() != null) {
+
+            // add the input row to its group, wherever that is
+            data.getUnsortedGroups().add(inputRowData);
 
         // does the input row continue an existing group, or should it start a new group?
-        if (isContinuation(groupMergedRowGroupFields, inputRowGroupFields)) {
+        } else if (groupMergedRow != null && groupKey.matches(inputRowData)) {
 
             // the input row is a continuation of the groupMergedRow
 
-            // merge the models from the input row with the models from the groupMergedRow
-            mergeRowIntoGroup(meta, data, inputRowData);
+            if (isGroupFull(meta, data)) {
+                /*
+                    the group has reached its size limit, so we output
+                    it as a partial group, and continue the group afresh
+                 */
+                outputGroup(meta, data, true);
+                processFirstRowForGroup(meta, data, inputRowData);
+                groupKey.set(inputRowData);
+
+            } else {
+                // merge the models from the input row with the models from the groupMergedRow
+                mergeRowIntoGroup(meta, data, inputRowData);
+            }
 
         } else {
 
@@ -124,10 +188,11 @@ public class JenaGroupMergeStep extends BaseStep implements StepInterface {
                     yes, there was a previous group,
                     so we must output it and clear the previous data
                  */
-                outputGroup(data);
+                outputGroup(meta, data, false);
             }
 
             processFirstRowForGroup(meta, data, inputRowData);
+            groupKey.set(inputRowData);
         }
 
         // report progress
@@ -141,6 +206,23 @@ public class JenaGroupMergeStep extends BaseStep implements StepInterface {
         return true;
     }
 
+    @Override
+    public void dispose(final StepMetaInterface smi, final StepDataInterface sdi) {
+        final JenaGroupMergeStepData data = (JenaGroupMergeStepData) sdi;
+        final UnsortedGroups unsortedGroups = data.getUnsortedGroups();
+        if (unsortedGroups != null) {
+            if (log.isBasic()) {
+                logBasic("Groups spilled to disk in: {0} runs", unsortedGroups.getSpilledRuns());
+            }
+
+            // deletes any runs which remain if the step did not reach the end of its input
+            unsortedGroups.close();
+            data.setUnsortedGroups(null);
+        }
+
+        super.dispose(smi, sdi);
+    }
+
     /**
      * Create the Meta for the Output Row.
      *
@@ -220,6 +302,8 @@ public class JenaGroupMergeStep extends BaseStep implements StepInterface {
         // get the array holding the current Group Merged Row
         final Object[] outputRowData = data.getGroupMergedRow();
 
+        @Nullable final DeferredModels deferredModels = data.getDeferredModels();
+
         // function - get the model of the current targetField in the Group Merged Row
         final BiFunction<Object[], Integer, Model> fnGetOutputRowTargetFieldModel = (outputRowData1, outputRowTargetFieldIndex) -> (Model) outputRowData1[outputRowTargetFieldIndex];
 
@@ -245,6 +329,22 @@ public class JenaGroupMergeStep extends BaseStep implements StepInterface {
                 final Model inputRowFieldModel = (Model) inputRowFieldValue;
                 final Model outputRowFieldModel = (Model) outputRowData1[outputRowFieldIndex];
 
+                if (deferredModels != null) {
+                    // the input row model is merged when the group is output
+                    deferredModels.add(outputRowFieldIndex, inputRowFieldModel);
+                    return outputRowFieldModel;
+                }
+
+                if (meta.isCloseMergedModels() && inputRowFieldModel.size() > outputRowFieldModel.size()) {
+                    /*
+                        the input row model would be closed after merging anyway, and it is
+                        the larger of the two, so instead of copying it we take ownership of it
+                        and merge the smaller model from the output row into it
+                     */
+                    adoptModel(inputRowFieldModel, outputRowFieldModel);
+                    return inputRowFieldModel;
+                }
+
                 // merged the input row model into the model in the output row
                 outputRowFieldModel.add(inputRowFieldModel);
 
@@ -263,6 +363,23 @@ public class JenaGroupMergeStep extends BaseStep implements StepInterface {
         processRow(meta, data, inputRowData, outputRowData, fnGetOutputRowTargetFieldModel, fnGetNormalFieldOutputValue, fnGetGroupOrMergeFieldOutputValue);
     }
 
+    /**
+     * Merge a model into a model from a later row, and then close it.
+     *
+     * The result is the same as if the later model had been merged into
+     * the earlier model, i.e. the namespace prefixes of the later model
+     * replace those of the earlier model.
+     *
+     * @param laterModel the model from the later row, which is merged into.
+     * @param earlierModel the model from the earlier row, which is closed.
+     */
+    static void adoptModel(final Model laterModel, final Model earlierModel) {
+        final Map<String, String> laterPrefixes = laterModel.getNsPrefixMap();
+        laterModel.add(earlierModel);
+        laterModel.setNsPrefixes(laterPrefixes);
+        earlierModel.close();
+    }
+
     /**
      * Process an input row.
      *
@@ -283,28 +400,27 @@ public class JenaGroupMergeStep extends BaseStep implements StepInterface {
             final QuadFunction<OtherFieldAction, Object, Object[], Integer, Object> fnGetNormalFieldOutputValue,
             final QuintFunction<ModelMergeConstrainedField, OtherFieldAction, Object, Object[], Integer, Object> fnGetGroupOrMergeFieldOutputValue) {
 
-        final RowMetaInterface outputRowMeta = data.getOutputRowMeta();
+        final OutputFields outputFields = data.getOutputFields(meta);
 
         // this accumulates any targetFields that we have already set, so we don't override them if they already exist after the merge field in the input row
-        Set<String> skipTargetFields = null;
+        boolean[] skipTargetFields = null;
 
         // iterate over the required output row fields (NOTE: the OutputRowMeta contains all columns, i.e. input columns to preserve and new targetField columns to create)
-        for (final ValueMetaInterface outputRowMetaValue : outputRowMeta.getValueMetaList()) {
-            final String outputRowFieldName = outputRowMetaValue.getName();
+        for (int outputRowFieldIndex = 0; outputRowFieldIndex < outputFields.inputRowFieldIndexes.length; outputRowFieldIndex++) {
 
             // is there a corresponding field from the output row in the input row?
-            @Nullable final Integer inputRowFieldIndex = data.getRemainingInputFieldIndexes().get(outputRowFieldName);
+            final int inputRowFieldIndex = outputFields.inputRowFieldIndexes[outputRowFieldIndex];
 
             // if there is no corresponding field in the input row, or we have already created the targetField, we can skip setting the output field
-            boolean skipSetOutputField = inputRowFieldIndex == null || (skipTargetFields != null && skipTargetFields.contains(outputRowFieldName));
+            final boolean skipSetOutputField = inputRowFieldIndex == -1 || (skipTargetFields != null && skipTargetFields[outputRowFieldIndex]);
 
             // is the output field a "merge field" which sets a targetField?
-            @Nullable final ModelMergeConstrainedField mergeField = meta.getMergeField(outputRowFieldName);
+            @Nullable final ModelMergeConstrainedField mergeField = outputFields.mergeFields[outputRowFieldIndex];
             if (mergeField != null && mergeField.mutateFirstModel == MutateFirstModel.NO) {
 
                 // does the targetField already exist in the input row
-                @Nullable final Integer inputRowTargetFieldIndex = data.getRemainingInputFieldIndexes().get(mergeField.targetFieldName);
-                if (inputRowTargetFieldIndex != null) {
+                final int inputRowTargetFieldIndex = outputFields.inputRowTargetFieldIndexes[outputRowFieldIndex];
+                if (inputRowTargetFieldIndex != -1) {
                     final Object existingInputRowValue = inputRowData[inputRowTargetFieldIndex];
                     if (existingInputRowValue != null && existingInputRowValue instanceof Model && meta.isCloseMergedModels()) {
                         // targetField exists in the input row, and already contains a Jena Model... this is strange.. but let's close the existing Jena Model to avoid a memory leak
@@ -313,18 +429,25 @@ public class JenaGroupMergeStep extends BaseStep implements StepInterface {
                 }
 
                 // get the index in the output row for the targetField
-                final int outputRowTargetFieldIndex = outputRowMeta.indexOfValue(mergeField.targetFieldName);
+                final int outputRowTargetFieldIndex = outputFields.targetFieldIndexes[outputRowFieldIndex];
 
                 // find the input model in the input row
                 final Model inputRowFieldModel = (Model) inputRowData[inputRowFieldIndex];
 
                 // merge the input row model into the targetField model in the output row
                 final Model outputRowTargetFieldModel = fnGetOutputRowTargetFieldModel.apply(outputRowData, outputRowTargetFieldIndex);
-                outputRowTargetFieldModel.add(inputRowFieldModel);
+                @Nullable final DeferredModels deferredModels = data.getDeferredModels();
+                if (deferredModels != null) {
+                    // the input row model is merged when the group is output
+                    deferredModels.add(outputRowTargetFieldIndex, inputRowFieldModel);
 
-                // close the original input row model if the user set that option in the dialog
-                if (meta.isCloseMergedModels()) {
-                    inputRowFieldModel.close();
+                } else {
+                    outputRowTargetFieldModel.add(inputRowFieldModel);
+
+                    // close the original input row model if the user set that option in the dialog
+                    if (meta.isCloseMergedModels()) {
+                        inputRowFieldModel.close();
+                    }
                 }
 
                 // place the model into the targetField of the output row
@@ -332,9 +455,9 @@ public class JenaGroupMergeStep extends BaseStep implements StepInterface {
 
                 // remember that we have set the targetField
                 if (skipTargetFields == null) {
-                    skipTargetFields = new HashSet<>();
+                    skipTargetFields = new boolean[outputFields.inputRowFieldIndexes.length];
                 }
-                skipTargetFields.add(mergeField.targetFieldName);
+                skipTargetFields[outputRowTargetFieldIndex] = true;
             }
 
 
@@ -345,10 +468,9 @@ public class JenaGroupMergeStep extends BaseStep implements StepInterface {
                 final Object inputRowFieldValue = inputRowData[inputRowFieldIndex];
 
                 // is the output field a "group field"
-                @Nullable final ConstrainedField groupField = meta.getGroupField(outputRowFieldName);
+                @Nullable final ConstrainedField groupField = outputFields.groupFields[outputRowFieldIndex];
 
                 // copy the input row field to the output row
-                final int outputRowFieldIndex = outputRowMeta.indexOfValue(outputRowFieldName);
                 if (mergeField == null && groupField == null) {
                     outputRowData[outputRowFieldIndex] = fnGetNormalFieldOutputValue.apply(meta.getOtherFieldAction(), inputRowFieldValue, outputRowData, outputRowFieldIndex);
                 } else {
@@ -361,117 +483,130 @@ public class JenaGroupMergeStep extends BaseStep implements StepInterface {
     }
 
     /**
-     * Send a merged group to the step output.
+     * Get the number of triples in the merged models of a group
+     * at which the group is output as a partial group.
      *
-     * @param data this steps data.
+     * @param meta this steps meta.
+     *
+     * @return the number of triples, or 0 for no limit.
      */
-    private void outputGroup(final JenaGroupMergeStepData data) throws KettleStepException {
-        putRow(data.getOutputRowMeta(), data.getGroupMergedRow());
-        data.clear();
+    static long maxTriplesPerGroup(final JenaGroupMergeStepMeta meta) {
+        long maxTriples = Math.max(0, meta.getMaxTriplesPerGroup());
+        if (meta.getMaxMegabytesPerGroup() > 0) {
+            final long maxTriplesForBytes = Math.max(1, meta.getMaxMegabytesPerGroup() * 1024L * 1024L / ESTIMATED_BYTES_PER_TRIPLE);
+            maxTriples = maxTriples > 0 ? Math.min(maxTriples, maxTriplesForBytes) : maxTriplesForBytes;
+        }
+        return maxTriples;
     }
 
     /**
-     * Determine if the input row is a continuation of a current group merge.
+     * Determine if the current group has reached its size limit.
      *
-     * @param groupMergedRowGroupFields the fields in the current group merge.
-     * @param inputRowGroupFields the fields in the input row.
+     * The size of an in-memory model is a counter, so this
+     * does not need to walk the models.
      *
-     * @return true if this is a continuation, false otherwise.
+     * @param meta this steps meta.
+     * @param data this steps data.
+     *
+     * @return true if the group has reached its size limit.
      */
-    private boolean isContinuation(@Nullable final LinkedHashMap<String, Object> groupMergedRowGroupFields, final LinkedHashMap<String, Object> inputRowGroupFields) {
-        if (groupMergedRowGroupFields == null || groupMergedRowGroupFields.size() != inputRowGroupFields.size()) {
+    static boolean isGroupFull(final JenaGroupMergeStepMeta meta, final JenaGroupMergeStepData data) {
+        final long maxTriples = data.getMaxTriplesPerGroup();
+        if (maxTriples <= 0) {
             return false;
         }
 
-        for (final Map.Entry<String, Object> currentGroupField : inputRowGroupFields.entrySet()) {
-            final String currentFieldName = currentGroupField.getKey();
-            final Object currentFieldValue = currentGroupField.getValue();
+        long triples = data.getDeferredModels() != null ? data.getDeferredModels().getTriples() : 0;
 
-            if (!groupMergedRowGroupFields.containsKey(currentFieldName)) {
-                return false;
+        final boolean[] mergedModelFields = data.getOutputFields(meta).mergedModelFields;
+        final Object[] groupMergedRow = data.getGroupMergedRow();
+        for (int i = 0; i < mergedModelFields.length; i++) {
+            if (mergedModelFields[i] && groupMergedRow[i] instanceof Model) {
+                final Model model = (Model) groupMergedRow[i];
+                if (!model.isClosed()) {
+                    triples += model.size();
+                }
             }
+        }
 
-            final Object previousFieldValue = groupMergedRowGroupFields.get(currentFieldName);
-            if (currentFieldValue == null ^ previousFieldValue == null) {
-                return false;
-            }
+        return triples >= maxTriples;
+    }
 
-            if (currentFieldValue != null) {
-                if (!currentFieldValue.equals(previousFieldValue)) {
-                    return false;
-                }
-            }
+    /**
+     * Set the continuation field of an output row, if there is one.
+     *
+     * @param data this steps data.
+     * @param outputRowData the output row.
+     * @param continued true if the row is a partial group which is continued by the next row.
+     */
+    private static void setContinuationField(final JenaGroupMergeStepData data, final Object[] outputRowData, final boolean continued) {
+        final int continuationFieldIndex = data.getContinuationFieldIndex();
+        if (continuationFieldIndex > -1) {
+            outputRowData[continuationFieldIndex] = continued;
         }
+    }
 
-        return true;
+    /**
+     * Send a merged group to the step output.
+     *
+     * @param meta this steps meta.
+     * @param data this steps data.
+     * @param continued true if this is a partial group which is continued by the next row.
+     */
+    private void outputGroup(final JenaGroupMergeStepMeta meta, final JenaGroupMergeStepData data, final boolean continued) throws KettleStepException {
+        if (data.getDeferredModels() != null) {
+            // merge the models which were collected while the group was open
+            data.getDeferredModels().materialise(data.getGroupMergedRow(), meta.isCloseMergedModels());
+        }
+        setContinuationField(data, data.getGroupMergedRow(), continued);
+        putRow(data.getOutputRowMeta(), data.getGroupMergedRow());
+        data.clear();
     }
 
     /**
-     * Get the user-specified fields that are used for grouping from the row.
+     * Check the user-specified fields that are used for grouping in the row.
      *
      * @param meta this steps meta.
+     * @param groupKey the group key, with the positions of the group fields in the row.
      * @param rowData the row data.
-     * @param rowMeta the row meta.
      * @param logFunction a function that can be called to log a warning message.
      *
-     * @return the group fields, the Map key is the field name and the Map value is the field value.
-     *
      * @throws KettleException if a required user-specified group field is missing.
      */
-    static LinkedHashMap<String, Object> getGroupFields(final JenaGroupMergeStepMeta meta, final Object[] rowData,
-            final RowMetaInterface rowMeta, final BiConsumer<String, String[]> logFunction) throws KettleException {
-
-        // NOTE: order is important, so we use a LinkedHashMap
-        final LinkedHashMap<String, Object> groupFields = new LinkedHashMap<>(meta.getGroupFields().size());
+    static void checkGroupFields(final JenaGroupMergeStepMeta meta, final GroupKey groupKey, final Object[] rowData,
+            final BiConsumer<String, String[]> logFunction) throws KettleException {
 
         for (int i = 0; i < meta.getGroupFields().size(); i++) {
             final ConstrainedField groupField = meta.getGroupFields().get(i);
-            if (isNullOrEmpty(groupField.fieldName)) {
-                throw new KettleException("Group field: " + i + " is missing its field name");
-            }
-
-            final int idxGroupField = rowMeta.indexOfValue(groupField.fieldName);
+            final int idxGroupField = groupKey.getFieldIndex(i);
             if (idxGroupField == -1) {
                 handleNoSuchField("Group", groupField, logFunction);
-            } else {
-                final Object groupFieldValue = rowData[idxGroupField];
-                groupFields.put(groupField.fieldName, groupFieldValue);
-                if (groupFieldValue == null) {
-                    handleNullField("Group", groupField, logFunction);
-                }
+            } else if (rowData[idxGroupField] == null) {
+                handleNullField("Group", groupField, logFunction);
             }
         }
-
-        return groupFields;
     }
 
     /**
      * Check that the row contains all of the user-specified merge fields.
      *
      * @param meta this steps meta.
+     * @param mergeFieldIndexes the positions of the merge fields in the row.
      * @param rowData the row data.
-     * @param rowMeta the row meta.
      * @param logFunction a function that can be called to log a warning message.
      *
      * @throws KettleException if a required user-specified merge field is missing.
      */
-    static void checkForMergeFields(final JenaGroupMergeStepMeta meta, final Object[] rowData,
-            final RowMetaInterface rowMeta, final BiConsumer<String, String[]> logFunction) throws KettleException {
+    static void checkForMergeFields(final JenaGroupMergeStepMeta meta, final int[] mergeFieldIndexes, final Object[] rowData,
+            final BiConsumer<String, String[]> logFunction) throws KettleException {
 
         for (int i = 0; i < meta.getMergeFields().size(); i++) {
             final ConstrainedField mergeField = meta.getMergeFields().get(i);
-            if (isNullOrEmpty(mergeField.fieldName)) {
-                throw new KettleException("Merge field: " + i + " is missing its field name");
-            }
-
-            final int idxMergeField = rowMeta.indexOfValue(mergeField.fieldName);
+            final int idxMergeField = mergeFieldIndexes[i];
             if (idxMergeField == -1) {
                 handleNoSuchField("Merge", mergeField, logFunction);
-            } else {
-                final Object mergeFieldValue = rowData[idxMergeField];
-                if (mergeFieldValue == null) {
-                    handleNullField("Merge", mergeField, logFunction);
-                }
+            } else if (rowData[idxMergeField] == null) {
+                handleNullField("Merge", mergeField, logFunction);
             }
         }
     }
@@ -510,7 +645,7 @@ public class JenaGroupMergeStep extends BaseStep implements StepInterface {
 
             case ERROR:
                 // throw an exception
-                throw new KettleException(fieldType + " field: " + field.fieldName + ", column has a null value in row!");
+                throw new RowException(ERROR_CODE_NULL_VALUE, field.fieldName, fieldType + " field: " + field.fieldName + ", column has a null value in row!");
         }
     }
 }
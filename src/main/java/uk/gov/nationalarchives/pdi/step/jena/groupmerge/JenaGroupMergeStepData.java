@@ -47,6 +47,39 @@ public class JenaGroupMergeStepData extends BaseStepData implements StepDataInte
 
     @Nullable private Object[] groupMergedRow;
 
+    @Nullable private GroupKey groupKey;
+
+    /**
+     * Indexes of the merge fields in the input row,
+     * or -1 where a field is absent.
+     */
+    @Nullable private int[] mergeFieldIndexes;
+
+    @Nullable private OutputFields outputFields;
+
+    /**
+     * The open groups, when the input is not sorted.
+     */
+    @Nullable private UnsortedGroups unsortedGroups;
+
+    /**
+     * The models of the open group which are still to be merged,
+     * when merging is deferred until the end of the group.
+     */
+    @Nullable private DeferredModels deferredModels;
+
+    /**
+     * The number of triples in the merged models of a group
+     * at which the group is output as a partial group, or 0 for no limit.
+     */
+    private long maxTriplesPerGroup;
+
+    /**
+     * Index of the continuation field in the output row,
+     * or -1 if there is no continuation field.
+     */
+    private int continuationFieldIndex = -1;
+
     public JenaGroupMergeStepData() {
         super();
     }
@@ -66,6 +99,7 @@ public class JenaGroupMergeStepData extends BaseStepData implements StepDataInte
 
     public void setOutputRowMeta(final RowMetaInterface outputRowMeta) {
         this.outputRowMeta = outputRowMeta;
+        this.outputFields = null;
     }
 
     public LinkedHashMap<String, Integer> getRemainingInputFieldIndexes() {
@@ -74,9 +108,79 @@ public class JenaGroupMergeStepData extends BaseStepData implements StepDataInte
 
     public void setRemainingInputFieldIndexes(final LinkedHashMap<String, Integer> remainingInputFieldIndexes) {
         this.remainingInputFieldIndexes = remainingInputFieldIndexes;
+        this.outputFields = null;
+    }
+
+    @Nullable GroupKey getGroupKey() {
+        return groupKey;
+    }
+
+    void setGroupKey(final GroupKey groupKey) {
+        this.groupKey = groupKey;
+    }
+
+    @Nullable int[] getMergeFieldIndexes() {
+        return mergeFieldIndexes;
+    }
+
+    void setMergeFieldIndexes(final int[] mergeFieldIndexes) {
+        this.mergeFieldIndexes = mergeFieldIndexes;
+    }
+
+    @Nullable UnsortedGroups getUnsortedGroups() {
+        return unsortedGroups;
+    }
+
+    void setUnsortedGroups(@Nullable final UnsortedGroups unsortedGroups) {
+        this.unsortedGroups = unsortedGroups;
+    }
+
+    @Nullable DeferredModels getDeferredModels() {
+        return deferredModels;
+    }
+
+    void setDeferredModels(@Nullable final DeferredModels deferredModels) {
+        this.deferredModels = deferredModels;
+    }
+
+    long getMaxTriplesPerGroup() {
+        return maxTriplesPerGroup;
+    }
+
+    void setMaxTriplesPerGroup(final long maxTriplesPerGroup) {
+        this.maxTriplesPerGroup = maxTriplesPerGroup;
+    }
+
+    int getContinuationFieldIndex() {
+        return continuationFieldIndex;
+    }
+
+    void setContinuationFieldIndex(final int continuationFieldIndex) {
+        this.continuationFieldIndex = continuationFieldIndex;
+    }
+
+    /**
+     * Get the fields of the output row, resolving
+     * them on first use.
+     *
+     * @param meta the step meta.
+     *
+     * @return the output fields.
+     */
+    OutputFields getOutputFields(final JenaGroupMergeStepMeta meta) {
+        if (outputFields == null) {
+            outputFields = OutputFields.compile(meta, outputRowMeta, remainingInputFieldIndexes);
+        }
+        return outputFields;
     }
 
     public void clear() {
         groupMergedRow = null;
+        if (groupKey != null) {
+            groupKey.clear();
+        }
+        if (deferredModels != null) {
+            deferredModels.clear();
+        }
     }
 }
\ No newline at end of file
@@ -30,6 +30,7 @@ import org.eclipse.swt.layout.FormAttachment;
 import org.eclipse.swt.layout.FormData;
 import org.eclipse.swt.layout.FormLayout;
 import org.eclipse.swt.widgets.*;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.plugins.PluginInterface;
 import org.pentaho.di.core.plugins.PluginRegistry;
 import org.pentaho.di.core.plugins.StepPluginType;
@@ -43,6 +44,7 @@ import org.pentaho.di.ui.core.gui.GUIResource;
 import org.pentaho.di.ui.core.widget.ColumnInfo;
 import org.pentaho.di.ui.core.widget.ComboValuesSelectionListener;
 import org.pentaho.di.ui.core.widget.TableView;
+import org.pentaho.di.ui.core.widget.TextVar;
 import org.pentaho.di.ui.trans.step.BaseStepDialog;
 import uk.gov.nationalarchives.pdi.step.jena.ActionIfNoSuchField;
 import uk.gov.nationalarchives.pdi.step.jena.ActionIfNull;
@@ -82,12 +84,27 @@ public class JenaGroupMergeStepDialog extends BaseStepDialog implements StepDial
     private Button wGetMergeFieldsButton;
     private Label wOtherFieldsLabel;
     private Combo wOtherFieldsCombo;
+    private Label wDeferMergeLabel;
+    private Button wDeferMergeCheckbox;
+    private Label wSortedInputLabel;
+    private Button wSortedInputCheckbox;
+    private Label wMaxTriplesInMemoryLabel;
+    private TextVar wMaxTriplesInMemoryTextField;
+    private Label wSpillDirectoryLabel;
+    private TextVar wSpillDirectoryTextField;
+    private Label wMaxTriplesPerGroupLabel;
+    private TextVar wMaxTriplesPerGroupTextField;
+    private Label wMaxMegabytesPerGroupLabel;
+    private TextVar wMaxMegabytesPerGroupTextField;
+    private Label wContinuationFieldLabel;
+    private TextVar wContinuationFieldTextField;
     private Button wCancel;
     private Button wOK;
     private ModifyListener lsGroupFieldsTableModify;
     private ModifyListener lsMergeFieldsTableModify;
     private Listener lsGetGroupFields;
     private Listener lsGetMergeFields;
+    private Listener lsSortedInput;
     private Listener lsCancel;
     private Listener lsOK;
     private SelectionAdapter lsDef;
@@ -346,6 +363,125 @@ public class JenaGroupMergeStepDialog extends BaseStepDialog implements StepDial
                 .result();
         wOtherFieldsCombo.setLayoutData(fdOtherFieldsCombo);
 
+        // defer merge label/checkbox
+        wDeferMergeLabel = new Label(group, SWT.LEFT);
+        props.setLook(wDeferMergeLabel);
+        wDeferMergeLabel.setText(BaseMessages.getString(PKG, "JenaGroupMergeStepDialog.CheckboxDeferMerge"));
+        final FormData fdDeferMergeLabel = new FormDataBuilder().left()
+                .top(wOtherFieldsCombo, ELEMENT_SPACING)
+                .result();
+        wDeferMergeLabel.setLayoutData(fdDeferMergeLabel);
+
+        wDeferMergeCheckbox = new Button(group, SWT.CHECK);
+        props.setLook(wDeferMergeCheckbox);
+        wDeferMergeCheckbox.setBackground(display.getSystemColor(SWT.COLOR_TRANSPARENT));
+        final FormData fdDeferMergeCheckbox = new FormDataBuilder().left(wDeferMergeLabel, LABEL_SPACING)
+                .top(wOtherFieldsCombo, ELEMENT_SPACING)
+                .result();
+        wDeferMergeCheckbox.setLayoutData(fdDeferMergeCheckbox);
+
+        // sorted input label/checkbox
+        wSortedInputLabel = new Label(group, SWT.LEFT);
+        props.setLook(wSortedInputLabel);
+        wSortedInputLabel.setText(BaseMessages.getString(PKG, "JenaGroupMergeStepDialog.CheckboxSortedInput"));
+        final FormData fdSortedInputLabel = new FormDataBuilder().left()
+                .top(wDeferMergeLabel, ELEMENT_SPACING)
+                .result();
+        wSortedInputLabel.setLayoutData(fdSortedInputLabel);
+
+        wSortedInputCheckbox = new Button(group, SWT.CHECK);
+        props.setLook(wSortedInputCheckbox);
+        wSortedInputCheckbox.setBackground(display.getSystemColor(SWT.COLOR_TRANSPARENT));
+        final FormData fdSortedInputCheckbox = new FormDataBuilder().left(wSortedInputLabel, LABEL_SPACING)
+                .top(wDeferMergeLabel, ELEMENT_SPACING)
+                .result();
+        wSortedInputCheckbox.setLayoutData(fdSortedInputCheckbox);
+
+        // max triples in memory label/field
+        wMaxTriplesInMemoryLabel = new Label(group, SWT.LEFT);
+        props.setLook(wMaxTriplesInMemoryLabel);
+        wMaxTriplesInMemoryLabel.setText(BaseMessages.getString(PKG, "JenaGroupMergeStepDialog.TextFieldMaxTriplesInMemory"));
+        final FormData fdMaxTriplesInMemoryLabel = new FormDataBuilder().left()
+                .top(wSortedInputLabel, ELEMENT_SPACING)
+                .result();
+        wMaxTriplesInMemoryLabel.setLayoutData(fdMaxTriplesInMemoryLabel);
+
+        wMaxTriplesInMemoryTextField = new TextVar(transMeta, group, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wMaxTriplesInMemoryTextField);
+        final FormData fdMaxTriplesInMemoryTextField = new FormDataBuilder().left()
+                .top(wMaxTriplesInMemoryLabel, LABEL_SPACING)
+                .width(SMALL_FIELD)
+                .result();
+        wMaxTriplesInMemoryTextField.setLayoutData(fdMaxTriplesInMemoryTextField);
+
+        // spill directory label/field
+        wSpillDirectoryLabel = new Label(group, SWT.LEFT);
+        props.setLook(wSpillDirectoryLabel);
+        wSpillDirectoryLabel.setText(BaseMessages.getString(PKG, "JenaGroupMergeStepDialog.TextFieldSpillDirectory"));
+        final FormData fdSpillDirectoryLabel = new FormDataBuilder().left()
+                .top(wMaxTriplesInMemoryTextField, ELEMENT_SPACING)
+                .result();
+        wSpillDirectoryLabel.setLayoutData(fdSpillDirectoryLabel);
+
+        wSpillDirectoryTextField = new TextVar(transMeta, group, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wSpillDirectoryTextField);
+        final FormData fdSpillDirectoryTextField = new FormDataBuilder().left()
+                .top(wSpillDirectoryLabel, LABEL_SPACING)
+                .width(LARGE_FIELD)
+                .result();
+        wSpillDirectoryTextField.setLayoutData(fdSpillDirectoryTextField);
+
+        // max triples per group label/field
+        wMaxTriplesPerGroupLabel = new Label(group, SWT.LEFT);
+        props.setLook(wMaxTriplesPerGroupLabel);
+        wMaxTriplesPerGroupLabel.setText(BaseMessages.getString(PKG, "JenaGroupMergeStepDialog.TextFieldMaxTriplesPerGroup"));
+        final FormData fdMaxTriplesPerGroupLabel = new FormDataBuilder().left()
+                .top(wSpillDirectoryTextField, ELEMENT_SPACING)
+                .result();
+        wMaxTriplesPerGroupLabel.setLayoutData(fdMaxTriplesPerGroupLabel);
+
+        wMaxTriplesPerGroupTextField = new TextVar(transMeta, group, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wMaxTriplesPerGroupTextField);
+        final FormData fdMaxTriplesPerGroupTextField = new FormDataBuilder().left()
+                .top(wMaxTriplesPerGroupLabel, LABEL_SPACING)
+                .width(SMALL_FIELD)
+                .result();
+        wMaxTriplesPerGroupTextField.setLayoutData(fdMaxTriplesPerGroupTextField);
+
+        // max megabytes per group label/field
+        wMaxMegabytesPerGroupLabel = new Label(group, SWT.LEFT);
+        props.setLook(wMaxMegabytesPerGroupLabel);
+        wMaxMegabytesPerGroupLabel.setText(BaseMessages.getString(PKG, "JenaGroupMergeStepDialog.TextFieldMaxMegabytesPerGroup"));
+        final FormData fdMaxMegabytesPerGroupLabel = new FormDataBuilder().left()
+                .top(wMaxTriplesPerGroupTextField, ELEMENT_SPACING)
+                .result();
+        wMaxMegabytesPerGroupLabel.setLayoutData(fdMaxMegabytesPerGroupLabel);
+
+        wMaxMegabytesPerGroupTextField = new TextVar(transMeta, group, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wMaxMegabytesPerGroupTextField);
+        final FormData fdMaxMegabytesPerGroupTextField = new FormDataBuilder().left()
+                .top(wMaxMegabytesPerGroupLabel, LABEL_SPACING)
+                .width(SMALL_FIELD)
+                .result();
+        wMaxMegabytesPerGroupTextField.setLayoutData(fdMaxMegabytesPerGroupTextField);
+
+        // continuation field label/field
+        wContinuationFieldLabel = new Label(group, SWT.LEFT);
+        props.setLook(wContinuationFieldLabel);
+        wContinuationFieldLabel.setText(BaseMessages.getString(PKG, "JenaGroupMergeStepDialog.TextFieldContinuationField"));
+        final FormData fdContinuationFieldLabel = new FormDataBuilder().left()
+                .top(wMaxMegabytesPerGroupTextField, ELEMENT_SPACING)
+                .result();
+        wContinuationFieldLabel.setLayoutData(fdContinuationFieldLabel);
+
+        wContinuationFieldTextField = new TextVar(transMeta, group, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wContinuationFieldTextField);
+        final FormData fdContinuationFieldTextField = new FormDataBuilder().left()
+                .top(wContinuationFieldLabel, LABEL_SPACING)
+                .width(MEDIUM_FIELD)
+                .result();
+        wContinuationFieldTextField.setLayoutData(fdContinuationFieldTextField);
+
         //Cancel and OK buttons for the bottom of the window.
         wCancel = new Button(shell, SWT.PUSH);
         wCancel.setText(BaseMessages.getString(PKG, "System.Button.Cancel"));
@@ -412,6 +548,12 @@ public class JenaGroupMergeStepDialog extends BaseStepDialog implements StepDial
                         null);
             }
         };
+        lsSortedInput = new Listener() {
+            @Override
+            public void handleEvent(final Event e) {
+                enableSortedInputFields();
+            }
+        };
         lsCancel = new Listener() {
             @Override
             public void handleEvent(final Event e) {
@@ -432,6 +574,7 @@ public class JenaGroupMergeStepDialog extends BaseStepDialog implements StepDial
 
         wGetGroupFieldsButton.addListener(SWT.Selection, lsGetGroupFields);
         wGetMergeFieldsButton.addListener(SWT.Selection, lsGetMergeFields);
+        wSortedInputCheckbox.addListener(SWT.Selection, lsSortedInput);
         wOK.addListener(SWT.Selection, lsOK);
         wCancel.addListener(SWT.Selection, lsCancel);
         wStepNameField.addSelectionListener(lsDef);
@@ -495,6 +638,23 @@ public class JenaGroupMergeStepDialog extends BaseStepDialog implements StepDial
             otherFieldAction = JenaGroupMergeStepMeta.DEFAULT_OTHER_FIELD_ACTION;
         }
         wOtherFieldsCombo.setText(otherFieldAction.getLabel());
+
+        wDeferMergeCheckbox.setSelection(meta.isDeferMerge());
+        wSortedInputCheckbox.setSelection(meta.isSortedInput());
+        wMaxTriplesInMemoryTextField.setText(Integer.toString(meta.getMaxTriplesInMemory()));
+        wSpillDirectoryTextField.setText(meta.getSpillDirectory() != null ? meta.getSpillDirectory() : JenaGroupMergeStepMeta.DEFAULT_SPILL_DIRECTORY);
+        wMaxTriplesPerGroupTextField.setText(Integer.toString(meta.getMaxTriplesPerGroup()));
+        wMaxMegabytesPerGroupTextField.setText(Integer.toString(meta.getMaxMegabytesPerGroup()));
+        wContinuationFieldTextField.setText(meta.getContinuationFieldName() != null ? meta.getContinuationFieldName() : "");
+        enableSortedInputFields();
+    }
+
+    private void enableSortedInputFields() {
+        // merges are only deferred when the input is sorted, and groups are only spilled to disk when it is not
+        final boolean unsorted = !wSortedInputCheckbox.getSelection();
+        wDeferMergeCheckbox.setEnabled(!unsorted);
+        wMaxTriplesInMemoryTextField.setEnabled(unsorted);
+        wSpillDirectoryTextField.setEnabled(unsorted);
     }
 
     private Image getImage() {
@@ -566,5 +726,14 @@ public class JenaGroupMergeStepDialog extends BaseStepDialog implements StepDial
 
         final OtherFieldAction otherFieldAction = OtherFieldAction.fromLabel(wOtherFieldsCombo.getText());
         meta.setOtherFieldAction(otherFieldAction);
+
+        meta.setDeferMerge(wDeferMergeCheckbox.getSelection());
+        meta.setSortedInput(wSortedInputCheckbox.getSelection());
+        meta.setMaxTriplesInMemory(Const.toInt(wMaxTriplesInMemoryTextField.getText(), JenaGroupMergeStepMeta.DEFAULT_MAX_TRIPLES_IN_MEMORY));
+        meta.setSpillDirectory(wSpillDirectoryTextField.getText());
+        meta.setMaxTriplesPerGroup(Const.toInt(wMaxTriplesPerGroupTextField.getText(), 0));
+        meta.setMaxMegabytesPerGroup(Const.toInt(wMaxMegabytesPerGroupTextField.getText(), 0));
+        final String continuationFieldName = wContinuationFieldTextField.getText();
+        meta.setContinuationFieldName(isNotEmpty(continuationFieldName) ? continuationFieldName : null);
     }
 }
\ No newline at end of file
@@ -24,6 +24,7 @@ package uk.gov.nationalarchives.pdi.step.jena.groupmerge;
 
 import org.pentaho.di.core.CheckResult;
 import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.annotations.Step;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.*;
@@ -85,15 +86,57 @@ public class JenaGroupMergeStepMeta extends BaseStepMeta implements StepMetaInte
     private static final String ELEM_NAME_ACTION_IF_NULL = "actionIfNull";
 
     private static final String ELEM_NAME_OTHER_FIELD_ACTION = "otherFieldAction";
+
+    private static final String ELEM_NAME_DEFER_MERGE = "deferMerge";
+
+    private static final String ELEM_NAME_SORTED_INPUT = "sortedInput";
+    private static final String ELEM_NAME_MAX_TRIPLES_IN_MEMORY = "maxTriplesInMemory";
+    private static final String ELEM_NAME_SPILL_DIRECTORY = "spillDirectory";
+
+    private static final String ELEM_NAME_MAX_TRIPLES_PER_GROUP = "maxTriplesPerGroup";
+    private static final String ELEM_NAME_MAX_MEGABYTES_PER_GROUP = "maxMegabytesPerGroup";
+    private static final String ELEM_NAME_CONTINUATION_FIELD_NAME = "continuationFieldName";
     // </editor-fold>
 
     static final OtherFieldAction DEFAULT_OTHER_FIELD_ACTION = OtherFieldAction.DROP;
+    static final int DEFAULT_MAX_TRIPLES_IN_MEMORY = 1_000_000;
+    static final String DEFAULT_SPILL_DIRECTORY = "%%java.io.tmpdir%%";
 
     // <editor-fold desc="settings">
     private boolean closeMergedModels;
     private List<ConstrainedField> groupFields;         // TODO(AR) if we only iterate - can we change this to a ConstrainedField[] for efficiency
     private List<ModelMergeConstrainedField> mergeFields;       // TODO(AR) if we only iterate - can we change this to a ModelMergeConstrainedField[] for efficiency
     private OtherFieldAction otherFieldAction;
+
+    /**
+     * True if the models of a group are collected while the group is open,
+     * and merged only once when the group is output.
+     */
+    private boolean deferMerge;
+
+    /**
+     * True if rows of the same group are consecutive in the input.
+     * If false, groups are held in memory until the end of the input,
+     * and spilled to disk when there are more than {@link #maxTriplesInMemory}.
+     */
+    private boolean sortedInput;
+    private int maxTriplesInMemory;
+    private String spillDirectory;
+
+    /**
+     * Limits on the size of the merged models of a group, 0 for no limit.
+     * When a limit is reached, the group is output as a partial group
+     * and the group continues in a new row.
+     */
+    private int maxTriplesPerGroup;
+    private int maxMegabytesPerGroup;
+
+    /**
+     * The name of a boolean field to add to the output row,
+     * which is true if the row is a partial group which is
+     * continued by the next row, or null for no field.
+     */
+    @Nullable private String continuationFieldName;
     // </editor-fold>
 
     public JenaGroupMergeStepMeta() {
@@ -106,6 +149,13 @@ public class JenaGroupMergeStepMeta extends BaseStepMeta implements StepMetaInte
         groupFields = new ArrayList<>();
         mergeFields = new ArrayList<>();
         otherFieldAction = DEFAULT_OTHER_FIELD_ACTION;
+        deferMerge = false;
+        sortedInput = true;
+        maxTriplesInMemory = DEFAULT_MAX_TRIPLES_IN_MEMORY;
+        spillDirectory = DEFAULT_SPILL_DIRECTORY;
+        maxTriplesPerGroup = 0;
+        maxMegabytesPerGroup = 0;
+        continuationFieldName = null;
     }
 
     @Override
@@ -118,6 +168,13 @@ public class JenaGroupMergeStepMeta extends BaseStepMeta implements StepMetaInte
             retval.mergeFields.add(mergeField.copy());
         }
         retval.otherFieldAction = otherFieldAction;
+        retval.deferMerge = deferMerge;
+        retval.sortedInput = sortedInput;
+        retval.maxTriplesInMemory = maxTriplesInMemory;
+        retval.spillDirectory = spillDirectory;
+        retval.maxTriplesPerGroup = maxTriplesPerGroup;
+        retval.maxMegabytesPerGroup = maxMegabytesPerGroup;
+        retval.continuationFieldName = continuationFieldName;
         return retval;
     }
 
@@ -150,6 +207,13 @@ public class JenaGroupMergeStepMeta extends BaseStepMeta implements StepMetaInte
         }
         builder.append(XMLHandler.closeTag(ELEM_NAME_JENA_MODEL_FIELDS));
         builder.append(XMLHandler.addTagValue(ELEM_NAME_OTHER_FIELD_ACTION, otherFieldAction != null ? otherFieldAction.name() : DEFAULT_OTHER_FIELD_ACTION.name()));
+        builder.append(XMLHandler.addTagValue(ELEM_NAME_DEFER_MERGE, deferMerge));
+        builder.append(XMLHandler.addTagValue(ELEM_NAME_SORTED_INPUT, sortedInput));
+        builder.append(XMLHandler.addTagValue(ELEM_NAME_MAX_TRIPLES_IN_MEMORY, maxTriplesInMemory));
+        builder.append(XMLHandler.addTagValue(ELEM_NAME_SPILL_DIRECTORY, spillDirectory));
+        builder.append(XMLHandler.addTagValue(ELEM_NAME_MAX_TRIPLES_PER_GROUP, maxTriplesPerGroup));
+        builder.append(XMLHandler.addTagValue(ELEM_NAME_MAX_MEGABYTES_PER_GROUP, maxMegabytesPerGroup));
+        builder.append(XMLHandler.addTagValue(ELEM_NAME_CONTINUATION_FIELD_NAME, continuationFieldName));
 
         return builder.toString();
     }
@@ -226,6 +290,27 @@ public class JenaGroupMergeStepMeta extends BaseStepMeta implements StepMetaInte
         } else {
             this.otherFieldAction = DEFAULT_OTHER_FIELD_ACTION;
         }
+
+        final String xDeferMerge = XMLHandler.getTagValue(stepnode, ELEM_NAME_DEFER_MERGE);
+        this.deferMerge = isNotEmpty(xDeferMerge) && xDeferMerge.equals("Y");
+
+        final String xSortedInput = XMLHandler.getTagValue(stepnode, ELEM_NAME_SORTED_INPUT);
+        this.sortedInput = isNullOrEmpty(xSortedInput) || xSortedInput.equals("Y");
+
+        final String xMaxTriplesInMemory = XMLHandler.getTagValue(stepnode, ELEM_NAME_MAX_TRIPLES_IN_MEMORY);
+        this.maxTriplesInMemory = Const.toInt(xMaxTriplesInMemory, DEFAULT_MAX_TRIPLES_IN_MEMORY);
+
+        final String xSpillDirectory = XMLHandler.getTagValue(stepnode, ELEM_NAME_SPILL_DIRECTORY);
+        this.spillDirectory = isNotEmpty(xSpillDirectory) ? xSpillDirectory : DEFAULT_SPILL_DIRECTORY;
+
+        final String xMaxTriplesPerGroup = XMLHandler.getTagValue(stepnode, ELEM_NAME_MAX_TRIPLES_PER_GROUP);
+        this.maxTriplesPerGroup = Const.toInt(xMaxTriplesPerGroup, 0);
+
+        final String xMaxMegabytesPerGroup = XMLHandler.getTagValue(stepnode, ELEM_NAME_MAX_MEGABYTES_PER_GROUP);
+        this.maxMegabytesPerGroup = Const.toInt(xMaxMegabytesPerGroup, 0);
+
+        final String xContinuationFieldName = XMLHandler.getTagValue(stepnode, ELEM_NAME_CONTINUATION_FIELD_NAME);
+        this.continuationFieldName = isNotEmpty(xContinuationFieldName) ? xContinuationFieldName : null;
     }
 
     @Override
@@ -323,6 +408,23 @@ public class JenaGroupMergeStepMeta extends BaseStepMeta implements StepMetaInte
                 }
             }
         }
+
+        /*
+         * 3. if we have a continuation field, create it in the output rows.
+         */
+        if (isNotEmpty(continuationFieldName)) {
+            final String expandedContinuationFieldName = space.environmentSubstitute(continuationFieldName);
+            if (rowMeta.indexOfValue(expandedContinuationFieldName) == -1) {
+                final ValueMetaInterface continuationFieldValueMeta;
+                try {
+                    continuationFieldValueMeta = ValueMetaFactory.createValueMeta(expandedContinuationFieldName, ValueMetaInterface.TYPE_BOOLEAN);
+                } catch (final KettlePluginException e) {
+                    throw new KettleStepException("Unable to create Value Meta for continuation field: " + expandedContinuationFieldName + ", : " + e.getMessage(), e);
+                }
+                continuationFieldValueMeta.setOrigin(origin);
+                rowMeta.addValueMeta(continuationFieldValueMeta);
+            }
+        }
     }
 
     @Override
@@ -359,6 +461,11 @@ public class JenaGroupMergeStepMeta extends BaseStepMeta implements StepMetaInte
         return new JenaGroupMergeStepData();
     }
 
+    @Override
+    public boolean supportsErrorHandling() {
+        return true;
+    }
+
     @Override
     public String getDialogClassName() {
         return "uk.gov.nationalarchives.pdi.step.jena.groupmerge.JenaGroupMergeStepDialog";
@@ -399,5 +506,61 @@ public class JenaGroupMergeStepMeta extends BaseStepMeta implements StepMetaInte
         this.otherFieldAction = otherFieldAction;
     }
 
+    public boolean isDeferMerge() {
+        return deferMerge;
+    }
+
+    public void setDeferMerge(final boolean deferMerge) {
+        this.deferMerge = deferMerge;
+    }
+
+    public boolean isSortedInput() {
+        return sortedInput;
+    }
+
+    public void setSortedInput(final boolean sortedInput) {
+        this.sortedInput = sortedInput;
+    }
+
+    public int getMaxTriplesInMemory() {
+        return maxTriplesInMemory;
+    }
+
+    public void setMaxTriplesInMemory(final int maxTriplesInMemory) {
+        this.maxTriplesInMemory = maxTriplesInMemory;
+    }
+
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public void setSpillDirectory(final String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    public int getMaxTriplesPerGroup() {
+        return maxTriplesPerGroup;
+    }
+
+    public void setMaxTriplesPerGroup(final int maxTriplesPerGroup) {
+        this.maxTriplesPerGroup = maxTriplesPerGroup;
+    }
+
+    public int getMaxMegabytesPerGroup() {
+        return maxMegabytesPerGroup;
+    }
+
+    public void setMaxMegabytesPerGroup(final int maxMegabytesPerGroup) {
+        this.maxMegabytesPerGroup = maxMegabytesPerGroup;
+    }
+
+    public @Nullable String getContinuationFieldName() {
+        return continuationFieldName;
+    }
+
+    public void setContinuationFieldName(@Nullable final String continuationFieldName) {
+        this.continuationFieldName = continuationFieldName;
+    }
+
     // </editor-fold>
 }
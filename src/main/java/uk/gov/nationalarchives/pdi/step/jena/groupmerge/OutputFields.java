@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.groupmerge;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+import uk.gov.nationalarchives.pdi.step.jena.ConstrainedField;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * The fields of the output row, with their corresponding
+ * input row fields, and group and merge fields, resolved once
+ * rather than looked up by name for every row.
+ *
+ * Each array is indexed by the position of the field in the output row.
+ */
+final class OutputFields {
+
+    /**
+     * The index of the corresponding field in the input row, or -1 if there is none.
+     */
+    final int[] inputRowFieldIndexes;
+
+    /**
+     * The merge field, or null if the field is not a merge field.
+     */
+    final ModelMergeConstrainedField[] mergeFields;
+
+    /**
+     * The group field, or null if the field is not a group field.
+     */
+    final ConstrainedField[] groupFields;
+
+    /**
+     * For a merge field which does not mutate the first model, the index of
+     * its target field in the output row, otherwise -1.
+     */
+    final int[] targetFieldIndexes;
+
+    /**
+     * For a merge field which does not mutate the first model, the index of
+     * its target field in the input row, or -1 if the target field is absent.
+     */
+    final int[] inputRowTargetFieldIndexes;
+
+    /**
+     * True if the field holds the merged model of a group,
+     * i.e. it is a target field, or a merge field which mutates the first model.
+     */
+    final boolean[] mergedModelFields;
+
+    private OutputFields(final int[] inputRowFieldIndexes, final ModelMergeConstrainedField[] mergeFields,
+            final ConstrainedField[] groupFields, final int[] targetFieldIndexes, final int[] inputRowTargetFieldIndexes,
+            final boolean[] mergedModelFields) {
+        this.inputRowFieldIndexes = inputRowFieldIndexes;
+        this.mergeFields = mergeFields;
+        this.groupFields = groupFields;
+        this.targetFieldIndexes = targetFieldIndexes;
+        this.inputRowTargetFieldIndexes = inputRowTargetFieldIndexes;
+        this.mergedModelFields = mergedModelFields;
+    }
+
+    /**
+     * Resolve the fields of the output row.
+     *
+     * @param meta the step meta.
+     * @param outputRowMeta the output row meta.
+     * @param remainingInputFieldIndexes the indexes of the fields from the input row which are in the output row.
+     *
+     * @return the output fields.
+     */
+    static OutputFields compile(final JenaGroupMergeStepMeta meta, final RowMetaInterface outputRowMeta,
+            final Map<String, Integer> remainingInputFieldIndexes) {
+        final int len = outputRowMeta.size();
+        final int[] inputRowFieldIndexes = new int[len];
+        final ModelMergeConstrainedField[] mergeFields = new ModelMergeConstrainedField[len];
+        final ConstrainedField[] groupFields = new ConstrainedField[len];
+        final int[] targetFieldIndexes = new int[len];
+        final int[] inputRowTargetFieldIndexes = new int[len];
+        final boolean[] mergedModelFields = new boolean[len];
+
+        for (int i = 0; i < len; i++) {
+            final String outputRowFieldName = outputRowMeta.getValueMeta(i).getName();
+
+            inputRowFieldIndexes[i] = indexOrMinusOne(remainingInputFieldIndexes.get(outputRowFieldName));
+            groupFields[i] = meta.getGroupField(outputRowFieldName);
+
+            @Nullable final ModelMergeConstrainedField mergeField = meta.getMergeField(outputRowFieldName);
+            mergeFields[i] = mergeField;
+            if (mergeField != null && mergeField.mutateFirstModel == MutateFirstModel.NO) {
+                targetFieldIndexes[i] = outputRowMeta.indexOfValue(mergeField.targetFieldName);
+                inputRowTargetFieldIndexes[i] = indexOrMinusOne(remainingInputFieldIndexes.get(mergeField.targetFieldName));
+                if (targetFieldIndexes[i] > -1) {
+                    mergedModelFields[targetFieldIndexes[i]] = true;
+                }
+            } else {
+                targetFieldIndexes[i] = -1;
+                inputRowTargetFieldIndexes[i] = -1;
+                if (mergeField != null) {
+                    mergedModelFields[i] = true;
+                }
+            }
+        }
+
+        return new OutputFields(inputRowFieldIndexes, mergeFields, groupFields, targetFieldIndexes, inputRowTargetFieldIndexes,
+                mergedModelFields);
+    }
+
+    private static int indexOrMinusOne(@Nullable final Integer index) {
+        return index != null ? index : -1;
+    }
+}
@@ -0,0 +1,679 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.groupmerge;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import uk.gov.nationalarchives.pdi.step.jena.ConstrainedField;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * The open groups of a group merge whose input is not sorted.
+ *
+ * Groups are held in a sorted map keyed by the values of their group
+ * fields, so that a row can join its group wherever it appears in the input.
+ * When the models of the open groups hold more triples than the memory budget,
+ * the least recently touched groups are spilled to a run file on disk, sorted
+ * by their group fields. At the end of the input, the runs and the groups
+ * still in memory are merged, and each group is output once.
+ *
+ * So that no more than {@link #MAX_MERGE_RUNS} run files are open at once,
+ * whenever that many runs have been spilled they are merged into a single
+ * run, which keeps the parts of each group apart.
+ *
+ * Keys are compared by the output row meta both in memory and when merging
+ * the runs, so that values which the value meta considers equal, e.g. strings
+ * of a case-insensitive field, belong to the same group whether or not any
+ * part of the group was spilled.
+ *
+ * Models are written to the run files as RDF Thrift, which keeps the labels
+ * of blank nodes, so that the parts of a group which were spilled separately
+ * still share their blank nodes when they are merged.
+ *
+ * The groups are output in the order of their group fields.
+ *
+ * The limits on the size of a group are checked as the parts of a group
+ * are merged from the runs. When the merged part has reached a limit, it
+ * is output as a partial group, and the group continues afresh from the
+ * next part. A single part is never split, but it is no larger than the
+ * memory budget.
+ */
+final class UnsortedGroups implements Closeable {
+
+    /**
+     * Receives the merged rows of groups.
+     */
+    @FunctionalInterface
+    interface RowOutput {
+        void putRow(Object[] row, boolean continued) throws KettleStepException;
+    }
+
+    /**
+     * The maximum number of runs which are merged at once.
+     */
+    static final int MAX_MERGE_RUNS = 64;
+
+    // markers for the values of Serializable fields in the run files
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_MODEL = 1;
+    private static final byte VALUE_CLOSED_MODEL = 2;
+    private static final byte VALUE_OBJECT = 3;
+
+    private final JenaGroupMergeStepMeta meta;
+    private final JenaGroupMergeStepData data;
+    private final RowMetaInterface outputRowMeta;
+    private final OutputFields outputFields;
+    private final long maxTriplesInMemory;
+    private final File spillDirectory;
+    private final BiConsumer<String, String[]> logFunction;
+
+    /**
+     * The indexes of the group fields in the output row,
+     * for comparing the keys of groups when writing and merging runs.
+     */
+    private final int[] groupFieldOutputIndexes;
+
+    /**
+     * The index in the input row of each group field in
+     * {@link #groupFieldOutputIndexes}, or -1 if the field is absent.
+     */
+    private final int[] groupFieldInputIndexes;
+
+    /**
+     * An output row holding the group fields of the current input
+     * row, for looking up its group among the open groups.
+     */
+    private final Object[] probe;
+
+    /**
+     * The open groups, keyed by their merged row and
+     * ordered by its group fields.
+     */
+    private final TreeMap<Object[], OpenGroup> groups;
+    private long triplesInMemory;
+    private long touches;
+
+    private final List<Run> runs = new ArrayList<>();
+    private int spilledRuns;
+
+    UnsortedGroups(final JenaGroupMergeStepMeta meta, final JenaGroupMergeStepData data, final GroupKey groupKey,
+            final File spillDirectory, final BiConsumer<String, String[]> logFunction) {
+        this.meta = meta;
+        this.data = data;
+        this.outputRowMeta = data.getOutputRowMeta();
+        this.outputFields = data.getOutputFields(meta);
+        this.maxTriplesInMemory = meta.getMaxTriplesInMemory() > 0 ? meta.getMaxTriplesInMemory() : JenaGroupMergeStepMeta.DEFAULT_MAX_TRIPLES_IN_MEMORY;
+        this.spillDirectory = spillDirectory;
+        this.logFunction = logFunction;
+
+        final List<ConstrainedField> groupFields = meta.getGroupFields();
+        final int[] outputIndexes = new int[groupFields.size()];
+        final int[] inputIndexes = new int[groupFields.size()];
+        int len = 0;
+        for (int i = 0; i < groupFields.size(); i++) {
+            final int idx = outputRowMeta.indexOfValue(groupFields.get(i).fieldName);
+            if (idx > -1) {
+                outputIndexes[len] = idx;
+                inputIndexes[len] = groupKey.getFieldIndex(i);
+                len++;
+            }
+        }
+        this.groupFieldOutputIndexes = Arrays.copyOf(outputIndexes, len);
+        this.groupFieldInputIndexes = Arrays.copyOf(inputIndexes, len);
+        this.probe = new Object[outputRowMeta.size()];
+        this.groups = new TreeMap<>(this::compareKeys);
+    }
+
+    /**
+     * Add an input row to its group, spilling groups to
+     * disk if the memory budget is exceeded.
+     *
+     * @param inputRowData the input row.
+     *
+     * @throws KettleException if groups cannot be spilled to disk.
+     */
+    void add(final Object[] inputRowData) throws KettleException {
+        for (int i = 0; i < groupFieldOutputIndexes.length; i++) {
+            probe[groupFieldOutputIndexes[i]] = groupFieldInputIndexes[i] > -1 ? inputRowData[groupFieldInputIndexes[i]] : null;
+        }
+
+        OpenGroup group;
+        try {
+            group = groups.get(probe);
+            if (group == null) {
+                JenaGroupMergeStep.processFirstRowForGroup(meta, data, inputRowData);
+                group = new OpenGroup(data.getGroupMergedRow());
+                groups.put(group.row, group);
+            } else {
+                data.setGroupMergedRow(group.row);
+                JenaGroupMergeStep.mergeRowIntoGroup(meta, data, inputRowData);
+            }
+        } catch (final CompareException e) {
+            throw e.getCause();
+        }
+        data.clear();
+        group.lastTouched = ++touches;
+
+        final long triples = countTriples(group.row);
+        triplesInMemory += triples - group.triples;
+        group.triples = triples;
+
+        if (triplesInMemory > maxTriplesInMemory) {
+            spill();
+        }
+    }
+
+    /**
+     * Get the number of runs which have been spilled to disk.
+     *
+     * @return the number of runs.
+     */
+    int getSpilledRuns() {
+        return spilledRuns;
+    }
+
+    /**
+     * Output the merged row of each group.
+     *
+     * @param output receives the merged rows, and whether each is a partial group which is continued by the next row.
+     *
+     * @throws KettleException if the runs cannot be read from disk.
+     */
+    void output(final RowOutput output) throws KettleException {
+        if (runs.isEmpty()) {
+            for (final OpenGroup group : groups.values()) {
+                output.putRow(group.row, false);
+            }
+            groups.clear();
+            triplesInMemory = 0;
+            return;
+        }
+
+        // the groups still in memory are the last run
+        final List<Object[]> rows = removeGroups(Long.MIN_VALUE);
+        runs.add(new Run(runs.size(), rows));
+
+        final PriorityQueue<Run> queue = newRunQueue();
+        try {
+            for (final Run run : runs) {
+                if (run.next()) {
+                    queue.add(run);
+                }
+            }
+
+            // merge the parts of each group, which are adjacent as the runs are sorted
+            Object[] mergedRow = null;
+            while (!queue.isEmpty()) {
+                final Run run = queue.poll();
+                final Object[] row = run.current;
+                if (mergedRow != null && compareKeys(mergedRow, row) == 0) {
+                    if (isGroupFull(mergedRow)) {
+                        // the group has reached its size limit, so output it as a partial group, and continue it afresh
+                        output.putRow(mergedRow, true);
+                        mergedRow = row;
+                    } else {
+                        mergePartialGroup(mergedRow, row);
+                    }
+                } else {
+                    if (mergedRow != null) {
+                        output.putRow(mergedRow, false);
+                    }
+                    mergedRow = row;
+                }
+
+                if (run.next()) {
+                    queue.add(run);
+                }
+            }
+
+            if (mergedRow != null) {
+                output.putRow(mergedRow, false);
+            }
+
+        } catch (final CompareException e) {
+            throw e.getCause();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Delete any runs from disk.
+     */
+    @Override
+    public void close() {
+        for (final Run run : runs) {
+            run.close();
+        }
+        runs.clear();
+    }
+
+    private void spill() throws KettleException {
+        // spill down to half of the budget, so that runs are not too small
+        final List<Object[]> rows = removeGroups(maxTriplesInMemory / 2);
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        final File file = createRunFile();
+        runs.add(new Run(runs.size(), file, rows.size()));
+        spilledRuns++;
+        try (final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            for (final Object[] row : rows) {
+                writeRow(os, row);
+            }
+        } catch (final IOException e) {
+            throw new KettleException("Unable to spill groups to: " + file + ": " + e.getMessage(), e);
+        }
+        logFunction.accept("Spilled {0} groups to disk, runs spilled so far: {1}", new String[] { Integer.toString(rows.size()), Integer.toString(spilledRuns) });
+
+        if (runs.size() >= MAX_MERGE_RUNS) {
+            mergeRuns();
+        }
+    }
+
+    /**
+     * Merge all of the runs on disk into a single run, so that
+     * the number of runs which are open at once is bounded.
+     *
+     * The parts of a group are kept apart in the merged run, in the order of
+     * their runs, so that the limits on the size of a group can still be
+     * applied when the runs are finally merged.
+     */
+    private void mergeRuns() throws KettleException {
+        final File file = createRunFile();
+        final PriorityQueue<Run> queue = newRunQueue();
+        int size = 0;
+        try (final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            for (final Run run : runs) {
+                if (run.next()) {
+                    queue.add(run);
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                final Run run = queue.poll();
+                writeRow(os, run.current);
+                size++;
+
+                if (run.next()) {
+                    queue.add(run);
+                }
+            }
+
+        } catch (final IOException e) {
+            file.delete();
+            throw new KettleException("Unable to merge spilled groups into: " + file + ": " + e.getMessage(), e);
+        } catch (final CompareException e) {
+            file.delete();
+            throw e.getCause();
+        } finally {
+            // delete the runs which were merged
+            close();
+        }
+
+        runs.add(new Run(0, file, size));
+        logFunction.accept("Merged spilled runs into a single run of {0} groups", new String[] { Integer.toString(size) });
+    }
+
+    private File createRunFile() throws KettleException {
+        try {
+            return File.createTempFile("jena-group-merge-", ".run", spillDirectory);
+        } catch (final IOException e) {
+            throw new KettleException("Unable to create a file to spill groups to in: " + spillDirectory + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Create a queue of runs, ordered by the group fields of their current
+     * row, and then by the order of the runs, so that the parts of a group
+     * are taken in the order in which they were spilled.
+     *
+     * @return the queue.
+     */
+    private PriorityQueue<Run> newRunQueue() {
+        return new PriorityQueue<>(Math.max(1, runs.size()), (run1, run2) -> {
+            final int result = compareKeys(run1.current, run2.current);
+            return result != 0 ? result : Integer.compare(run1.order, run2.order);
+        });
+    }
+
+    /**
+     * Remove the least recently touched groups from memory,
+     * until the models in memory hold no more than a number of triples.
+     *
+     * @param maxTriples the number of triples, or {@link Long#MIN_VALUE} to remove all groups.
+     *
+     * @return the merged rows of the removed groups, sorted by their group fields.
+     */
+    private List<Object[]> removeGroups(final long maxTriples) throws KettleValueException {
+        if (maxTriples == Long.MIN_VALUE) {
+            // the map is already sorted by the group fields
+            final List<Object[]> rows = new ArrayList<>(groups.size());
+            for (final OpenGroup group : groups.values()) {
+                rows.add(group.row);
+            }
+            groups.clear();
+            triplesInMemory = 0;
+            return rows;
+        }
+
+        final List<OpenGroup> leastRecentlyTouched = new ArrayList<>(groups.values());
+        leastRecentlyTouched.sort(Comparator.comparingLong(group -> group.lastTouched));
+
+        final List<Object[]> rows = new ArrayList<>();
+        try {
+            final Iterator<OpenGroup> it = leastRecentlyTouched.iterator();
+            while (it.hasNext() && triplesInMemory > maxTriples) {
+                final OpenGroup group = it.next();
+                groups.remove(group.row);
+                rows.add(group.row);
+                triplesInMemory -= group.triples;
+            }
+            if (groups.isEmpty()) {
+                triplesInMemory = 0;
+            }
+
+            rows.sort(this::compareKeys);
+        } catch (final CompareException e) {
+            throw e.getCause();
+        }
+        return rows;
+    }
+
+    private int compareKeys(final Object[] row1, final Object[] row2) {
+        try {
+            return outputRowMeta.compare(row1, row2, groupFieldOutputIndexes);
+        } catch (final KettleValueException e) {
+            throw new CompareException(e);
+        }
+    }
+
+    /**
+     * Determine if the merged row of a group has reached the limit on the size of a group.
+     *
+     * @param row the merged row of the group.
+     *
+     * @return true if the group has reached its size limit.
+     */
+    private boolean isGroupFull(final Object[] row) {
+        final long maxTriples = data.getMaxTriplesPerGroup();
+        return maxTriples > 0 && countTriples(row) >= maxTriples;
+    }
+
+    private long countTriples(final Object[] row) {
+        long triples = 0;
+        for (int i = 0; i < outputFields.mergedModelFields.length; i++) {
+            if (outputFields.mergedModelFields[i] && row[i] instanceof Model) {
+                final Model model = (Model) row[i];
+                if (!model.isClosed()) {
+                    triples += model.size();
+                }
+            }
+        }
+        return triples;
+    }
+
+    /**
+     * Merge a later part of a group into an earlier part of the same group,
+     * as though the rows of the later part had been merged into the earlier part.
+     *
+     * @param row the merged row of the earlier part of the group.
+     * @param laterRow the merged row of the later part of the group.
+     */
+    private void mergePartialGroup(final Object[] row, final Object[] laterRow) {
+        for (int i = 0; i < outputFields.mergedModelFields.length; i++) {
+            if (outputFields.mergedModelFields[i]) {
+                final Model model = (Model) row[i];
+                final Model laterModel = (Model) laterRow[i];
+                if (model == null || model.isClosed()) {
+                    row[i] = laterModel;
+                } else if (laterModel != null && !laterModel.isClosed()) {
+                    if (laterModel.size() > model.size()) {
+                        JenaGroupMergeStep.adoptModel(laterModel, model);
+                        row[i] = laterModel;
+                    } else {
+                        model.add(laterModel);
+                    }
+                }
+
+            } else if (outputFields.mergeFields[i] != null) {
+                // the merge field of a target field holds the model of the last row
+                row[i] = laterRow[i];
+
+            } else if (outputFields.groupFields[i] == null) {
+                switch (meta.getOtherFieldAction()) {
+                    case USE_LAST:
+                        row[i] = laterRow[i];
+                        break;
+
+                    case SET_NULL:
+                        row[i] = null;
+                        break;
+
+                    case NULL_IF_DIFFERENT:
+                        if (row[i] != null && !row[i].equals(laterRow[i])) {
+                            row[i] = null;
+                        }
+                        break;
+
+                    default:
+                        // USE_FIRST, keep the value of the earlier part
+                        break;
+                }
+            }
+        }
+    }
+
+    private void writeRow(final DataOutputStream os, final Object[] row) throws IOException, KettleException {
+        for (int i = 0; i < outputRowMeta.size(); i++) {
+            final ValueMetaInterface valueMeta = outputRowMeta.getValueMeta(i);
+            if (valueMeta.getType() == ValueMetaInterface.TYPE_SERIALIZABLE) {
+                writeSerializable(os, row[i]);
+            } else {
+                valueMeta.writeData(os, row[i]);
+            }
+        }
+    }
+
+    private Object[] readRow(final DataInputStream is) throws IOException, KettleException {
+        final Object[] row = new Object[outputRowMeta.size()];
+        for (int i = 0; i < row.length; i++) {
+            final ValueMetaInterface valueMeta = outputRowMeta.getValueMeta(i);
+            if (valueMeta.getType() == ValueMetaInterface.TYPE_SERIALIZABLE) {
+                row[i] = readSerializable(is);
+            } else {
+                row[i] = valueMeta.readData(is);
+            }
+        }
+        return row;
+    }
+
+    private static void writeSerializable(final DataOutputStream os, @Nullable final Object value) throws IOException {
+        if (value == null) {
+            os.writeByte(VALUE_NULL);
+
+        } else if (value instanceof Model) {
+            final Model model = (Model) value;
+            if (model.isClosed()) {
+                os.writeByte(VALUE_CLOSED_MODEL);
+            } else {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                RDFDataMgr.write(bytes, model, RDFFormat.RDF_THRIFT);
+                os.writeByte(VALUE_MODEL);
+                os.writeInt(bytes.size());
+                bytes.writeTo(os);
+            }
+
+        } else {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (final ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                oos.writeObject(value);
+            }
+            os.writeByte(VALUE_OBJECT);
+            os.writeInt(bytes.size());
+            bytes.writeTo(os);
+        }
+    }
+
+    private static @Nullable Object readSerializable(final DataInputStream is) throws IOException {
+        final byte marker = is.readByte();
+        switch (marker) {
+            case VALUE_NULL:
+                return null;
+
+            case VALUE_CLOSED_MODEL:
+                final Model closedModel = ModelFactory.createDefaultModel();
+                closedModel.close();
+                return closedModel;
+
+            case VALUE_MODEL:
+                final Model model = ModelFactory.createDefaultModel();
+                RDFDataMgr.read(model, new ByteArrayInputStream(readBytes(is)), Lang.RDFTHRIFT);
+                return model;
+
+            case VALUE_OBJECT:
+                try (final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(readBytes(is)))) {
+                    return ois.readObject();
+                } catch (final ClassNotFoundException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+
+            default:
+                throw new IOException("Unknown value marker: " + marker);
+        }
+    }
+
+    private static byte[] readBytes(final DataInputStream is) throws IOException {
+        final byte[] bytes = new byte[is.readInt()];
+        is.readFully(bytes);
+        return bytes;
+    }
+
+    private static class OpenGroup {
+        final Object[] row;
+        long triples;
+        long lastTouched;
+
+        OpenGroup(final Object[] row) {
+            this.row = row;
+        }
+    }
+
+    /**
+     * A run of groups, sorted by their group fields,
+     * either in a file on disk, or in memory.
+     */
+    private class Run implements Closeable {
+        final int order;
+        @Nullable final File file;
+        @Nullable final Iterator<Object[]> rows;
+        int remaining;
+        @Nullable DataInputStream is;
+        @Nullable Object[] current;
+
+        Run(final int order, final File file, final int size) {
+            this.order = order;
+            this.file = file;
+            this.rows = null;
+            this.remaining = size;
+        }
+
+        Run(final int order, final List<Object[]> rows) {
+            this.order = order;
+            this.file = null;
+            this.rows = rows.iterator();
+            this.remaining = rows.size();
+        }
+
+        /**
+         * Move to the next group of the run.
+         *
+         * @return true if there was a next group, false if the run is exhausted.
+         */
+        boolean next() throws KettleException {
+            if (remaining == 0) {
+                current = null;
+                close();
+                return false;
+            }
+            remaining--;
+
+            if (rows != null) {
+                current = rows.next();
+                return true;
+            }
+
+            try {
+                if (is == null) {
+                    is = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                }
+                current = readRow(is);
+                return true;
+            } catch (final IOException e) {
+                throw new KettleException("Unable to read spilled groups from: " + file + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (final IOException e) {
+                    // no-op, the file is deleted next
+                }
+                is = null;
+            }
+            if (file != null) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Carries a {@link KettleValueException} out of a {@link Comparator}.
+     */
+    private static class CompareException extends RuntimeException {
+        CompareException(final KettleValueException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized KettleValueException getCause() {
+            return (KettleValueException) super.getCause();
+        }
+    }
+}
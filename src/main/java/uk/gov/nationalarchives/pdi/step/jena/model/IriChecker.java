@@ -0,0 +1,238 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+/**
+ * Checks that a String is an absolute IRI as defined by
+ * RFC 3987, i.e. {@code scheme ":" ihier-part [ "?" iquery ] [ "#" ifragment ]}.
+ *
+ * The check is a single pass over the characters of the String
+ * and does not allocate, so that it is cheap enough to apply
+ * to every IRI in a row. It checks the syntax only, unlike
+ * jena-iri it does not apply any scheme specific rules.
+ */
+final class IriChecker {
+
+    // the components of an IRI, which differ in the characters they allow
+    private static final int USER_INFO = 0;
+    private static final int REG_NAME = 1;
+    private static final int IP_LITERAL = 2;
+    private static final int PATH = 3;
+    private static final int QUERY = 4;
+    private static final int FRAGMENT = 5;
+
+    private IriChecker() {
+    }
+
+    /**
+     * Check an IRI.
+     *
+     * @param iri the IRI
+     *
+     * @return true if the IRI is valid, false otherwise
+     */
+    static boolean isValid(final String iri) {
+        final int len = iri.length();
+
+        // scheme
+        if (len == 0 || !isAlpha(iri.charAt(0))) {
+            return false;
+        }
+        int i = 1;
+        while (i < len && isSchemeChar(iri.charAt(i))) {
+            i++;
+        }
+        if (i == len || iri.charAt(i) != ':') {
+            return false;
+        }
+        i++;
+
+        // authority
+        if (i + 1 < len && iri.charAt(i) == '/' && iri.charAt(i + 1) == '/') {
+            i = scanAuthority(iri, i + 2, len);
+            if (i < 0) {
+                return false;
+            }
+        }
+
+        // path, query and fragment
+        i = scan(iri, i, len, PATH);
+        if (i < len && iri.charAt(i) == '?') {
+            i = scan(iri, i + 1, len, QUERY);
+        }
+        if (i < len && iri.charAt(i) == '#') {
+            i = scan(iri, i + 1, len, FRAGMENT);
+        }
+        return i == len;
+    }
+
+    /**
+     * Scan {@code iauthority = [ iuserinfo "@" ] ihost [ ":" port ]}.
+     *
+     * @return the index of the end of the authority, or -1 if it is invalid
+     */
+    private static int scanAuthority(final String iri, final int start, final int len) {
+        int end = start;
+        int idxAt = -1;
+        while (end < len) {
+            final char c = iri.charAt(end);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            if (c == '@' && idxAt < 0) {
+                idxAt = end;
+            }
+            end++;
+        }
+
+        int i = start;
+        if (idxAt > -1) {
+            if (scan(iri, i, idxAt, USER_INFO) != idxAt) {
+                return -1;
+            }
+            i = idxAt + 1;
+        }
+
+        if (i < end && iri.charAt(i) == '[') {
+            final int idxClose = scan(iri, i + 1, end, IP_LITERAL);
+            if (idxClose == i + 1 || idxClose == end || iri.charAt(idxClose) != ']') {
+                return -1;
+            }
+            i = idxClose + 1;
+        } else {
+            i = scan(iri, i, end, REG_NAME);
+        }
+
+        if (i < end && iri.charAt(i) == ':') {
+            i++;
+            while (i < end && isDigit(iri.charAt(i))) {
+                i++;
+            }
+        }
+
+        return i == end ? end : -1;
+    }
+
+    /**
+     * Scan the characters of a component.
+     *
+     * @return the index of the first character which
+     *     is not allowed in the component, or {@code end}
+     */
+    private static int scan(final String iri, int i, final int end, final int component) {
+        while (i < end) {
+            final char c = iri.charAt(i);
+            if (c < 0x80) {
+                if (c == '%') {
+                    if (i + 2 >= end || !isHexDigit(iri.charAt(i + 1)) || !isHexDigit(iri.charAt(i + 2))) {
+                        return i;
+                    }
+                    i += 3;
+                    continue;
+                }
+                if (!isAllowedAscii(c, component)) {
+                    return i;
+                }
+                i++;
+
+            } else {
+                if (component == IP_LITERAL) {
+                    return i;
+                }
+                final int codePoint = iri.codePointAt(i);
+                if (!isUcsChar(codePoint) && !(component == QUERY && isIPrivate(codePoint))) {
+                    // NOTE: this includes an unpaired surrogate
+                    return i;
+                }
+                i += Character.charCount(codePoint);
+            }
+        }
+        return end;
+    }
+
+    private static boolean isAllowedAscii(final char c, final int component) {
+        if (isUnreserved(c) || isSubDelim(c)) {
+            return true;
+        }
+
+        switch (component) {
+            case USER_INFO:
+            case IP_LITERAL:
+                return c == ':';
+
+            case PATH:
+                return c == ':' || c == '@' || c == '/';
+
+            case QUERY:
+            case FRAGMENT:
+                return c == ':' || c == '@' || c == '/' || c == '?';
+
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isSchemeChar(final char c) {
+        return isAlpha(c) || isDigit(c) || c == '+' || c == '-' || c == '.';
+    }
+
+    private static boolean isUnreserved(final char c) {
+        return isAlpha(c) || isDigit(c) || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static boolean isSubDelim(final char c) {
+        switch (c) {
+            case '!': case '$': case '&': case '\'': case '(': case ')':
+            case '*': case '+': case ',': case ';': case '=':
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isUcsChar(final int codePoint) {
+        return (codePoint >= 0xA0 && codePoint <= 0xD7FF)
+                || (codePoint >= 0xF900 && codePoint <= 0xFDCF)
+                || (codePoint >= 0xFDF0 && codePoint <= 0xFFEF)
+                || (codePoint >= 0x10000 && codePoint <= 0xEFFFD && (codePoint & 0xFFFF) <= 0xFFFD);
+    }
+
+    private static boolean isIPrivate(final int codePoint) {
+        return (codePoint >= 0xE000 && codePoint <= 0xF8FF)
+                || (codePoint >= 0xF0000 && codePoint <= 0xFFFFD)
+                || (codePoint >= 0x100000 && codePoint <= 0x10FFFD);
+    }
+
+    private static boolean isAlpha(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHexDigit(final char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks the IRIs created from the values of a row,
+ * see {@link IriValidation}.
+ *
+ * May be used by many threads at once.
+ */
+class IriValidator {
+
+    private final IriValidation validation;
+    private final LongAdder invalid = new LongAdder();
+
+    IriValidator(final IriValidation validation) {
+        this.validation = validation;
+    }
+
+    /**
+     * Check an IRI.
+     *
+     * @param iri the IRI
+     *
+     * @return true if the IRI may be used, false if
+     *     it is invalid and invalid IRIs are rejected
+     */
+    boolean accept(final String iri) {
+        if (IriChecker.isValid(iri)) {
+            return true;
+        }
+        invalid.increment();
+        return validation != IriValidation.REJECT;
+    }
+
+    /**
+     * Get the number of invalid IRIs seen so far.
+     *
+     * @return the number of invalid IRIs
+     */
+    long getInvalid() {
+        return invalid.sum();
+    }
+}
@@ -22,14 +22,20 @@
  */
 package uk.gov.nationalarchives.pdi.step.jena.model;
 
-import org.apache.jena.datatypes.RDFDatatype;
-import org.apache.jena.datatypes.TypeMapper;
-import org.apache.jena.datatypes.xsd.XSDDatatype;
-import org.apache.jena.datatypes.xsd.XSDDateTime;
-import org.apache.jena.rdf.model.*;
+import org.apache.jena.datatypes.DatatypeFormatException;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
 import org.apache.jena.vocabulary.RDF;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.xml.XMLHandler;
@@ -37,19 +43,30 @@ import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.*;
+import uk.gov.nationalarchives.pdi.step.jena.Rdf11;
+import uk.gov.nationalarchives.pdi.step.jena.RowException;
 import uk.gov.nationalarchives.pdi.step.jena.Util;
 
 import javax.annotation.Nullable;
 import javax.xml.namespace.QName;
-import java.util.Calendar;
-import java.util.Locale;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-import static uk.gov.nationalarchives.pdi.step.jena.JenaUtil.closeAndThrow;
 import static uk.gov.nationalarchives.pdi.step.jena.Util.*;
 
 /**
@@ -59,26 +76,114 @@ public class JenaModelStep extends BaseStep implements StepInterface {
 
     private static Class<?> PKG = JenaModelStepMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
 
-    /**
-     * Regular expression for xsd:dateTime
-     */
-    private static final Pattern PATTERN_XSD_DATE_TIME = Pattern.compile("-?[0-9]{4}-(((0(1|3|5|7|8)|1(0|2))-(0[1-9]|(1|2)[0-9]|3[0-1]))|((0(4|6|9)|11)-(0[1-9]|(1|2)[0-9]|30))|(02-(0[1-9]|(1|2)[0-9])))T([0-1][0-9]|2[0-4]):(0[0-9]|[1-5][0-9]):(0[0-9]|[1-5][0-9])(\\.[0-9]{1,3})?((\\+|-)([0-1][0-9]|2[0-4]):(0[0-9]|[1-5][0-9])|Z)?");
-
-    /**
-     * Regular expression for xsd:date
-     */
-    private static final Pattern PATTERN_XSD_DATE = Pattern.compile("-?[0-9]{4}-(((0(1|3|5|7|8)|1(0|2))-(0[1-9]|(1|2)[0-9]|3[0-1]))|((0(4|6|9)|11)-(0[1-9]|(1|2)[0-9]|30))|(02-(0[1-9]|(1|2)[0-9])))((\\+|-)([0-1][0-9]|2[0-4]):(0[0-9]|[1-5][0-9])|Z)?");
-
+    // error codes for rows diverted to the error handling of the step
+    static final String ERROR_CODE_SUBJECT_URI = "JENA_MODEL_01";
+    static final String ERROR_CODE_NULL_VALUE = "JENA_MODEL_02";
+    static final String ERROR_CODE_PROPERTY_NAME = "JENA_MODEL_03";
+    static final String ERROR_CODE_INVALID_VALUE = "JENA_MODEL_04";
+    static final String ERROR_CODE_INVALID_IRI = "JENA_MODEL_05";
 
     public JenaModelStep(final StepMeta stepMeta, final StepDataInterface stepDataInterface, final int copyNr,
             final TransMeta transMeta, final Trans trans) {
         super(stepMeta, stepDataInterface, copyNr, transMeta, trans);
     }
 
+    @Override
+    public boolean init(final StepMetaInterface smi, final StepDataInterface sdi) {
+        if (!super.init(smi, sdi)) {
+            return false;
+        }
+
+        final JenaModelStepMeta meta = (JenaModelStepMeta) smi;
+        final JenaModelStepData data = (JenaModelStepData) sdi;
+
+        final int workerThreads = meta.getWorkerThreads();
+        if (workerThreads > 1) {
+            final String threadNamePrefix = getStepname() + "." + getCopy() + "-worker-";
+            final AtomicInteger threadCount = new AtomicInteger();
+            data.setWorkerPool(Executors.newFixedThreadPool(workerThreads, runnable -> {
+                final Thread thread = new Thread(runnable, threadNamePrefix + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }));
+            data.setMaxInFlightRows(meta.getMaxInFlightRows() > 0 ? meta.getMaxInFlightRows() : workerThreads * 4);
+        }
+
+        if (meta.getNodeCacheSize() > 0) {
+            // the cache is shared by all copies of this step within the transformation
+            final String nodeCacheKey = getTrans().getLogChannelId() + ":" + getStepname();
+            data.setNodeCacheKey(nodeCacheKey);
+            data.setNodeCache(NodeCache.acquire(nodeCacheKey, meta.getNodeCacheSize()));
+        }
+
+        return true;
+    }
+
+    @Override
+    public void dispose(final StepMetaInterface smi, final StepDataInterface sdi) {
+        final JenaModelStepData data = (JenaModelStepData) sdi;
+        final ExecutorService workerPool = data.getWorkerPool();
+        if (workerPool != null) {
+            // only has outstanding work if the step did not reach the end of its input
+            workerPool.shutdownNow();
+            data.setWorkerPool(null);
+        }
+
+        final String nodeCacheKey = data.getNodeCacheKey();
+        if (nodeCacheKey != null) {
+            final NodeCache nodeCache = NodeCache.release(nodeCacheKey);
+            if (nodeCache != null && log.isBasic()) {
+                // this was the last copy of the step using the cache
+                logBasic("Node cache: size={0}/{1}, hits={2}, misses={3}, hit rate={4}%",
+                        nodeCache.size(), nodeCache.getMaxSize(), nodeCache.getHits(), nodeCache.getMisses(),
+                        String.format("%.1f", nodeCache.getHitRate() * 100));
+            }
+            data.setNodeCache(null);
+            data.setNodeCacheKey(null);
+        }
+
+        final MappingPlan plan = data.getMappingPlan();
+        if (plan != null && plan.iriValidator != null && log.isBasic()) {
+            logBasic("Invalid IRIs: {0}", plan.iriValidator.getInvalid());
+        }
+
+        try {
+            // only needed if the step did not reach the end of its input
+            closeStream(data);
+        } catch (final KettleException e) {
+            logError(e.getMessage(), e);
+        }
+
+        super.dispose(smi, sdi);
+    }
+
     @Override
     public boolean processRow(final StepMetaInterface smi, final StepDataInterface sdi) throws KettleException {
+        final JenaModelStepMeta meta = (JenaModelStepMeta) smi;
+        final JenaModelStepData data = (JenaModelStepData) sdi;
+
         Object[] row = getRow(); // try and get a row
         if (row == null) {
+            if (data.getWorkerPool() != null) {
+                // output any rows that are still being processed by the workers
+                while (!data.getPendingRows().isEmpty()) {
+                    outputNextPendingRow(meta, data);
+                }
+            }
+
+            if (data.getBatchModel() != null) {
+                // output the last batch
+                flushBatch(data);
+            }
+
+            if (meta.isDirectToStream()) {
+                if (data.getStreamRDF() == null) {
+                    // no rows were received, but we should still produce an (empty) output file
+                    openStream(meta, data);
+                }
+                closeStream(data);
+            }
+
             // no more rows...
             setOutputDone();
             return false;  // signal that we are DONE
@@ -86,36 +191,60 @@ public class JenaModelStep extends BaseStep implements StepInterface {
 
         // process a row...
         final RowMetaInterface inputRowMeta = getInputRowMeta();
-        final JenaModelStepMeta meta = (JenaModelStepMeta) smi;
-        final JenaModelStepData data = (JenaModelStepData) sdi;
 
         if (first) {
             first = false;
 
+            if (!meta.isDirectToStream() && isNullOrEmpty(meta.getTargetFieldName())) {
+                throw new KettleStepException(BaseMessages.getString(
+                        PKG, "JenaModelStep.Error.TargetFieldUndefined"));
+            }
+
             // create output row meta data
             createOutputRowMeta(inputRowMeta, meta, data);
 
             // if we are removing fields, we need to map fields from input row to output row
             // NOTE: this must come after createOutputRowMeta
             prepareForReMap(inputRowMeta, meta, data);
-        }
-
-        if (isNullOrEmpty(meta.getTargetFieldName())) {
-            throw new KettleStepException(BaseMessages.getString(
-                    PKG, "JenaModelStep.Error.TargetFieldUndefined"));
-        }
 
-        // Create Jena model
-        final Model model = createModel(inputRowMeta, meta, row);
+            // compile the mappings against the input row
+            data.setMappingPlan(MappingPlan.compile(inputRowMeta, meta, this, getLogChannel()));
 
-        // remap any fields that we are keeping from the input row to the output row
-        row = prepareOutputRow(meta, data, row);
+            if (meta.isDirectToStream()) {
+                openStream(meta, data);
+            } else if (isBatching(meta)) {
+                prepareForBatching(inputRowMeta, meta, data);
+            }
+        }
 
-        // Set Jena model in target field of the output row
-        row[data.getTargetFieldIndex()] = model;
+        final ExecutorService workerPool = data.getWorkerPool();
+        if (workerPool == null) {
+            // Create the RDF triples for the row, and output it
+            final List<Triple> triples;
+            try {
+                triples = createTriples(data.getMappingPlan(), data.getNodeCache(), row, getRowSequence());
+            } catch (final KettleException | DatatypeFormatException e) {
+                putRowError(row, e);
+                return true;
+            }
+            outputRow(meta, data, row, triples);
 
-        // output the row
-        putRow(data.getOutputRowMeta(), row);
+        } else {
+            // Create the RDF triples for the row on a worker thread
+            final MappingPlan plan = data.getMappingPlan();
+            final NodeCache nodeCache = data.getNodeCache();
+            final Object[] inputRow = row;
+            final long sequence = getRowSequence();
+            final Future<List<Triple>> triples = workerPool.submit(() -> createTriples(plan, nodeCache, inputRow, sequence));
+            final Deque<JenaModelStepData.PendingRow> pendingRows = data.getPendingRows();
+            pendingRows.add(new JenaModelStepData.PendingRow(inputRow, triples));
+
+            // output rows in input order, as soon as they are complete, waiting if there are too many rows in-flight
+            while (!pendingRows.isEmpty()
+                    && (pendingRows.size() >= data.getMaxInFlightRows() || pendingRows.peek().triples.isDone())) {
+                outputNextPendingRow(meta, data);
+            }
+        }
 
         if (checkFeedback(getLinesRead())) {
             if (log.isBasic())
@@ -125,11 +254,124 @@ public class JenaModelStep extends BaseStep implements StepInterface {
         return true;  // signal that we want the next row...
     }
 
+    /**
+     * Get the sequence number of the current row, for minting URIs.
+     *
+     * Each copy of the step numbers its rows from its own partition
+     * of the sequence, so sequence numbers are unique across the copies.
+     *
+     * @return the sequence number
+     */
+    private long getRowSequence() {
+        final int copies = Math.max(1, getStepMeta().getCopies());
+        return getCopy() + copies * (getLinesRead() - 1);
+    }
+
+    private void outputRow(final JenaModelStepMeta meta, final JenaModelStepData data, Object[] row,
+            final List<Triple> triples) throws KettleException {
+        if (meta.isDirectToStream()) {
+            // write the triples straight to the output stream
+            final StreamRDF streamRDF = data.getStreamRDF();
+            for (final Triple triple : triples) {
+                streamRDF.triple(triple);
+            }
+
+            // remap any fields that we are keeping from the input row to the output row, and output the row
+            putRow(data.getOutputRowMeta(), prepareOutputRow(meta, data, row));
+
+        } else if (isBatching(meta)) {
+            // add the triples to the current batch
+            addToBatch(meta, data, row, triples);
+
+        } else {
+            // remap any fields that we are keeping from the input row to the output row
+            row = prepareOutputRow(meta, data, row);
+
+            // Set Jena model in target field of the output row
+            row[data.getTargetFieldIndex()] = createModel(data.getMappingPlan(), triples);
+
+            // output the row
+            putRow(data.getOutputRowMeta(), row);
+        }
+    }
+
+    /**
+     * Waits for the oldest in-flight row to be processed
+     * by a worker, and then outputs it.
+     *
+     * Rows are queued in the order they were read, so taking
+     * from the head of the queue preserves the input order.
+     */
+    private void outputNextPendingRow(final JenaModelStepMeta meta, final JenaModelStepData data) throws KettleException {
+        final JenaModelStepData.PendingRow pendingRow = data.getPendingRows().remove();
+        final List<Triple> triples;
+        try {
+            triples = pendingRow.triples.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KettleException("Interrupted whilst waiting for a worker to create the RDF triples", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof KettleException || cause instanceof DatatypeFormatException) {
+                putRowError(pendingRow.row, (Exception) cause);
+                return;
+            }
+            throw new KettleException(cause.getMessage(), cause);
+        }
+
+        outputRow(meta, data, pendingRow.row, triples);
+    }
+
+    /**
+     * Divert a row whose triples could not be created to the error handling
+     * of the step. If the step has no error handling, the step fails.
+     *
+     * Only errors in the data of the row are diverted, any other error
+     * is rethrown as it would fail every row.
+     *
+     * @param row the input row
+     * @param e the error
+     *
+     * @throws KettleException if the error cannot be diverted
+     */
+    private void putRowError(final Object[] row, final Exception e) throws KettleException {
+        final String errorCode;
+        final String fieldName;
+        final String description;
+        if (e instanceof RowException) {
+            errorCode = ((RowException) e).getErrorCode();
+            fieldName = ((RowException) e).getFieldName();
+            description = ((RowException) e).getSuperMessage();
+        } else if (e instanceof KettleValueException || e instanceof DatatypeFormatException) {
+            errorCode = ERROR_CODE_INVALID_VALUE;
+            fieldName = null;
+            description = e instanceof KettleException ? ((KettleException) e).getSuperMessage() : e.getMessage();
+        } else if (e instanceof KettleException) {
+            throw (KettleException) e;
+        } else {
+            throw new KettleException(e.getMessage(), e);
+        }
+
+        if (!getStepMeta().isDoingErrorHandling()) {
+            if (e instanceof KettleException) {
+                throw (KettleException) e;
+            }
+            throw new KettleException(description, e);
+        }
+
+        putError(getInputRowMeta(), row, 1, description, fieldName, errorCode);
+    }
+
     private void createOutputRowMeta(final RowMetaInterface inputRowMeta, final JenaModelStepMeta meta, final JenaModelStepData data) throws KettleStepException {
         final RowMetaInterface outputRowMeta = inputRowMeta.clone();
         meta.getFields(outputRowMeta, getStepname(), null, null, this, repository, metaStore);
         data.setOutputRowMeta(outputRowMeta);
 
+        if (meta.isDirectToStream()) {
+            // there is no target field when writing directly to a stream
+            return;
+        }
+
         // must be done on the output row meta!
         final String expandedTargetFieldName = environmentSubstitute(meta.getTargetFieldName());
         final int targetFieldIndex = outputRowMeta.indexOfValue(expandedTargetFieldName);
@@ -153,14 +395,16 @@ public class JenaModelStep extends BaseStep implements StepInterface {
      * @throws KettleException if an error occurs whilst preparing
      */
     private void prepareForReMap(final RowMetaInterface inputRowMeta, final JenaModelStepMeta meta, final JenaModelStepData data) throws KettleStepException {
-        // prepare for re-map when removeSelectedFields is checked
-        if (meta.isRemoveSelectedFields() && isNotEmpty(meta.getDbToJenaMappings())) {
-            final int[] remainingInputFieldIndexes = new int[data.getOutputRowMeta().size() - 1]; // NOTE: the `-1` - we don't need the new target field
+        // NOTE: we don't need the new target field (if there is one), it is always the last field
+        final int remainingInputFieldsLen = data.getOutputRowMeta().size() - (meta.isDirectToStream() ? 0 : 1);
+
+        // prepare for re-map when removeSelectedFields is checked, and fields of either the resource or a further subject were removed
+        if (meta.isRemoveSelectedFields() && remainingInputFieldsLen < inputRowMeta.size()) {
+            final int[] remainingInputFieldIndexes = new int[remainingInputFieldsLen];
 
             // fields present in the outputRowMeta
             final String[] outputRowFieldName = data.getOutputRowMeta().getFieldNames();
-            // NOTE the `-1` - we don't search the new target field
-            for (int i = 0; i < outputRowFieldName.length - 1; i++) {
+            for (int i = 0; i < remainingInputFieldsLen; i++) {
                 final int remainingInputFieldIndex = inputRowMeta.indexOfValue(outputRowFieldName[i]);
                 if (remainingInputFieldIndex < 0) {
                     throw new KettleStepException( BaseMessages.getString( PKG,
@@ -187,8 +431,8 @@ public class JenaModelStep extends BaseStep implements StepInterface {
     private Object[] prepareOutputRow(final JenaModelStepMeta meta, final JenaModelStepData data, final Object[] row) {
         final Object[] outputRowData;
 
-        if (meta.isRemoveSelectedFields() && isNotEmpty(meta.getDbToJenaMappings())) {
-            // re-map fields from input to output when removeSelectedFields is checked
+        if (data.getRemainingInputFieldIndexes() != null) {
+            // re-map fields from input to output when removeSelectedFields is checked, and fields were removed
 
             // reserve room for the target field
             outputRowData = RowDataUtil.allocateRowData(data.getOutputRowMeta().size());
@@ -207,342 +451,521 @@ public class JenaModelStep extends BaseStep implements StepInterface {
         return outputRowData;
     }
 
-    private Model createModel(final RowMetaInterface inputRowMeta, final JenaModelStepMeta meta, final Object[] row) throws KettleException {
-        final String resourceUriFieldName = environmentSubstitute(meta.getResourceUriField());
-        final int idxResourceUriField = inputRowMeta.indexOfValue(resourceUriFieldName);
+    /**
+     * Determine if rows should be written into batches.
+     *
+     * @param meta the metadata
+     *
+     * @return true if more than one row may be written into each Jena Model
+     */
+    private static boolean isBatching(final JenaModelStepMeta meta) {
+        return !meta.isDirectToStream() && (meta.getBatchSize() != 1 || isNotEmpty(meta.getBatchKeyField()));
+    }
 
-        if (idxResourceUriField < 0) {
-            throw new KettleException("Could not find Resource URI field '" + resourceUriFieldName + "', index is: " + idxResourceUriField);
-        } else if (idxResourceUriField >= row.length) {
-            throw new KettleException("Could not find Resource URI field '" + resourceUriFieldName + "', index is beyond the bounds of the row(length=" + row.length + "): " + idxResourceUriField);
+    private void prepareForBatching(final RowMetaInterface inputRowMeta, final JenaModelStepMeta meta, final JenaModelStepData data) throws KettleStepException {
+        if (isNotEmpty(meta.getBatchKeyField())) {
+            final String batchKeyFieldName = environmentSubstitute(meta.getBatchKeyField());
+            final int batchKeyFieldIndex = inputRowMeta.indexOfValue(batchKeyFieldName);
+            if (batchKeyFieldIndex < 0) {
+                throw new KettleStepException(BaseMessages.getString(
+                        PKG, "JenaModelStep.Error.BatchKeyFieldNotFoundInputStream", batchKeyFieldName));
+            }
+            data.setBatchKeyFieldIndex(batchKeyFieldIndex);
+        } else {
+            data.setBatchKeyFieldIndex(-1);
         }
-        final Object resourceUriFieldValue =  row[idxResourceUriField];
+    }
 
-        final String strResourceUriFieldValue;
-        if (resourceUriFieldValue == null) {
-            throw new KettleException("Resource URI field '" + resourceUriFieldName + "' cannot be null");
-        } else if (resourceUriFieldValue instanceof String) {
-            strResourceUriFieldValue = (String) resourceUriFieldValue;
-        } else {
-            logBasic("Expecting java.lang.String when processing resourceUriFieldValue, but found {0}. Will default to Object#toString()...", resourceUriFieldValue.getClass().getName());
-            strResourceUriFieldValue = resourceUriFieldValue.toString();
+    /**
+     * Add the triples for a row to the current batch.
+     *
+     * A batch ends, and is output as a single row, when
+     * either the batch size is reached, or the value of the
+     * batch key field changes. The output row takes the
+     * values of its fields from the first row of the batch.
+     *
+     * @param meta the metadata
+     * @param data the data
+     * @param row the input row
+     * @param triples the triples for the input row
+     *
+     * @throws KettleStepException if the batch cannot be output
+     */
+    private void addToBatch(final JenaModelStepMeta meta, final JenaModelStepData data, final Object[] row,
+            final List<Triple> triples) throws KettleStepException {
+        final int batchKeyFieldIndex = data.getBatchKeyFieldIndex();
+        final Object batchKey = batchKeyFieldIndex > -1 ? row[batchKeyFieldIndex] : null;
+
+        if (data.getBatchModel() != null && batchKeyFieldIndex > -1 && !Objects.deepEquals(data.getBatchKey(), batchKey)) {
+            // the key has changed, so we are at a batch boundary
+            flushBatch(data);
         }
 
-        final Model model = ModelFactory.createDefaultModel();
-        try {
-            // start a transaction on the model
-            if (model.supportsTransactions()) {
-                model.begin();
-            }
+        if (data.getBatchModel() == null) {
+            // start a new batch
+            final Object[] outputRow = prepareOutputRow(meta, data, row);
+            final Model batchModel = createModel(data.getMappingPlan(), triples);
+            outputRow[data.getTargetFieldIndex()] = batchModel;
 
-            // add namespaces
-            final Map<String, String> namespaces = meta.getNamespaces();
-            if (namespaces != null) {
-                model.setNsPrefixes(namespaces);
-            }
+            data.setBatchModel(batchModel);
+            data.setBatchOutputRow(outputRow);
+            data.setBatchKey(batchKey);
+            data.setBatchRowCount(1);
 
-            // create the resource
-            final Resource resource = model.createResource(strResourceUriFieldValue);
-
-            // add the resource properties
-            addResourceProperties(
-                    inputRowMeta,
-                    row,
-                    fieldName -> valueLookup(inputRowMeta, row, fieldName),
-                    strResourceUriFieldValue,
-                    model,
-                    resource,
-                    namespaces,
-                    meta.getDbToJenaMappings(),
-                    meta.getBlankNodeMappings());
-
-            // commit the transaction
-            if (model.supportsTransactions()) {
-                model.commit();
+        } else {
+            // add to the existing batch
+            final Graph graph = data.getBatchModel().getGraph();
+            for (final Triple triple : triples) {
+                graph.add(triple);
             }
-        } catch (final KettleException e) {
-            closeAndThrow(model, e);
+            data.setBatchRowCount(data.getBatchRowCount() + 1);
         }
 
-        return model;
+        if (meta.getBatchSize() > 0 && data.getBatchRowCount() >= meta.getBatchSize()) {
+            // the batch is full
+            flushBatch(data);
+        }
     }
 
-    private Object valueLookup(final RowMetaInterface inputRowMeta, final Object[] row, final String fieldName) {
-        final int idxField;
-        if (fieldName != null) {
-            idxField = inputRowMeta.indexOfValue(fieldName);
-        } else {
-            idxField = -1;
+    private void flushBatch(final JenaModelStepData data) throws KettleStepException {
+        final Object[] outputRow = data.getBatchOutputRow();
+        data.clearBatch();
+        putRow(data.getOutputRowMeta(), outputRow);
+    }
+
+    /**
+     * Get the name of the file that a copy of the step writes triples to.
+     *
+     * When the step runs as more than one copy, the number of the copy
+     * is added to the file name before its extension, e.g.
+     * {@code out.nt} becomes {@code out_1.nt} for copy 1.
+     *
+     * @param filename the file name
+     * @param copy the number of the copy of the step
+     * @param copies the number of copies of the step
+     *
+     * @return the file name for the copy
+     */
+    static String getStreamFilenameForCopy(final String filename, final int copy, final int copies) {
+        if (copies <= 1) {
+            return filename;
         }
-        final Object fieldValue;
-        if (idxField > -1) {
-            fieldValue = row[idxField];
+
+        final int idxSeparator = Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\'));
+        final int idxExtension = filename.lastIndexOf('.');
+        if (idxExtension > idxSeparator + 1) {
+            return filename.substring(0, idxExtension) + "_" + copy + filename.substring(idxExtension);
         } else {
-            fieldValue = null;
+            return filename + "_" + copy;
         }
-        return fieldValue;
     }
 
-    private void addResourceProperties(final RowMetaInterface inputRowMeta, final Object[] row,
-           final Function<String, Object> valueLookup, final String rootResourceUri,
-            final Model model, final Resource resource, final Map<String, String> namespaces,
-            final JenaModelStepMeta.DbToJenaMapping[] dbToJenaMappings,
-            final JenaModelStepMeta.BlankNodeMapping[] blankNodeMappings) throws KettleException {
+    /**
+     * Open the output stream for writing triples directly.
+     *
+     * @param meta the metadata
+     * @param data the data
+     *
+     * @throws KettleException if the stream cannot be opened
+     */
+    private void openStream(final JenaModelStepMeta meta, final JenaModelStepData data) throws KettleException {
+        final String streamFilename = environmentSubstitute(meta.getStreamFilename());
+        if (isNullOrEmpty(streamFilename)) {
+            throw new KettleStepException(BaseMessages.getString(PKG, "JenaModelStep.Error.StreamFilenameUndefined"));
+        }
 
-        if (dbToJenaMappings != null) {
-            for (final JenaModelStepMeta.DbToJenaMapping mapping : dbToJenaMappings) {
-                if (mapping.skip) {
-                    continue;
-                }
+        // each copy of the step must write to its own file
+        final String filename = getStreamFilenameForCopy(streamFilename, getCopy(), getStepMeta().getCopies());
 
-                final QName qname = resolve(inputRowMeta, row, namespaces, mapping.rdfPropertyNameSource);
-                Property property;
-                if (isNullOrEmpty(qname.getNamespaceURI())) {
-                    property = model.getProperty(qname.getLocalPart());
-                    if (property == null) {
-                        property = model.createProperty(qname.getLocalPart());
-                    }
-                } else {
-                    property = model.getProperty(qname.getNamespaceURI(), qname.getLocalPart());
-                    if (property == null) {
-                        property = model.createProperty(qname.getNamespaceURI(), qname.getLocalPart());
-                    }
+        String streamFormat = environmentSubstitute(meta.getStreamFormat());
+        if (isNullOrEmpty(streamFormat)) {
+            streamFormat = Rdf11.DEFAULT_STREAMING_SERIALIZATION_FORMAT;
+        }
+        final RDFFormat rdfFormat = asStreamingRdfFormat(streamFormat);
+
+        try {
+            final Path path = Paths.get(filename).toAbsolutePath();
+            if (path.getParent() != null && !Files.exists(path.getParent())) {
+                Files.createDirectories(path.getParent());
+            }
+            final OutputStream os = new BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+
+            final StreamRDF streamRDF = StreamRDFWriter.getWriterStream(os, rdfFormat);
+            streamRDF.start();
+
+            // add namespaces
+            final Map<String, String> namespaces = meta.getNamespaces();
+            if (namespaces != null) {
+                for (final Map.Entry<String, String> namespace : namespaces.entrySet()) {
+                    streamRDF.prefix(namespace.getKey(), namespace.getValue());
                 }
+            }
 
-                final String fieldName = nullIfEmpty(mapping.fieldName);
-                final boolean isBNodeFieldName = fieldName != null && fieldName.equals(BLANK_NODE_FIELD_NAME);
-                final Object fieldValue = valueLookup.apply(fieldName);
-
-                if ((!isBNodeFieldName) && fieldValue == null) {
-                    switch (mapping.actionIfNull) {
-                        case IGNORE:
-                            // no-op - just ignore it!
-                            break;
-
-                        case WARN:
-                            // log a warning
-                            logBasic("Could not write property: {0} for resource: {1}, row field: {2} is null!", property.toString(), rootResourceUri, fieldName);
-                            break;
-
-                        case ERROR:
-                            // throw an exception
-                            closeAndThrow(model, "Could not write property: " + property.toString() + " for resource: " + rootResourceUri + ", row field: " + fieldName + " is null!");
-                            break;
-                    }
-                } else {
-                    if (mapping.rdfType == null) {
-                        final String rdfLiteralValue = (String) convertSqlValueToRdf(fieldValue, null);
-                        Literal literal;
-
-                        if (mapping.language == null) {
-                            // non-typed literal
-                            literal = model.createLiteral(rdfLiteralValue);
-                        } else {
-                            // language-tagged string
-                            literal = model.createLiteral(rdfLiteralValue, mapping.language);
-                        }
+            data.setStreamOutputStream(os);
+            data.setStreamRDF(streamRDF);
 
-                        resource.addLiteral(property, literal);
-
-                    } else if (isBNodeFieldName) {
-                        // blank node
-                        if (!BLANK_NODE_INTERNAL_URI.equals(mapping.rdfType.getNamespaceURI())) {
-                            // field name indicates a blank node, but the rdf type does not... error!
-                            closeAndThrow(model, "Could not write property: " + property.toString() + " for resource: " + rootResourceUri + ", mapping to Blank Node definition is invalid!");
-
-                        } else {
-                            // get the proposed blank node id
-                            final int toBlankNodeId = Integer.parseInt(mapping.rdfType.getLocalPart());
-                            if (blankNodeMappings == null || toBlankNodeId >= blankNodeMappings.length) {
-                                // corresponding blank node mapping does not exist!
-                                closeAndThrow(model, "Could not write property: " + property.toString() + " for resource: " + rootResourceUri + ", corresponding Blank Node mapping does not exist!");
-                            }
-
-                            // get the blank node mapping
-                            final JenaModelStepMeta.BlankNodeMapping blankNodeMapping = blankNodeMappings[toBlankNodeId];
-                            if (blankNodeMapping.id != toBlankNodeId) {
-                                // corresponding blank node id does not match expected blank node id
-                                closeAndThrow(model, "Could not write property: " + property.toString() + " for resource: " + rootResourceUri + ", corresponding Blank Node mapping has id: " + blankNodeMapping.id + " but expected id: " + toBlankNodeId + "!");
-                            }
-
-                            // create the blank node
-                            final Resource blankNode = model.createResource();
-
-                            // call this function recursively but passing in the blank node as the resource
-                            addResourceProperties(inputRowMeta, row, valueLookup, rootResourceUri, model, blankNode, namespaces, blankNodeMapping.dbToJenaMappings, blankNodeMappings);
-
-                            // add the property to the resource
-                            resource.addProperty(property, blankNode);
-                        }
+            logBasic("Writing triples directly to: {0} as {1}", path, streamFormat);
+        } catch (final IOException e) {
+            throw new KettleException("Unable to open file: " + filename + " for writing triples: " + e.getMessage(), e);
+        }
+    }
 
-                    } else if ("Resource".equals(mapping.rdfType.getLocalPart())) {
-                        // resource
-                        final String strFieldValue = (String) convertSqlValueToRdf(fieldValue, null);
-                        final String otherResourceUri = asUri(namespaces, strFieldValue);
-                        final Resource otherResource = model.createResource(otherResourceUri);
-                        resource.addProperty(property, otherResource);
+    /**
+     * Finish and close the output stream, if it is open.
+     *
+     * @param data the data
+     *
+     * @throws KettleException if the stream cannot be closed
+     */
+    private void closeStream(final JenaModelStepData data) throws KettleException {
+        final StreamRDF streamRDF = data.getStreamRDF();
+        if (streamRDF == null) {
+            return;
+        }
 
-                    } else {
-                        // typed literal
-                        final String typeURI = mapping.rdfType.getNamespaceURI() + mapping.rdfType.getLocalPart();
-                        final RDFDatatype rdfDatatype = TypeMapper.getInstance().getSafeTypeByName(typeURI);
-                        final Object rdfLiteralValue = convertSqlValueToRdf(fieldValue, rdfDatatype);
-                        final Literal literal = model.createTypedLiteral(rdfLiteralValue, rdfDatatype);
-                        resource.addLiteral(property, literal);
-                    }
-                }
+        final OutputStream os = data.getStreamOutputStream();
+        data.setStreamRDF(null);
+        data.setStreamOutputStream(null);
+        try {
+            streamRDF.finish();
+        } finally {
+            try {
+                os.close();
+            } catch (final IOException e) {
+                throw new KettleException("Unable to close file for writing triples: " + e.getMessage(), e);
             }
         }
     }
 
-    private @Nullable QName resolve(final RowMetaInterface inputRowMeta, final Object[] row, @Nullable final Map<String, String> namespaces, @Nullable final JenaModelStepMeta.RdfPropertyNameSource rdfPropertyNameSource) throws KettleException {
-        if (rdfPropertyNameSource == null) {
-            return null;
+    private static RDFFormat asStreamingRdfFormat(final String streamFormat) throws KettleException {
+        switch (streamFormat) {
+            case "N-TRIPLES":
+                return RDFFormat.NTRIPLES;
 
-        } else if (rdfPropertyNameSource instanceof JenaModelStepMeta.RdfPropertyNameLiteralSource) {
-            return ((JenaModelStepMeta.RdfPropertyNameLiteralSource) rdfPropertyNameSource).getSource();
+            case "N-QUADS":
+                return RDFFormat.NQUADS;
 
-        } else if (rdfPropertyNameSource instanceof JenaModelStepMeta.RdfPropertyNameFieldSource) {
-            final String fieldName = ((JenaModelStepMeta.RdfPropertyNameFieldSource) rdfPropertyNameSource).getFieldName();
+            case "TURTLE-BLOCKS":
+                return RDFFormat.TURTLE_BLOCKS;
 
-            final int idxFieldName = inputRowMeta.indexOfValue(fieldName);
+            default:
+                throw new KettleException("Unsupported streaming serialization format: " + streamFormat);
+        }
+    }
 
-            if (idxFieldName < 0) {
-                throw new KettleException("Could not find RDF PropertyName source from field '" + fieldName + "', index is: " + idxFieldName);
-            } else if (idxFieldName >= row.length) {
-                throw new KettleException("Could not find RDF PropertyName source from field '" + fieldName + "', index is beyond the bounds of the row(length=" + row.length + "): " + idxFieldName);
+    private Model createModel(final MappingPlan plan, final List<Triple> triples) {
+        // the model shares the namespaces of the plan, rather than copying them
+        final Model model = plan.namespaces != null ? plan.namespaces.createModel() : ModelFactory.createDefaultModel();
+
+        // start a transaction on the model
+        if (model.supportsTransactions()) {
+            model.begin();
+        }
+
+        // add the triples
+        final Graph graph = model.getGraph();
+        for (final Triple triple : triples) {
+            graph.add(triple);
+        }
+
+        // commit the transaction
+        if (model.supportsTransactions()) {
+            model.commit();
+        }
+
+        return model;
+    }
+
+    private List<Triple> createTriples(final MappingPlan plan, @Nullable final NodeCache nodeCache, final Object[] row,
+            final long sequence) throws KettleException {
+        final List<Triple> triples = new ArrayList<>();
+        final PendingBlankNodes pendingBlankNodes = plan.maxBlankNodes > 0 ? new PendingBlankNodes(plan.maxBlankNodes, plan.blankNodeMappings.length) : null;
+        for (int subjectIndex = 0; subjectIndex < plan.subjects.length; subjectIndex++) {
+            final MappingPlan.Subject subject = plan.subjects[subjectIndex];
+            final String strSubjectUri = getSubjectUri(plan, subject, subjectIndex, row, sequence);
+            if (plan.iriValidator != null && !plan.iriValidator.accept(strSubjectUri)) {
+                final boolean fromField = subject.uriMinter == null && subject.uriTemplate == null;
+                throw invalidIri(fromField ? subject.uriFieldName : null, subject.describeUri(), strSubjectUri);
             }
-            final Object fieldValue =  row[idxFieldName];
 
-            final String strFieldValue;
-            if (fieldValue == null) {
-                throw new KettleException("RDF PropertyName source from field '" + fieldName + "' cannot be null");
-            } else if (fieldValue instanceof String) {
-                strFieldValue = (String) fieldValue;
-            } else {
-                logBasic("Expecting java.lang.String when processing RDF PropertyName source from field '{0}', but found {1}. Will default to Object#toString()...", fieldName, fieldValue.getClass().getName());
-                strFieldValue = fieldValue.toString();
+            // create the subject
+            final Node resource = NodeFactory.createURI(strSubjectUri);
+
+            // add the subject properties, and then those of any blank nodes
+            addResourceProperties(plan, nodeCache, row, sequence, strSubjectUri, resource, subject.mappings, pendingBlankNodes, triples);
+            if (pendingBlankNodes != null) {
+                while (pendingBlankNodes.size > 0) {
+                    final int idx = --pendingBlankNodes.size;
+                    final Node blankNode = pendingBlankNodes.nodes[idx];
+                    pendingBlankNodes.nodes[idx] = null;
+                    addResourceProperties(plan, nodeCache, row, sequence, strSubjectUri, blankNode,
+                            plan.blankNodeMappings[pendingBlankNodes.blankNodeIds[idx]], pendingBlankNodes, triples);
+                }
             }
+        }
+        return triples;
+    }
 
-            return Util.parseQName(namespaces, strFieldValue);
+    private String getSubjectUri(final MappingPlan plan, final MappingPlan.Subject subject, final int subjectIndex,
+            final Object[] row, final long sequence) throws KettleException {
+        if (subject.uriMinter != null) {
+            return subject.uriMinter.mint(plan, row, sequence, subjectIndex);
+        }
 
-        } else if (rdfPropertyNameSource instanceof JenaModelStepMeta.RdfPropertyNameVariableSource) {
-            final String variable = ((JenaModelStepMeta.RdfPropertyNameVariableSource) rdfPropertyNameSource).getSource();
-            final String expanded = environmentSubstitute(variable);
-            return Util.parseQName(namespaces, expanded);
+        if (subject.uriTemplate != null) {
+            final String strSubjectUri = subject.uriTemplate.expand(plan, row);
+            if (strSubjectUri == null) {
+                throw new RowException(ERROR_CODE_SUBJECT_URI, null, subject.describeUri() + " template '" + subject.uriTemplate + "' refers to a field which is null");
+            }
+            return strSubjectUri;
+        }
 
+        if (subject.uriFieldIndex >= row.length) {
+            throw new KettleException("Could not find " + subject.describeUri() + " field '" + subject.uriFieldName + "', index is beyond the bounds of the row(length=" + row.length + "): " + subject.uriFieldIndex);
+        }
+        final Object subjectUriFieldValue =  plan.getValue(row, subject.uriFieldIndex);
+
+        final String strSubjectUriFieldValue;
+        if (subjectUriFieldValue == null) {
+            throw new RowException(ERROR_CODE_SUBJECT_URI, subject.uriFieldName, subject.describeUri() + " field '" + subject.uriFieldName + "' cannot be null");
+        } else if (subjectUriFieldValue instanceof String) {
+            strSubjectUriFieldValue = (String) subjectUriFieldValue;
         } else {
-            throw new IllegalArgumentException("Unknown Source Type: " + rdfPropertyNameSource.getSourceType());
+            logBasic("Expecting java.lang.String when processing subjectUriFieldValue, but found {0}. Will default to Object#toString()...", subjectUriFieldValue.getClass().getName());
+            strSubjectUriFieldValue = subjectUriFieldValue.toString();
+        }
+        return strSubjectUriFieldValue;
+    }
+
+    /**
+     * A stack of the blank nodes whose properties are still to be added,
+     * sized by {@link MappingPlan#maxBlankNodes} so that it never needs to grow.
+     */
+    private static class PendingBlankNodes {
+        final Node[] nodes;
+        final int[] blankNodeIds;
+        int size;
+
+        /**
+         * The number of times that each blank node mapping has occurred
+         * in the row, indexed by blank node id.
+         */
+        final int[] occurrences;
+
+        PendingBlankNodes(final int capacity, final int blankNodeMappingsCount) {
+            this.nodes = new Node[capacity];
+            this.blankNodeIds = new int[capacity];
+            this.occurrences = new int[blankNodeMappingsCount];
         }
     }
 
-    private Object convertSqlValueToRdf(final Object sqlValue, @Nullable final RDFDatatype rdfDatatype) {
-        if (rdfDatatype == null || rdfDatatype.equals(XSDDatatype.XSDstring)) {
-            // to xsd:string
-            if (sqlValue instanceof String) {
-                return sqlValue;
+    private void addResourceProperties(final MappingPlan plan, @Nullable final NodeCache nodeCache, final Object[] row,
+            final long sequence, final String rootResourceUri, final Node resource, final MappingPlan.PropertyMapping[] mappings,
+            @Nullable final PendingBlankNodes pendingBlankNodes, final List<Triple> triples) throws KettleException {
 
-            } else if (sqlValue instanceof byte[]) {
-                return new String((byte[]) sqlValue, UTF_8);
+        for (final MappingPlan.PropertyMapping mapping : mappings) {
+            if (mapping.condition != null && !mapping.condition.matches(plan, row)) {
+                // the property is not written for this row
+                continue;
+            }
+
+            final Node property = resolveProperty(plan, nodeCache, row, mapping);
+            final Object fieldValue = mapping.fieldIndex > -1 ? row[mapping.fieldIndex] : null;
+            final String templateUri = mapping.uriTemplate != null ? mapping.uriTemplate.expand(plan, row) : null;
+
+            final boolean isNull;
+            if (mapping.objectType == MappingPlan.ObjectType.BLANK_NODE) {
+                isNull = false;
+            } else if (mapping.uriTemplate != null) {
+                isNull = templateUri == null;
+            } else {
+                isNull = mapping.fieldIndex < 0 || plan.isNull(mapping.fieldIndex, fieldValue);
+            }
 
-            } else if (sqlValue instanceof java.sql.Date || sqlValue instanceof java.sql.Timestamp) {
-                return sqlValue.toString();
+            if (isNull) {
+                switch (mapping.actionIfNull) {
+                    case IGNORE:
+                        // no-op - just ignore it!
+                        break;
 
-            } else if (sqlValue instanceof Number) {
-                return ((Number)sqlValue).toString();
+                    case WARN:
+                        // log a warning
+                        logBasic("Could not write property: {0} for resource: {1}, row field: {2} is null!", property.toString(), rootResourceUri, mapping.fieldName);
+                        break;
 
+                    case ERROR:
+                        // throw an exception
+                        throw new RowException(ERROR_CODE_NULL_VALUE, mapping.fieldName, "Could not write property: " + property.toString() + " for resource: " + rootResourceUri + ", row field: " + mapping.fieldName + " is null!");
+                }
+                continue;
             }
 
-        } else if (rdfDatatype.equals(XSDDatatype.XSDboolean)) {
-            // to xsd:boolean
-            if (sqlValue instanceof Boolean) {
-                return sqlValue;
+            if (mapping.splitter != null) {
+                // a multi-valued field
+                addSplitValues(plan, nodeCache, row, resource, property, mapping, triples);
+                continue;
             }
 
-        } else if (rdfDatatype.equals(XSDDatatype.XSDdate)) {
-            // to xsd:date
-            if (sqlValue instanceof String) {
-                if (sqlValue != null) {
-                    // check lexical form
-                    final Matcher matcher = PATTERN_XSD_DATE.matcher(sqlValue.toString());
-                    if (matcher.matches()) {
-                        return sqlValue;
+            final Node object;
+            switch (mapping.objectType) {
+                case LITERAL:
+                case TYPED_LITERAL:
+                    object = mapping.valueConverter.convert(fieldValue, nodeCache);
+                    break;
+
+                case BLANK_NODE:
+                    // create the blank node, or mint a URI in its place
+                    final UriMinter blankNodeMinter = plan.blankNodeMinters[mapping.blankNodeId];
+                    if (blankNodeMinter != null) {
+                        final int occurrence = pendingBlankNodes.occurrences[mapping.blankNodeId]++;
+                        final String blankNodeUri = blankNodeMinter.mintBlankNode(plan, row, sequence, mapping.blankNodeId, occurrence);
+                        if (plan.iriValidator != null && !plan.iriValidator.accept(blankNodeUri)) {
+                            throw invalidIri(null, "Minted URI of Blank Node " + mapping.blankNodeId, blankNodeUri);
+                        }
+                        object = NodeFactory.createURI(blankNodeUri);
+                    } else {
+                        object = NodeFactory.createBlankNode();
                     }
-                } else {
-                    return sqlValue;
-                }
 
-            } else if (sqlValue instanceof java.sql.Date || sqlValue instanceof java.sql.Timestamp || sqlValue instanceof java.util.Date) {
-                // TODO(AR) need to check about the locale/timezone here... make configurable?
-                final Calendar ukCalendar = Calendar.getInstance(Locale.UK);
-                ukCalendar.setTime((java.util.Date) sqlValue);
-                return new XSDDateTime(ukCalendar);
-            }
+                    // the properties of the blank node are added once those of this resource have been added
+                    final int idx = pendingBlankNodes.size++;
+                    pendingBlankNodes.nodes[idx] = object;
+                    pendingBlankNodes.blankNodeIds[idx] = mapping.blankNodeId;
+                    break;
 
-        } else if (rdfDatatype.equals(XSDDatatype.XSDdateTime)) {
-            // to xsd:dateTime
-            if (sqlValue instanceof String) {
-                if (sqlValue != null) {
-                    // check lexical form
-                    final Matcher matcher = PATTERN_XSD_DATE_TIME.matcher(sqlValue.toString());
-                    if (matcher.matches()) {
-                        return sqlValue;
+                case RESOURCE:
+                    final String otherResourceUri;
+                    if (templateUri != null) {
+                        otherResourceUri = templateUri;
+                    } else {
+                        final String strFieldValue = ValueConverters.asString(plan.getValue(row, mapping.fieldIndex));
+                        otherResourceUri = asUri(plan.namespaces, strFieldValue);
                     }
-                } else {
-                    return sqlValue;
-                }
+                    if (plan.iriValidator != null && !plan.iriValidator.accept(otherResourceUri)) {
+                        throw invalidIri(mapping.fieldName, "Object of property: " + property, otherResourceUri);
+                    }
+                    object = nodeCache != null ? nodeCache.uri(otherResourceUri) : NodeFactory.createURI(otherResourceUri);
+                    break;
 
-            } else if (sqlValue instanceof java.sql.Date || sqlValue instanceof java.sql.Timestamp || sqlValue instanceof java.util.Date) {
-                // TODO(AR) need to check about the locale/timezone here... make configurable?
-                final Calendar ukCalendar = Calendar.getInstance(Locale.UK);
-                ukCalendar.setTime((java.util.Date) sqlValue);
-                return new XSDDateTime(ukCalendar);
+                default:
+                    throw new IllegalStateException("Unknown Object Type: " + mapping.objectType);
             }
 
-        } else if (rdfDatatype.equals(XSDDatatype.XSDgYear)) {
-            // to xsd:gYear
-            if (sqlValue instanceof Long) {
-                if (sqlValue != null) {
-                    // TODO(AR) should we check the lexical form?
-                    return sqlValue;
-                }
+            // add the property to the resource
+            triples.add(Triple.create(resource, property, object));
+        }
+    }
+
+    private void addSplitValues(final MappingPlan plan, @Nullable final NodeCache nodeCache, final Object[] row,
+            final Node resource, final Node property, final MappingPlan.PropertyMapping mapping,
+            final List<Triple> triples) throws KettleException {
+        final String fieldValue = ValueConverters.asString(plan.getValue(row, mapping.fieldIndex));
+
+        if (!mapping.splitAsList) {
+            // one object for each value
+            mapping.splitter.split(fieldValue, value ->
+                    triples.add(Triple.create(resource, property, createSplitValueObject(plan, nodeCache, mapping, value))));
+            return;
+        }
+
+        // a single rdf:List of the values
+        final Node[] lastCell = new Node[1];
+        mapping.splitter.split(fieldValue, value -> {
+            final Node cell = NodeFactory.createBlankNode();
+            if (lastCell[0] == null) {
+                triples.add(Triple.create(resource, property, cell));
+            } else {
+                triples.add(Triple.create(lastCell[0], RDF.Nodes.rest, cell));
             }
+            triples.add(Triple.create(cell, RDF.Nodes.first, createSplitValueObject(plan, nodeCache, mapping, value)));
+            lastCell[0] = cell;
+        });
 
-        } else if (rdfDatatype.equals(RDF.dtXMLLiteral)) {
-            // to rdf:XMLLiteral
-            if (sqlValue instanceof String) {
-                return sqlValue;
+        if (lastCell[0] == null) {
+            triples.add(Triple.create(resource, property, RDF.Nodes.nil));
+        } else {
+            triples.add(Triple.create(lastCell[0], RDF.Nodes.rest, RDF.Nodes.nil));
+        }
+    }
 
-            } else if (sqlValue instanceof byte[]) {
-                return new String((byte[]) sqlValue, UTF_8);
+    private static Node createSplitValueObject(final MappingPlan plan, @Nullable final NodeCache nodeCache,
+            final MappingPlan.PropertyMapping mapping, final String value) throws KettleException {
+        if (mapping.objectType == MappingPlan.ObjectType.RESOURCE) {
+            final String uri = asUri(plan.namespaces, value);
+            if (plan.iriValidator != null && !plan.iriValidator.accept(uri)) {
+                throw invalidIri(mapping.fieldName, "Value of field '" + mapping.fieldName + "'", uri);
             }
+            return nodeCache != null ? nodeCache.uri(uri) : NodeFactory.createURI(uri);
+        }
+        return mapping.valueConverter.convert(value, nodeCache);
+    }
+
+    private static RowException invalidIri(@Nullable final String fieldName, final String description, final String iri) {
+        return new RowException(ERROR_CODE_INVALID_IRI, fieldName, description + " is not a valid IRI: " + iri);
+    }
+
+    private Node resolveProperty(final MappingPlan plan, @Nullable final NodeCache nodeCache, final Object[] row,
+            final MappingPlan.PropertyMapping mapping) throws KettleException {
+        if (mapping.property != null) {
+            return mapping.property;
+        }
 
-        } else if (rdfDatatype.equals(RDF.dtRDFHTML)) {
-            // to rdf:HTML
-            if (sqlValue instanceof String) {
-                return sqlValue;
+        if (mapping.propertyFieldIndex >= row.length) {
+            throw new KettleException("Could not find RDF PropertyName source from field '" + mapping.propertyFieldName + "', index is beyond the bounds of the row(length=" + row.length + "): " + mapping.propertyFieldIndex);
+        }
+        final Object fieldValue =  plan.getValue(row, mapping.propertyFieldIndex);
+
+        final String strFieldValue;
+        if (fieldValue == null) {
+            throw new RowException(ERROR_CODE_PROPERTY_NAME, mapping.propertyFieldName, "RDF PropertyName source from field '" + mapping.propertyFieldName + "' cannot be null");
+        } else if (fieldValue instanceof String) {
+            strFieldValue = (String) fieldValue;
+        } else {
+            logBasic("Expecting java.lang.String when processing RDF PropertyName source from field '{0}', but found {1}. Will default to Object#toString()...", mapping.propertyFieldName, fieldValue.getClass().getName());
+            strFieldValue = fieldValue.toString();
+        }
 
-            } else if (sqlValue instanceof byte[]) {
-                return new String((byte[]) sqlValue, UTF_8);
+        Node property = plan.propertyNames.get(strFieldValue);
+        if (property != null) {
+            return property;
+        }
+
+        // expand a prefixed name directly, anything else is parsed as a QName
+        final int idxColon = strFieldValue.indexOf(':');
+        String propertyUri = null;
+        if (plan.namespaces != null && idxColon > 0 && idxColon < strFieldValue.length() - 1) {
+            propertyUri = plan.namespaces.expand(strFieldValue);
+        }
+        if (propertyUri == null) {
+            final QName qname;
+            try {
+                qname = Util.parseQName(plan.namespaces != null ? plan.namespaces.prefixToUri : null, strFieldValue);
+            } catch (final IllegalArgumentException e) {
+                throw new RowException(ERROR_CODE_PROPERTY_NAME, mapping.propertyFieldName, "RDF PropertyName source from field '" + mapping.propertyFieldName + "' is not a valid property name: " + strFieldValue);
+            }
+            if (qname == null) {
+                throw new RowException(ERROR_CODE_PROPERTY_NAME, mapping.propertyFieldName, "RDF PropertyName source from field '" + mapping.propertyFieldName + "' cannot be empty");
             }
+            propertyUri = MappingPlan.asPredicate(qname).getURI();
         }
 
-        // fallback
-        logBasic("convertSqlValueToRdfLiteralValue: required {0} but was given: {1}, unsure how to convert... Will default to {1}}!", rdfDatatype.getURI(), sqlValue.getClass());
-        return sqlValue;
+        if (plan.iriValidator != null && !plan.iriValidator.accept(propertyUri)) {
+            throw invalidIri(mapping.propertyFieldName, "RDF PropertyName source from field '" + mapping.propertyFieldName + "'", propertyUri);
+        }
+        property = nodeCache != null ? nodeCache.uri(propertyUri) : NodeFactory.createURI(propertyUri);
+
+        // invalid IRIs are not cached, so that each of their occurrences is counted
+        if (plan.iriValidator == null || IriChecker.isValid(propertyUri)) {
+            plan.propertyNames.put(strFieldValue, property);
+        }
+        return property;
     }
 
-    private static String asUri(final Map<String, String> namespaces, final String fieldValue) {
+    private static String asUri(@Nullable final Namespaces namespaces, final String fieldValue) {
         final int idxNsSep = fieldValue.indexOf(':');
         if (idxNsSep > -1) {
-            final String prefix = fieldValue.substring(0, idxNsSep);
-            final String localPart = fieldValue.substring(idxNsSep + 1);
-            if (namespaces != null && namespaces.containsKey(prefix)) {
-                final String nsUri = namespaces.get(prefix);
-                return nsUri + localPart;
-            } else {
-                return fieldValue;
-            }
+            final String expanded = namespaces != null ? namespaces.expand(fieldValue) : null;
+            return expanded != null ? expanded : fieldValue;
         } else {
             final int idxNsOpenBracket = fieldValue.indexOf('{');
             final int idxNsCloseBracket = fieldValue.indexOf('}');
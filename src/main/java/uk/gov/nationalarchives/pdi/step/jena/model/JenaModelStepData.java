@@ -22,10 +22,21 @@
  */
 package uk.gov.nationalarchives.pdi.step.jena.model;
 
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.system.StreamRDF;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
+import javax.annotation.Nullable;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 
 public class JenaModelStepData extends BaseStepData implements StepDataInterface {
 
@@ -44,6 +55,48 @@ public class JenaModelStepData extends BaseStepData implements StepDataInterface
      */
     private int[] remainingInputFieldIndexes;
 
+    /**
+     * The mapping plan, compiled when the first row is seen.
+     */
+    private MappingPlan mappingPlan;
+
+    /**
+     * The stream that triples are written to
+     * when writing directly to a stream.
+     */
+    @Nullable private StreamRDF streamRDF;
+    @Nullable private OutputStream streamOutputStream;
+
+    /**
+     * State of the current batch, when writing
+     * more than one row into each Jena Model.
+     */
+    private int batchKeyFieldIndex = -1;
+    @Nullable private Model batchModel;
+    @Nullable private Object[] batchOutputRow;
+    @Nullable private Object batchKey;
+    private long batchRowCount;
+
+    /**
+     * Workers that create the triples for rows in parallel,
+     * or null if rows are processed on the step's own thread.
+     */
+    @Nullable private ExecutorService workerPool;
+
+    /**
+     * Rows which have been submitted to the workers,
+     * in the order that they were read.
+     */
+    private final Deque<PendingRow> pendingRows = new ArrayDeque<>();
+    private int maxInFlightRows;
+
+    /**
+     * Cache of Nodes shared by all copies of the step,
+     * or null if caching is disabled.
+     */
+    @Nullable private NodeCache nodeCache;
+    @Nullable private String nodeCacheKey;
+
     public JenaModelStepData() {
         super();
     }
@@ -72,5 +125,128 @@ public class JenaModelStepData extends BaseStepData implements StepDataInterface
     public void setRemainingInputFieldIndexes(final int[] remainingInputFieldIndexes) {
         this.remainingInputFieldIndexes = remainingInputFieldIndexes;
     }
+
+    MappingPlan getMappingPlan() {
+        return mappingPlan;
+    }
+
+    void setMappingPlan(final MappingPlan mappingPlan) {
+        this.mappingPlan = mappingPlan;
+    }
+
+    public @Nullable StreamRDF getStreamRDF() {
+        return streamRDF;
+    }
+
+    public void setStreamRDF(@Nullable final StreamRDF streamRDF) {
+        this.streamRDF = streamRDF;
+    }
+
+    public @Nullable OutputStream getStreamOutputStream() {
+        return streamOutputStream;
+    }
+
+    public void setStreamOutputStream(@Nullable final OutputStream streamOutputStream) {
+        this.streamOutputStream = streamOutputStream;
+    }
+
+    public int getBatchKeyFieldIndex() {
+        return batchKeyFieldIndex;
+    }
+
+    public void setBatchKeyFieldIndex(final int batchKeyFieldIndex) {
+        this.batchKeyFieldIndex = batchKeyFieldIndex;
+    }
+
+    public @Nullable Model getBatchModel() {
+        return batchModel;
+    }
+
+    public void setBatchModel(@Nullable final Model batchModel) {
+        this.batchModel = batchModel;
+    }
+
+    public @Nullable Object[] getBatchOutputRow() {
+        return batchOutputRow;
+    }
+
+    public void setBatchOutputRow(@Nullable final Object[] batchOutputRow) {
+        this.batchOutputRow = batchOutputRow;
+    }
+
+    public @Nullable Object getBatchKey() {
+        return batchKey;
+    }
+
+    public void setBatchKey(@Nullable final Object batchKey) {
+        this.batchKey = batchKey;
+    }
+
+    public long getBatchRowCount() {
+        return batchRowCount;
+    }
+
+    public void setBatchRowCount(final long batchRowCount) {
+        this.batchRowCount = batchRowCount;
+    }
+
+    /**
+     * Clear the state of the current batch.
+     */
+    public void clearBatch() {
+        this.batchModel = null;
+        this.batchOutputRow = null;
+        this.batchKey = null;
+        this.batchRowCount = 0;
+    }
+
+    public @Nullable ExecutorService getWorkerPool() {
+        return workerPool;
+    }
+
+    public void setWorkerPool(@Nullable final ExecutorService workerPool) {
+        this.workerPool = workerPool;
+    }
+
+    Deque<PendingRow> getPendingRows() {
+        return pendingRows;
+    }
+
+    public int getMaxInFlightRows() {
+        return maxInFlightRows;
+    }
+
+    public void setMaxInFlightRows(final int maxInFlightRows) {
+        this.maxInFlightRows = maxInFlightRows;
+    }
+
+    @Nullable NodeCache getNodeCache() {
+        return nodeCache;
+    }
+
+    void setNodeCache(@Nullable final NodeCache nodeCache) {
+        this.nodeCache = nodeCache;
+    }
+
+    public @Nullable String getNodeCacheKey() {
+        return nodeCacheKey;
+    }
+
+    public void setNodeCacheKey(@Nullable final String nodeCacheKey) {
+        this.nodeCacheKey = nodeCacheKey;
+    }
     // </editor-fold>
+
+    /**
+     * An input row whose triples are being created by a worker.
+     */
+    static class PendingRow {
+        final Object[] row;
+        final Future<List<Triple>> triples;
+
+        PendingRow(final Object[] row, final Future<List<Triple>> triples) {
+            this.row = row;
+            this.triples = triples;
+        }
+    }
 }
\ No newline at end of file
@@ -37,6 +37,7 @@ import org.eclipse.swt.layout.FormAttachment;
 import org.eclipse.swt.layout.FormData;
 import org.eclipse.swt.layout.FormLayout;
 import org.eclipse.swt.widgets.*;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.Props;
 import org.pentaho.di.core.plugins.PluginInterface;
 import org.pentaho.di.core.plugins.PluginRegistry;
@@ -50,8 +51,10 @@ import org.pentaho.di.ui.core.FormDataBuilder;
 import org.pentaho.di.ui.core.gui.GUIResource;
 import org.pentaho.di.ui.trans.step.BaseStepDialog;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 
@@ -80,19 +83,49 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
     private TextVar wTargetTextField;
     private Label wResourceUriLabel;
     private ComboVar wResourceUriCombo;
+    private Label wResourceUriTemplateLabel;
+    private TextVar wResourceUriTemplateTextField;
+    private UriMintingControls wResourceUriMintingControls;
     private Button wGetUriFieldButton;
     private Label wRemoveSelectedLabel;
     private Button wRemoveSelectedCheckbox;
     private TableView wNamespacesTableView;
+    private Label wDirectToStreamLabel;
+    private Button wDirectToStreamCheckbox;
+    private Label wStreamFilenameLabel;
+    private TextVar wStreamFilenameTextField;
+    private Label wStreamFormatLabel;
+    private ComboVar wStreamFormatCombo;
+    private Label wBatchSizeLabel;
+    private TextVar wBatchSizeTextField;
+    private Label wBatchKeyFieldLabel;
+    private ComboVar wBatchKeyFieldCombo;
+    private Button wGetBatchKeyFieldButton;
+    private Label wWorkerThreadsLabel;
+    private TextVar wWorkerThreadsTextField;
+    private Label wMaxInFlightRowsLabel;
+    private TextVar wMaxInFlightRowsTextField;
+    private Label wNodeCacheSizeLabel;
+    private TextVar wNodeCacheSizeTextField;
+    private Label wDateTimeZoneLabel;
+    private TextVar wDateTimeZoneTextField;
+    private Label wValidateXmlLiteralsLabel;
+    private Button wValidateXmlLiteralsCheckbox;
+    private Label wIriValidationLabel;
+    private CCombo wIriValidationCombo;
     private CTabFolder wTabFolder;
     private Button wTableGetFieldsButton;
     private Button wAddBNodeButton;
+    private CTabFolder wSubjectsTabFolder;
+    private Button wAddSubjectButton;
     private Button wCancel;
     private Button wOK;
     private ModifyListener lsMappingsTableModify;
     private Listener lsResourceUriGetFields;
+    private Listener lsBatchKeyGetFields;
     private Listener lsTableGetFields;
     private Listener lsAddBNode;
+    private Listener lsAddSubject;
     private Listener lsCancel;
     private Listener lsOK;
     private SelectionAdapter lsDef;
@@ -104,6 +137,17 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
      */
     TableView[] mappingsTables;
 
+    /**
+     * The URI minting controls of each bNode tab, indexed by bNode ID.
+     */
+    private UriMintingControls[] bNodeUriMintingControls = new UriMintingControls[0];
+
+    /**
+     * The controls of each tab in {@link #wSubjectsTabFolder},
+     * in the same order as the tabs.
+     */
+    private final List<SubjectControls> subjectControls = new ArrayList<>();
+
     public JenaModelStepDialog(final Shell parent, final Object in, final TransMeta transMeta, final String stepname) {
         super(parent, (BaseStepMeta) in, transMeta, stepname);
         meta = (JenaModelStepMeta) in;
@@ -276,6 +320,235 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
                 .result();
         wGetUriFieldButton.setLayoutData(fdGetField);
 
+        //resource URI template label/field
+        wResourceUriTemplateLabel = new Label(group, SWT.LEFT);
+        props.setLook(wResourceUriTemplateLabel);
+        wResourceUriTemplateLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.TextFieldResourceUriTemplate"));
+        final FormData fdResourceUriTemplateLabel = new FormDataBuilder().left()
+                .top(wResourceUriCombo, ELEMENT_SPACING)
+                .result();
+        wResourceUriTemplateLabel.setLayoutData(fdResourceUriTemplateLabel);
+
+        wResourceUriTemplateTextField = new TextVar(transMeta, group, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wResourceUriTemplateTextField);
+        final FormData fdResourceUriTemplateTextField = new FormDataBuilder().left()
+                .top(wResourceUriTemplateLabel, LABEL_SPACING)
+                .width(LARGE_FIELD)
+                .result();
+        wResourceUriTemplateTextField.setLayoutData(fdResourceUriTemplateTextField);
+
+        //resource URI minting
+        wResourceUriMintingControls = createUriMintingControls(group, wResourceUriTemplateTextField);
+
+        //Group for options
+        final Group optionsGroup = new Group(contentComposite, SWT.SHADOW_ETCHED_IN);
+        optionsGroup.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.OptionsGroupText"));
+        final FormLayout optionsGroupLayout = new FormLayout();
+        optionsGroupLayout.marginWidth = MARGIN_SIZE;
+        optionsGroupLayout.marginHeight = MARGIN_SIZE;
+        optionsGroup.setLayout(optionsGroupLayout);
+        final FormData optionsGroupLayoutData = new FormDataBuilder().fullWidth()
+                .top(group, MARGIN_SIZE)
+                .result();
+        optionsGroup.setLayoutData(optionsGroupLayoutData);
+        props.setLook(optionsGroup);
+
+        // direct to stream label/checkbox
+        wDirectToStreamLabel = new Label(optionsGroup, SWT.LEFT);
+        props.setLook(wDirectToStreamLabel);
+        wDirectToStreamLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.CheckboxDirectToStream"));
+        final FormData fdDirectToStreamLabel = new FormDataBuilder().left()
+                .top()
+                .result();
+        wDirectToStreamLabel.setLayoutData(fdDirectToStreamLabel);
+
+        wDirectToStreamCheckbox = new Button(optionsGroup, SWT.CHECK);
+        props.setLook(wDirectToStreamCheckbox);
+        wDirectToStreamCheckbox.setBackground(display.getSystemColor(SWT.COLOR_TRANSPARENT));
+        final FormData fdDirectToStreamCheckbox = new FormDataBuilder().left(wDirectToStreamLabel, LABEL_SPACING)
+                .top()
+                .result();
+        wDirectToStreamCheckbox.setLayoutData(fdDirectToStreamCheckbox);
+
+        // stream filename label/field
+        wStreamFilenameLabel = new Label(optionsGroup, SWT.LEFT);
+        props.setLook(wStreamFilenameLabel);
+        wStreamFilenameLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.TextFieldStreamFilename"));
+        final FormData fdStreamFilenameLabel = new FormDataBuilder().left()
+                .top(wDirectToStreamCheckbox, ELEMENT_SPACING)
+                .result();
+        wStreamFilenameLabel.setLayoutData(fdStreamFilenameLabel);
+
+        wStreamFilenameTextField = new TextVar(transMeta, optionsGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wStreamFilenameTextField);
+        final FormData fdStreamFilenameTextField = new FormDataBuilder().left()
+                .top(wStreamFilenameLabel, LABEL_SPACING)
+                .width(LARGE_FIELD)
+                .result();
+        wStreamFilenameTextField.setLayoutData(fdStreamFilenameTextField);
+
+        // stream format label/combo
+        wStreamFormatLabel = new Label(optionsGroup, SWT.LEFT);
+        props.setLook(wStreamFormatLabel);
+        wStreamFormatLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.TextFieldStreamFormat"));
+        final FormData fdStreamFormatLabel = new FormDataBuilder().left()
+                .top(wStreamFilenameTextField, ELEMENT_SPACING)
+                .result();
+        wStreamFormatLabel.setLayoutData(fdStreamFormatLabel);
+
+        wStreamFormatCombo = new ComboVar(transMeta, optionsGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wStreamFormatCombo);
+        final FormData fdStreamFormatCombo = new FormDataBuilder().left()
+                .top(wStreamFormatLabel, LABEL_SPACING)
+                .width(MEDIUM_FIELD)
+                .result();
+        wStreamFormatCombo.setLayoutData(fdStreamFormatCombo);
+
+        // batch size label/field
+        wBatchSizeLabel = new Label(optionsGroup, SWT.LEFT);
+        props.setLook(wBatchSizeLabel);
+        wBatchSizeLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.TextFieldBatchSize"));
+        final FormData fdBatchSizeLabel = new FormDataBuilder().left()
+                .top(wStreamFormatCombo, ELEMENT_SPACING)
+                .result();
+        wBatchSizeLabel.setLayoutData(fdBatchSizeLabel);
+
+        wBatchSizeTextField = new TextVar(transMeta, optionsGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wBatchSizeTextField);
+        final FormData fdBatchSizeTextField = new FormDataBuilder().left()
+                .top(wBatchSizeLabel, LABEL_SPACING)
+                .width(SMALL_FIELD)
+                .result();
+        wBatchSizeTextField.setLayoutData(fdBatchSizeTextField);
+
+        // batch key field label/combo
+        wBatchKeyFieldLabel = new Label(optionsGroup, SWT.LEFT);
+        props.setLook(wBatchKeyFieldLabel);
+        wBatchKeyFieldLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.TextFieldBatchKeyField"));
+        final FormData fdBatchKeyFieldLabel = new FormDataBuilder().left()
+                .top(wBatchSizeTextField, ELEMENT_SPACING)
+                .result();
+        wBatchKeyFieldLabel.setLayoutData(fdBatchKeyFieldLabel);
+
+        wBatchKeyFieldCombo = new ComboVar(transMeta, optionsGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wBatchKeyFieldCombo);
+        final FormData fdBatchKeyFieldCombo = new FormDataBuilder().left()
+                .top(wBatchKeyFieldLabel, LABEL_SPACING)
+                .width(LARGE_FIELD)
+                .result();
+        wBatchKeyFieldCombo.setLayoutData(fdBatchKeyFieldCombo);
+
+        wGetBatchKeyFieldButton = new Button(optionsGroup, SWT.PUSH);
+        wGetBatchKeyFieldButton.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.GetFieldsButton"));
+        final FormData fdGetBatchKeyField = new FormDataBuilder().left(wBatchKeyFieldCombo, LABEL_SPACING)
+                .top(wBatchKeyFieldLabel, LABEL_SPACING)
+                .result();
+        wGetBatchKeyFieldButton.setLayoutData(fdGetBatchKeyField);
+
+        // worker threads label/field
+        wWorkerThreadsLabel = new Label(optionsGroup, SWT.LEFT);
+        props.setLook(wWorkerThreadsLabel);
+        wWorkerThreadsLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.TextFieldWorkerThreads"));
+        final FormData fdWorkerThreadsLabel = new FormDataBuilder().left()
+                .top(wBatchKeyFieldCombo, ELEMENT_SPACING)
+                .result();
+        wWorkerThreadsLabel.setLayoutData(fdWorkerThreadsLabel);
+
+        wWorkerThreadsTextField = new TextVar(transMeta, optionsGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wWorkerThreadsTextField);
+        final FormData fdWorkerThreadsTextField = new FormDataBuilder().left()
+                .top(wWorkerThreadsLabel, LABEL_SPACING)
+                .width(SMALL_FIELD)
+                .result();
+        wWorkerThreadsTextField.setLayoutData(fdWorkerThreadsTextField);
+
+        // max in-flight rows label/field
+        wMaxInFlightRowsLabel = new Label(optionsGroup, SWT.LEFT);
+        props.setLook(wMaxInFlightRowsLabel);
+        wMaxInFlightRowsLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.TextFieldMaxInFlightRows"));
+        final FormData fdMaxInFlightRowsLabel = new FormDataBuilder().left()
+                .top(wWorkerThreadsTextField, ELEMENT_SPACING)
+                .result();
+        wMaxInFlightRowsLabel.setLayoutData(fdMaxInFlightRowsLabel);
+
+        wMaxInFlightRowsTextField = new TextVar(transMeta, optionsGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wMaxInFlightRowsTextField);
+        final FormData fdMaxInFlightRowsTextField = new FormDataBuilder().left()
+                .top(wMaxInFlightRowsLabel, LABEL_SPACING)
+                .width(SMALL_FIELD)
+                .result();
+        wMaxInFlightRowsTextField.setLayoutData(fdMaxInFlightRowsTextField);
+
+        // node cache size label/field
+        wNodeCacheSizeLabel = new Label(optionsGroup, SWT.LEFT);
+        props.setLook(wNodeCacheSizeLabel);
+        wNodeCacheSizeLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.TextFieldNodeCacheSize"));
+        final FormData fdNodeCacheSizeLabel = new FormDataBuilder().left()
+                .top(wMaxInFlightRowsTextField, ELEMENT_SPACING)
+                .result();
+        wNodeCacheSizeLabel.setLayoutData(fdNodeCacheSizeLabel);
+
+        wNodeCacheSizeTextField = new TextVar(transMeta, optionsGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wNodeCacheSizeTextField);
+        final FormData fdNodeCacheSizeTextField = new FormDataBuilder().left()
+                .top(wNodeCacheSizeLabel, LABEL_SPACING)
+                .width(SMALL_FIELD)
+                .result();
+        wNodeCacheSizeTextField.setLayoutData(fdNodeCacheSizeTextField);
+
+        // date timezone label/field
+        wDateTimeZoneLabel = new Label(optionsGroup, SWT.LEFT);
+        props.setLook(wDateTimeZoneLabel);
+        wDateTimeZoneLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.TextFieldDateTimeZone"));
+        final FormData fdDateTimeZoneLabel = new FormDataBuilder().left()
+                .top(wNodeCacheSizeTextField, ELEMENT_SPACING)
+                .result();
+        wDateTimeZoneLabel.setLayoutData(fdDateTimeZoneLabel);
+
+        wDateTimeZoneTextField = new TextVar(transMeta, optionsGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wDateTimeZoneTextField);
+        final FormData fdDateTimeZoneTextField = new FormDataBuilder().left()
+                .top(wDateTimeZoneLabel, LABEL_SPACING)
+                .width(MEDIUM_FIELD)
+                .result();
+        wDateTimeZoneTextField.setLayoutData(fdDateTimeZoneTextField);
+
+        // validate xml literals label/checkbox
+        wValidateXmlLiteralsLabel = new Label(optionsGroup, SWT.LEFT);
+        props.setLook(wValidateXmlLiteralsLabel);
+        wValidateXmlLiteralsLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.CheckboxValidateXmlLiterals"));
+        final FormData fdValidateXmlLiteralsLabel = new FormDataBuilder().left()
+                .top(wDateTimeZoneTextField, ELEMENT_SPACING)
+                .result();
+        wValidateXmlLiteralsLabel.setLayoutData(fdValidateXmlLiteralsLabel);
+
+        wValidateXmlLiteralsCheckbox = new Button(optionsGroup, SWT.CHECK);
+        props.setLook(wValidateXmlLiteralsCheckbox);
+        wValidateXmlLiteralsCheckbox.setBackground(display.getSystemColor(SWT.COLOR_TRANSPARENT));
+        final FormData fdValidateXmlLiteralsCheckbox = new FormDataBuilder().left(wValidateXmlLiteralsLabel, LABEL_SPACING)
+                .top(wDateTimeZoneTextField, ELEMENT_SPACING)
+                .result();
+        wValidateXmlLiteralsCheckbox.setLayoutData(fdValidateXmlLiteralsCheckbox);
+
+        // iri validation label/combo
+        wIriValidationLabel = new Label(optionsGroup, SWT.LEFT);
+        props.setLook(wIriValidationLabel);
+        wIriValidationLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.ComboIriValidation"));
+        final FormData fdIriValidationLabel = new FormDataBuilder().left()
+                .top(wValidateXmlLiteralsLabel, ELEMENT_SPACING)
+                .result();
+        wIriValidationLabel.setLayoutData(fdIriValidationLabel);
+
+        wIriValidationCombo = new CCombo(optionsGroup, SWT.BORDER | SWT.READ_ONLY);
+        props.setLook(wIriValidationCombo);
+        wIriValidationCombo.setItems(IriValidation.names());
+        wIriValidationCombo.setText(IriValidation.OFF.name());
+        final FormData fdIriValidationCombo = new FormDataBuilder().left()
+                .top(wIriValidationLabel, LABEL_SPACING)
+                .width(MEDIUM_FIELD)
+                .result();
+        wIriValidationCombo.setLayoutData(fdIriValidationCombo);
+
         //Tabs
         wTabFolder = new CTabFolder(contentComposite, SWT.BORDER);
         props.setLook(wTabFolder, Props.WIDGET_STYLE_TAB);
@@ -314,11 +587,19 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
         addMappingsTableToMappingsTables(wMappingsTableView);
 
         final FormData fdTabFolder = new FormDataBuilder().fullWidth()
-                .top(group, MARGIN_SIZE)
-                .bottom()
+                .top(optionsGroup, MARGIN_SIZE)
                 .result();
         wTabFolder.setLayoutData(fdTabFolder);
 
+        // Tabs for any further subjects
+        wSubjectsTabFolder = new CTabFolder(contentComposite, SWT.BORDER);
+        props.setLook(wSubjectsTabFolder, Props.WIDGET_STYLE_TAB);
+        final FormData fdSubjectsTabFolder = new FormDataBuilder().fullWidth()
+                .top(wTabFolder, MARGIN_SIZE)
+                .bottom()
+                .result();
+        wSubjectsTabFolder.setLayoutData(fdSubjectsTabFolder);
+
         //Cancel and OK buttons for the bottom of the window.
         wCancel = new Button(shell, SWT.PUSH);
         wCancel.setText(BaseMessages.getString(PKG, "System.Button.Cancel"));
@@ -350,6 +631,14 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
                 .result();
         wAddBNodeButton.setLayoutData(fdAddBNodeButton);
 
+        // Add Subject button
+        wAddSubjectButton = new Button(shell, SWT.PUSH);
+        wAddSubjectButton.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.AddSubjectButton"));
+        final FormData fdAddSubjectButton = new FormDataBuilder().right(wAddBNodeButton, -LABEL_SPACING)
+                .bottom(bottomSpacer, -MARGIN_SIZE)
+                .result();
+        wAddSubjectButton.setLayoutData(fdAddSubjectButton);
+
         //Add everything to the scrolling composite
         scrolledComposite.setContent(contentComposite);
         scrolledComposite.setExpandVertical(true);
@@ -373,6 +662,13 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
             }
         };
 
+        lsBatchKeyGetFields = new Listener() {
+            @Override
+            public void handleEvent(final Event e) {
+                getFieldsFromPrevious(wBatchKeyFieldCombo, transMeta, stepMeta);
+            }
+        };
+
         lsTableGetFields = new Listener() {
         @Override
           public void handleEvent(final Event e) {
@@ -392,6 +688,15 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
             public void handleEvent(final Event e) {
                 final int bNodeTabId = createBNodeTab();
                 addBNodeToRdfPropertyTypes(mappingsTables, bNodeTabId);
+                for (final SubjectControls controls : subjectControls) {
+                    addBNodeToRdfPropertyTypes(controls.wMappingsTableView, bNodeTabId);
+                }
+            }
+        };
+        lsAddSubject = new Listener() {
+            @Override
+            public void handleEvent(final Event e) {
+                createSubjectTab();
             }
         };
         lsCancel = new Listener() {
@@ -408,8 +713,10 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
         };
 
         wGetUriFieldButton.addListener(SWT.Selection, lsResourceUriGetFields);
+        wGetBatchKeyFieldButton.addListener(SWT.Selection, lsBatchKeyGetFields);
         wTableGetFieldsButton.addListener(SWT.Selection, lsTableGetFields);
         wAddBNodeButton.addListener(SWT.Selection, lsAddBNode);
+        wAddSubjectButton.addListener(SWT.Selection, lsAddSubject);
         wOK.addListener(SWT.Selection, lsOK);
         wCancel.addListener(SWT.Selection, lsCancel);
 
@@ -452,6 +759,14 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
             wResourceUriCombo.setText(resourceUriField);
         }
 
+        final String resourceUriTemplate = meta.getResourceUriTemplate();
+        if (resourceUriTemplate != null) {
+            wResourceUriTemplateTextField.setText(resourceUriTemplate);
+        }
+
+        wResourceUriMintingControls.setData(meta.getResourceUriMinting(), meta.getResourceUriMintingPrefix(),
+                meta.getResourceUriMintingFields());
+
         if (meta.getNamespaces() != null) {
             wNamespacesTableView.getTable().removeAll();
             for (final Map.Entry<String, String> namespace : meta.getNamespaces().entrySet()) {
@@ -459,6 +774,42 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
             }
         }
 
+        wDirectToStreamCheckbox.setSelection(meta.isDirectToStream());
+
+        final String streamFilename = meta.getStreamFilename();
+        if (streamFilename != null) {
+            wStreamFilenameTextField.setText(streamFilename);
+        }
+
+        wStreamFormatCombo.removeAll();
+        for (final String streamFormat : Rdf11.STREAMING_SERIALIZATION_FORMATS) {
+            wStreamFormatCombo.add(streamFormat);
+        }
+        String streamFormat = meta.getStreamFormat();
+        if (isNullOrEmpty(streamFormat)) {
+            streamFormat = Rdf11.DEFAULT_STREAMING_SERIALIZATION_FORMAT;
+        }
+        wStreamFormatCombo.setText(streamFormat);
+
+        wBatchSizeTextField.setText(String.valueOf(meta.getBatchSize()));
+
+        final String batchKeyField = meta.getBatchKeyField();
+        if (batchKeyField != null) {
+            wBatchKeyFieldCombo.setText(batchKeyField);
+        }
+
+        wWorkerThreadsTextField.setText(String.valueOf(meta.getWorkerThreads()));
+        wMaxInFlightRowsTextField.setText(String.valueOf(meta.getMaxInFlightRows()));
+        wNodeCacheSizeTextField.setText(String.valueOf(meta.getNodeCacheSize()));
+
+        final String dateTimeZone = meta.getDateTimeZone();
+        if (dateTimeZone != null) {
+            wDateTimeZoneTextField.setText(dateTimeZone);
+        }
+
+        wValidateXmlLiteralsCheckbox.setSelection(meta.isValidateXmlLiterals());
+        wIriValidationCombo.setText((meta.getIriValidation() != null ? meta.getIriValidation() : IriValidation.OFF).name());
+
         // populate the table
         getDbToJenaMappingTableData(meta.getDbToJenaMappings(), mappingsTables[0]);  // 0 - is always the main (non Blank Nodes) table
 
@@ -478,6 +829,21 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
                 // populate the table in the tab
                 final TableView bNodeMappingTable = mappingsTables[mappingTablesIdx];
                 getDbToJenaMappingTableData(blankNodeMapping.dbToJenaMappings, bNodeMappingTable);
+
+                bNodeUriMintingControls[blankNodeMapping.id].setData(blankNodeMapping.uriMinting,
+                        blankNodeMapping.uriMintingPrefix, blankNodeMapping.uriMintingFields);
+            }
+        }
+
+        // NOTE: subject tabs are created after the bNode tabs, so that their tables offer the bNode property types
+        final JenaModelStepMeta.SubjectMapping[] subjectMappings = meta.getSubjectMappings();
+        if (subjectMappings != null) {
+            for (final JenaModelStepMeta.SubjectMapping subjectMapping : subjectMappings) {
+                final SubjectControls controls = createSubjectTab();
+                controls.setData(subjectMapping);
+            }
+            if (subjectMappings.length > 0) {
+                wSubjectsTabFolder.setSelection(0);
             }
         }
     }
@@ -495,7 +861,18 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
                                 BaseMessages.getString(PKG, "JenaModelStepDialog.SkipYes") :
                                 BaseMessages.getString(PKG, "JenaModelStepDialog.SkipNo"),
                         dbToJenaMapping.language,
-                        dbToJenaMapping.actionIfNull.name()
+                        dbToJenaMapping.actionIfNull.name(),
+                        dbToJenaMapping.uriTemplate,
+                        dbToJenaMapping.splitDelimiter,
+                        dbToJenaMapping.splitRegex ?
+                                BaseMessages.getString(PKG, "JenaModelStepDialog.SkipYes") :
+                                BaseMessages.getString(PKG, "JenaModelStepDialog.SkipNo"),
+                        dbToJenaMapping.splitAsList ?
+                                BaseMessages.getString(PKG, "JenaModelStepDialog.SkipYes") :
+                                BaseMessages.getString(PKG, "JenaModelStepDialog.SkipNo"),
+                        dbToJenaMapping.conditionField,
+                        dbToJenaMapping.conditionOperator != null ? dbToJenaMapping.conditionOperator.name() : MappingConditionOperator.NONE.name(),
+                        dbToJenaMapping.conditionValue
                 });
             }
         }
@@ -565,6 +942,41 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
                 ColumnInfo.COLUMN_TYPE_CCOMBO,
                 ActionIfNull.names()  // combo-box options
         );
+        final ColumnInfo ciUriTemplate = new ColumnInfo(
+                BaseMessages.getString(PKG, "JenaModelStepDialog.UriTemplate"),
+                ColumnInfo.COLUMN_TYPE_TEXT,
+                false
+        );
+        final ColumnInfo ciSplitDelimiter = new ColumnInfo(
+                BaseMessages.getString(PKG, "JenaModelStepDialog.SplitDelimiter"),
+                ColumnInfo.COLUMN_TYPE_TEXT,
+                false
+        );
+        final ColumnInfo ciSplitRegex = new ColumnInfo(
+                BaseMessages.getString(PKG, "JenaModelStepDialog.SplitRegex"),
+                ColumnInfo.COLUMN_TYPE_CCOMBO,
+                skipNames  // combo-box options
+        );
+        final ColumnInfo ciSplitAsList = new ColumnInfo(
+                BaseMessages.getString(PKG, "JenaModelStepDialog.SplitAsList"),
+                ColumnInfo.COLUMN_TYPE_CCOMBO,
+                skipNames  // combo-box options
+        );
+        final ColumnInfo ciConditionField = new ColumnInfo(
+                BaseMessages.getString(PKG, "JenaModelStepDialog.ConditionField"),
+                ColumnInfo.COLUMN_TYPE_TEXT,
+                false
+        );
+        final ColumnInfo ciConditionOperator = new ColumnInfo(
+                BaseMessages.getString(PKG, "JenaModelStepDialog.ConditionOperator"),
+                ColumnInfo.COLUMN_TYPE_CCOMBO,
+                MappingConditionOperator.names()  // combo-box options
+        );
+        final ColumnInfo ciConditionValue = new ColumnInfo(
+                BaseMessages.getString(PKG, "JenaModelStepDialog.ConditionValue"),
+                ColumnInfo.COLUMN_TYPE_TEXT,
+                false
+        );
 
         ciRdfPropertyType.setSelectionAdapter(new SelectionListener() {
             @Override
@@ -592,7 +1004,14 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
                 ciRdfPropertyType,
                 ciSkip,
                 ciLanguage,
-                ciIfNull
+                ciIfNull,
+                ciUriTemplate,
+                ciSplitDelimiter,
+                ciSplitRegex,
+                ciSplitAsList,
+                ciConditionField,
+                ciConditionOperator,
+                ciConditionValue
         };
 
         final TableView wMappingsTableView = new TableView(
@@ -674,9 +1093,14 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
                 .result();
         wRemoveBNodeButton.setLayoutData(fdRemoveBNodeButton);
 
+        // add URI minting
+        final UriMintingControls wBNodeUriMintingControls = createUriMintingControls(wTabBNodeContents, wIdLabel);
+        bNodeUriMintingControls = Arrays.copyOf(bNodeUriMintingControls, bNodeUriMintingControls.length + 1);
+        bNodeUriMintingControls[bNodeUriMintingControls.length - 1] = wBNodeUriMintingControls;
+
         // add table
         final FormData fdTableMappings = new FormDataBuilder().fullWidth()
-                .top(wIdLabel, ELEMENT_SPACING)
+                .top(wBNodeUriMintingControls.wUriMintingFieldsTextField, ELEMENT_SPACING)
                 //.bottom(wGetFieldsButton, -ELEMENT_SPACING)
                 .result();
         final TableView wBNodeMappingsTableView = createMappingsTable(wTabBNodeContents, fdTableMappings,
@@ -716,52 +1140,308 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
         return bNodeTabId;
     }
 
-    static void addBNodeToRdfPropertyTypes(final TableView[] mappingsTables, final int bNodeTabId) {
-        if (mappingsTables != null) {
+    private UriMintingControls createUriMintingControls(final Composite parent, final Control top) {
+        final UriMintingControls controls = new UriMintingControls();
 
-            final Matcher mtcBlankNodeId = BLANK_NODE_ID_PATTERN.matcher("");
+        // URI minting label/combo
+        final Label wUriMintingLabel = new Label(parent, SWT.LEFT);
+        props.setLook(wUriMintingLabel);
+        wUriMintingLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.ComboUriMinting"));
+        final FormData fdUriMintingLabel = new FormDataBuilder().left()
+                .top(top, ELEMENT_SPACING)
+                .result();
+        wUriMintingLabel.setLayoutData(fdUriMintingLabel);
+
+        controls.wUriMintingCombo = new CCombo(parent, SWT.BORDER | SWT.READ_ONLY);
+        props.setLook(controls.wUriMintingCombo);
+        controls.wUriMintingCombo.setItems(UriMintingStrategy.names());
+        controls.wUriMintingCombo.setText(UriMintingStrategy.NONE.name());
+        final FormData fdUriMintingCombo = new FormDataBuilder().left()
+                .top(wUriMintingLabel, LABEL_SPACING)
+                .width(MEDIUM_FIELD)
+                .result();
+        controls.wUriMintingCombo.setLayoutData(fdUriMintingCombo);
+
+        // URI minting prefix label/field
+        final Label wUriMintingPrefixLabel = new Label(parent, SWT.LEFT);
+        props.setLook(wUriMintingPrefixLabel);
+        wUriMintingPrefixLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.TextFieldUriMintingPrefix"));
+        final FormData fdUriMintingPrefixLabel = new FormDataBuilder().left()
+                .top(controls.wUriMintingCombo, ELEMENT_SPACING)
+                .result();
+        wUriMintingPrefixLabel.setLayoutData(fdUriMintingPrefixLabel);
 
+        controls.wUriMintingPrefixTextField = new TextVar(transMeta, parent, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(controls.wUriMintingPrefixTextField);
+        final FormData fdUriMintingPrefixTextField = new FormDataBuilder().left()
+                .top(wUriMintingPrefixLabel, LABEL_SPACING)
+                .width(LARGE_FIELD)
+                .result();
+        controls.wUriMintingPrefixTextField.setLayoutData(fdUriMintingPrefixTextField);
+
+        // URI minting fields label/field
+        final Label wUriMintingFieldsLabel = new Label(parent, SWT.LEFT);
+        props.setLook(wUriMintingFieldsLabel);
+        wUriMintingFieldsLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.TextFieldUriMintingFields"));
+        final FormData fdUriMintingFieldsLabel = new FormDataBuilder().left()
+                .top(controls.wUriMintingPrefixTextField, ELEMENT_SPACING)
+                .result();
+        wUriMintingFieldsLabel.setLayoutData(fdUriMintingFieldsLabel);
+
+        controls.wUriMintingFieldsTextField = new TextVar(transMeta, parent, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(controls.wUriMintingFieldsTextField);
+        final FormData fdUriMintingFieldsTextField = new FormDataBuilder().left()
+                .top(wUriMintingFieldsLabel, LABEL_SPACING)
+                .width(LARGE_FIELD)
+                .result();
+        controls.wUriMintingFieldsTextField.setLayoutData(fdUriMintingFieldsTextField);
+
+        return controls;
+    }
+
+    /**
+     * The controls for configuring how a URI is minted.
+     */
+    private static class UriMintingControls {
+        CCombo wUriMintingCombo;
+        TextVar wUriMintingPrefixTextField;
+        TextVar wUriMintingFieldsTextField;
+
+        void setData(final UriMintingStrategy uriMinting, final String uriMintingPrefix, final String uriMintingFields) {
+            wUriMintingCombo.setText((uriMinting != null ? uriMinting : UriMintingStrategy.NONE).name());
+            if (uriMintingPrefix != null) {
+                wUriMintingPrefixTextField.setText(uriMintingPrefix);
+            }
+            if (uriMintingFields != null) {
+                wUriMintingFieldsTextField.setText(uriMintingFields);
+            }
+        }
+
+        UriMintingStrategy getUriMinting() {
+            final String uriMintingName = wUriMintingCombo.getText();
+            return isNullOrEmpty(uriMintingName) ? UriMintingStrategy.NONE : UriMintingStrategy.valueOf(uriMintingName);
+        }
+    }
+
+    private SubjectControls createSubjectTab() {
+        final SubjectControls controls = new SubjectControls();
+
+        // create tab
+        controls.wTab = new CTabItem(wSubjectsTabFolder, SWT.NONE);
+        controls.wTab.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.TabSubject"));
+        final Composite wTabSubjectContents = new Composite(wSubjectsTabFolder, SWT.NONE);
+        props.setLook(wTabSubjectContents);
+        final FormLayout tabSubjectLayout = new FormLayout();
+        tabSubjectLayout.marginWidth = MARGIN_SIZE;
+        tabSubjectLayout.marginHeight = MARGIN_SIZE;
+        wTabSubjectContents.setLayout(tabSubjectLayout);
+        final FormData fdTabSubject = new FormDataBuilder().fullSize()
+                .result();
+        wTabSubjectContents.setLayoutData(fdTabSubject);
+        controls.wTab.setControl(wTabSubjectContents);
+
+        // name label/field
+        final Label wNameLabel = new Label(wTabSubjectContents, SWT.LEFT);
+        props.setLook(wNameLabel);
+        wNameLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.TextFieldSubjectName"));
+        final FormData fdNameLabel = new FormDataBuilder().left()
+                .top()
+                .result();
+        wNameLabel.setLayoutData(fdNameLabel);
+
+        controls.wNameTextField = new TextVar(transMeta, wTabSubjectContents, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(controls.wNameTextField);
+        final FormData fdNameTextField = new FormDataBuilder().left()
+                .top(wNameLabel, LABEL_SPACING)
+                .width(MEDIUM_FIELD)
+                .result();
+        controls.wNameTextField.setLayoutData(fdNameTextField);
+
+        // URI field label/combo
+        final Label wUriFieldLabel = new Label(wTabSubjectContents, SWT.LEFT);
+        props.setLook(wUriFieldLabel);
+        wUriFieldLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.TextFieldSubjectUri"));
+        final FormData fdUriFieldLabel = new FormDataBuilder().left()
+                .top(controls.wNameTextField, ELEMENT_SPACING)
+                .result();
+        wUriFieldLabel.setLayoutData(fdUriFieldLabel);
+
+        controls.wUriFieldCombo = new ComboVar(transMeta, wTabSubjectContents, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(controls.wUriFieldCombo);
+        final FormData fdUriFieldCombo = new FormDataBuilder().left()
+                .top(wUriFieldLabel, LABEL_SPACING)
+                .width(LARGE_FIELD)
+                .result();
+        controls.wUriFieldCombo.setLayoutData(fdUriFieldCombo);
+
+        final Button wGetUriFieldButton = new Button(wTabSubjectContents, SWT.PUSH);
+        wGetUriFieldButton.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.GetFieldsButton"));
+        final FormData fdGetUriFieldButton = new FormDataBuilder().left(controls.wUriFieldCombo, LABEL_SPACING)
+                .top(wUriFieldLabel, LABEL_SPACING)
+                .result();
+        wGetUriFieldButton.setLayoutData(fdGetUriFieldButton);
+
+        // URI template label/field
+        final Label wUriTemplateLabel = new Label(wTabSubjectContents, SWT.LEFT);
+        props.setLook(wUriTemplateLabel);
+        wUriTemplateLabel.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.TextFieldSubjectUriTemplate"));
+        final FormData fdUriTemplateLabel = new FormDataBuilder().left()
+                .top(controls.wUriFieldCombo, ELEMENT_SPACING)
+                .result();
+        wUriTemplateLabel.setLayoutData(fdUriTemplateLabel);
+
+        controls.wUriTemplateTextField = new TextVar(transMeta, wTabSubjectContents, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(controls.wUriTemplateTextField);
+        final FormData fdUriTemplateTextField = new FormDataBuilder().left()
+                .top(wUriTemplateLabel, LABEL_SPACING)
+                .width(LARGE_FIELD)
+                .result();
+        controls.wUriTemplateTextField.setLayoutData(fdUriTemplateTextField);
+
+        // add URI minting
+        controls.uriMintingControls = createUriMintingControls(wTabSubjectContents, controls.wUriTemplateTextField);
+
+        // add buttons
+        final Button wGetFieldsButton = new Button(wTabSubjectContents, SWT.PUSH);
+        wGetFieldsButton.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.GetFieldsButton"));
+        final FormData fdTableGetFieldsButton = new FormDataBuilder().right()
+                .bottom()
+                .result();
+        wGetFieldsButton.setLayoutData(fdTableGetFieldsButton);
+
+        final Button wRemoveSubjectButton = new Button(wTabSubjectContents, SWT.PUSH);
+        wRemoveSubjectButton.setText(BaseMessages.getString(PKG, "JenaModelStepDialog.RemoveSubjectButton"));
+        final FormData fdRemoveSubjectButton = new FormDataBuilder().right(wGetFieldsButton, -LABEL_SPACING)
+                .bottom()
+                .result();
+        wRemoveSubjectButton.setLayoutData(fdRemoveSubjectButton);
+
+        // add table
+        final FormData fdTableMappings = new FormDataBuilder().fullWidth()
+                .top(controls.uriMintingControls.wUriMintingFieldsTextField, ELEMENT_SPACING)
+                .bottom(wGetFieldsButton, -ELEMENT_SPACING)
+                .result();
+        controls.wMappingsTableView = createMappingsTable(wTabSubjectContents, fdTableMappings, lsMappingsTableModify);
+
+        subjectControls.add(controls);
+
+        // add listeners
+        controls.wNameTextField.addModifyListener(new ModifyListener() {
+            @Override
+            public void modifyText(final ModifyEvent modifyEvent) {
+                final String name = controls.wNameTextField.getText();
+                controls.wTab.setText(isNullOrEmpty(name) ? BaseMessages.getString(PKG, "JenaModelStepDialog.TabSubject") : name);
+            }
+        });
+
+        wGetUriFieldButton.addListener(SWT.Selection, new Listener() {
+            @Override
+            public void handleEvent(final Event event) {
+                getFieldsFromPrevious(controls.wUriFieldCombo, transMeta, stepMeta);
+            }
+        });
+
+        wRemoveSubjectButton.addListener(SWT.Selection, new Listener() {
+            @Override
+            public void handleEvent(final Event event) {
+                subjectControls.remove(controls);
+                controls.wTab.dispose();
+            }
+        });
+
+        wGetFieldsButton.addListener(SWT.Selection, new Listener() {
+            @Override
+            public void handleEvent(final Event event) {
+                getFieldsFromPrevious(transMeta, stepMeta, controls.wMappingsTableView,
+                        1,
+                        new int[]{1},
+                        new int[]{},
+                        -1,
+                        -1,
+                        null);
+            }
+        });
+
+        // select this tab
+        wSubjectsTabFolder.setSelection(controls.wTab);
+
+        return controls;
+    }
+
+    /**
+     * The controls of a subject tab.
+     */
+    private static class SubjectControls {
+        CTabItem wTab;
+        TextVar wNameTextField;
+        ComboVar wUriFieldCombo;
+        TextVar wUriTemplateTextField;
+        UriMintingControls uriMintingControls;
+        TableView wMappingsTableView;
+
+        void setData(final JenaModelStepMeta.SubjectMapping subjectMapping) {
+            if (subjectMapping.name != null) {
+                wNameTextField.setText(subjectMapping.name);
+            }
+            if (subjectMapping.uriField != null) {
+                wUriFieldCombo.setText(subjectMapping.uriField);
+            }
+            if (subjectMapping.uriTemplate != null) {
+                wUriTemplateTextField.setText(subjectMapping.uriTemplate);
+            }
+            uriMintingControls.setData(subjectMapping.uriMinting, subjectMapping.uriMintingPrefix,
+                    subjectMapping.uriMintingFields);
+            getDbToJenaMappingTableData(subjectMapping.dbToJenaMappings, wMappingsTableView);
+        }
+    }
+
+    static void addBNodeToRdfPropertyTypes(final TableView[] mappingsTables, final int bNodeTabId) {
+        if (mappingsTables != null) {
             for (int i = 0; i < mappingsTables.length; i++) {
                 if (bNodeTabId != i - 1) {  // don't add a bNodeId to RDF Property Types in the bNode tab that created it!
-                    final TableView mappingsTable = mappingsTables[i];
-
-                    final ColumnInfo ciRdfPropertyTypes = mappingsTable.getColumns()[2];
-                    final String[] rdfPropertyTypes = ciRdfPropertyTypes.getComboValues();
+                    addBNodeToRdfPropertyTypes(mappingsTables[i], bNodeTabId);
+                }
+            }
+        }
+    }
 
-                    int pivotIdx = -1;
-                    for (int j = 0; j < rdfPropertyTypes.length; j++) {
+    static void addBNodeToRdfPropertyTypes(final TableView mappingsTable, final int bNodeTabId) {
+        final Matcher mtcBlankNodeId = BLANK_NODE_ID_PATTERN.matcher("");
 
-                        pivotIdx = j;
+        final ColumnInfo ciRdfPropertyTypes = mappingsTable.getColumns()[2];
+        final String[] rdfPropertyTypes = ciRdfPropertyTypes.getComboValues();
 
-                        final String rdfPropertyType = rdfPropertyTypes[j];
-                        if (rdfPropertyType.equals(RESOURCE_DATA_TYPE)) {
-                            break;
-                        }
+        int pivotIdx = -1;
+        for (int j = 0; j < rdfPropertyTypes.length; j++) {
 
-                        mtcBlankNodeId.reset(rdfPropertyType);
-                        if (mtcBlankNodeId.matches()) {
-                            final int bNodeId = Integer.parseInt(mtcBlankNodeId.group(1));
-                            if (bNodeId > bNodeTabId) {
-                                break;
-                            } else if (bNodeId == bNodeTabId) {
-                                pivotIdx = -1;  // entry already exists
-                                break;
-                            }
-                        }
-                    }
+            pivotIdx = j;
 
-                    if (pivotIdx > -1) {
-                        final String[] newRdfPropertyTypes = new String[rdfPropertyTypes.length + 1];
-                        System.arraycopy(rdfPropertyTypes, 0, newRdfPropertyTypes, 0, pivotIdx);
-                        newRdfPropertyTypes[pivotIdx] = BLANK_NODE_NAME + ":" + bNodeTabId;
-                        final int destIdx = pivotIdx + 1;
-                        System.arraycopy(rdfPropertyTypes, pivotIdx, newRdfPropertyTypes, destIdx, newRdfPropertyTypes.length - destIdx);
+            final String rdfPropertyType = rdfPropertyTypes[j];
+            if (rdfPropertyType.equals(RESOURCE_DATA_TYPE)) {
+                break;
+            }
 
-                        ciRdfPropertyTypes.setComboValues(newRdfPropertyTypes);
-                    }
+            mtcBlankNodeId.reset(rdfPropertyType);
+            if (mtcBlankNodeId.matches()) {
+                final int bNodeId = Integer.parseInt(mtcBlankNodeId.group(1));
+                if (bNodeId > bNodeTabId) {
+                    break;
+                } else if (bNodeId == bNodeTabId) {
+                    pivotIdx = -1;  // entry already exists
+                    break;
                 }
             }
         }
+
+        if (pivotIdx > -1) {
+            final String[] newRdfPropertyTypes = new String[rdfPropertyTypes.length + 1];
+            System.arraycopy(rdfPropertyTypes, 0, newRdfPropertyTypes, 0, pivotIdx);
+            newRdfPropertyTypes[pivotIdx] = BLANK_NODE_NAME + ":" + bNodeTabId;
+            final int destIdx = pivotIdx + 1;
+            System.arraycopy(rdfPropertyTypes, pivotIdx, newRdfPropertyTypes, destIdx, newRdfPropertyTypes.length - destIdx);
+
+            ciRdfPropertyTypes.setComboValues(newRdfPropertyTypes);
+        }
     }
 
     private int removeBNodeTab(final int tabIndex) {
@@ -774,6 +1454,13 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
 
         // calculate the bNode ID
         final int bNodeTabId = tabIndex - 1;
+
+        // remove the URI minting controls for the bNodeTab
+        final UriMintingControls[] newBNodeUriMintingControls = new UriMintingControls[bNodeUriMintingControls.length - 1];
+        System.arraycopy(bNodeUriMintingControls, 0, newBNodeUriMintingControls, 0, bNodeTabId);
+        System.arraycopy(bNodeUriMintingControls, bNodeTabId + 1, newBNodeUriMintingControls, bNodeTabId, newBNodeUriMintingControls.length - bNodeTabId);
+        bNodeUriMintingControls = newBNodeUriMintingControls;
+
         return bNodeTabId;
     }
 
@@ -819,8 +1506,7 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
 
             final Matcher mtcBlankNodeId = BLANK_NODE_ID_PATTERN.matcher("");
 
-            for (int i = 0; i < mappingsTables.length; i++) {
-                final TableView mappingsTable = mappingsTables[i];
+            for (final TableView mappingsTable : getAllMappingsTables()) {
 
                 final ColumnInfo ciRdfPropertyTypes = mappingsTable.getColumns()[2];
                 final String[] rdfPropertyTypes = ciRdfPropertyTypes.getComboValues();
@@ -866,8 +1552,7 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
 
             final Matcher mtcBlankNodeId = BLANK_NODE_ID_PATTERN.matcher("");
 
-            for (int i = 0; i < mappingsTables.length; i++) {
-                final TableView mappingsTable = mappingsTables[i];
+            for (final TableView mappingsTable : getAllMappingsTables()) {
 
                 final int rows = mappingsTable.getItemCount();
 
@@ -893,6 +1578,20 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
         }
     }
 
+    /**
+     * Get the mappings tables of both the resource and bNode tabs,
+     * and of the subject tabs.
+     *
+     * @return all of the mappings tables
+     */
+    private TableView[] getAllMappingsTables() {
+        final TableView[] allMappingsTables = Arrays.copyOf(mappingsTables, mappingsTables.length + subjectControls.size());
+        for (int i = 0; i < subjectControls.size(); i++) {
+            allMappingsTables[mappingsTables.length + i] = subjectControls.get(i).wMappingsTableView;
+        }
+        return allMappingsTables;
+    }
+
     private void cancel() {
         dispose();
     }
@@ -912,6 +1611,10 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
         meta.setTargetFieldName(wTargetTextField.getText());
         meta.setRemoveSelectedFields(wRemoveSelectedCheckbox.getSelection());
         meta.setResourceUriField(wResourceUriCombo.getText());
+        meta.setResourceUriTemplate(wResourceUriTemplateTextField.getText());
+        meta.setResourceUriMinting(wResourceUriMintingControls.getUriMinting());
+        meta.setResourceUriMintingPrefix(wResourceUriMintingControls.wUriMintingPrefixTextField.getText());
+        meta.setResourceUriMintingFields(wResourceUriMintingControls.wUriMintingFieldsTextField.getText());
 
         final Map<String, String> namespaces = new LinkedHashMap<>();
         final int namespacesLen = wNamespacesTableView.getItemCount();
@@ -924,6 +1627,19 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
         }
         meta.setNamespaces(namespaces);
 
+        meta.setDirectToStream(wDirectToStreamCheckbox.getSelection());
+        meta.setStreamFilename(wStreamFilenameTextField.getText());
+        meta.setStreamFormat(wStreamFormatCombo.getText());
+        meta.setBatchSize(Const.toInt(wBatchSizeTextField.getText(), 1));
+        meta.setBatchKeyField(wBatchKeyFieldCombo.getText());
+        meta.setWorkerThreads(Const.toInt(wWorkerThreadsTextField.getText(), 0));
+        meta.setMaxInFlightRows(Const.toInt(wMaxInFlightRowsTextField.getText(), 0));
+        meta.setNodeCacheSize(Const.toInt(wNodeCacheSizeTextField.getText(), 0));
+        meta.setDateTimeZone(wDateTimeZoneTextField.getText());
+        meta.setValidateXmlLiterals(wValidateXmlLiteralsCheckbox.getSelection());
+        final String iriValidationName = wIriValidationCombo.getText();
+        meta.setIriValidation(isNullOrEmpty(iriValidationName) ? IriValidation.OFF : IriValidation.valueOf(iriValidationName));
+
         // both user-specified namespaces and internal namespaces
         final Map<String, String> allNamespaces = new LinkedHashMap<>(namespaces);
         allNamespaces.put(BLANK_NODE_NAME, BLANK_NODE_INTERNAL_URI);
@@ -936,9 +1652,27 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
             final JenaModelStepMeta.BlankNodeMapping blankNodeMapping = new JenaModelStepMeta.BlankNodeMapping();
             blankNodeMapping.id = i;
             blankNodeMapping.dbToJenaMappings = dbToJenaMappingsDataFromTable(mappingsTables[i + 1], allNamespaces);
+            blankNodeMapping.uriMinting = bNodeUriMintingControls[i].getUriMinting();
+            blankNodeMapping.uriMintingPrefix = Util.nullIfEmpty(bNodeUriMintingControls[i].wUriMintingPrefixTextField.getText());
+            blankNodeMapping.uriMintingFields = Util.nullIfEmpty(bNodeUriMintingControls[i].wUriMintingFieldsTextField.getText());
             blankNodeMappings[i] = blankNodeMapping;
         }
         meta.setBlankNodeMappings(blankNodeMappings);
+
+        final JenaModelStepMeta.SubjectMapping[] subjectMappings = new JenaModelStepMeta.SubjectMapping[subjectControls.size()];
+        for (int i = 0; i < subjectMappings.length; i++) {
+            final SubjectControls controls = subjectControls.get(i);
+            final JenaModelStepMeta.SubjectMapping subjectMapping = new JenaModelStepMeta.SubjectMapping();
+            subjectMapping.name = controls.wNameTextField.getText();
+            subjectMapping.uriField = Util.nullIfEmpty(controls.wUriFieldCombo.getText());
+            subjectMapping.uriTemplate = Util.nullIfEmpty(controls.wUriTemplateTextField.getText());
+            subjectMapping.uriMinting = controls.uriMintingControls.getUriMinting();
+            subjectMapping.uriMintingPrefix = Util.nullIfEmpty(controls.uriMintingControls.wUriMintingPrefixTextField.getText());
+            subjectMapping.uriMintingFields = Util.nullIfEmpty(controls.uriMintingControls.wUriMintingFieldsTextField.getText());
+            subjectMapping.dbToJenaMappings = dbToJenaMappingsDataFromTable(controls.wMappingsTableView, allNamespaces);
+            subjectMappings[i] = subjectMapping;
+        }
+        meta.setSubjectMappings(subjectMappings);
     }
 
     private JenaModelStepMeta.DbToJenaMapping[] dbToJenaMappingsDataFromTable(final TableView tableView,
@@ -967,6 +1701,14 @@ public class JenaModelStepDialog extends BaseStepDialog implements StepDialogInt
             } else {
                 dbToJenaMapping.actionIfNull = ActionIfNull.valueOf(actionIfNullName);
             }
+            dbToJenaMapping.uriTemplate = Util.nullIfEmpty(tableView.getItem(i, 7));
+            dbToJenaMapping.splitDelimiter = Util.nullIfEmpty(tableView.getItem(i, 8));
+            dbToJenaMapping.splitRegex = tableView.getItem(i, 9).equals(BaseMessages.getString(PKG, "JenaModelStepDialog.SkipYes"));
+            dbToJenaMapping.splitAsList = tableView.getItem(i, 10).equals(BaseMessages.getString(PKG, "JenaModelStepDialog.SkipYes"));
+            dbToJenaMapping.conditionField = Util.nullIfEmpty(tableView.getItem(i, 11));
+            final String conditionOperatorName = tableView.getItem(i, 12);
+            dbToJenaMapping.conditionOperator = isNullOrEmpty(conditionOperatorName) ? MappingConditionOperator.NONE : MappingConditionOperator.valueOf(conditionOperatorName);
+            dbToJenaMapping.conditionValue = Util.nullIfEmpty(tableView.getItem(i, 13));
             dbToJenaMappings[mappingsCount++] = dbToJenaMapping;
         }
 
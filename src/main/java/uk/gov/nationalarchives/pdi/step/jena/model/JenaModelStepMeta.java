@@ -31,8 +31,10 @@ import uk.gov.nationalarchives.pdi.step.jena.Util;
 import org.pentaho.di.core.annotations.Step;
 import org.pentaho.di.core.CheckResult;
 import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.*;
+import org.pentaho.di.core.logging.LogChannel;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMeta;
 import org.pentaho.di.core.row.ValueMetaInterface;
@@ -91,10 +93,34 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
     private static final String ELEM_NAME_RDF_TYPE = "rdfType";
     private static final String ELEM_NAME_SKIP = "skip";
     private static final String ELEM_NAME_LANGUAGE = "language";
+    private static final String ELEM_NAME_URI_TEMPLATE = "uriTemplate";
+    private static final String ELEM_NAME_SPLIT_DELIMITER = "splitDelimiter";
+    private static final String ELEM_NAME_SPLIT_REGEX = "splitRegex";
+    private static final String ELEM_NAME_SPLIT_AS_LIST = "splitAsList";
+    private static final String ELEM_NAME_CONDITION_FIELD = "conditionField";
+    private static final String ELEM_NAME_CONDITION_OPERATOR = "conditionOperator";
+    private static final String ELEM_NAME_CONDITION_VALUE = "conditionValue";
+    private static final String ELEM_NAME_URI_MINTING = "uriMinting";
+    private static final String ELEM_NAME_URI_MINTING_PREFIX = "uriMintingPrefix";
+    private static final String ELEM_NAME_URI_MINTING_FIELDS = "uriMintingFields";
     private static final String ELEM_NAME_ACTION_IF_NULL = "actionIfNull";
     private static final String ELEM_NAME_BLANK_NODE_MAPPINGS = "blankNodeMappings";
     private static final String ELEM_NAME_BLANK_NODE_MAPPING = "blankNodeMapping";
     private static final String ELEM_NAME_ID = "id";
+    private static final String ELEM_NAME_SUBJECT_MAPPINGS = "subjectMappings";
+    private static final String ELEM_NAME_SUBJECT_MAPPING = "subjectMapping";
+    private static final String ELEM_NAME_NAME = "name";
+    private static final String ELEM_NAME_DIRECT_TO_STREAM = "directToStream";
+    private static final String ELEM_NAME_STREAM_FILENAME = "streamFilename";
+    private static final String ELEM_NAME_STREAM_FORMAT = "streamFormat";
+    private static final String ELEM_NAME_BATCH_SIZE = "batchSize";
+    private static final String ELEM_NAME_BATCH_KEY_FIELD = "batchKeyField";
+    private static final String ELEM_NAME_WORKER_THREADS = "workerThreads";
+    private static final String ELEM_NAME_MAX_IN_FLIGHT_ROWS = "maxInFlightRows";
+    private static final String ELEM_NAME_NODE_CACHE_SIZE = "nodeCacheSize";
+    private static final String ELEM_NAME_DATE_TIME_ZONE = "dateTimeZone";
+    private static final String ELEM_NAME_VALIDATE_XML_LITERALS = "validateXmlLiterals";
+    private static final String ELEM_NAME_IRI_VALIDATION = "iriValidation";
     // </editor-fold>
 
     // <editor-fold desc="settings">
@@ -102,6 +128,26 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
     private boolean removeSelectedFields;
     private String resourceUriField;
 
+    /**
+     * When set, the URI of the resource is created from this URI template,
+     * e.g. {@code http://example.com/{series}/{piece}}, instead of
+     * from {@link #resourceUriField}.
+     */
+    private String resourceUriTemplate;
+
+    /**
+     * When not {@link UriMintingStrategy#NONE}, the URI of the resource is
+     * minted within the step, instead of from {@link #resourceUriTemplate}
+     * or {@link #resourceUriField}.
+     */
+    private UriMintingStrategy resourceUriMinting = UriMintingStrategy.NONE;
+    private String resourceUriMintingPrefix;
+
+    /**
+     * Comma separated names of the fields to hash for {@link UriMintingStrategy#HASH}.
+     */
+    private String resourceUriMintingFields;
+
     /**
      * Namespace mapping from prefix->uri
      */
@@ -117,6 +163,48 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
         String language;
         ActionIfNull actionIfNull;
 
+        /**
+         * For a Resource, a URI template for the object,
+         * e.g. {@code http://example.com/{series}/{piece}}.
+         */
+        @Nullable
+        String uriTemplate;
+
+        /**
+         * When set, the value of the field is split into multiple values
+         * by this delimiter, and each value becomes an object of the property.
+         */
+        @Nullable
+        String splitDelimiter;
+
+        /**
+         * True if {@link #splitDelimiter} is a regular expression.
+         */
+        boolean splitRegex;
+
+        /**
+         * True if the split values become a single rdf:List
+         * object, rather than one object per value.
+         */
+        boolean splitAsList;
+
+        /**
+         * The field of the condition under which the property
+         * is written, see {@link #conditionOperator}.
+         */
+        @Nullable
+        String conditionField;
+
+        /**
+         * When not {@link MappingConditionOperator#NONE}, the property is only
+         * written for those rows where the value of {@link #conditionField}
+         * satisfies this operator and {@link #conditionValue}.
+         */
+        MappingConditionOperator conditionOperator = MappingConditionOperator.NONE;
+
+        @Nullable
+        String conditionValue;
+
         @Override
         public Object clone() {
             return copy();
@@ -130,6 +218,13 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
             copy.skip = skip;
             copy.language = language;
             copy.actionIfNull = actionIfNull;
+            copy.uriTemplate = uriTemplate;
+            copy.splitDelimiter = splitDelimiter;
+            copy.splitRegex = splitRegex;
+            copy.splitAsList = splitAsList;
+            copy.conditionField = conditionField;
+            copy.conditionOperator = conditionOperator;
+            copy.conditionValue = conditionValue;
             return copy;
         }
     }
@@ -242,6 +337,14 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
         int id;
         DbToJenaMapping[] dbToJenaMappings;
 
+        /**
+         * When not {@link UriMintingStrategy#NONE}, a URI is minted
+         * for the node instead of creating a blank node.
+         */
+        UriMintingStrategy uriMinting = UriMintingStrategy.NONE;
+        @Nullable String uriMintingPrefix;
+        @Nullable String uriMintingFields;
+
         @Override
         public int compareTo(final BlankNodeMapping other) {
             return this.id - other.id;
@@ -256,12 +359,107 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
             final BlankNodeMapping copy = new BlankNodeMapping();
             copy.id = id;
             copy.dbToJenaMappings = JenaModelStepMeta.copy(dbToJenaMappings);
+            copy.uriMinting = uriMinting;
+            copy.uriMintingPrefix = uriMintingPrefix;
+            copy.uriMintingFields = uriMintingFields;
+            return copy;
+        }
+    }
+
+    /**
+     * A further subject described by each row, in addition to the resource,
+     * with its own URI and mappings. All subjects are written into the same model.
+     */
+    static class SubjectMapping implements Cloneable {
+        String name;
+        @Nullable String uriField;
+        @Nullable String uriTemplate;
+        UriMintingStrategy uriMinting = UriMintingStrategy.NONE;
+        @Nullable String uriMintingPrefix;
+        @Nullable String uriMintingFields;
+        DbToJenaMapping[] dbToJenaMappings;
+
+        @Override
+        public Object clone() {
+            return copy();
+        }
+
+        public SubjectMapping copy() {
+            final SubjectMapping copy = new SubjectMapping();
+            copy.name = name;
+            copy.uriField = uriField;
+            copy.uriTemplate = uriTemplate;
+            copy.uriMinting = uriMinting;
+            copy.uriMintingPrefix = uriMintingPrefix;
+            copy.uriMintingFields = uriMintingFields;
+            copy.dbToJenaMappings = JenaModelStepMeta.copy(dbToJenaMappings);
             return copy;
         }
     }
 
     private DbToJenaMapping[] dbToJenaMappings;
     private BlankNodeMapping[] blankNodeMappings;
+    private SubjectMapping[] subjectMappings;
+
+    /**
+     * When true, triples are written directly to {@link #streamFilename}
+     * instead of creating a Jena Model for each row.
+     */
+    private boolean directToStream;
+    private String streamFilename;
+    private String streamFormat;
+
+    /**
+     * The maximum number of consecutive rows to write into each Jena Model,
+     * a value of 0 means that there is no maximum.
+     */
+    private int batchSize;
+
+    /**
+     * When set, consecutive rows with the same value for this field
+     * are written into the same Jena Model.
+     */
+    private String batchKeyField;
+
+    /**
+     * The number of threads used to create the RDF for rows in parallel,
+     * a value of 0 or 1 means that rows are processed on the step's own thread.
+     */
+    private int workerThreads;
+
+    /**
+     * The maximum number of rows that may be waiting to be output
+     * when using {@link #workerThreads}, a value of 0 means
+     * four times the number of worker threads.
+     */
+    private int maxInFlightRows;
+
+    /**
+     * The maximum number of IRI and Literal Nodes to cache for
+     * reuse across rows, a value of 0 disables the cache.
+     */
+    private int nodeCacheSize;
+
+    /**
+     * The timezone (e.g. Europe/London, or UTC) used when converting
+     * dates to xsd:date and xsd:dateTime, an empty value means UTC,
+     * and {@link MappingPlan#SYSTEM_TIME_ZONE} means the default
+     * timezone of the JVM.
+     */
+    private String dateTimeZone;
+
+    /**
+     * When false, the lexical form of each rdf:XMLLiteral is not
+     * checked to be well-formed XML, which for large documents
+     * saves parsing each of them in full.
+     */
+    private boolean validateXmlLiterals;
+
+    /**
+     * How strictly the IRIs created from the values
+     * of each row are checked.
+     */
+    private IriValidation iriValidation = IriValidation.OFF;
     // </editor-fold>
 
 
@@ -274,12 +472,28 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
         targetFieldName = "";
         removeSelectedFields = false;
         resourceUriField = "";
+        resourceUriTemplate = "";
+        resourceUriMinting = UriMintingStrategy.NONE;
+        resourceUriMintingPrefix = "";
+        resourceUriMintingFields = "";
         namespaces = new LinkedHashMap<>();
         namespaces.put(Rdf11.RDF_PREFIX, RDF.uri);
         namespaces.put(Rdf11.RDF_SCHEMA_PREFIX, RDFS.uri);
         namespaces.put(Rdf11.XSD_PREFIX, XSD.NS);
         dbToJenaMappings = new DbToJenaMapping[0];
         blankNodeMappings = new BlankNodeMapping[0];
+        subjectMappings = new SubjectMapping[0];
+        directToStream = false;
+        streamFilename = "";
+        streamFormat = Rdf11.DEFAULT_STREAMING_SERIALIZATION_FORMAT;
+        batchSize = 1;
+        batchKeyField = "";
+        workerThreads = 0;
+        maxInFlightRows = 0;
+        nodeCacheSize = 0;
+        dateTimeZone = "";
+        validateXmlLiterals = true;
+        iriValidation = IriValidation.OFF;
     }
 
     @Override
@@ -300,6 +514,11 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
         } else {
             retval.blankNodeMappings = new BlankNodeMapping[0];
         }
+        if (isNotEmpty(subjectMappings)) {
+            retval.subjectMappings = JenaModelStepMeta.copy(subjectMappings);
+        } else {
+            retval.subjectMappings = new SubjectMapping[0];
+        }
         return retval;
     }
 
@@ -311,6 +530,10 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
             .append(XMLHandler.addTagValue(ELEM_NAME_REMOVE_SELECTED_FIELDS, Boolean.toString(removeSelectedFields)))
             .append(XMLHandler.openTag(ELEM_NAME_RESOURCE_URI))
                 .append(XMLHandler.addTagValue(ELEM_NAME_FIELD_NAME, resourceUriField))
+                .append(XMLHandler.addTagValue(ELEM_NAME_URI_TEMPLATE, resourceUriTemplate))
+                .append(XMLHandler.addTagValue(ELEM_NAME_URI_MINTING, resourceUriMinting.name()))
+                .append(XMLHandler.addTagValue(ELEM_NAME_URI_MINTING_PREFIX, resourceUriMintingPrefix))
+                .append(XMLHandler.addTagValue(ELEM_NAME_URI_MINTING_FIELDS, resourceUriMintingFields))
             .append(XMLHandler.closeTag(ELEM_NAME_RESOURCE_URI));
 
         builder.append(XMLHandler.openTag(ELEM_NAME_NAMESPACES));
@@ -333,10 +556,42 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
                     addQNameValue(builder, idQName);
                 builder.append(XMLHandler.closeTag(ELEM_NAME_ID));
                 getDbToJenaMappingsXML(blankNodeMapping.dbToJenaMappings, builder);
+                builder.append(XMLHandler.addTagValue(ELEM_NAME_URI_MINTING, blankNodeMapping.uriMinting.name()));
+                builder.append(XMLHandler.addTagValue(ELEM_NAME_URI_MINTING_PREFIX, blankNodeMapping.uriMintingPrefix));
+                builder.append(XMLHandler.addTagValue(ELEM_NAME_URI_MINTING_FIELDS, blankNodeMapping.uriMintingFields));
             builder.append(XMLHandler.closeTag(ELEM_NAME_BLANK_NODE_MAPPING));
         }
         builder.append(XMLHandler.closeTag(ELEM_NAME_BLANK_NODE_MAPPINGS));
 
+        builder.append(XMLHandler.openTag(ELEM_NAME_SUBJECT_MAPPINGS));
+        for (final SubjectMapping subjectMapping : subjectMappings) {
+            builder.append(XMLHandler.openTag(ELEM_NAME_SUBJECT_MAPPING));
+                builder.append(XMLHandler.addTagValue(ELEM_NAME_NAME, subjectMapping.name));
+                builder.append(XMLHandler.openTag(ELEM_NAME_RESOURCE_URI))
+                    .append(XMLHandler.addTagValue(ELEM_NAME_FIELD_NAME, subjectMapping.uriField))
+                    .append(XMLHandler.addTagValue(ELEM_NAME_URI_TEMPLATE, subjectMapping.uriTemplate))
+                    .append(XMLHandler.addTagValue(ELEM_NAME_URI_MINTING, subjectMapping.uriMinting.name()))
+                    .append(XMLHandler.addTagValue(ELEM_NAME_URI_MINTING_PREFIX, subjectMapping.uriMintingPrefix))
+                    .append(XMLHandler.addTagValue(ELEM_NAME_URI_MINTING_FIELDS, subjectMapping.uriMintingFields))
+                .append(XMLHandler.closeTag(ELEM_NAME_RESOURCE_URI));
+                getDbToJenaMappingsXML(subjectMapping.dbToJenaMappings, builder);
+            builder.append(XMLHandler.closeTag(ELEM_NAME_SUBJECT_MAPPING));
+        }
+        builder.append(XMLHandler.closeTag(ELEM_NAME_SUBJECT_MAPPINGS));
+
+        builder
+            .append(XMLHandler.addTagValue(ELEM_NAME_DIRECT_TO_STREAM, directToStream))
+            .append(XMLHandler.addTagValue(ELEM_NAME_STREAM_FILENAME, streamFilename))
+            .append(XMLHandler.addTagValue(ELEM_NAME_STREAM_FORMAT, streamFormat))
+            .append(XMLHandler.addTagValue(ELEM_NAME_BATCH_SIZE, batchSize))
+            .append(XMLHandler.addTagValue(ELEM_NAME_BATCH_KEY_FIELD, batchKeyField))
+            .append(XMLHandler.addTagValue(ELEM_NAME_WORKER_THREADS, workerThreads))
+            .append(XMLHandler.addTagValue(ELEM_NAME_MAX_IN_FLIGHT_ROWS, maxInFlightRows))
+            .append(XMLHandler.addTagValue(ELEM_NAME_NODE_CACHE_SIZE, nodeCacheSize))
+            .append(XMLHandler.addTagValue(ELEM_NAME_DATE_TIME_ZONE, dateTimeZone))
+            .append(XMLHandler.addTagValue(ELEM_NAME_VALIDATE_XML_LITERALS, validateXmlLiterals))
+            .append(XMLHandler.addTagValue(ELEM_NAME_IRI_VALIDATION, iriValidation.name()));
+
         return builder.toString();
     }
 
@@ -363,6 +618,18 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
 
                             .append(XMLHandler.addTagValue(ELEM_NAME_ACTION_IF_NULL, dbToJenaMapping.actionIfNull.name()))
 
+                            .append(XMLHandler.addTagValue(ELEM_NAME_URI_TEMPLATE, dbToJenaMapping.uriTemplate))
+
+                            .append(XMLHandler.addTagValue(ELEM_NAME_SPLIT_DELIMITER, dbToJenaMapping.splitDelimiter))
+
+                            .append(XMLHandler.addTagValue(ELEM_NAME_SPLIT_REGEX, dbToJenaMapping.splitRegex))
+
+                            .append(XMLHandler.addTagValue(ELEM_NAME_SPLIT_AS_LIST, dbToJenaMapping.splitAsList))
+
+                            .append(XMLHandler.addTagValue(ELEM_NAME_CONDITION_FIELD, dbToJenaMapping.conditionField))
+                            .append(XMLHandler.addTagValue(ELEM_NAME_CONDITION_OPERATOR, dbToJenaMapping.conditionOperator.name()))
+                            .append(XMLHandler.addTagValue(ELEM_NAME_CONDITION_VALUE, dbToJenaMapping.conditionValue))
+
                         .append(XMLHandler.closeTag(ELEM_NAME_DB_TO_JENA_MAPPING));
             }
         }
@@ -415,9 +682,20 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
             final Node resourceUriNode = XMLHandler.getSubNode(stepnode, ELEM_NAME_RESOURCE_URI);
             if (resourceUriNode == null) {
                 this.resourceUriField = "";
+                this.resourceUriTemplate = "";
+                this.resourceUriMinting = UriMintingStrategy.NONE;
+                this.resourceUriMintingPrefix = "";
+                this.resourceUriMintingFields = "";
             } else {
                 final String xResourceUriField = XMLHandler.getTagValue(resourceUriNode, ELEM_NAME_FIELD_NAME);
                 this.resourceUriField = xResourceUriField;
+                final String xResourceUriTemplate = XMLHandler.getTagValue(resourceUriNode, ELEM_NAME_URI_TEMPLATE);
+                this.resourceUriTemplate = xResourceUriTemplate != null ? xResourceUriTemplate : "";
+                this.resourceUriMinting = loadUriMintingStrategy(XMLHandler.getTagValue(resourceUriNode, ELEM_NAME_URI_MINTING));
+                final String xResourceUriMintingPrefix = XMLHandler.getTagValue(resourceUriNode, ELEM_NAME_URI_MINTING_PREFIX);
+                this.resourceUriMintingPrefix = xResourceUriMintingPrefix != null ? xResourceUriMintingPrefix : "";
+                final String xResourceUriMintingFields = XMLHandler.getTagValue(resourceUriNode, ELEM_NAME_URI_MINTING_FIELDS);
+                this.resourceUriMintingFields = xResourceUriMintingFields != null ? xResourceUriMintingFields : "";
             }
 
             final Node namespacesNode = XMLHandler.getSubNode(stepnode, ELEM_NAME_NAMESPACES);
@@ -479,6 +757,9 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
                         final BlankNodeMapping blankNodeMapping = new BlankNodeMapping();
                         blankNodeMapping.id = Integer.valueOf(idQName.getLocalPart());
                         blankNodeMapping.dbToJenaMappings = loadDbToJenaMappingsXML(blankNodeMappingNode);
+                        blankNodeMapping.uriMinting = loadUriMintingStrategy(XMLHandler.getTagValue(blankNodeMappingNode, ELEM_NAME_URI_MINTING));
+                        blankNodeMapping.uriMintingPrefix = XMLHandler.getTagValue(blankNodeMappingNode, ELEM_NAME_URI_MINTING_PREFIX);
+                        blankNodeMapping.uriMintingFields = XMLHandler.getTagValue(blankNodeMappingNode, ELEM_NAME_URI_MINTING_FIELDS);
 
                         this.blankNodeMappings[mappingsCount++] = blankNodeMapping;
                     }
@@ -489,6 +770,65 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
                 }
             }
             Arrays.sort(this.blankNodeMappings);  // just-in-case the incoming XML is not ordered correctly
+
+            final Node subjectMappingsNode = XMLHandler.getSubNode(stepnode, ELEM_NAME_SUBJECT_MAPPINGS);
+            if (subjectMappingsNode == null) {
+                this.subjectMappings = new SubjectMapping[0];
+            } else {
+                final List<Node> subjectMappingNodes = XMLHandler.getNodes(subjectMappingsNode, ELEM_NAME_SUBJECT_MAPPING);
+                final int len = subjectMappingNodes.size();
+                this.subjectMappings = new SubjectMapping[len];
+                for (int i = 0; i < len; i++) {
+                    final Node subjectMappingNode = subjectMappingNodes.get(i);
+
+                    final SubjectMapping subjectMapping = new SubjectMapping();
+                    subjectMapping.name = XMLHandler.getTagValue(subjectMappingNode, ELEM_NAME_NAME);
+                    final Node subjectUriNode = XMLHandler.getSubNode(subjectMappingNode, ELEM_NAME_RESOURCE_URI);
+                    if (subjectUriNode != null) {
+                        subjectMapping.uriField = XMLHandler.getTagValue(subjectUriNode, ELEM_NAME_FIELD_NAME);
+                        subjectMapping.uriTemplate = XMLHandler.getTagValue(subjectUriNode, ELEM_NAME_URI_TEMPLATE);
+                        subjectMapping.uriMinting = loadUriMintingStrategy(XMLHandler.getTagValue(subjectUriNode, ELEM_NAME_URI_MINTING));
+                        subjectMapping.uriMintingPrefix = XMLHandler.getTagValue(subjectUriNode, ELEM_NAME_URI_MINTING_PREFIX);
+                        subjectMapping.uriMintingFields = XMLHandler.getTagValue(subjectUriNode, ELEM_NAME_URI_MINTING_FIELDS);
+                    }
+                    subjectMapping.dbToJenaMappings = loadDbToJenaMappingsXML(subjectMappingNode);
+
+                    this.subjectMappings[i] = subjectMapping;
+                }
+            }
+
+            final String xDirectToStream = XMLHandler.getTagValue(stepnode, ELEM_NAME_DIRECT_TO_STREAM);
+            this.directToStream = xDirectToStream != null && xDirectToStream.equals("Y");
+
+            final String xStreamFilename = XMLHandler.getTagValue(stepnode, ELEM_NAME_STREAM_FILENAME);
+            this.streamFilename = xStreamFilename != null ? xStreamFilename : "";
+
+            final String xStreamFormat = XMLHandler.getTagValue(stepnode, ELEM_NAME_STREAM_FORMAT);
+            this.streamFormat = isNotEmpty(xStreamFormat) ? xStreamFormat : Rdf11.DEFAULT_STREAMING_SERIALIZATION_FORMAT;
+
+            final String xBatchSize = XMLHandler.getTagValue(stepnode, ELEM_NAME_BATCH_SIZE);
+            this.batchSize = Const.toInt(xBatchSize, 1);
+
+            final String xBatchKeyField = XMLHandler.getTagValue(stepnode, ELEM_NAME_BATCH_KEY_FIELD);
+            this.batchKeyField = xBatchKeyField != null ? xBatchKeyField : "";
+
+            final String xWorkerThreads = XMLHandler.getTagValue(stepnode, ELEM_NAME_WORKER_THREADS);
+            this.workerThreads = Const.toInt(xWorkerThreads, 0);
+
+            final String xMaxInFlightRows = XMLHandler.getTagValue(stepnode, ELEM_NAME_MAX_IN_FLIGHT_ROWS);
+            this.maxInFlightRows = Const.toInt(xMaxInFlightRows, 0);
+
+            final String xNodeCacheSize = XMLHandler.getTagValue(stepnode, ELEM_NAME_NODE_CACHE_SIZE);
+            this.nodeCacheSize = Const.toInt(xNodeCacheSize, 0);
+
+            final String xDateTimeZone = XMLHandler.getTagValue(stepnode, ELEM_NAME_DATE_TIME_ZONE);
+            this.dateTimeZone = xDateTimeZone != null ? xDateTimeZone : "";
+
+            final String xValidateXmlLiterals = XMLHandler.getTagValue(stepnode, ELEM_NAME_VALIDATE_XML_LITERALS);
+            this.validateXmlLiterals = xValidateXmlLiterals == null || xValidateXmlLiterals.equals("Y");
+
+            final String xIriValidation = XMLHandler.getTagValue(stepnode, ELEM_NAME_IRI_VALIDATION);
+            this.iriValidation = isNotEmpty(xIriValidation) ? IriValidation.valueOf(xIriValidation) : IriValidation.OFF;
         }
     }
 
@@ -531,7 +871,7 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
                     } else if (propertyNameSourceType == SourceType.FIELD) {
                         dbToJenaMapping.rdfPropertyNameSource = new RdfPropertyNameFieldSource(XMLHandler.getTagValue(propertyNameNode, ELEM_NAME_FIELD));
                     } else if (propertyNameSourceType == SourceType.VARIABLE) {
-                        dbToJenaMapping.rdfPropertyNameSource = new RdfPropertyNameFieldSource(XMLHandler.getTagValue(propertyNameNode, ELEM_NAME_VARIABLE));
+                        dbToJenaMapping.rdfPropertyNameSource = new RdfPropertyNameVariableSource(XMLHandler.getTagValue(propertyNameNode, ELEM_NAME_VARIABLE));
                     } else {
                         dbToJenaMapping.rdfPropertyNameSource = null;
                     }
@@ -552,6 +892,19 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
                         dbToJenaMapping.actionIfNull = ActionIfNull.WARN;
                     }
 
+                    dbToJenaMapping.uriTemplate = XMLHandler.getTagValue(dbToJenaMappingNode, ELEM_NAME_URI_TEMPLATE);
+
+                    dbToJenaMapping.splitDelimiter = XMLHandler.getTagValue(dbToJenaMappingNode, ELEM_NAME_SPLIT_DELIMITER);
+                    final String splitRegexNode = XMLHandler.getTagValue(dbToJenaMappingNode, ELEM_NAME_SPLIT_REGEX);
+                    dbToJenaMapping.splitRegex = splitRegexNode != null && splitRegexNode.equals("Y");
+                    final String splitAsListNode = XMLHandler.getTagValue(dbToJenaMappingNode, ELEM_NAME_SPLIT_AS_LIST);
+                    dbToJenaMapping.splitAsList = splitAsListNode != null && splitAsListNode.equals("Y");
+
+                    dbToJenaMapping.conditionField = XMLHandler.getTagValue(dbToJenaMappingNode, ELEM_NAME_CONDITION_FIELD);
+                    final String conditionOperatorName = XMLHandler.getTagValue(dbToJenaMappingNode, ELEM_NAME_CONDITION_OPERATOR);
+                    dbToJenaMapping.conditionOperator = isNullOrEmpty(conditionOperatorName) ? MappingConditionOperator.NONE : MappingConditionOperator.valueOf(conditionOperatorName);
+                    dbToJenaMapping.conditionValue = XMLHandler.getTagValue(dbToJenaMappingNode, ELEM_NAME_CONDITION_VALUE);
+
                     dbToJenaMappings[mappingsCount++] = dbToJenaMapping;
                 }
 
@@ -564,6 +917,14 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
         return dbToJenaMappings;
     }
 
+    private static UriMintingStrategy loadUriMintingStrategy(@Nullable final String uriMintingName) {
+        if (isNullOrEmpty(uriMintingName)) {
+            // default for backwards-compatibility with previous versions of our plugin
+            return UriMintingStrategy.NONE;
+        }
+        return UriMintingStrategy.valueOf(uriMintingName);
+    }
+
     private @Nullable QName getQNameValue(final Node node) {
         final String prefix = XMLHandler.getTagValue(node, ELEM_NAME_PREFIX);
         final String uri = XMLHandler.getTagValue(node, ELEM_NAME_URI);
@@ -605,7 +966,7 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
     public void getFields(final RowMetaInterface rowMeta, final String origin, final RowMetaInterface[] info, final StepMeta nextStep,
                           final VariableSpace space, final Repository repository, final IMetaStore metaStore) throws KettleStepException {
 
-        if (isNullOrEmpty(targetFieldName)) {
+        if (!directToStream && isNullOrEmpty(targetFieldName)) {
             throw new KettleStepException(BaseMessages.getString(PKG, "JenaModelStep.Error.TargetFieldUndefined"));
         }
 
@@ -625,10 +986,28 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
         }
 
         /**
-         * 2. Add the target field to the output rows
+         * 1a. Likewise remove the URI fields of any further subjects, and the fields that they map to RDF properties.
+         * NOTE: a field may be used by more than one subject, so it may already have been removed
+         */
+        if (removeSelectedFields && isNotEmpty(subjectMappings)) {
+            for (final SubjectMapping subjectMapping : subjectMappings) {
+                removeFieldIfPresent(rowMeta, subjectMapping.uriField);
+                if (isNotEmpty(subjectMapping.dbToJenaMappings)) {
+                    for (final DbToJenaMapping mapping : subjectMapping.dbToJenaMappings) {
+                        removeFieldIfPresent(rowMeta, mapping.fieldName);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 2. Add the target field to the output rows, unless we are writing directly to a stream
          * NOTE: it is important this is added last, as such
          * behaviour is relied on in {@link JenaModelStep#prepareForReMap(JenaModelStepMeta, JenaModelStepData)}.
          */
+        if (directToStream) {
+            return;
+        }
         final String expandedTargetFieldName = space.environmentSubstitute(targetFieldName);
         final ValueMetaInterface targetFieldValueMeta;
         try {
@@ -640,6 +1019,16 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
         rowMeta.addValueMeta(targetFieldValueMeta);
     }
 
+    private static void removeFieldIfPresent(final RowMetaInterface rowMeta, @Nullable final String fieldName) throws KettleStepException {
+        if (isNotEmpty(fieldName) && rowMeta.indexOfValue(fieldName) > -1) {
+            try {
+                rowMeta.removeValueMeta(fieldName);
+            } catch (final KettleValueException e) {
+                throw new KettleStepException("Unable to remove field: " + fieldName + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
     @Override
     public void check(final List<CheckResultInterface> remarks, final TransMeta transMeta,
                       final StepMeta stepMeta, final RowMetaInterface prev, final String input[], final String output[],
@@ -652,6 +1041,15 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
         } else {
             cr = new CheckResult(CheckResultInterface.TYPE_RESULT_OK, BaseMessages.getString(PKG, "JenaModelStepMeta.CheckResult.StepRecevingData", prev.size() + ""), stepMeta);
             remarks.add(cr);
+
+            // compile the mappings against the fields, e.g. to find missing fields or cycles between Blank Node mappings
+            try {
+                MappingPlan.compile(prev, this, space, LogChannel.GENERAL);
+                cr = new CheckResult(CheckResultInterface.TYPE_RESULT_OK, BaseMessages.getString(PKG, "JenaModelStepMeta.CheckResult.MappingsValid"), stepMeta);
+            } catch (final KettleException e) {
+                cr = new CheckResult(CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString(PKG, "JenaModelStepMeta.CheckResult.MappingsInvalid", e.getMessage()), stepMeta);
+            }
+            remarks.add(cr);
         }
 
         // See if we have input streams leading to this step!
@@ -674,6 +1072,11 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
         return new JenaModelStepData();
     }
 
+    @Override
+    public boolean supportsErrorHandling() {
+        return true;
+    }
+
     @Override
     public String getDialogClassName() {
         return "uk.gov.nationalarchives.pdi.step.jena.model.JenaModelStepDialog";
@@ -706,6 +1109,38 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
         this.resourceUriField = resourceUriField;
     }
 
+    public String getResourceUriTemplate() {
+        return resourceUriTemplate;
+    }
+
+    public void setResourceUriTemplate(final String resourceUriTemplate) {
+        this.resourceUriTemplate = resourceUriTemplate;
+    }
+
+    public UriMintingStrategy getResourceUriMinting() {
+        return resourceUriMinting;
+    }
+
+    public void setResourceUriMinting(final UriMintingStrategy resourceUriMinting) {
+        this.resourceUriMinting = resourceUriMinting;
+    }
+
+    public String getResourceUriMintingPrefix() {
+        return resourceUriMintingPrefix;
+    }
+
+    public void setResourceUriMintingPrefix(final String resourceUriMintingPrefix) {
+        this.resourceUriMintingPrefix = resourceUriMintingPrefix;
+    }
+
+    public String getResourceUriMintingFields() {
+        return resourceUriMintingFields;
+    }
+
+    public void setResourceUriMintingFields(final String resourceUriMintingFields) {
+        this.resourceUriMintingFields = resourceUriMintingFields;
+    }
+
     public Map<String, String> getNamespaces() {
         return namespaces;
     }
@@ -727,6 +1162,14 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
         this.dbToJenaMappings = dbToJenaMappings;
     }
 
+    public SubjectMapping[] getSubjectMappings() {
+        return subjectMappings;
+    }
+
+    public void setSubjectMappings(final SubjectMapping[] subjectMappings) {
+        this.subjectMappings = subjectMappings;
+    }
+
     public BlankNodeMapping[] getBlankNodeMappings() {
         return blankNodeMappings;
     }
@@ -735,6 +1178,94 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
         this.blankNodeMappings = blankNodeMappings;
     }
 
+    public boolean isDirectToStream() {
+        return directToStream;
+    }
+
+    public void setDirectToStream(final boolean directToStream) {
+        this.directToStream = directToStream;
+    }
+
+    public String getStreamFilename() {
+        return streamFilename;
+    }
+
+    public void setStreamFilename(final String streamFilename) {
+        this.streamFilename = streamFilename;
+    }
+
+    public String getStreamFormat() {
+        return streamFormat;
+    }
+
+    public void setStreamFormat(final String streamFormat) {
+        this.streamFormat = streamFormat;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public String getBatchKeyField() {
+        return batchKeyField;
+    }
+
+    public void setBatchKeyField(final String batchKeyField) {
+        this.batchKeyField = batchKeyField;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(final int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getMaxInFlightRows() {
+        return maxInFlightRows;
+    }
+
+    public void setMaxInFlightRows(final int maxInFlightRows) {
+        this.maxInFlightRows = maxInFlightRows;
+    }
+
+    public int getNodeCacheSize() {
+        return nodeCacheSize;
+    }
+
+    public void setNodeCacheSize(final int nodeCacheSize) {
+        this.nodeCacheSize = nodeCacheSize;
+    }
+
+    public String getDateTimeZone() {
+        return dateTimeZone;
+    }
+
+    public void setDateTimeZone(final String dateTimeZone) {
+        this.dateTimeZone = dateTimeZone;
+    }
+
+    public boolean isValidateXmlLiterals() {
+        return validateXmlLiterals;
+    }
+
+    public void setValidateXmlLiterals(final boolean validateXmlLiterals) {
+        this.validateXmlLiterals = validateXmlLiterals;
+    }
+
+    public IriValidation getIriValidation() {
+        return iriValidation;
+    }
+
+    public void setIriValidation(final IriValidation iriValidation) {
+        this.iriValidation = iriValidation;
+    }
+
     // </editor-fold>
 
     private static @Nullable DbToJenaMapping[] copy(@Nullable final DbToJenaMapping[] dbToJenaMappings) {
@@ -749,6 +1280,18 @@ public class JenaModelStepMeta extends BaseStepMeta implements StepMetaInterface
         return copiedDbToJenaMappings;
     }
 
+    private static @Nullable SubjectMapping[] copy(@Nullable final SubjectMapping[] subjectMappings) {
+        if (subjectMappings == null) {
+            return null;
+        }
+
+        final SubjectMapping[] copiedSubjectMappings = new SubjectMapping[subjectMappings.length];
+        for (int i = 0; i < subjectMappings.length; i++) {
+            copiedSubjectMappings[i] = subjectMappings[i].copy();
+        }
+        return copiedSubjectMappings;
+    }
+
     private static @Nullable BlankNodeMapping[] copy(@Nullable final BlankNodeMapping[] blankNodeMappings) {
         if (blankNodeMappings == null) {
             return null;
@@ -0,0 +1,301 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+import javax.annotation.Nullable;
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static uk.gov.nationalarchives.pdi.step.jena.Util.isNullOrEmpty;
+
+/**
+ * The condition of a mapping, compiled against the input row meta.
+ *
+ * The values of numeric fields are compared as numbers, so that
+ * e.g. {@code 1} equals {@code 1.0}. The values of any other fields
+ * are compared as strings. A null value never satisfies a condition.
+ */
+class MappingCondition {
+
+    private static final String RANGE_SEPARATOR = "..";
+
+    private final MappingConditionOperator operator;
+    private final String fieldName;
+    private final int fieldIndex;
+    private final String value;
+
+    /**
+     * True if the field is numeric, and the values
+     * are compared as numbers.
+     */
+    private final boolean numeric;
+
+    // for EQUALS
+    @Nullable private final String equalsString;
+    @Nullable private final BigDecimal equalsNumber;
+
+    // for IN
+    @Nullable private final Set<String> inStrings;
+    @Nullable private final Set<BigDecimal> inNumbers;
+
+    // for REGEX
+    @Nullable private final Pattern pattern;
+
+    // for RANGE, either bound may be null
+    @Nullable private final String minString;
+    @Nullable private final String maxString;
+    @Nullable private final BigDecimal minNumber;
+    @Nullable private final BigDecimal maxNumber;
+
+    private MappingCondition(final MappingConditionOperator operator, final String fieldName, final int fieldIndex,
+            final String value, final boolean numeric, @Nullable final String equalsString,
+            @Nullable final BigDecimal equalsNumber, @Nullable final Set<String> inStrings,
+            @Nullable final Set<BigDecimal> inNumbers, @Nullable final Pattern pattern,
+            @Nullable final String minString, @Nullable final String maxString,
+            @Nullable final BigDecimal minNumber, @Nullable final BigDecimal maxNumber) {
+        this.operator = operator;
+        this.fieldName = fieldName;
+        this.fieldIndex = fieldIndex;
+        this.value = value;
+        this.numeric = numeric;
+        this.equalsString = equalsString;
+        this.equalsNumber = equalsNumber;
+        this.inStrings = inStrings;
+        this.inNumbers = inNumbers;
+        this.pattern = pattern;
+        this.minString = minString;
+        this.maxString = maxString;
+        this.minNumber = minNumber;
+        this.maxNumber = maxNumber;
+    }
+
+    /**
+     * Compile the condition of a mapping.
+     *
+     * @param operator the operator of the condition
+     * @param fieldName the name of the field that the condition is evaluated against
+     * @param value the value of the condition, its form depends on the operator
+     * @param inputRowMeta the input row meta
+     *
+     * @return the compiled condition, or null if the operator is {@link MappingConditionOperator#NONE}
+     *
+     * @throws KettleException if the field could not be found, or the value is invalid for the operator
+     */
+    static @Nullable MappingCondition compile(@Nullable final MappingConditionOperator operator,
+            @Nullable final String fieldName, @Nullable final String value,
+            final RowMetaInterface inputRowMeta) throws KettleException {
+        if (operator == null || operator == MappingConditionOperator.NONE) {
+            return null;
+        }
+
+        if (isNullOrEmpty(fieldName)) {
+            throw new KettleException("Condition " + operator + " has no field");
+        }
+        final int fieldIndex = inputRowMeta.indexOfValue(fieldName);
+        if (fieldIndex < 0) {
+            throw new KettleException("Could not find condition field '" + fieldName + "', index is: " + fieldIndex);
+        }
+        final ValueMetaInterface valueMeta = inputRowMeta.getValueMeta(fieldIndex);
+        final boolean numeric = valueMeta != null && valueMeta.isNumeric();
+
+        final String conditionValue = value != null ? value : "";
+        if (operator != MappingConditionOperator.EQUALS && conditionValue.isEmpty()) {
+            throw new KettleException("Condition " + operator + " on field '" + fieldName + "' has no value");
+        }
+
+        String equalsString = null;
+        BigDecimal equalsNumber = null;
+        Set<String> inStrings = null;
+        Set<BigDecimal> inNumbers = null;
+        Pattern pattern = null;
+        String minString = null;
+        String maxString = null;
+        BigDecimal minNumber = null;
+        BigDecimal maxNumber = null;
+
+        switch (operator) {
+            case EQUALS:
+                if (numeric) {
+                    equalsNumber = parseNumber(fieldName, conditionValue);
+                } else {
+                    equalsString = conditionValue;
+                }
+                break;
+
+            case IN:
+                final String[] inValues = conditionValue.split(",");
+                if (numeric) {
+                    inNumbers = new HashSet<>();
+                    for (final String inValue : inValues) {
+                        inNumbers.add(normalise(parseNumber(fieldName, inValue.trim())));
+                    }
+                } else {
+                    inStrings = new HashSet<>();
+                    for (final String inValue : inValues) {
+                        inStrings.add(inValue.trim());
+                    }
+                }
+                break;
+
+            case REGEX:
+                try {
+                    pattern = Pattern.compile(conditionValue);
+                } catch (final PatternSyntaxException e) {
+                    throw new KettleException("Condition REGEX on field '" + fieldName + "' is not a valid regular expression: " + e.getMessage(), e);
+                }
+                break;
+
+            case RANGE:
+                final int idxSeparator = conditionValue.indexOf(RANGE_SEPARATOR);
+                if (idxSeparator < 0) {
+                    throw new KettleException("Condition RANGE on field '" + fieldName + "' must be of the form min..max, but was: " + conditionValue);
+                }
+                final String min = conditionValue.substring(0, idxSeparator).trim();
+                final String max = conditionValue.substring(idxSeparator + RANGE_SEPARATOR.length()).trim();
+                if (min.isEmpty() && max.isEmpty()) {
+                    throw new KettleException("Condition RANGE on field '" + fieldName + "' must have a min, a max, or both");
+                }
+                if (numeric) {
+                    minNumber = min.isEmpty() ? null : parseNumber(fieldName, min);
+                    maxNumber = max.isEmpty() ? null : parseNumber(fieldName, max);
+                } else {
+                    minString = min.isEmpty() ? null : min;
+                    maxString = max.isEmpty() ? null : max;
+                }
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown Condition Operator: " + operator);
+        }
+
+        return new MappingCondition(operator, fieldName, fieldIndex, conditionValue, numeric, equalsString,
+                equalsNumber, inStrings, inNumbers, pattern, minString, maxString, minNumber, maxNumber);
+    }
+
+    /**
+     * Evaluate the condition for a row.
+     *
+     * @param plan the mapping plan, for decoding field values
+     * @param row the row
+     *
+     * @return true if the condition holds, false otherwise
+     *
+     * @throws KettleValueException if the value of the field cannot be decoded
+     */
+    boolean matches(final MappingPlan plan, final Object[] row) throws KettleValueException {
+        if (plan.isNull(fieldIndex, row[fieldIndex])) {
+            return false;
+        }
+        final Object fieldValue = plan.getValue(row, fieldIndex);
+
+        if (operator == MappingConditionOperator.REGEX) {
+            return pattern.matcher(ValueConverters.asString(fieldValue)).matches();
+        }
+
+        if (numeric) {
+            final BigDecimal number = asNumber(fieldValue);
+            if (number == null) {
+                return false;
+            }
+
+            switch (operator) {
+                case EQUALS:
+                    return number.compareTo(equalsNumber) == 0;
+
+                case IN:
+                    return inNumbers.contains(normalise(number));
+
+                case RANGE:
+                    return (minNumber == null || number.compareTo(minNumber) >= 0)
+                            && (maxNumber == null || number.compareTo(maxNumber) <= 0);
+
+                default:
+                    throw new IllegalStateException("Unknown Condition Operator: " + operator);
+            }
+        }
+
+        final String string = ValueConverters.asString(fieldValue);
+        switch (operator) {
+            case EQUALS:
+                return string.equals(equalsString);
+
+            case IN:
+                return inStrings.contains(string);
+
+            case RANGE:
+                return (minString == null || string.compareTo(minString) >= 0)
+                        && (maxString == null || string.compareTo(maxString) <= 0);
+
+            default:
+                throw new IllegalStateException("Unknown Condition Operator: " + operator);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return fieldName + " " + operator + " " + value;
+    }
+
+    private static BigDecimal parseNumber(final String fieldName, final String value) throws KettleException {
+        try {
+            return new BigDecimal(value);
+        } catch (final NumberFormatException e) {
+            throw new KettleException("Condition on numeric field '" + fieldName + "' has a value which is not a number: " + value, e);
+        }
+    }
+
+    /**
+     * Normalise a number so that equal numbers
+     * have equal hash codes, e.g. 1 and 1.0.
+     */
+    private static BigDecimal normalise(final BigDecimal number) {
+        return number.signum() == 0 ? BigDecimal.ZERO : number.stripTrailingZeros();
+    }
+
+    private static @Nullable BigDecimal asNumber(final Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            final double d = ((Number) value).doubleValue();
+            return Double.isNaN(d) || Double.isInfinite(d) ? null : BigDecimal.valueOf(d);
+        } else if (value instanceof Number) {
+            return new BigDecimal(value.toString());
+        } else {
+            try {
+                return new BigDecimal(ValueConverters.asString(value).trim());
+            } catch (final NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+/**
+ * Operators for the condition of a mapping, the
+ * property is only written when the condition holds.
+ */
+public enum MappingConditionOperator {
+    /**
+     * No condition, the property is always written.
+     */
+    NONE,
+
+    /**
+     * The value of the field equals the value.
+     */
+    EQUALS,
+
+    /**
+     * The value of the field is one of the
+     * comma separated values.
+     */
+    IN,
+
+    /**
+     * The value of the field matches the
+     * regular expression.
+     */
+    REGEX,
+
+    /**
+     * The value of the field is within the inclusive range,
+     * e.g. {@code 1..10}, {@code 1..} or {@code ..10}.
+     */
+    RANGE;
+
+    /**
+     * Get the String names of the enumerated values.
+     *
+     * @return an array of string names.
+     */
+    public static String[] names() {
+        final MappingConditionOperator[] values = values();
+        final String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].name();
+        }
+        return names;
+    }
+}
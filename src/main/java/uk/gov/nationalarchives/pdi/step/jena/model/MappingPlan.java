@@ -0,0 +1,729 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.VariableSpace;
+import uk.gov.nationalarchives.pdi.step.jena.ActionIfNull;
+import uk.gov.nationalarchives.pdi.step.jena.Util;
+
+import javax.annotation.Nullable;
+import javax.xml.namespace.QName;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+import static uk.gov.nationalarchives.pdi.step.jena.Rdf11.RESOURCE_DATA_TYPE;
+import static uk.gov.nationalarchives.pdi.step.jena.Util.*;
+
+/**
+ * A mapping plan for the {@link JenaModelStep}.
+ *
+ * The plan is compiled once from the {@link JenaModelStepMeta}
+ * and the input row meta when the first row is seen, so that
+ * field names, property names, and datatypes do not have to be
+ * resolved again for every row.
+ */
+class MappingPlan {
+
+    /**
+     * The maximum number of blank nodes that the
+     * mappings of a subject may produce for a row.
+     */
+    static final int MAX_BLANK_NODES = 1 << 20;
+
+    /**
+     * The timezone for dates which selects the default timezone of the JVM.
+     */
+    static final String SYSTEM_TIME_ZONE = "SYSTEM";
+
+    enum ObjectType {
+        LITERAL,
+        TYPED_LITERAL,
+        RESOURCE,
+        BLANK_NODE
+    }
+
+    /**
+     * The subjects described by each row, the first
+     * subject is always the resource.
+     */
+    final Subject[] subjects;
+    @Nullable final Namespaces namespaces;
+
+    /**
+     * Compiled blank node mappings, indexed by blank node id.
+     * Entries are null for any blank node mapping that is not
+     * reachable from the mappings of the {@link #subjects}.
+     */
+    final PropertyMapping[][] blankNodeMappings;
+
+    /**
+     * URI minters for blank node mappings, indexed by blank node id.
+     * Entries are null for any blank node mapping that creates
+     * a blank node rather than minting a URI.
+     */
+    final UriMinter[] blankNodeMinters;
+
+    /**
+     * The greatest number of blank nodes that the mappings of
+     * any one subject can produce for a row. Blank node mappings
+     * are checked to be acyclic when the plan is compiled, so this
+     * bounds the work stack used when adding their properties.
+     */
+    final int maxBlankNodes;
+
+    /**
+     * Checks the IRIs created from the values of a row,
+     * or null if they are not checked.
+     */
+    @Nullable final IriValidator iriValidator;
+
+    /**
+     * Property names read from fields of the rows, which
+     * have already been resolved to a property.
+     */
+    final PropertyNameCache propertyNames = new PropertyNameCache();
+
+    /**
+     * The value meta of each input field which is stored as
+     * a binary string (i.e. lazy conversion), indexed by
+     * field index, or null if there are no such fields.
+     */
+    @Nullable private final ValueMetaInterface[] binaryStringValueMetas;
+
+    private MappingPlan(final Subject[] subjects, @Nullable final Namespaces namespaces,
+            final PropertyMapping[][] blankNodeMappings, final UriMinter[] blankNodeMinters, final int maxBlankNodes,
+            @Nullable final IriValidator iriValidator, @Nullable final ValueMetaInterface[] binaryStringValueMetas) {
+        this.subjects = subjects;
+        this.namespaces = namespaces;
+        this.blankNodeMappings = blankNodeMappings;
+        this.blankNodeMinters = blankNodeMinters;
+        this.maxBlankNodes = maxBlankNodes;
+        this.iriValidator = iriValidator;
+        this.binaryStringValueMetas = binaryStringValueMetas;
+    }
+
+    /**
+     * Determine if the value of a field is null.
+     *
+     * @param fieldIndex the index of the field
+     * @param value the value of the field
+     *
+     * @return true if the value is null
+     *
+     * @throws KettleValueException if the value of a binary string field cannot be examined
+     */
+    boolean isNull(final int fieldIndex, @Nullable final Object value) throws KettleValueException {
+        if (value == null) {
+            return true;
+        }
+        final ValueMetaInterface binaryStringValueMeta = binaryStringValueMetas != null ? binaryStringValueMetas[fieldIndex] : null;
+        return binaryStringValueMeta != null && binaryStringValueMeta.isNull(value);
+    }
+
+    /**
+     * Get the value of a field from a row, decoding
+     * the value if it is stored as a binary string.
+     *
+     * @param row the row
+     * @param fieldIndex the index of the field
+     *
+     * @return the value of the field in its native type
+     *
+     * @throws KettleValueException if the value of a binary string field cannot be decoded
+     */
+    @Nullable Object getValue(final Object[] row, final int fieldIndex) throws KettleValueException {
+        final Object value = row[fieldIndex];
+        final ValueMetaInterface binaryStringValueMeta = binaryStringValueMetas != null ? binaryStringValueMetas[fieldIndex] : null;
+        if (value == null || binaryStringValueMeta == null) {
+            return value;
+        }
+        synchronized (binaryStringValueMeta) {
+            // the parsers of a value meta are not thread-safe, and the plan may be used by the worker threads
+            return binaryStringValueMeta.convertBinaryStringToNativeType((byte[]) value);
+        }
+    }
+
+    /**
+     * A compiled subject, and the mappings of its properties.
+     */
+    static class Subject {
+        /**
+         * The name of the subject, or null for the resource.
+         */
+        @Nullable final String name;
+        final String uriFieldName;
+        final int uriFieldIndex;
+
+        /**
+         * The URI template for the subject, or null if
+         * the URI is taken from {@link #uriFieldIndex}.
+         */
+        @Nullable final UriTemplate uriTemplate;
+
+        /**
+         * The URI minter for the subject, or null if
+         * the URI is not minted. Takes precedence over
+         * {@link #uriTemplate}.
+         */
+        @Nullable final UriMinter uriMinter;
+        final PropertyMapping[] mappings;
+
+        Subject(@Nullable final String name, final String uriFieldName, final int uriFieldIndex,
+                @Nullable final UriTemplate uriTemplate, @Nullable final UriMinter uriMinter,
+                final PropertyMapping[] mappings) {
+            this.name = name;
+            this.uriFieldName = uriFieldName;
+            this.uriFieldIndex = uriFieldIndex;
+            this.uriTemplate = uriTemplate;
+            this.uriMinter = uriMinter;
+            this.mappings = mappings;
+        }
+
+        /**
+         * Get a description of the subject's URI for messages.
+         *
+         * @return the description
+         */
+        String describeUri() {
+            return describeUri(name);
+        }
+
+        static String describeUri(@Nullable final String name) {
+            return name == null ? "Resource URI" : "Subject '" + name + "' URI";
+        }
+    }
+
+    /**
+     * A single compiled mapping from a row field to an RDF property.
+     */
+    static class PropertyMapping {
+        final ObjectType objectType;
+        @Nullable final String fieldName;
+        final int fieldIndex;
+
+        /**
+         * The property, if it could be resolved at compile time,
+         * otherwise null and the property name is read from the
+         * {@link #propertyFieldIndex} field of each row.
+         */
+        @Nullable final Node property;
+        @Nullable final String propertyFieldName;
+        final int propertyFieldIndex;
+
+        @Nullable final RDFDatatype rdfDatatype;
+        @Nullable final String language;
+        final ActionIfNull actionIfNull;
+        final int blankNodeId;
+
+        /**
+         * The converter for the value of the field, for
+         * {@link ObjectType#LITERAL} and {@link ObjectType#TYPED_LITERAL}.
+         */
+        @Nullable final ValueConverter valueConverter;
+
+        /**
+         * The URI template for the object of a {@link ObjectType#RESOURCE},
+         * or null if the URI is taken from {@link #fieldIndex}.
+         */
+        @Nullable final UriTemplate uriTemplate;
+
+        /**
+         * The splitter for a multi-valued field, or null if
+         * the value of the field is a single value.
+         */
+        @Nullable final ValueSplitter splitter;
+
+        /**
+         * True if the values from {@link #splitter} become
+         * a single rdf:List object.
+         */
+        final boolean splitAsList;
+
+        /**
+         * The condition under which the property is
+         * written, or null if it is always written.
+         */
+        @Nullable final MappingCondition condition;
+
+        PropertyMapping(final ObjectType objectType, @Nullable final String fieldName, final int fieldIndex,
+                @Nullable final Node property, @Nullable final String propertyFieldName,
+                final int propertyFieldIndex, @Nullable final RDFDatatype rdfDatatype,
+                @Nullable final String language, final ActionIfNull actionIfNull, final int blankNodeId,
+                @Nullable final ValueConverter valueConverter, @Nullable final UriTemplate uriTemplate,
+                @Nullable final ValueSplitter splitter, final boolean splitAsList,
+                @Nullable final MappingCondition condition) {
+            this.objectType = objectType;
+            this.fieldName = fieldName;
+            this.fieldIndex = fieldIndex;
+            this.property = property;
+            this.propertyFieldName = propertyFieldName;
+            this.propertyFieldIndex = propertyFieldIndex;
+            this.rdfDatatype = rdfDatatype;
+            this.language = language;
+            this.actionIfNull = actionIfNull;
+            this.blankNodeId = blankNodeId;
+            this.valueConverter = valueConverter;
+            this.uriTemplate = uriTemplate;
+            this.splitter = splitter;
+            this.splitAsList = splitAsList;
+            this.condition = condition;
+        }
+    }
+
+    /**
+     * Compile a mapping plan.
+     *
+     * @param inputRowMeta the input row meta
+     * @param meta the metadata
+     * @param variables the variables for resolving variable substitutions
+     * @param log the log for reporting problems with the mappings
+     *
+     * @return the mapping plan
+     *
+     * @throws KettleException if the mappings are not valid for the input row meta
+     */
+    static MappingPlan compile(final RowMetaInterface inputRowMeta, final JenaModelStepMeta meta,
+            final VariableSpace variables, final LogChannelInterface log) throws KettleException {
+        final Map<String, String> namespaces = meta.getNamespaces();
+
+        final ZoneId timeZone = compileTimeZone(variables.environmentSubstitute(meta.getDateTimeZone()));
+        final Compiler compiler = new Compiler(inputRowMeta, variables, namespaces, timeZone, meta.isValidateXmlLiterals(), log);
+        final JenaModelStepMeta.BlankNodeMapping[] blankNodeMappings = meta.getBlankNodeMappings();
+        final PropertyMapping[][] compiledBlankNodeMappings = new PropertyMapping[blankNodeMappings == null ? 0 : blankNodeMappings.length][];
+        final UriMinter[] blankNodeMinters = new UriMinter[compiledBlankNodeMappings.length];
+
+        // compile the mappings of the resource and any further subjects, and then those of each reachable blank node
+        final Deque<Integer> unresolvedBlankNodeIds = new ArrayDeque<>();
+        final JenaModelStepMeta.SubjectMapping[] subjectMappings = meta.getSubjectMappings();
+        final Subject[] subjects = new Subject[1 + (subjectMappings == null ? 0 : subjectMappings.length)];
+        subjects[0] = compileSubject(compiler, null, meta.getResourceUriField(), meta.getResourceUriTemplate(),
+                meta.getResourceUriMinting(), meta.getResourceUriMintingPrefix(), meta.getResourceUriMintingFields(),
+                meta.getDbToJenaMappings(), blankNodeMappings, unresolvedBlankNodeIds);
+        for (int i = 1; i < subjects.length; i++) {
+            final JenaModelStepMeta.SubjectMapping subjectMapping = subjectMappings[i - 1];
+            if (isNullOrEmpty(subjectMapping.name)) {
+                throw new KettleException("Subject mapping " + i + " has no name");
+            }
+            subjects[i] = compileSubject(compiler, subjectMapping.name, subjectMapping.uriField, subjectMapping.uriTemplate,
+                    subjectMapping.uriMinting, subjectMapping.uriMintingPrefix, subjectMapping.uriMintingFields,
+                    subjectMapping.dbToJenaMappings, blankNodeMappings, unresolvedBlankNodeIds);
+        }
+        while (!unresolvedBlankNodeIds.isEmpty()) {
+            final int blankNodeId = unresolvedBlankNodeIds.pop();
+            if (compiledBlankNodeMappings[blankNodeId] == null) {
+                final JenaModelStepMeta.BlankNodeMapping blankNodeMapping = blankNodeMappings[blankNodeId];
+                compiledBlankNodeMappings[blankNodeId] = compileMappings(compiler, blankNodeMapping.dbToJenaMappings, blankNodeMappings, unresolvedBlankNodeIds);
+                blankNodeMinters[blankNodeId] = UriMinter.compile(blankNodeMapping.uriMinting,
+                        variables.environmentSubstitute(blankNodeMapping.uriMintingPrefix),
+                        variables.environmentSubstitute(blankNodeMapping.uriMintingFields), inputRowMeta, namespaces);
+            }
+        }
+
+        // check that the blank node mappings are acyclic, and bound the blank nodes of any one subject
+        final int[] blankNodeCounts = countBlankNodes(compiledBlankNodeMappings);
+        int maxBlankNodes = 0;
+        for (final Subject subject : subjects) {
+            maxBlankNodes = Math.max(maxBlankNodes, countBlankNodes(subject.mappings, blankNodeCounts));
+        }
+        if (maxBlankNodes > MAX_BLANK_NODES) {
+            throw new KettleException("Blank Node mappings would produce " + maxBlankNodes + " blank nodes for a single row, the maximum is: " + MAX_BLANK_NODES);
+        }
+
+        final IriValidator iriValidator = meta.getIriValidation() != IriValidation.OFF ? new IriValidator(meta.getIriValidation()) : null;
+
+        return new MappingPlan(subjects, Namespaces.of(namespaces), compiledBlankNodeMappings, blankNodeMinters, maxBlankNodes,
+                iriValidator, compileBinaryStringValueMetas(inputRowMeta));
+    }
+
+    /**
+     * Count the blank nodes that each compiled blank node mapping produces
+     * for a row, i.e. itself and any nested blank nodes.
+     *
+     * The blank node mappings are walked depth-first without recursion,
+     * so that a cycle is reported rather than overflowing the stack.
+     *
+     * @param blankNodeMappings the compiled blank node mappings, indexed by blank node id
+     *
+     * @return the number of blank nodes for each blank node mapping, indexed by blank node id
+     *
+     * @throws KettleException if the blank node mappings contain a cycle
+     */
+    private static int[] countBlankNodes(final PropertyMapping[][] blankNodeMappings) throws KettleException {
+        final int len = blankNodeMappings.length;
+        final int[] counts = new int[len];
+        final byte[] states = new byte[len];  // 0 = unvisited, 1 = on the stack, 2 = counted
+        final int[] stack = new int[len];
+        final int[] nextMappingIdxs = new int[len];
+
+        for (int rootId = 0; rootId < len; rootId++) {
+            if (blankNodeMappings[rootId] == null || states[rootId] != 0) {
+                continue;
+            }
+
+            int depth = 0;
+            stack[0] = rootId;
+            nextMappingIdxs[0] = 0;
+            states[rootId] = 1;
+
+            while (depth > -1) {
+                final PropertyMapping[] mappings = blankNodeMappings[stack[depth]];
+                if (nextMappingIdxs[depth] < mappings.length) {
+                    final PropertyMapping mapping = mappings[nextMappingIdxs[depth]++];
+                    if (mapping.objectType != ObjectType.BLANK_NODE) {
+                        continue;
+                    }
+
+                    final int blankNodeId = mapping.blankNodeId;
+                    if (states[blankNodeId] == 1) {
+                        throw new KettleException("Blank Node mappings contain a cycle: " + describeCycle(stack, depth, blankNodeId));
+                    }
+                    if (states[blankNodeId] == 0) {
+                        stack[++depth] = blankNodeId;
+                        nextMappingIdxs[depth] = 0;
+                        states[blankNodeId] = 1;
+                    }
+
+                } else {
+                    final int blankNodeId = stack[depth--];
+                    counts[blankNodeId] = addCounts(1, countBlankNodes(mappings, counts));
+                    states[blankNodeId] = 2;
+                }
+            }
+        }
+
+        return counts;
+    }
+
+    private static int countBlankNodes(final PropertyMapping[] mappings, final int[] blankNodeCounts) {
+        int count = 0;
+        for (final PropertyMapping mapping : mappings) {
+            if (mapping.objectType == ObjectType.BLANK_NODE) {
+                count = addCounts(count, blankNodeCounts[mapping.blankNodeId]);
+            }
+        }
+        return count;
+    }
+
+    private static int addCounts(final int a, final int b) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) a + b);
+    }
+
+    private static String describeCycle(final int[] stack, final int depth, final int blankNodeId) {
+        int start = depth;
+        while (stack[start] != blankNodeId) {
+            start--;
+        }
+
+        final StringBuilder builder = new StringBuilder();
+        for (int i = start; i <= depth; i++) {
+            builder.append(BLANK_NODE_NAME).append(':').append(stack[i]).append(" -> ");
+        }
+        return builder.append(BLANK_NODE_NAME).append(':').append(blankNodeId).toString();
+    }
+
+    private static Subject compileSubject(final Compiler compiler, @Nullable final String name,
+            @Nullable final String uriField, @Nullable final String uriTemplate, @Nullable final UriMintingStrategy uriMinting,
+            @Nullable final String uriMintingPrefix, @Nullable final String uriMintingFields,
+            @Nullable final JenaModelStepMeta.DbToJenaMapping[] dbToJenaMappings,
+            @Nullable final JenaModelStepMeta.BlankNodeMapping[] blankNodeMappings,
+            final Deque<Integer> unresolvedBlankNodeIds) throws KettleException {
+        final RowMetaInterface inputRowMeta = compiler.inputRowMeta;
+        final VariableSpace variables = compiler.variables;
+
+        final UriMinter uriMinter = UriMinter.compile(uriMinting, variables.environmentSubstitute(uriMintingPrefix),
+                variables.environmentSubstitute(uriMintingFields), inputRowMeta, compiler.namespaces);
+
+        final String expandedUriTemplate = variables.environmentSubstitute(uriTemplate);
+        final String uriFieldName;
+        final int uriFieldIndex;
+        final UriTemplate compiledUriTemplate;
+        if (uriMinter != null) {
+            uriFieldName = uriMinting.name();
+            uriFieldIndex = -1;
+            compiledUriTemplate = null;
+        } else if (isNotEmpty(expandedUriTemplate)) {
+            uriFieldName = expandedUriTemplate;
+            uriFieldIndex = -1;
+            compiledUriTemplate = UriTemplate.compile(expandedUriTemplate, inputRowMeta, compiler.namespaces);
+        } else {
+            uriFieldName = variables.environmentSubstitute(uriField);
+            uriFieldIndex = inputRowMeta.indexOfValue(uriFieldName);
+            if (uriFieldIndex < 0) {
+                throw new KettleException("Could not find " + Subject.describeUri(name) + " field '" + uriFieldName + "', index is: " + uriFieldIndex);
+            }
+            compiledUriTemplate = null;
+        }
+
+        final PropertyMapping[] mappings = compileMappings(compiler, dbToJenaMappings, blankNodeMappings, unresolvedBlankNodeIds);
+        return new Subject(name, uriFieldName, uriFieldIndex, compiledUriTemplate, uriMinter, mappings);
+    }
+
+    private static @Nullable ValueMetaInterface[] compileBinaryStringValueMetas(final RowMetaInterface inputRowMeta) {
+        ValueMetaInterface[] binaryStringValueMetas = null;
+        for (int i = 0; i < inputRowMeta.size(); i++) {
+            final ValueMetaInterface valueMeta = inputRowMeta.getValueMeta(i);
+            if (valueMeta.isStorageBinaryString()) {
+                if (binaryStringValueMetas == null) {
+                    binaryStringValueMetas = new ValueMetaInterface[inputRowMeta.size()];
+                }
+                binaryStringValueMetas[i] = valueMeta;
+            }
+        }
+        return binaryStringValueMetas;
+    }
+
+    /**
+     * Resolve the timezone for converting dates.
+     *
+     * @param timeZoneId the id of the timezone, {@link #SYSTEM_TIME_ZONE} for
+     *     the default timezone of the JVM, or null or empty for UTC
+     *
+     * @return the timezone
+     *
+     * @throws KettleException if the timezone is not valid
+     */
+    static ZoneId compileTimeZone(@Nullable final String timeZoneId) throws KettleException {
+        if (isNullOrEmpty(timeZoneId)) {
+            // dates have always been converted in UTC
+            return ZoneOffset.UTC;
+        }
+
+        if (SYSTEM_TIME_ZONE.equals(timeZoneId)) {
+            return ZoneId.systemDefault();
+        }
+
+        try {
+            return ZoneId.of(timeZoneId);
+        } catch (final DateTimeException e) {
+            throw new KettleException("Invalid timezone for dates: '" + timeZoneId + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The context shared by the compilation of each mapping.
+     */
+    private static class Compiler {
+        final RowMetaInterface inputRowMeta;
+        final VariableSpace variables;
+        @Nullable final Map<String, String> namespaces;
+        final ZoneId timeZone;
+        final boolean validateXmlLiterals;
+        final LogChannelInterface log;
+
+        Compiler(final RowMetaInterface inputRowMeta, final VariableSpace variables,
+                @Nullable final Map<String, String> namespaces, final ZoneId timeZone,
+                final boolean validateXmlLiterals, final LogChannelInterface log) {
+            this.inputRowMeta = inputRowMeta;
+            this.variables = variables;
+            this.namespaces = namespaces;
+            this.timeZone = timeZone;
+            this.validateXmlLiterals = validateXmlLiterals;
+            this.log = log;
+        }
+    }
+
+    private static PropertyMapping[] compileMappings(final Compiler compiler,
+            @Nullable final JenaModelStepMeta.DbToJenaMapping[] dbToJenaMappings,
+            @Nullable final JenaModelStepMeta.BlankNodeMapping[] blankNodeMappings,
+            final Deque<Integer> unresolvedBlankNodeIds) throws KettleException {
+        if (dbToJenaMappings == null) {
+            return new PropertyMapping[0];
+        }
+
+        int count = 0;
+        for (final JenaModelStepMeta.DbToJenaMapping mapping : dbToJenaMappings) {
+            if (!mapping.skip) {
+                count++;
+            }
+        }
+
+        final PropertyMapping[] propertyMappings = new PropertyMapping[count];
+        int i = 0;
+        for (final JenaModelStepMeta.DbToJenaMapping mapping : dbToJenaMappings) {
+            if (mapping.skip) {
+                continue;
+            }
+            propertyMappings[i++] = compileMapping(compiler, mapping, blankNodeMappings, unresolvedBlankNodeIds);
+        }
+        return propertyMappings;
+    }
+
+    private static PropertyMapping compileMapping(final Compiler compiler, final JenaModelStepMeta.DbToJenaMapping mapping,
+            @Nullable final JenaModelStepMeta.BlankNodeMapping[] blankNodeMappings,
+            final Deque<Integer> unresolvedBlankNodeIds) throws KettleException {
+        final RowMetaInterface inputRowMeta = compiler.inputRowMeta;
+        final VariableSpace variables = compiler.variables;
+        @Nullable final Map<String, String> namespaces = compiler.namespaces;
+
+        // resolve the property
+        Node property = null;
+        String propertyFieldName = null;
+        int propertyFieldIndex = -1;
+        final JenaModelStepMeta.RdfPropertyNameSource rdfPropertyNameSource = mapping.rdfPropertyNameSource;
+        if (rdfPropertyNameSource instanceof JenaModelStepMeta.RdfPropertyNameLiteralSource) {
+            property = asPredicate(((JenaModelStepMeta.RdfPropertyNameLiteralSource) rdfPropertyNameSource).getSource());
+
+        } else if (rdfPropertyNameSource instanceof JenaModelStepMeta.RdfPropertyNameFieldSource) {
+            propertyFieldName = ((JenaModelStepMeta.RdfPropertyNameFieldSource) rdfPropertyNameSource).getFieldName();
+            propertyFieldIndex = inputRowMeta.indexOfValue(propertyFieldName);
+            if (propertyFieldIndex < 0) {
+                throw new KettleException("Could not find RDF PropertyName source from field '" + propertyFieldName + "', index is: " + propertyFieldIndex);
+            }
+
+        } else if (rdfPropertyNameSource instanceof JenaModelStepMeta.RdfPropertyNameVariableSource) {
+            final String variable = ((JenaModelStepMeta.RdfPropertyNameVariableSource) rdfPropertyNameSource).getSource();
+            final String expanded = variables.environmentSubstitute(variable);
+            final QName qname;
+            try {
+                qname = Util.parseQName(namespaces, expanded);
+            } catch (final IllegalArgumentException e) {
+                throw new KettleException("Could not resolve RDF PropertyName source from variable '" + variable + "': " + e.getMessage(), e);
+            }
+            if (qname == null) {
+                throw new KettleException("Could not resolve RDF PropertyName source from variable '" + variable + "', it is empty");
+            }
+            // variables are constant for the run of the transformation, so the property is resolved just once
+            property = asPredicate(qname);
+
+        } else if (rdfPropertyNameSource == null) {
+            throw new KettleException("No RDF PropertyName for mapping of field: " + mapping.fieldName);
+
+        } else {
+            throw new IllegalArgumentException("Unknown Source Type: " + rdfPropertyNameSource.getSourceType());
+        }
+
+        // resolve the field
+        final String fieldName = nullIfEmpty(mapping.fieldName);
+        final boolean isBNodeFieldName = BLANK_NODE_FIELD_NAME.equals(fieldName);
+        final int fieldIndex = (fieldName == null || isBNodeFieldName) ? -1 : inputRowMeta.indexOfValue(fieldName);
+
+        // resolve the object type
+        final ObjectType objectType;
+        RDFDatatype rdfDatatype = null;
+        UriTemplate uriTemplate = null;
+        int blankNodeId = -1;
+        if (isBNodeFieldName) {
+            final String propertyDescription = property != null ? property.toString() : "#{" + propertyFieldName + "}";
+            if (mapping.rdfType == null || !BLANK_NODE_INTERNAL_URI.equals(mapping.rdfType.getNamespaceURI())) {
+                // field name indicates a blank node, but the rdf type does not... error!
+                throw new KettleException("Could not write property: " + propertyDescription + ", mapping to Blank Node definition is invalid!");
+            }
+
+            // get the proposed blank node id
+            try {
+                blankNodeId = Integer.parseInt(mapping.rdfType.getLocalPart());
+            } catch (final NumberFormatException e) {
+                throw new KettleException("Could not write property: " + propertyDescription + ", mapping to Blank Node definition is invalid!", e);
+            }
+            if (blankNodeMappings == null || blankNodeId < 0 || blankNodeId >= blankNodeMappings.length) {
+                // corresponding blank node mapping does not exist!
+                throw new KettleException("Could not write property: " + propertyDescription + ", corresponding Blank Node mapping does not exist!");
+            }
+            if (blankNodeMappings[blankNodeId].id != blankNodeId) {
+                // corresponding blank node id does not match expected blank node id
+                throw new KettleException("Could not write property: " + propertyDescription + ", corresponding Blank Node mapping has id: " + blankNodeMappings[blankNodeId].id + " but expected id: " + blankNodeId + "!");
+            }
+
+            unresolvedBlankNodeIds.push(blankNodeId);
+            objectType = ObjectType.BLANK_NODE;
+
+        } else if (mapping.rdfType == null) {
+            objectType = ObjectType.LITERAL;
+
+        } else if (RESOURCE_DATA_TYPE.equals(mapping.rdfType.getLocalPart())) {
+            objectType = ObjectType.RESOURCE;
+            final String expandedUriTemplate = variables.environmentSubstitute(mapping.uriTemplate);
+            if (isNotEmpty(expandedUriTemplate)) {
+                uriTemplate = UriTemplate.compile(expandedUriTemplate, inputRowMeta, namespaces);
+            }
+
+        } else {
+            final String typeURI = mapping.rdfType.getNamespaceURI() + mapping.rdfType.getLocalPart();
+            rdfDatatype = TypeMapper.getInstance().getSafeTypeByName(typeURI);
+            if (!compiler.validateXmlLiterals && rdfDatatype.equals(RDF.dtXMLLiteral)) {
+                rdfDatatype = UncheckedXMLLiteralType.INSTANCE;
+            }
+            objectType = ObjectType.TYPED_LITERAL;
+        }
+
+        // compile the splitter for a multi-valued field
+        ValueSplitter splitter = null;
+        if (objectType != ObjectType.BLANK_NODE && uriTemplate == null) {
+            final String splitDelimiter = variables.environmentSubstitute(mapping.splitDelimiter);
+            if (isNotEmpty(splitDelimiter)) {
+                splitter = ValueSplitter.compile(splitDelimiter, mapping.splitRegex);
+            }
+        }
+
+        // select the converter for the field value, split values are always strings
+        ValueConverter valueConverter = null;
+        if (objectType == ObjectType.LITERAL || objectType == ObjectType.TYPED_LITERAL) {
+            final ValueMetaInterface valueMeta;
+            if (splitter != null) {
+                valueMeta = new ValueMetaString(fieldName);
+            } else {
+                valueMeta = fieldIndex > -1 ? inputRowMeta.getValueMeta(fieldIndex) : null;
+            }
+            valueConverter = ValueConverters.select(fieldName, valueMeta, rdfDatatype, mapping.language, compiler.timeZone, compiler.log);
+        }
+
+        // compile the condition under which the property is written
+        final MappingCondition condition = MappingCondition.compile(mapping.conditionOperator,
+                variables.environmentSubstitute(mapping.conditionField),
+                variables.environmentSubstitute(mapping.conditionValue), inputRowMeta);
+
+        return new PropertyMapping(objectType, fieldName, fieldIndex, property, propertyFieldName, propertyFieldIndex,
+                rdfDatatype, mapping.language, mapping.actionIfNull, blankNodeId, valueConverter, uriTemplate,
+                splitter, splitter != null && mapping.splitAsList, condition);
+    }
+
+    /**
+     * Create a predicate from the QName of a property.
+     *
+     * @param qname the QName of the property
+     *
+     * @return the predicate
+     */
+    static Node asPredicate(final QName qname) {
+        if (isNullOrEmpty(qname.getNamespaceURI())) {
+            return NodeFactory.createURI(qname.getLocalPart());
+        } else {
+            return NodeFactory.createURI(qname.getNamespaceURI() + qname.getLocalPart());
+        }
+    }
+}
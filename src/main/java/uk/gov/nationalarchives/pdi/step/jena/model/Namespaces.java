@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.mem.GraphMem;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.shared.PrefixMapping;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The namespaces of a {@link MappingPlan}, frozen
+ * when the plan is compiled.
+ *
+ * The prefixes and namespace URIs are held in tries, so that
+ * a prefixed name from a row is expanded without extracting
+ * its prefix, and a URI is abbreviated without testing it
+ * against each namespace in turn.
+ *
+ * Each Jena Model created by the step shares these namespaces,
+ * see {@link #createModel()}, rather than holding its own copy.
+ */
+final class Namespaces {
+
+    /**
+     * Prefix to namespace URI, in the order they were configured.
+     */
+    final Map<String, String> prefixToUri;
+
+    /**
+     * Namespace URI to prefix.
+     */
+    final Map<String, String> uriToPrefix;
+
+    private final PrefixTrie prefixes;
+    private final PrefixTrie uris;
+
+    private Namespaces(final Map<String, String> prefixToUri, final Map<String, String> uriToPrefix) {
+        this.prefixToUri = prefixToUri;
+        this.uriToPrefix = uriToPrefix;
+        this.prefixes = new PrefixTrie(prefixToUri);
+        this.uris = new PrefixTrie(uriToPrefix);
+    }
+
+    /**
+     * Freeze the namespaces.
+     *
+     * @param namespaces map of prefix to namespace URI
+     *
+     * @return the frozen namespaces, or null if {@code namespaces} is null
+     */
+    static @Nullable Namespaces of(@Nullable final Map<String, String> namespaces) {
+        if (namespaces == null) {
+            return null;
+        }
+
+        final Map<String, String> uriToPrefix = new HashMap<>(namespaces.size() * 2);
+        for (final Map.Entry<String, String> namespace : namespaces.entrySet()) {
+            // same as Jena, where the last prefix of a namespace wins
+            uriToPrefix.put(namespace.getValue(), namespace.getKey());
+        }
+        return new Namespaces(Collections.unmodifiableMap(new LinkedHashMap<>(namespaces)),
+                Collections.unmodifiableMap(uriToPrefix));
+    }
+
+    /**
+     * Get the namespace URI of a prefix, which is a region of a String.
+     *
+     * @param str the String containing the prefix
+     * @param start the index of the start of the prefix in {@code str}
+     * @param end the index of the end of the prefix in {@code str}, exclusive
+     *
+     * @return the namespace URI, or null if there is no such prefix
+     */
+    @Nullable String getUri(final CharSequence str, final int start, final int end) {
+        return prefixes.get(str, start, end);
+    }
+
+    /**
+     * Expand a prefixed name, e.g. {@code rdf:type}.
+     *
+     * @param prefixedName the prefixed name
+     *
+     * @return the URI, or null if {@code prefixedName} does
+     *     not have a prefix, or has an unknown prefix
+     */
+    @Nullable String expand(final String prefixedName) {
+        final int idxColon = prefixedName.indexOf(':');
+        if (idxColon < 0) {
+            return null;
+        }
+
+        final String nsUri = prefixes.get(prefixedName, 0, idxColon);
+        if (nsUri == null) {
+            return null;
+        }
+
+        return new StringBuilder(nsUri.length() + prefixedName.length() - idxColon - 1)
+                .append(nsUri)
+                .append(prefixedName, idxColon + 1, prefixedName.length())
+                .toString();
+    }
+
+    /**
+     * Abbreviate a URI with the longest namespace URI that it starts with.
+     *
+     * @param uri the URI
+     *
+     * @return the prefixed name, or {@code uri} if
+     *     it does not start with a namespace URI
+     */
+    String shortForm(final String uri) {
+        final String prefix = uris.getLongestPrefix(uri);
+        if (prefix == null) {
+            return uri;
+        }
+
+        final int nsUriLength = prefixToUri.get(prefix).length();
+        return new StringBuilder(prefix.length() + 1 + uri.length() - nsUriLength)
+                .append(prefix)
+                .append(':')
+                .append(uri, nsUriLength, uri.length())
+                .toString();
+    }
+
+    /**
+     * Create an empty Jena Model whose prefixes are these namespaces.
+     *
+     * The namespaces are shared with every other such Model until the
+     * prefixes of the Model are changed, at which point the Model takes
+     * its own copy, see {@link SharedPrefixMapping}.
+     *
+     * @return the Jena Model
+     */
+    Model createModel() {
+        final Graph graph = new GraphMem() {
+            @Override
+            protected PrefixMapping createPrefixMapping() {
+                return new SharedPrefixMapping(Namespaces.this);
+            }
+        };
+        return ModelFactory.createModelForGraph(graph);
+    }
+}
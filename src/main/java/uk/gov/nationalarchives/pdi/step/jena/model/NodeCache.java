@@ -0,0 +1,230 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.impl.LiteralLabelFactory;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A size-bounded cache of IRI and Literal Nodes, so that
+ * values which occur again and again across rows share
+ * a single Node instance.
+ *
+ * The cache is split into segments which are each
+ * evicted in least-recently-used order, so that
+ * it may be used by many threads at once.
+ *
+ * A cache is shared by all copies of a step within
+ * a transformation, see {@link #acquire(String, int)}.
+ */
+class NodeCache {
+
+    private static final int SEGMENTS = 16;
+
+    private static final Map<String, NodeCache> SHARED = new HashMap<>();
+
+    private final int maxSize;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private int references;
+
+    NodeCache(final int maxSize) {
+        this.maxSize = maxSize;
+        final int segmentSize = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * Get the cache shared under a key, creating it if needed.
+     *
+     * Each call must be paired with a call to {@link #release(String)}.
+     *
+     * @param key the key that the cache is shared under
+     * @param maxSize the maximum number of Nodes to hold if the cache is created
+     *
+     * @return the shared cache
+     */
+    static NodeCache acquire(final String key, final int maxSize) {
+        synchronized (SHARED) {
+            final NodeCache nodeCache = SHARED.computeIfAbsent(key, k -> new NodeCache(maxSize));
+            nodeCache.references++;
+            return nodeCache;
+        }
+    }
+
+    /**
+     * Release a cache previously obtained from {@link #acquire(String, int)}.
+     *
+     * @param key the key that the cache is shared under
+     *
+     * @return the cache if this was the last reference to it, otherwise null
+     */
+    static @Nullable NodeCache release(final String key) {
+        synchronized (SHARED) {
+            final NodeCache nodeCache = SHARED.get(key);
+            if (nodeCache == null || --nodeCache.references > 0) {
+                return null;
+            }
+            SHARED.remove(key);
+            return nodeCache;
+        }
+    }
+
+    Node uri(final String uri) {
+        return get(uri, () -> NodeFactory.createURI(uri));
+    }
+
+    Node literal(final String lexicalForm, @Nullable final String language) {
+        if (language == null) {
+            return get(new LiteralKey(lexicalForm, null, null), () -> NodeFactory.createLiteral(lexicalForm));
+        } else {
+            return get(new LiteralKey(lexicalForm, language, null), () -> NodeFactory.createLiteral(lexicalForm, language));
+        }
+    }
+
+    Node typedLiteral(final Object value, final RDFDatatype datatype) {
+        final Supplier<Node> create = () -> NodeFactory.createLiteral(LiteralLabelFactory.createByValue(value, "", datatype));
+        if (value.getClass().isArray()) {
+            // arrays do not have value equality, so cannot be used as a key
+            misses.increment();
+            return create.get();
+        }
+        return get(new LiteralKey(value, null, datatype.getURI()), create);
+    }
+
+    Node typedLiteralFromLexicalForm(final String lexicalForm, final RDFDatatype datatype) {
+        return get(new LiteralKey(lexicalForm, null, datatype.getURI()), () -> NodeFactory.createLiteral(lexicalForm, datatype));
+    }
+
+    private Node get(final Object key, final Supplier<Node> create) {
+        final Segment segment = segments[(key.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+        synchronized (segment) {
+            Node node = segment.get(key);
+            if (node != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                node = create.get();
+                segment.put(key, node);
+            }
+            return node;
+        }
+    }
+
+    // <editor-fold desc="statistics">
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    int size() {
+        int size = 0;
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the proportion of lookups that were
+     * satisfied by the cache.
+     *
+     * @return the hit rate between 0 and 1
+     */
+    double getHitRate() {
+        final long hits = getHits();
+        final long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+    // </editor-fold>
+
+    private static class Segment extends LinkedHashMap<Object, Node> {
+        private final int capacity;
+
+        Segment(final int capacity) {
+            super(16, 0.75f, true);  // access-order for LRU
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Object, Node> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    private static class LiteralKey {
+        private final Object value;
+        @Nullable private final String language;
+        @Nullable private final String datatypeUri;
+        private final int hashCode;
+
+        LiteralKey(final Object value, @Nullable final String language, @Nullable final String datatypeUri) {
+            this.value = value;
+            this.language = language;
+            this.datatypeUri = datatypeUri;
+            this.hashCode = Objects.hash(value, language, datatypeUri);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final LiteralKey other = (LiteralKey) o;
+            return value.equals(other.value)
+                    && Objects.equals(language, other.language)
+                    && Objects.equals(datatypeUri, other.datatypeUri);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
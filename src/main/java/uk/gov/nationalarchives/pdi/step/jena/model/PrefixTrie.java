@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An immutable trie of String keys to String values.
+ *
+ * Lookups walk the characters of the String that they
+ * are given, so a key can be found within a larger String
+ * without first extracting it, and the longest key that
+ * starts a String can be found in a single pass.
+ */
+final class PrefixTrie {
+
+    private static final char[] NO_CHARS = new char[0];
+    private static final TrieNode[] NO_CHILDREN = new TrieNode[0];
+
+    private final TrieNode root = new TrieNode();
+
+    PrefixTrie(final Map<String, String> entries) {
+        for (final Map.Entry<String, String> entry : entries.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Get the value of a key, which is a region of a String.
+     *
+     * @param str the String containing the key
+     * @param start the index of the start of the key in {@code str}
+     * @param end the index of the end of the key in {@code str}, exclusive
+     *
+     * @return the value, or null if there is no such key
+     */
+    @Nullable String get(final CharSequence str, final int start, final int end) {
+        TrieNode node = root;
+        for (int i = start; i < end && node != null; i++) {
+            node = node.child(str.charAt(i));
+        }
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Get the value of the longest key that {@code str} starts with.
+     *
+     * @param str the String
+     *
+     * @return the value, or null if no key starts {@code str}
+     */
+    @Nullable String getLongestPrefix(final CharSequence str) {
+        String value = root.value;
+        TrieNode node = root;
+        final int len = str.length();
+        for (int i = 0; i < len; i++) {
+            node = node.child(str.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.value != null) {
+                value = node.value;
+            }
+        }
+        return value;
+    }
+
+    private void put(final String key, final String value) {
+        TrieNode node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.getOrAddChild(key.charAt(i));
+        }
+        node.value = value;
+    }
+
+    /**
+     * The children of a node are held in arrays sorted by
+     * character, as most nodes have only one or two children.
+     */
+    private static final class TrieNode {
+        private char[] chars = NO_CHARS;
+        private TrieNode[] children = NO_CHILDREN;
+        @Nullable private String value;
+
+        @Nullable TrieNode child(final char c) {
+            final int idx = Arrays.binarySearch(chars, c);
+            return idx >= 0 ? children[idx] : null;
+        }
+
+        TrieNode getOrAddChild(final char c) {
+            final int idx = Arrays.binarySearch(chars, c);
+            if (idx >= 0) {
+                return children[idx];
+            }
+
+            final int insertIdx = -(idx + 1);
+            final char[] newChars = new char[chars.length + 1];
+            final TrieNode[] newChildren = new TrieNode[children.length + 1];
+            System.arraycopy(chars, 0, newChars, 0, insertIdx);
+            System.arraycopy(children, 0, newChildren, 0, insertIdx);
+            System.arraycopy(chars, insertIdx, newChars, insertIdx + 1, chars.length - insertIdx);
+            System.arraycopy(children, insertIdx, newChildren, insertIdx + 1, children.length - insertIdx);
+
+            final TrieNode child = new TrieNode();
+            newChars[insertIdx] = c;
+            newChildren[insertIdx] = child;
+            chars = newChars;
+            children = newChildren;
+            return child;
+        }
+    }
+}
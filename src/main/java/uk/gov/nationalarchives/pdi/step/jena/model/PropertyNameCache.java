@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.apache.jena.graph.Node;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded cache of the property names read from the fields
+ * of rows, to the property Nodes that they resolve to.
+ *
+ * Property names in a field usually come from a small vocabulary
+ * (e.g. the attribute column of an entity-attribute-value table),
+ * so once the cache is full, further names are resolved each time
+ * rather than evicting those already cached.
+ *
+ * May be used by many threads at once.
+ */
+final class PropertyNameCache {
+
+    static final int MAX_SIZE = 4096;
+
+    private final Map<String, Node> properties = new ConcurrentHashMap<>();
+
+    /**
+     * Get the property that a name resolved to.
+     *
+     * @param propertyName the property name as it appeared in the field
+     *
+     * @return the property, or null if it is not cached
+     */
+    @Nullable Node get(final String propertyName) {
+        return properties.get(propertyName);
+    }
+
+    /**
+     * Cache the property that a name resolved to,
+     * unless the cache is full.
+     *
+     * @param propertyName the property name as it appeared in the field
+     * @param property the property
+     */
+    void put(final String propertyName, final Node property) {
+        if (properties.size() < MAX_SIZE) {
+            properties.putIfAbsent(propertyName, property);
+        }
+    }
+
+    int size() {
+        return properties.size();
+    }
+}
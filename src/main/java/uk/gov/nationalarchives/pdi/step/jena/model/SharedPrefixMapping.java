@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.apache.jena.sparql.graph.PrefixMappingBase;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * A PrefixMapping that reads from a shared set of {@link Namespaces}
+ * until it is first changed, when it copies them (i.e. copy-on-write).
+ *
+ * Models created for rows are rarely given further prefixes, so
+ * almost all of them share the one set of namespaces of the step.
+ */
+final class SharedPrefixMapping extends PrefixMappingBase {
+
+    private final Namespaces shared;
+
+    // set by the first change
+    @Nullable private Map<String, String> prefixToUri;
+    @Nullable private Map<String, String> uriToPrefix;
+
+    SharedPrefixMapping(final Namespaces shared) {
+        this.shared = shared;
+    }
+
+    private void copyOnWrite() {
+        if (prefixToUri == null) {
+            prefixToUri = new LinkedHashMap<>(shared.prefixToUri);
+            uriToPrefix = new HashMap<>(shared.uriToPrefix);
+        }
+    }
+
+    private Map<String, String> prefixToUriMap() {
+        return prefixToUri != null ? prefixToUri : shared.prefixToUri;
+    }
+
+    @Override
+    protected void add(final String prefix, final String uri) {
+        copyOnWrite();
+        final String oldUri = prefixToUri.put(prefix, uri);
+        if (oldUri != null) {
+            uriToPrefix.remove(oldUri, prefix);
+        }
+        uriToPrefix.put(uri, prefix);
+    }
+
+    @Override
+    protected void remove(final String prefix) {
+        copyOnWrite();
+        final String uri = prefixToUri.remove(prefix);
+        if (uri != null) {
+            uriToPrefix.remove(uri, prefix);
+        }
+    }
+
+    @Override
+    protected void clear() {
+        prefixToUri = new LinkedHashMap<>();
+        uriToPrefix = new HashMap<>();
+    }
+
+    @Override
+    protected boolean isEmpty() {
+        return prefixToUriMap().isEmpty();
+    }
+
+    @Override
+    protected int size() {
+        return prefixToUriMap().size();
+    }
+
+    @Override
+    protected String prefixToUri(final String prefix) {
+        return prefixToUriMap().get(prefix);
+    }
+
+    @Override
+    protected String uriToPrefix(final String uri) {
+        return (uriToPrefix != null ? uriToPrefix : shared.uriToPrefix).get(uri);
+    }
+
+    @Override
+    protected Map<String, String> asMap() {
+        return Collections.unmodifiableMap(prefixToUriMap());
+    }
+
+    @Override
+    protected Map<String, String> asMapCopy() {
+        return new LinkedHashMap<>(prefixToUriMap());
+    }
+
+    @Override
+    protected void apply(final BiConsumer<String, String> action) {
+        prefixToUriMap().forEach(action);
+    }
+
+    @Override
+    public String expandPrefix(final String prefixed) {
+        if (prefixToUri != null) {
+            return super.expandPrefix(prefixed);
+        }
+        final String expanded = shared.expand(prefixed);
+        return expanded != null ? expanded : prefixed;
+    }
+
+    @Override
+    public String shortForm(final String uri) {
+        if (prefixToUri != null) {
+            return super.shortForm(uri);
+        }
+        return shared.shortForm(uri);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.apache.jena.datatypes.BaseDatatype;
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.vocabulary.RDF;
+
+/**
+ * The rdf:XMLLiteral datatype, but without the well-formedness
+ * check that Jena performs when each Literal is created, which
+ * parses the entire lexical form as an XML document.
+ *
+ * The value of a Literal is its lexical form, so that no
+ * second copy of a large document is held. As only the URI
+ * of a datatype is serialized, such Literals are written
+ * exactly as rdf:XMLLiteral, although within a Jena Model
+ * they may not be equal to a Literal that has the same
+ * lexical form and was created with {@link RDF#dtXMLLiteral}.
+ */
+final class UncheckedXMLLiteralType extends BaseDatatype {
+
+    static final RDFDatatype INSTANCE = new UncheckedXMLLiteralType();
+
+    private UncheckedXMLLiteralType() {
+        super(RDF.dtXMLLiteral.getURI());
+    }
+
+    @Override
+    public Object parse(final String lexicalForm) {
+        return lexicalForm;
+    }
+
+    @Override
+    public String unparse(final Object value) {
+        return value.toString();
+    }
+
+    @Override
+    public boolean isValid(final String lexicalForm) {
+        return true;
+    }
+
+    @Override
+    public boolean isValidValue(final Object valueForm) {
+        return valueForm instanceof String;
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static uk.gov.nationalarchives.pdi.step.jena.Util.isNotEmpty;
+
+/**
+ * Mints URIs for resources within the step,
+ * compiled against the input row meta.
+ *
+ * A minted URI is the URI prefix followed
+ * by an identifier from the {@link UriMintingStrategy}.
+ */
+class UriMinter {
+
+    private static final String DEFAULT_UUID_PREFIX = "urn:uuid:";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<HashBuffer> HASH_BUFFER = ThreadLocal.withInitial(HashBuffer::new);
+
+    private final UriMintingStrategy strategy;
+    private final String prefix;
+    private final int[] fieldIndexes;
+
+    private UriMinter(final UriMintingStrategy strategy, final String prefix, final int[] fieldIndexes) {
+        this.strategy = strategy;
+        this.prefix = prefix;
+        this.fieldIndexes = fieldIndexes;
+    }
+
+    /**
+     * Compile a URI minter.
+     *
+     * @param strategy the minting strategy
+     * @param prefix the URI prefix, which may start with a namespace prefix
+     * @param fields a comma separated list of the names of the fields to hash,
+     *     only used by {@link UriMintingStrategy#HASH}
+     * @param inputRowMeta the input row meta
+     * @param namespaces the namespaces for expanding a prefix at the start of the URI prefix
+     *
+     * @return the URI minter, or null if the strategy is {@link UriMintingStrategy#NONE}
+     *
+     * @throws KettleException if the minter cannot be compiled
+     */
+    static @Nullable UriMinter compile(@Nullable final UriMintingStrategy strategy, @Nullable final String prefix,
+            @Nullable final String fields, final RowMetaInterface inputRowMeta,
+            @Nullable final Map<String, String> namespaces) throws KettleException {
+        if (strategy == null || strategy == UriMintingStrategy.NONE) {
+            return null;
+        }
+
+        final String expandedPrefix;
+        if (isNotEmpty(prefix)) {
+            expandedPrefix = UriTemplate.expandNamespacePrefix(prefix, namespaces);
+        } else if (strategy == UriMintingStrategy.UUID) {
+            expandedPrefix = DEFAULT_UUID_PREFIX;
+        } else {
+            throw new KettleException("Minting URIs by " + strategy + " requires a URI prefix");
+        }
+
+        int[] fieldIndexes = new int[0];
+        if (strategy == UriMintingStrategy.HASH) {
+            if (!isNotEmpty(fields)) {
+                throw new KettleException("Minting URIs by " + strategy + " requires one or more fields");
+            }
+            final String[] fieldNames = fields.split(",");
+            fieldIndexes = new int[fieldNames.length];
+            int fieldsCount = 0;
+            for (final String fieldName : fieldNames) {
+                final String trimmedFieldName = fieldName.trim();
+                if (trimmedFieldName.isEmpty()) {
+                    continue;
+                }
+                final int fieldIndex = inputRowMeta.indexOfValue(trimmedFieldName);
+                if (fieldIndex < 0) {
+                    throw new KettleException("Could not find field '" + trimmedFieldName + "' for minting URIs by " + strategy);
+                }
+                fieldIndexes[fieldsCount++] = fieldIndex;
+            }
+            fieldIndexes = Arrays.copyOf(fieldIndexes, fieldsCount);
+        }
+
+        return new UriMinter(strategy, expandedPrefix, fieldIndexes);
+    }
+
+    /**
+     * Mint a URI for a subject of a row.
+     *
+     * The further subjects of a row may share the URI prefix of the
+     * resource, so a URI minted by sequence for a further subject is
+     * made distinct by the index of the subject. The URI of the resource
+     * is the URI prefix followed by just the sequence number.
+     *
+     * @param plan the mapping plan, for decoding field values
+     * @param row the row
+     * @param sequence the sequence number of the row
+     * @param subjectIndex the index of the subject, 0 for the resource
+     *
+     * @return the minted URI
+     *
+     * @throws KettleValueException if the value of a field cannot be decoded
+     */
+    String mint(final MappingPlan plan, final Object[] row, final long sequence, final int subjectIndex) throws KettleValueException {
+        switch (strategy) {
+            case HASH:
+                return hash(plan, row, -1, -1);
+
+            case UUID:
+                return prefix + timeOrderedUuid();
+
+            case SEQUENCE:
+                return subjectIndex == 0 ? prefix + sequence : prefix + sequence + '-' + subjectIndex;
+
+            default:
+                throw new IllegalStateException("Unknown URI Minting Strategy: " + strategy);
+        }
+    }
+
+    /**
+     * Mint a URI in place of a blank node for a row.
+     *
+     * The same blank node mapping may occur more than once in a row,
+     * and other mappings may share the URI prefix, so the URI is made
+     * distinct by the blank node id and the occurrence of the blank node
+     * in the row, as well as by the row.
+     *
+     * @param plan the mapping plan, for decoding field values
+     * @param row the row
+     * @param sequence the sequence number of the row
+     * @param blankNodeId the id of the blank node mapping
+     * @param occurrence the occurrence of the blank node mapping within the row, from 0
+     *
+     * @return the minted URI
+     *
+     * @throws KettleValueException if the value of a field cannot be decoded
+     */
+    String mintBlankNode(final MappingPlan plan, final Object[] row, final long sequence, final int blankNodeId,
+            final int occurrence) throws KettleValueException {
+        switch (strategy) {
+            case HASH:
+                return hash(plan, row, blankNodeId, occurrence);
+
+            case UUID:
+                // already unique
+                return prefix + timeOrderedUuid();
+
+            case SEQUENCE:
+                return prefix + sequence + '-' + blankNodeId + '-' + occurrence;
+
+            default:
+                throw new IllegalStateException("Unknown URI Minting Strategy: " + strategy);
+        }
+    }
+
+    private String hash(final MappingPlan plan, final Object[] row, final int blankNodeId, final int occurrence)
+            throws KettleValueException {
+        final HashBuffer buffer = HASH_BUFFER.get();
+        buffer.length = 0;
+
+        // each value is preceded by its length, so that the boundaries between values are unambiguous
+        for (final int fieldIndex : fieldIndexes) {
+            if (plan.isNull(fieldIndex, row[fieldIndex])) {
+                buffer.putInt(-1);
+            } else {
+                final byte[] value = ValueConverters.asString(plan.getValue(row, fieldIndex)).getBytes(UTF_8);
+                buffer.putInt(value.length);
+                buffer.put(value);
+            }
+        }
+
+        if (blankNodeId > -1) {
+            // a marker which cannot be a length, followed by the blank node and its occurrence
+            buffer.putInt(-2);
+            buffer.putInt(blankNodeId);
+            buffer.putInt(occurrence);
+        }
+
+        final long[] hash = murmur3x64x128(buffer.bytes, buffer.length);
+
+        final StringBuilder builder = new StringBuilder(prefix.length() + 32);
+        builder.append(prefix);
+        appendHex(builder, hash[0]);
+        appendHex(builder, hash[1]);
+        return builder.toString();
+    }
+
+    /**
+     * Create a version 7 UUID, whose most significant bits
+     * are the current time in milliseconds.
+     */
+    private static String timeOrderedUuid() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long msb = (System.currentTimeMillis() << 16) | 0x7000L | (random.nextLong() & 0x0FFFL);
+        final long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb).toString();
+    }
+
+    private static void appendHex(final StringBuilder builder, final long value) {
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            builder.append(HEX[(int) (value >>> shift) & 0xF]);
+        }
+    }
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    /**
+     * The 128-bit x64 variant of MurmurHash3, with a seed of 0.
+     *
+     * @param data the data to hash
+     * @param len the number of bytes of data to hash
+     *
+     * @return the two 64-bit halves of the hash
+     */
+    static long[] murmur3x64x128(final byte[] data, final int len) {
+        long h1 = 0;
+        long h2 = 0;
+
+        final int blocks = len / 16;
+        for (int i = 0; i < blocks; i++) {
+            long k1 = getLongLittleEndian(data, i * 16);
+            long k2 = getLongLittleEndian(data, i * 16 + 8);
+
+            k1 *= C1; k1 = Long.rotateLeft(k1, 31); k1 *= C2; h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= C2; k2 = Long.rotateLeft(k2, 33); k2 *= C1; h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        final int tail = blocks * 16;
+        long k1 = 0;
+        long k2 = 0;
+        switch (len & 15) {
+            case 15: k2 ^= (data[tail + 14] & 0xFFL) << 48;
+            case 14: k2 ^= (data[tail + 13] & 0xFFL) << 40;
+            case 13: k2 ^= (data[tail + 12] & 0xFFL) << 32;
+            case 12: k2 ^= (data[tail + 11] & 0xFFL) << 24;
+            case 11: k2 ^= (data[tail + 10] & 0xFFL) << 16;
+            case 10: k2 ^= (data[tail + 9] & 0xFFL) << 8;
+            case 9: k2 ^= (data[tail + 8] & 0xFFL);
+                k2 *= C2; k2 = Long.rotateLeft(k2, 33); k2 *= C1; h2 ^= k2;
+            case 8: k1 ^= (data[tail + 7] & 0xFFL) << 56;
+            case 7: k1 ^= (data[tail + 6] & 0xFFL) << 48;
+            case 6: k1 ^= (data[tail + 5] & 0xFFL) << 40;
+            case 5: k1 ^= (data[tail + 4] & 0xFFL) << 32;
+            case 4: k1 ^= (data[tail + 3] & 0xFFL) << 24;
+            case 3: k1 ^= (data[tail + 2] & 0xFFL) << 16;
+            case 2: k1 ^= (data[tail + 1] & 0xFFL) << 8;
+            case 1: k1 ^= (data[tail] & 0xFFL);
+                k1 *= C1; k1 = Long.rotateLeft(k1, 31); k1 *= C2; h1 ^= k1;
+        }
+
+        h1 ^= len;
+        h2 ^= len;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+
+        return new long[] { h1, h2 };
+    }
+
+    private static long getLongLittleEndian(final byte[] data, final int offset) {
+        return (data[offset] & 0xFFL)
+                | (data[offset + 1] & 0xFFL) << 8
+                | (data[offset + 2] & 0xFFL) << 16
+                | (data[offset + 3] & 0xFFL) << 24
+                | (data[offset + 4] & 0xFFL) << 32
+                | (data[offset + 5] & 0xFFL) << 40
+                | (data[offset + 6] & 0xFFL) << 48
+                | (data[offset + 7] & 0xFFL) << 56;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * A reusable buffer of the bytes to hash.
+     */
+    private static class HashBuffer {
+        byte[] bytes = new byte[256];
+        int length;
+
+        void putInt(final int value) {
+            ensureCapacity(4);
+            bytes[length++] = (byte) (value >>> 24);
+            bytes[length++] = (byte) (value >>> 16);
+            bytes[length++] = (byte) (value >>> 8);
+            bytes[length++] = (byte) value;
+        }
+
+        void put(final byte[] value) {
+            ensureCapacity(value.length);
+            System.arraycopy(value, 0, bytes, length, value.length);
+            length += value.length;
+        }
+
+        private void ensureCapacity(final int additional) {
+            if (length + additional > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + additional));
+            }
+        }
+    }
+}
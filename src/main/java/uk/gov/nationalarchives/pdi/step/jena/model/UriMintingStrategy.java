@@ -0,0 +1,67 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+/**
+ * Strategies for minting a URI within the step,
+ * rather than reading it from a field of the row.
+ */
+public enum UriMintingStrategy {
+    /**
+     * No URI is minted.
+     */
+    NONE,
+
+    /**
+     * A 128-bit hash of the values of one or more fields,
+     * the same values always produce the same URI.
+     */
+    HASH,
+
+    /**
+     * A time-ordered (version 7) UUID.
+     */
+    UUID,
+
+    /**
+     * A sequence number which is local to the step, each copy
+     * of the step mints from its own partition of the sequence.
+     * Further subjects and blank nodes of a row are made distinct
+     * by a suffix after the sequence number.
+     */
+    SEQUENCE;
+
+    /**
+     * Get the String names of the enumerated values.
+     *
+     * @return an array of string names.
+     */
+    public static String[] names() {
+        final UriMintingStrategy[] values = values();
+        final String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].name();
+        }
+        return names;
+    }
+}
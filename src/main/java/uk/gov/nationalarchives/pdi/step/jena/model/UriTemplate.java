@@ -0,0 +1,234 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A URI template, e.g. {@code http://example.com/{series}/{piece}},
+ * compiled against the input row meta.
+ *
+ * Each {@code {field}} is replaced by the value of the field, percent-encoded
+ * so that it forms a single path segment. Each {@code {+field}} is replaced
+ * by the value of the field, keeping any reserved characters (e.g. '/')
+ * and any non-ASCII characters, as in RFC 6570 reserved expansion.
+ *
+ * A template may start with a namespace prefix, e.g. {@code cat:{series}},
+ * which is expanded when the template is compiled.
+ */
+class UriTemplate {
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final String template;
+
+    /**
+     * The literal segments, there is always
+     * one more literal than there are fields.
+     */
+    private final String[] literals;
+    private final String[] fieldNames;
+    private final int[] fieldIndexes;
+    private final boolean[] reserved;
+
+    private UriTemplate(final String template, final String[] literals, final String[] fieldNames,
+            final int[] fieldIndexes, final boolean[] reserved) {
+        this.template = template;
+        this.literals = literals;
+        this.fieldNames = fieldNames;
+        this.fieldIndexes = fieldIndexes;
+        this.reserved = reserved;
+    }
+
+    /**
+     * Compile a URI template.
+     *
+     * @param template the URI template
+     * @param inputRowMeta the input row meta
+     * @param namespaces the namespaces for expanding a prefix at the start of the template
+     *
+     * @return the compiled URI template
+     *
+     * @throws KettleException if the template is invalid, or refers to a field which is not present
+     */
+    static UriTemplate compile(final String template, final RowMetaInterface inputRowMeta,
+            @Nullable final Map<String, String> namespaces) throws KettleException {
+        final List<String> literals = new ArrayList<>();
+        final List<String> fieldNames = new ArrayList<>();
+        final List<Boolean> reserved = new ArrayList<>();
+
+        int start = 0;
+        int idxOpen;
+        while ((idxOpen = template.indexOf('{', start)) > -1) {
+            final int idxClose = template.indexOf('}', idxOpen);
+            if (idxClose < 0) {
+                throw new KettleException("URI template '" + template + "' has an unclosed '{' at index: " + idxOpen);
+            }
+
+            literals.add(template.substring(start, idxOpen));
+
+            String fieldName = template.substring(idxOpen + 1, idxClose);
+            final boolean isReserved = fieldName.startsWith("+");
+            if (isReserved) {
+                fieldName = fieldName.substring(1);
+            }
+            if (fieldName.isEmpty()) {
+                throw new KettleException("URI template '" + template + "' has an empty field name at index: " + idxOpen);
+            }
+            fieldNames.add(fieldName);
+            reserved.add(isReserved);
+
+            start = idxClose + 1;
+        }
+        literals.add(template.substring(start));
+
+        // expand any namespace prefix at the start of the template
+        literals.set(0, expandNamespacePrefix(literals.get(0), namespaces));
+
+        final int[] fieldIndexes = new int[fieldNames.size()];
+        final boolean[] reservedArray = new boolean[fieldNames.size()];
+        for (int i = 0; i < fieldIndexes.length; i++) {
+            fieldIndexes[i] = inputRowMeta.indexOfValue(fieldNames.get(i));
+            if (fieldIndexes[i] < 0) {
+                throw new KettleException("URI template '" + template + "' refers to field '" + fieldNames.get(i) + "' which could not be found");
+            }
+            reservedArray[i] = reserved.get(i);
+        }
+
+        return new UriTemplate(template, literals.toArray(new String[0]), fieldNames.toArray(new String[0]),
+                fieldIndexes, reservedArray);
+    }
+
+    /**
+     * Expand a namespace prefix at the start of a URI,
+     * e.g. {@code cat:item/} to {@code http://cat.example.com/item/}.
+     *
+     * @param uri the URI
+     * @param namespaces the namespaces
+     *
+     * @return the URI with its prefix expanded, or the URI
+     *     if it does not start with a known prefix
+     */
+    static String expandNamespacePrefix(final String uri, @Nullable final Map<String, String> namespaces) {
+        final int idxNsSep = uri.indexOf(':');
+        if (idxNsSep > -1 && namespaces != null) {
+            final String nsUri = namespaces.get(uri.substring(0, idxNsSep));
+            if (nsUri != null) {
+                return nsUri + uri.substring(idxNsSep + 1);
+            }
+        }
+        return uri;
+    }
+
+    /**
+     * Expand the template for a row.
+     *
+     * @param plan the mapping plan, for decoding field values
+     * @param row the row
+     *
+     * @return the URI, or null if the value of any field in the template is null
+     *
+     * @throws KettleValueException if the value of a field cannot be decoded
+     */
+    @Nullable String expand(final MappingPlan plan, final Object[] row) throws KettleValueException {
+        final StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+
+        builder.append(literals[0]);
+        for (int i = 0; i < fieldIndexes.length; i++) {
+            final Object value = row[fieldIndexes[i]];
+            if (plan.isNull(fieldIndexes[i], value)) {
+                return null;
+            }
+
+            final String strValue = ValueConverters.asString(plan.getValue(row, fieldIndexes[i]));
+            appendEncoded(builder, strValue, reserved[i]);
+            builder.append(literals[i + 1]);
+        }
+
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+
+    private static void appendEncoded(final StringBuilder builder, final String value, final boolean reserved) {
+        final int len = value.length();
+        for (int i = 0; i < len; i++) {
+            final char c = value.charAt(i);
+            if (isUnreserved(c) || (reserved && (isReserved(c) || c == '%' || c >= 0x80))) {
+                builder.append(c);
+
+            } else if (c < 0x80) {
+                appendPercentEncoded(builder, c);
+
+            } else {
+                // percent-encode the UTF-8 bytes of the character
+                final int codePoint = Character.codePointAt(value, i);
+                final int charCount = Character.charCount(codePoint);
+                final byte[] bytes = value.substring(i, i + charCount).getBytes(StandardCharsets.UTF_8);
+                for (final byte b : bytes) {
+                    appendPercentEncoded(builder, b & 0xFF);
+                }
+                i += charCount - 1;
+            }
+        }
+    }
+
+    private static void appendPercentEncoded(final StringBuilder builder, final int b) {
+        builder.append('%');
+        builder.append(HEX[b >> 4]);
+        builder.append(HEX[b & 0xF]);
+    }
+
+    private static boolean isUnreserved(final char c) {
+        return (c >= 'a' && c <= 'z')
+                || (c >= 'A' && c <= 'Z')
+                || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static boolean isReserved(final char c) {
+        switch (c) {
+            case ':': case '/': case '?': case '#': case '[': case ']': case '@':
+            case '!': case '$': case '&': case '\'': case '(': case ')':
+            case '*': case '+': case ',': case ';': case '=':
+                return true;
+
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.apache.jena.graph.Node;
+import org.pentaho.di.core.exception.KettleException;
+
+import javax.annotation.Nullable;
+
+/**
+ * Converts the value of a field in a row into an RDF Literal.
+ *
+ * A converter is selected once for each mapping when the
+ * {@link MappingPlan} is compiled, see {@link ValueConverters}.
+ */
+@FunctionalInterface
+interface ValueConverter {
+
+    /**
+     * Convert a value.
+     *
+     * @param value the non-null value of the field
+     * @param nodeCache a cache of nodes, or null if there is no cache
+     *
+     * @return the RDF Literal
+     *
+     * @throws KettleException if the value cannot be converted
+     */
+    Node convert(Object value, @Nullable NodeCache nodeCache) throws KettleException;
+}
@@ -0,0 +1,426 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.impl.LiteralLabelFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import uk.gov.nationalarchives.pdi.step.jena.XsdDateTimeUtil;
+
+import javax.annotation.Nullable;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.time.ZoneId;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static uk.gov.nationalarchives.pdi.step.jena.Util.isNullOrEmpty;
+
+/**
+ * Selects a {@link ValueConverter} for a mapping from the
+ * Kettle type of the input field and the RDF datatype of
+ * the mapping, so that the conversion for each value does
+ * not need to examine either type.
+ */
+class ValueConverters {
+
+    /**
+     * Select a converter.
+     *
+     * @param fieldName the name of the input field
+     * @param valueMeta the value meta of the input field, or null if the field is not present
+     * @param rdfDatatype the RDF datatype, or null for a plain or language-tagged literal
+     * @param language the language tag for a plain literal, or null
+     * @param timeZone the timezone for converting dates
+     * @param log for reporting combinations of types that cannot be converted directly
+     *
+     * @return the converter
+     */
+    static ValueConverter select(@Nullable final String fieldName, @Nullable final ValueMetaInterface valueMeta,
+            @Nullable final RDFDatatype rdfDatatype, @Nullable final String language, final ZoneId timeZone,
+            final LogChannelInterface log) {
+        if (valueMeta == null) {
+            return generic(rdfDatatype, language, timeZone);
+        }
+
+        ValueConverter converter;
+        if (rdfDatatype == null || rdfDatatype.equals(XSDDatatype.XSDstring)) {
+            converter = selectForString(valueMeta.getType(), rdfDatatype == null ? language : null);
+        } else {
+            converter = selectForDatatype(valueMeta.getType(), rdfDatatype, timeZone);
+        }
+
+        if (converter == null) {
+            log.logBasic("Field '" + fieldName + "' of type " + valueMeta.getTypeDesc() + " cannot be converted directly to "
+                    + (rdfDatatype == null ? "a Literal" : rdfDatatype.getURI()) + ", the value of the field will be used as-is");
+            converter = generic(rdfDatatype, language, timeZone);
+        }
+
+        if (valueMeta.isStorageBinaryString()) {
+            // lazy conversion, so decode the value before converting it
+            converter = decodeBinaryString(valueMeta, converter);
+        }
+
+        return converter;
+    }
+
+    /**
+     * Wrap a converter so that it decodes a value which
+     * is stored as a binary string (i.e. lazy conversion),
+     * into the native type of the field.
+     *
+     * Strings that need no trimming are decoded directly from
+     * their encoded bytes, all other types are decoded by Kettle.
+     */
+    private static ValueConverter decodeBinaryString(final ValueMetaInterface valueMeta, final ValueConverter converter) {
+        if (valueMeta.getType() == ValueMetaInterface.TYPE_STRING && valueMeta.getTrimType() == ValueMetaInterface.TRIM_TYPE_NONE) {
+            final Charset charset = binaryStringCharset(valueMeta);
+            if (charset != null) {
+                return (value, nodeCache) -> converter.convert(new String((byte[]) value, charset), nodeCache);
+            }
+        }
+
+        return (value, nodeCache) -> {
+            final Object nativeValue;
+            synchronized (valueMeta) {
+                // the parsers of a value meta are not thread-safe, and the plan may be used by the worker threads
+                nativeValue = valueMeta.convertBinaryStringToNativeType((byte[]) value);
+            }
+            return converter.convert(nativeValue, nodeCache);
+        };
+    }
+
+    private static @Nullable Charset binaryStringCharset(final ValueMetaInterface valueMeta) {
+        final ValueMetaInterface storageMetadata = valueMeta.getStorageMetadata();
+        final String encoding = storageMetadata != null ? storageMetadata.getStringEncoding() : valueMeta.getStringEncoding();
+        if (isNullOrEmpty(encoding)) {
+            // same as Kettle, which uses the platform default
+            return Charset.defaultCharset();
+        }
+
+        try {
+            return Charset.forName(encoding);
+        } catch (final IllegalArgumentException e) {
+            // leave it to Kettle to decode
+            return null;
+        }
+    }
+
+    private static @Nullable ValueConverter selectForString(final int type, @Nullable final String language) {
+        switch (type) {
+            case ValueMetaInterface.TYPE_STRING:
+                return (value, nodeCache) -> literal((String) value, language, nodeCache);
+
+            case ValueMetaInterface.TYPE_INTEGER:
+            case ValueMetaInterface.TYPE_NUMBER:
+            case ValueMetaInterface.TYPE_BIGNUMBER:
+            case ValueMetaInterface.TYPE_BOOLEAN:
+            case ValueMetaInterface.TYPE_TIMESTAMP:
+                return (value, nodeCache) -> literal(value.toString(), language, nodeCache);
+
+            case ValueMetaInterface.TYPE_BINARY:
+                return (value, nodeCache) -> literal(new String((byte[]) value, UTF_8), language, nodeCache);
+
+            default:
+                return null;
+        }
+    }
+
+    private static @Nullable ValueConverter selectForDatatype(final int type, final RDFDatatype rdfDatatype,
+            final ZoneId timeZone) {
+        if (rdfDatatype.equals(XSDDatatype.XSDdate)) {
+            switch (type) {
+                case ValueMetaInterface.TYPE_DATE:
+                case ValueMetaInterface.TYPE_TIMESTAMP:
+                    return (value, nodeCache) -> lexicalTypedLiteral(XsdDateTimeUtil.formatXsdDate((java.util.Date) value, timeZone), rdfDatatype, nodeCache);
+
+                case ValueMetaInterface.TYPE_STRING:
+                    return (value, nodeCache) -> XsdDateTimeUtil.isXsdDate((String) value)
+                            ? lexicalTypedLiteral((String) value, rdfDatatype, nodeCache)
+                            : typedLiteral(value, rdfDatatype, nodeCache);
+
+                default:
+                    return null;
+            }
+
+        } else if (rdfDatatype.equals(XSDDatatype.XSDdateTime)) {
+            switch (type) {
+                case ValueMetaInterface.TYPE_DATE:
+                case ValueMetaInterface.TYPE_TIMESTAMP:
+                    return (value, nodeCache) -> lexicalTypedLiteral(XsdDateTimeUtil.formatXsdDateTime((java.util.Date) value, timeZone), rdfDatatype, nodeCache);
+
+                case ValueMetaInterface.TYPE_STRING:
+                    return (value, nodeCache) -> XsdDateTimeUtil.isXsdDateTime((String) value)
+                            ? lexicalTypedLiteral((String) value, rdfDatatype, nodeCache)
+                            : typedLiteral(value, rdfDatatype, nodeCache);
+
+                default:
+                    return null;
+            }
+
+        } else if (isMarkupDatatype(rdfDatatype)) {
+            switch (type) {
+                case ValueMetaInterface.TYPE_STRING:
+                    return (value, nodeCache) -> markupLiteral((String) value, rdfDatatype);
+
+                case ValueMetaInterface.TYPE_BINARY:
+                    return (value, nodeCache) -> markupLiteral(new String((byte[]) value, UTF_8), rdfDatatype);
+
+                default:
+                    return null;
+            }
+        }
+
+        switch (type) {
+            case ValueMetaInterface.TYPE_STRING:
+                // parse the lexical form, to obtain a value for the datatype
+                return (value, nodeCache) -> lexicalTypedLiteral((String) value, rdfDatatype, nodeCache);
+
+            case ValueMetaInterface.TYPE_BOOLEAN:
+                if (rdfDatatype.equals(XSDDatatype.XSDboolean)) {
+                    return (value, nodeCache) -> typedLiteral(value, rdfDatatype, nodeCache);
+                }
+                return null;
+
+            case ValueMetaInterface.TYPE_INTEGER:
+                if (isIntegerDatatype(rdfDatatype)) {
+                    return (value, nodeCache) -> typedLiteral(value, rdfDatatype, nodeCache);
+                } else if (rdfDatatype.equals(XSDDatatype.XSDdecimal)) {
+                    return (value, nodeCache) -> typedLiteral(BigDecimal.valueOf(((Number) value).longValue()), rdfDatatype, nodeCache);
+                } else if (rdfDatatype.equals(XSDDatatype.XSDdouble)) {
+                    return (value, nodeCache) -> typedLiteral(((Number) value).doubleValue(), rdfDatatype, nodeCache);
+                } else if (rdfDatatype.equals(XSDDatatype.XSDgYear)) {
+                    return (value, nodeCache) -> lexicalTypedLiteral(XsdDateTimeUtil.formatXsdGYear(((Number) value).longValue()), rdfDatatype, nodeCache);
+                }
+                return null;
+
+            case ValueMetaInterface.TYPE_NUMBER:
+                if (rdfDatatype.equals(XSDDatatype.XSDdouble)) {
+                    return (value, nodeCache) -> typedLiteral(value, rdfDatatype, nodeCache);
+                } else if (rdfDatatype.equals(XSDDatatype.XSDfloat)) {
+                    return (value, nodeCache) -> typedLiteral(((Number) value).floatValue(), rdfDatatype, nodeCache);
+                } else if (rdfDatatype.equals(XSDDatatype.XSDdecimal)) {
+                    return (value, nodeCache) -> typedLiteral(BigDecimal.valueOf(((Number) value).doubleValue()), rdfDatatype, nodeCache);
+                }
+                return null;
+
+            case ValueMetaInterface.TYPE_BIGNUMBER:
+                if (rdfDatatype.equals(XSDDatatype.XSDdecimal)) {
+                    return (value, nodeCache) -> typedLiteral(value, rdfDatatype, nodeCache);
+                } else if (rdfDatatype.equals(XSDDatatype.XSDdouble)) {
+                    return (value, nodeCache) -> typedLiteral(((Number) value).doubleValue(), rdfDatatype, nodeCache);
+                }
+                return null;
+
+            case ValueMetaInterface.TYPE_BINARY:
+                if (rdfDatatype.equals(XSDDatatype.XSDbase64Binary) || rdfDatatype.equals(XSDDatatype.XSDhexBinary)) {
+                    return (value, nodeCache) -> typedLiteral(value, rdfDatatype, nodeCache);
+                }
+                return null;
+
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isIntegerDatatype(final RDFDatatype rdfDatatype) {
+        return rdfDatatype.equals(XSDDatatype.XSDinteger)
+                || rdfDatatype.equals(XSDDatatype.XSDlong)
+                || rdfDatatype.equals(XSDDatatype.XSDint)
+                || rdfDatatype.equals(XSDDatatype.XSDshort)
+                || rdfDatatype.equals(XSDDatatype.XSDbyte)
+                || rdfDatatype.equals(XSDDatatype.XSDnonNegativeInteger)
+                || rdfDatatype.equals(XSDDatatype.XSDpositiveInteger)
+                || rdfDatatype.equals(XSDDatatype.XSDnonPositiveInteger)
+                || rdfDatatype.equals(XSDDatatype.XSDnegativeInteger)
+                || rdfDatatype.equals(XSDDatatype.XSDunsignedLong)
+                || rdfDatatype.equals(XSDDatatype.XSDunsignedInt)
+                || rdfDatatype.equals(XSDDatatype.XSDunsignedShort)
+                || rdfDatatype.equals(XSDDatatype.XSDunsignedByte)
+                || rdfDatatype.equals(XSDDatatype.XSDgYear);
+    }
+
+    /**
+     * A converter that examines the type of each value.
+     */
+    private static ValueConverter generic(@Nullable final RDFDatatype rdfDatatype, @Nullable final String language,
+            final ZoneId timeZone) {
+        if (rdfDatatype == null) {
+            return (value, nodeCache) -> literal(asString(value), language, nodeCache);
+        }
+
+        return (value, nodeCache) -> {
+            final Object rdfValue = convertSqlValueToRdf(value, rdfDatatype, timeZone);
+            if (rdfValue instanceof String && isLexicalDatatype(rdfDatatype)) {
+                return lexicalTypedLiteral((String) rdfValue, rdfDatatype, nodeCache);
+            } else if (rdfValue instanceof String && isMarkupDatatype(rdfDatatype)) {
+                return markupLiteral((String) rdfValue, rdfDatatype);
+            }
+            return typedLiteral(rdfValue, rdfDatatype, nodeCache);
+        };
+    }
+
+    /**
+     * Convert a value from a row into a string.
+     *
+     * @param value the value
+     *
+     * @return the string
+     */
+    static String asString(final Object value) {
+        final Object rdfValue = convertSqlValueToRdf(value, null, null);
+        return rdfValue instanceof String ? (String) rdfValue : rdfValue.toString();
+    }
+
+    /**
+     * Determine if Literals of a datatype are created
+     * from their lexical form rather than from a value.
+     */
+    private static boolean isLexicalDatatype(final RDFDatatype rdfDatatype) {
+        return rdfDatatype.equals(XSDDatatype.XSDdate) || rdfDatatype.equals(XSDDatatype.XSDdateTime)
+                || rdfDatatype.equals(XSDDatatype.XSDgYear);
+    }
+
+    /**
+     * Determine if Literals of a datatype hold a markup document,
+     * i.e. rdf:XMLLiteral or rdf:HTML.
+     */
+    private static boolean isMarkupDatatype(final RDFDatatype rdfDatatype) {
+        return rdfDatatype.equals(RDF.dtXMLLiteral) || rdfDatatype.equals(RDF.dtRDFHTML)
+                || rdfDatatype == UncheckedXMLLiteralType.INSTANCE;
+    }
+
+    /**
+     * Convert a value from a row into a value for an RDF Literal.
+     *
+     * NOTE: for xsd:date and xsd:dateTime the result is always
+     * the lexical form, see {@link #isLexicalDatatype(RDFDatatype)}.
+     */
+    private static Object convertSqlValueToRdf(final Object sqlValue, @Nullable final RDFDatatype rdfDatatype, @Nullable final ZoneId timeZone) {
+        if (rdfDatatype == null || rdfDatatype.equals(XSDDatatype.XSDstring)) {
+            // to xsd:string
+            if (sqlValue instanceof String) {
+                return sqlValue;
+
+            } else if (sqlValue instanceof byte[]) {
+                return new String((byte[]) sqlValue, UTF_8);
+
+            } else if (sqlValue instanceof java.sql.Date || sqlValue instanceof java.sql.Timestamp) {
+                return sqlValue.toString();
+
+            } else if (sqlValue instanceof Number) {
+                return ((Number)sqlValue).toString();
+
+            }
+
+        } else if (rdfDatatype.equals(XSDDatatype.XSDboolean)) {
+            // to xsd:boolean
+            if (sqlValue instanceof Boolean) {
+                return sqlValue;
+            }
+
+        } else if (rdfDatatype.equals(XSDDatatype.XSDdate)) {
+            // to xsd:date
+            if (sqlValue instanceof String) {
+                // check lexical form
+                if (XsdDateTimeUtil.isXsdDate((String) sqlValue)) {
+                    return sqlValue;
+                }
+
+            } else if (sqlValue instanceof java.util.Date) {
+                return XsdDateTimeUtil.formatXsdDate((java.util.Date) sqlValue, timeZone);
+            }
+
+        } else if (rdfDatatype.equals(XSDDatatype.XSDdateTime)) {
+            // to xsd:dateTime
+            if (sqlValue instanceof String) {
+                // check lexical form
+                if (XsdDateTimeUtil.isXsdDateTime((String) sqlValue)) {
+                    return sqlValue;
+                }
+
+            } else if (sqlValue instanceof java.util.Date) {
+                return XsdDateTimeUtil.formatXsdDateTime((java.util.Date) sqlValue, timeZone);
+            }
+
+        } else if (rdfDatatype.equals(XSDDatatype.XSDgYear)) {
+            // to xsd:gYear
+            if (sqlValue instanceof Long) {
+                // the year is formatted, as its string value is not a valid lexical form for years before 1000
+                return XsdDateTimeUtil.formatXsdGYear((Long) sqlValue);
+            }
+
+        } else if (isMarkupDatatype(rdfDatatype)) {
+            // to rdf:XMLLiteral or rdf:HTML
+            if (sqlValue instanceof String) {
+                return sqlValue;
+
+            } else if (sqlValue instanceof byte[]) {
+                return new String((byte[]) sqlValue, UTF_8);
+            }
+        }
+
+        // fallback, reported when the converter was selected
+        return sqlValue;
+    }
+
+    private static Node literal(final String lexicalForm, @Nullable final String language, @Nullable final NodeCache nodeCache) {
+        if (nodeCache != null) {
+            return nodeCache.literal(lexicalForm, language);
+        } else if (language == null) {
+            // non-typed literal
+            return NodeFactory.createLiteral(lexicalForm);
+        } else {
+            // language-tagged string
+            return NodeFactory.createLiteral(lexicalForm, language);
+        }
+    }
+
+    /**
+     * Markup documents are often large and rarely repeated, so
+     * they are created from their lexical form and are never
+     * cached, which would otherwise pin them in memory.
+     */
+    private static Node markupLiteral(final String lexicalForm, final RDFDatatype rdfDatatype) {
+        return NodeFactory.createLiteral(lexicalForm, rdfDatatype);
+    }
+
+    private static Node typedLiteral(final Object value, final RDFDatatype rdfDatatype, @Nullable final NodeCache nodeCache) {
+        if (nodeCache != null) {
+            return nodeCache.typedLiteral(value, rdfDatatype);
+        }
+        return NodeFactory.createLiteral(LiteralLabelFactory.createByValue(value, "", rdfDatatype));
+    }
+
+    private static Node lexicalTypedLiteral(final String lexicalForm, final RDFDatatype rdfDatatype, @Nullable final NodeCache nodeCache) {
+        if (nodeCache != null) {
+            return nodeCache.typedLiteralFromLexicalForm(lexicalForm, rdfDatatype);
+        }
+        return NodeFactory.createLiteral(lexicalForm, rdfDatatype);
+    }
+}
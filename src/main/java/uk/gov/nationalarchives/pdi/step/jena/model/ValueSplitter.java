@@ -0,0 +1,144 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.pentaho.di.core.exception.KettleException;
+
+import javax.annotation.Nullable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Splits a multi-valued field value, e.g. {@code "a; b; c"},
+ * into its individual values.
+ *
+ * Each value is trimmed of surrounding whitespace, and empty
+ * values are skipped. The only allocation per value is the
+ * value itself, unless the delimiter is a regular expression.
+ */
+class ValueSplitter {
+
+    /**
+     * Receives each of the values of a split.
+     */
+    @FunctionalInterface
+    interface ValueConsumer {
+        void accept(String value) throws KettleException;
+    }
+
+    private final String delimiter;
+    private final char delimiterChar;
+    @Nullable private final Pattern pattern;
+
+    private ValueSplitter(final String delimiter, @Nullable final Pattern pattern) {
+        this.delimiter = delimiter;
+        this.delimiterChar = delimiter.length() == 1 ? delimiter.charAt(0) : 0;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Compile a value splitter.
+     *
+     * @param delimiter the delimiter between values
+     * @param regex true if the delimiter is a regular expression
+     *
+     * @return the value splitter
+     *
+     * @throws KettleException if the delimiter is empty, or the regular expression is invalid
+     */
+    static ValueSplitter compile(final String delimiter, final boolean regex) throws KettleException {
+        if (delimiter.isEmpty()) {
+            throw new KettleException("The delimiter for splitting values cannot be empty");
+        }
+
+        if (!regex) {
+            return new ValueSplitter(delimiter, null);
+        }
+
+        try {
+            return new ValueSplitter(delimiter, Pattern.compile(delimiter));
+        } catch (final PatternSyntaxException e) {
+            throw new KettleException("Invalid regular expression for splitting values: '" + delimiter + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Split a value.
+     *
+     * @param value the value to split
+     * @param consumer receives each of the values
+     *
+     * @return the number of values
+     *
+     * @throws KettleException if the consumer throws an exception
+     */
+    int split(final String value, final ValueConsumer consumer) throws KettleException {
+        int count = 0;
+        int start = 0;
+
+        if (pattern != null) {
+            final Matcher matcher = pattern.matcher(value);
+            while (matcher.find()) {
+                count += accept(value, start, matcher.start(), consumer);
+                start = matcher.end();
+            }
+
+        } else {
+            int end;
+            while ((end = indexOfDelimiter(value, start)) > -1) {
+                count += accept(value, start, end, consumer);
+                start = end + delimiter.length();
+            }
+        }
+
+        count += accept(value, start, value.length(), consumer);
+        return count;
+    }
+
+    private int indexOfDelimiter(final String value, final int from) {
+        if (delimiterChar != 0) {
+            return value.indexOf(delimiterChar, from);
+        }
+        return value.indexOf(delimiter, from);
+    }
+
+    private static int accept(final String value, int start, int end, final ValueConsumer consumer) throws KettleException {
+        while (start < end && Character.isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return 0;
+        }
+        consumer.accept(value.substring(start, end));
+        return 1;
+    }
+
+    @Override
+    public String toString() {
+        return delimiter;
+    }
+}
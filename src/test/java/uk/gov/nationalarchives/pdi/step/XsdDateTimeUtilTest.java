@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step;
+
+import org.junit.jupiter.api.Test;
+import uk.gov.nationalarchives.pdi.step.jena.XsdDateTimeUtil;
+
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class XsdDateTimeUtilTest {
+
+    @Test
+    public void isXsdDate() {
+        assertTrue(XsdDateTimeUtil.isXsdDate("2020-01-31"));
+        assertTrue(XsdDateTimeUtil.isXsdDate("-0044-03-15"));
+        assertTrue(XsdDateTimeUtil.isXsdDate("2020-02-29Z"));
+        assertTrue(XsdDateTimeUtil.isXsdDate("2020-04-30+01:00"));
+        assertTrue(XsdDateTimeUtil.isXsdDate("2020-04-30-05:30"));
+
+        assertFalse(XsdDateTimeUtil.isXsdDate(""));
+        assertFalse(XsdDateTimeUtil.isXsdDate("2020-1-31"));
+        assertFalse(XsdDateTimeUtil.isXsdDate("20201-01-31"));
+        assertFalse(XsdDateTimeUtil.isXsdDate("2020-13-01"));
+        assertFalse(XsdDateTimeUtil.isXsdDate("2020-00-01"));
+        assertFalse(XsdDateTimeUtil.isXsdDate("2020-04-31"));
+        assertFalse(XsdDateTimeUtil.isXsdDate("2020-02-30"));
+        assertFalse(XsdDateTimeUtil.isXsdDate("2020-01-00"));
+        assertFalse(XsdDateTimeUtil.isXsdDate("2020-01-31ZZ"));
+        assertFalse(XsdDateTimeUtil.isXsdDate("2020-01-31+25:00"));
+        assertFalse(XsdDateTimeUtil.isXsdDate("2020-01-31+01:60"));
+        assertFalse(XsdDateTimeUtil.isXsdDate("2020-01-31T10:00:00"));
+    }
+
+    @Test
+    public void isXsdDateTime() {
+        assertTrue(XsdDateTimeUtil.isXsdDateTime("2020-01-31T10:15:30"));
+        assertTrue(XsdDateTimeUtil.isXsdDateTime("2020-01-31T10:15:30Z"));
+        assertTrue(XsdDateTimeUtil.isXsdDateTime("2020-01-31T10:15:30.1Z"));
+        assertTrue(XsdDateTimeUtil.isXsdDateTime("2020-01-31T10:15:30.123+01:00"));
+        assertTrue(XsdDateTimeUtil.isXsdDateTime("2020-01-31T24:00:00"));
+
+        assertFalse(XsdDateTimeUtil.isXsdDateTime("2020-01-31"));
+        assertFalse(XsdDateTimeUtil.isXsdDateTime("2020-01-31T10:15"));
+        assertFalse(XsdDateTimeUtil.isXsdDateTime("2020-01-31 10:15:30"));
+        assertFalse(XsdDateTimeUtil.isXsdDateTime("2020-01-31T25:15:30"));
+        assertFalse(XsdDateTimeUtil.isXsdDateTime("2020-01-31T10:60:30"));
+        assertFalse(XsdDateTimeUtil.isXsdDateTime("2020-01-31T10:15:60"));
+        assertFalse(XsdDateTimeUtil.isXsdDateTime("2020-01-31T10:15:30."));
+        assertFalse(XsdDateTimeUtil.isXsdDateTime("2020-01-31T10:15:30.1234"));
+        assertFalse(XsdDateTimeUtil.isXsdDateTime("2020-01-31T10:15:30+01"));
+    }
+
+    @Test
+    public void formatXsdDate() {
+        // 2020-06-30T23:30:00Z
+        final Date date = new Date(1593559800000L);
+        assertEquals("2020-06-30", XsdDateTimeUtil.formatXsdDate(date, ZoneOffset.UTC));
+        assertEquals("2020-07-01", XsdDateTimeUtil.formatXsdDate(date, ZoneId.of("Europe/London")));
+
+        assertEquals("2020-06-30", XsdDateTimeUtil.formatXsdDate(java.sql.Date.valueOf("2020-06-30"), ZoneId.of("Pacific/Kiritimati")));
+    }
+
+    @Test
+    public void formatXsdDateTime() {
+        // 2020-06-30T23:30:00Z
+        final Date date = new Date(1593559800000L);
+        assertEquals("2020-06-30T23:30:00Z", XsdDateTimeUtil.formatXsdDateTime(date, ZoneOffset.UTC));
+        assertEquals("2020-07-01T00:30:00+01:00", XsdDateTimeUtil.formatXsdDateTime(date, ZoneId.of("Europe/London")));
+        assertEquals("2020-06-30T18:00:00-05:30", XsdDateTimeUtil.formatXsdDateTime(date, ZoneOffset.ofHoursMinutes(-5, -30)));
+
+        assertEquals("2020-06-30T23:30:00.12Z", XsdDateTimeUtil.formatXsdDateTime(new Date(1593559800120L), ZoneOffset.UTC));
+        assertEquals("0099-01-01T00:00:00Z", XsdDateTimeUtil.formatXsdDateTime(new Date(-59042995200000L), ZoneOffset.UTC));
+
+        assertTrue(XsdDateTimeUtil.isXsdDateTime(XsdDateTimeUtil.formatXsdDateTime(new Date(1593559800123L), ZoneId.of("Asia/Kolkata"))));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.combine;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UnionViewGraphTest {
+
+    private static final Resource S1 = ModelFactory.createDefaultModel().createResource("http://example.com/s1");
+    private static final Resource S2 = ModelFactory.createDefaultModel().createResource("http://example.com/s2");
+    private static final Property P = ModelFactory.createDefaultModel().createProperty("http://example.com/p");
+
+    @Test
+    public void unionSuppressesDuplicates() {
+        final Model model1 = ModelFactory.createDefaultModel();
+        model1.add(S1, P, "a");
+        model1.add(S1, P, "b");
+        model1.setNsPrefix("ex", "http://example.com/");
+
+        final Model model2 = ModelFactory.createDefaultModel();
+        model2.add(S1, P, "b");
+        model2.add(S2, P, "c");
+        model2.setNsPrefix("other", "http://other.example.com/");
+
+        final UnionViewGraph graph = new UnionViewGraph(new Graph[] { model1.getGraph(), model2.getGraph() }, false);
+        final Model view = ModelFactory.createModelForGraph(graph);
+
+        assertEquals(3, view.size());
+        assertEquals(3, view.listStatements().toList().size());
+        assertEquals(2, view.listStatements(S1, null, (String) null).toList().size());
+        assertTrue(view.contains(S2, P, "c"));
+        assertFalse(view.contains(S2, P, "a"));
+        assertEquals("http://example.com/", view.getNsPrefixURI("ex"));
+        assertEquals("http://other.example.com/", view.getNsPrefixURI("other"));
+        assertFalse(graph.isMaterialised());
+
+        view.close();
+        assertFalse(model1.isClosed());
+        assertFalse(model2.isClosed());
+    }
+
+    @Test
+    public void materialisesWhenModified() {
+        final Model model1 = ModelFactory.createDefaultModel();
+        model1.add(S1, P, "a");
+
+        final Model model2 = ModelFactory.createDefaultModel();
+        model2.add(S2, P, "b");
+
+        final UnionViewGraph graph = new UnionViewGraph(new Graph[] { model1.getGraph(), model2.getGraph() }, true);
+        final Model view = ModelFactory.createModelForGraph(graph);
+
+        view.add(S2, P, "c");
+        view.remove(S1, P, view.createLiteral("a"));
+
+        assertTrue(graph.isMaterialised());
+        assertEquals(2, view.size());
+        assertTrue(view.contains(S2, P, "b"));
+        assertTrue(view.contains(S2, P, "c"));
+        assertFalse(view.contains(S1, P, "a"));
+
+        // the underlying models are unchanged
+        assertEquals(1, model1.size());
+        assertTrue(model1.contains(S1, P, "a"));
+        assertEquals(1, model2.size());
+
+        // the view owns the underlying models
+        view.close();
+        assertTrue(model1.isClosed());
+        assertTrue(model2.isClosed());
+    }
+}
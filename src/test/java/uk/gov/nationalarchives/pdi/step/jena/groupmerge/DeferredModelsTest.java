@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.groupmerge;
+
+import org.apache.jena.rdf.model.Model;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import uk.gov.nationalarchives.pdi.step.jena.ActionIfNoSuchField;
+import uk.gov.nationalarchives.pdi.step.jena.ActionIfNull;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.pentaho.di.core.row.ValueMetaInterface.*;
+import static uk.gov.nationalarchives.pdi.step.jena.groupmerge.TestDSL.*;
+
+public class DeferredModelsTest {
+
+    @BeforeAll
+    public static void setup() throws KettleException {
+        KettleEnvironment.init(false);
+    }
+
+    @Test
+    public void materialiseIntoLargestModel() throws KettleException {
+        final Model model1 = ModelWithSubject(1, "cats");
+        model1.setNsPrefix("ex", "http://example.com/first/");
+        model1.setNsPrefix("first", "http://first.example.com/");
+        final Model model2 = MergedModels(ModelWithSubject(1, "dogs"), ModelWithSubject(1, "birds"), ModelWithSubject(1, "fish"));
+        model2.setNsPrefix("ex", "http://example.com/second/");
+        final Model model3 = ModelWithSubject(1, "mice");
+        model3.setNsPrefix("third", "http://third.example.com/");
+        final Model expectedMergedModel = MergedModels(model1, model2, model3);
+
+        final JenaGroupMergeStepMeta meta = JenaGroupMergeStepMeta(
+                GroupFields(GroupField("id", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR)),
+                MergeFields(MergeField("model", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR, MutateFirstModel.YES, null)),
+                true,
+                OtherFieldAction.DROP
+        );
+
+        final Row row = Row(
+                Field("id", TYPE_INTEGER, 1L),
+                Field("model", TYPE_SERIALIZABLE, null)
+        );
+        final RowMetaInterface outputRowMeta = row.getMeta();
+        final JenaGroupMergeStepData data = JenaGroupMergeStepData(
+                outputRowMeta,
+                RemainingInputField("id", 0),
+                RemainingInputField("model", 1)
+        );
+        data.setDeferredModels(new DeferredModels(data.getOutputFields(meta)));
+
+        JenaGroupMergeStep.processFirstRowForGroup(meta, data, new Object[] { 1L, model1 });
+        JenaGroupMergeStep.mergeRowIntoGroup(meta, data, new Object[] { 1L, model2 });
+        JenaGroupMergeStep.mergeRowIntoGroup(meta, data, new Object[] { 1L, model3 });
+
+        // nothing is merged until the group is output
+        final Object[] groupMergedRow = data.getGroupMergedRow();
+        assertSame(model1, groupMergedRow[1]);
+        assertEquals(1, model1.size());
+        assertFalse(model2.isClosed());
+        assertFalse(model3.isClosed());
+
+        data.getDeferredModels().materialise(groupMergedRow, meta.isCloseMergedModels());
+
+        final Model mergedModel = (Model) groupMergedRow[1];
+        assertSame(model2, mergedModel);
+        assertTrue(mergedModel.isIsomorphicWith(expectedMergedModel));
+        assertTrue(model1.isClosed());
+        assertTrue(model3.isClosed());
+
+        // the prefixes of later models replace those of earlier models
+        assertEquals("http://example.com/second/", mergedModel.getNsPrefixURI("ex"));
+        assertEquals("http://first.example.com/", mergedModel.getNsPrefixURI("first"));
+        assertEquals("http://third.example.com/", mergedModel.getNsPrefixURI("third"));
+    }
+
+    @Test
+    public void materialiseIntoTargetField() throws KettleException {
+        final Model model1 = ModelWithSubject(1, "cats");
+        final Model model2 = MergedModels(ModelWithSubject(1, "dogs"), ModelWithSubject(1, "birds"));
+        final Model expectedMergedModel = MergedModels(model1, model2);
+
+        final JenaGroupMergeStepMeta meta = JenaGroupMergeStepMeta(
+                GroupFields(GroupField("id", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR)),
+                MergeFields(MergeField("model", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR, MutateFirstModel.NO, "merged")),
+                true,
+                OtherFieldAction.DROP
+        );
+
+        final Row row = Row(
+                Field("id", TYPE_INTEGER, 1L),
+                Field("model", TYPE_SERIALIZABLE, null),
+                Field("merged", TYPE_SERIALIZABLE, null)
+        );
+        final RowMetaInterface outputRowMeta = row.getMeta();
+        final JenaGroupMergeStepData data = JenaGroupMergeStepData(
+                outputRowMeta,
+                RemainingInputField("id", 0),
+                RemainingInputField("model", 1)
+        );
+        data.setDeferredModels(new DeferredModels(data.getOutputFields(meta)));
+
+        JenaGroupMergeStep.processFirstRowForGroup(meta, data, new Object[] { 1L, model1 });
+        JenaGroupMergeStep.mergeRowIntoGroup(meta, data, new Object[] { 1L, model2 });
+
+        // nothing is merged until the group is output
+        final Object[] groupMergedRow = data.getGroupMergedRow();
+        final Model targetModel = (Model) groupMergedRow[2];
+        assertTrue(targetModel.isEmpty());
+
+        data.getDeferredModels().materialise(groupMergedRow, meta.isCloseMergedModels());
+
+        // the target model is always merged into, as the input models belong to the merge field
+        assertSame(targetModel, groupMergedRow[2]);
+        assertTrue(targetModel.isIsomorphicWith(expectedMergedModel));
+        assertTrue(model1.isClosed());
+        assertTrue(model2.isClosed());
+    }
+}
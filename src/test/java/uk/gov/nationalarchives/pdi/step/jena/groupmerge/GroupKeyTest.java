@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.groupmerge;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.exception.KettleException;
+import uk.gov.nationalarchives.pdi.step.jena.ActionIfNoSuchField;
+import uk.gov.nationalarchives.pdi.step.jena.ActionIfNull;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.pentaho.di.core.row.ValueMetaInterface.*;
+import static uk.gov.nationalarchives.pdi.step.jena.groupmerge.TestDSL.*;
+
+public class GroupKeyTest {
+
+    @BeforeAll
+    public static void setup() throws KettleException {
+        KettleEnvironment.init(false);
+    }
+
+    @Test
+    public void singleIntegerKey() throws KettleException {
+        final Row row = Row(
+                Field("model", TYPE_SERIALIZABLE, null),
+                Field("id", TYPE_INTEGER, 1L)
+        );
+        final GroupKey groupKey = GroupKey.compile(Arrays.asList(GroupField("id", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR)), row.getMeta());
+        assertEquals(1, groupKey.getFieldIndex(0));
+
+        assertFalse(groupKey.matches(new Object[] { null, 1L }));
+
+        groupKey.set(new Object[] { null, 1L });
+        assertTrue(groupKey.matches(new Object[] { null, 1L }));
+        assertFalse(groupKey.matches(new Object[] { null, 2L }));
+        assertFalse(groupKey.matches(new Object[] { null, null }));
+
+        groupKey.set(new Object[] { null, null });
+        assertTrue(groupKey.matches(new Object[] { null, null }));
+        assertFalse(groupKey.matches(new Object[] { null, 0L }));
+
+        groupKey.clear();
+        assertFalse(groupKey.matches(new Object[] { null, null }));
+    }
+
+    @Test
+    public void multipleFieldKey() throws KettleException {
+        final Row row = Row(
+                Field("id", TYPE_INTEGER, 1L),
+                Field("subject", TYPE_STRING, "cats")
+        );
+        final GroupKey groupKey = GroupKey.compile(Arrays.asList(
+                GroupField("id", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR),
+                GroupField("subject", ActionIfNoSuchField.ERROR, ActionIfNull.IGNORE),
+                GroupField("other", ActionIfNoSuchField.IGNORE, ActionIfNull.IGNORE)
+        ), row.getMeta());
+        assertEquals(-1, groupKey.getFieldIndex(2));
+
+        groupKey.set(new Object[] { 1L, "cats" });
+        assertTrue(groupKey.matches(new Object[] { 1L, "cats" }));
+        assertFalse(groupKey.matches(new Object[] { 1L, "dogs" }));
+        assertFalse(groupKey.matches(new Object[] { 2L, "cats" }));
+        assertFalse(groupKey.matches(new Object[] { 1L, null }));
+
+        groupKey.set(new Object[] { 1L, null });
+        assertTrue(groupKey.matches(new Object[] { 1L, null }));
+    }
+
+    @Test
+    public void missingFieldName() {
+        assertThrows(KettleException.class, () -> GroupKey.compile(
+                Arrays.asList(GroupField("", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR)),
+                Row(Field("id", TYPE_INTEGER, 1L)).getMeta()));
+    }
+}
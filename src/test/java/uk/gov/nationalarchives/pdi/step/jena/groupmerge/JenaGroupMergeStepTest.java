@@ -24,6 +24,7 @@ package uk.gov.nationalarchives.pdi.step.jena.groupmerge;
 
 import org.apache.jena.rdf.model.Model;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.pentaho.di.core.KettleEnvironment;
@@ -35,11 +36,11 @@ import uk.gov.nationalarchives.pdi.step.jena.ActionIfNoSuchField;
 import uk.gov.nationalarchives.pdi.step.jena.ActionIfNull;
 
 import javax.annotation.Nullable;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.function.BiConsumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.pentaho.di.core.row.ValueMetaInterface.*;
 import static org.pentaho.di.core.util.Assert.*;
@@ -439,9 +440,9 @@ public class JenaGroupMergeStepTest {
         }
     }
 
-    @ParameterizedTest(name = "{index} getGroupFields(fieldExists={0}, ActionIfNoSuchField.{1})")
+    @ParameterizedTest(name = "{index} checkGroupFields(fieldExists={0}, ActionIfNoSuchField.{1})")
     @CsvSource({
-            // FieldExists,getGroupFields_ActionIfNoSuchField
+            // FieldExists,ActionIfNoSuchField
             "true,IGNORE",
             "true,WARN",
             "true,ERROR",
@@ -449,7 +450,7 @@ public class JenaGroupMergeStepTest {
             "false,WARN",
             "false,ERROR",
     })
-    public void getGroupFields_ActionIfNoSuchField(final boolean fieldExists, final ActionIfNoSuchField actionIfNoSuchField) throws KettleException {
+    public void checkGroupFields_ActionIfNoSuchField(final boolean fieldExists, final ActionIfNoSuchField actionIfNoSuchField) throws KettleException {
         // setup an example input row
         final int inputRowId = 1;
         final String inputRowSubject = "cats";
@@ -479,30 +480,34 @@ public class JenaGroupMergeStepTest {
         // capturing log function
         final CapturingLogFunction logFunction = new CapturingLogFunction();
 
+        // resolve the positions of the group fields
+        final GroupKey groupKey = GroupKey.compile(meta.getGroupFields(), inputRow.getMeta());
+
         // execute and assert
         if (fieldExists == false && actionIfNoSuchField == ActionIfNoSuchField.ERROR) {
             assertThrows(KettleException.class, () -> {
-                JenaGroupMergeStep.getGroupFields(meta, inputRow.values(), inputRow.getMeta(), logFunction);
+                JenaGroupMergeStep.checkGroupFields(meta, groupKey, inputRow.values(), logFunction);
             });
 
         } else {
-            final LinkedHashMap<String, Object> inputRowGroupFields = JenaGroupMergeStep.getGroupFields(meta, inputRow.values(), inputRow.getMeta(), logFunction);
+            JenaGroupMergeStep.checkGroupFields(meta, groupKey, inputRow.values(), logFunction);
+            final Object groupField = groupKey.valuesOf(inputRow.values())[0];
             if (fieldExists == false) {
                 if (actionIfNoSuchField == ActionIfNoSuchField.WARN) {
                     assertNotNull(logFunction.message);
                 }
-                assertTrue(inputRowGroupFields.isEmpty());
+                assertEquals(-1, groupKey.getFieldIndex(0));
+                assertNull(groupField);
 
             } else {
-                assertFalse(inputRowGroupFields.isEmpty());
-                final Object groupField = inputRowGroupFields.get("id");
+                assertNull(logFunction.message);
                 assertNotNull(groupField);
                 assertEquals(inputRow.fields[0].value, groupField);
             }
         }
     }
 
-    @ParameterizedTest(name = "{index} getGroupFields(fieldIsNull={0}, ActionIfNull.{1})")
+    @ParameterizedTest(name = "{index} checkGroupFields(fieldIsNull={0}, ActionIfNull.{1})")
     @CsvSource({
             // FieldIsNull,ActionIfNull
             "true,IGNORE",
@@ -512,7 +517,7 @@ public class JenaGroupMergeStepTest {
             "false,WARN",
             "false,ERROR",
     })
-    public void getGroupFields_ActionIfNull(final boolean fieldIsNull, final ActionIfNull actionIfNull) throws KettleException {
+    public void checkGroupFields_ActionIfNull(final boolean fieldIsNull, final ActionIfNull actionIfNull) throws KettleException {
         // setup an example input row
         final int inputRowId = 1;
         final String inputRowSubject = "cats";
@@ -534,21 +539,26 @@ public class JenaGroupMergeStepTest {
         // capturing log function
         final CapturingLogFunction logFunction = new CapturingLogFunction();
 
+        // resolve the positions of the group fields
+        final GroupKey groupKey = GroupKey.compile(meta.getGroupFields(), inputRow.getMeta());
+
         // execute and assert
         if (fieldIsNull && actionIfNull == ActionIfNull.ERROR) {
             assertThrows(KettleException.class, () -> {
-                JenaGroupMergeStep.getGroupFields(meta, inputRow.values(), inputRow.getMeta(), logFunction);
+                JenaGroupMergeStep.checkGroupFields(meta, groupKey, inputRow.values(), logFunction);
             });
 
         } else {
-            final LinkedHashMap<String, Object> inputRowGroupFields = JenaGroupMergeStep.getGroupFields(meta, inputRow.values(), inputRow.getMeta(), logFunction);
+            JenaGroupMergeStep.checkGroupFields(meta, groupKey, inputRow.values(), logFunction);
             if (fieldIsNull) {
                 if (actionIfNull == ActionIfNull.WARN) {
                     assertNotNull(logFunction.message);
                 }
+            } else {
+                assertNull(logFunction.message);
             }
-            assertFalse(inputRowGroupFields.isEmpty());
-            final Object groupField = inputRowGroupFields.get("id");
+            assertEquals(0, groupKey.getFieldIndex(0));
+            final Object groupField = groupKey.valuesOf(inputRow.values())[0];
             if (fieldIsNull) {
                 assertNull(groupField);
             } else {
@@ -598,14 +608,17 @@ public class JenaGroupMergeStepTest {
         // capturing log function
         final CapturingLogFunction logFunction = new CapturingLogFunction();
 
+        // resolve the positions of the merge fields
+        final int[] mergeFieldIndexes = GroupKey.indexesOf("Merge", meta.getMergeFields(), inputRow.getMeta());
+
         // execute and assert
         if (fieldExists == false && actionIfNoSuchField == ActionIfNoSuchField.ERROR) {
             assertThrows(KettleException.class, () -> {
-                JenaGroupMergeStep.checkForMergeFields(meta, inputRow.values(), inputRow.getMeta(), logFunction);
+                JenaGroupMergeStep.checkForMergeFields(meta, mergeFieldIndexes, inputRow.values(), logFunction);
             });
 
         } else {
-            JenaGroupMergeStep.checkForMergeFields(meta, inputRow.values(), inputRow.getMeta(), logFunction);
+            JenaGroupMergeStep.checkForMergeFields(meta, mergeFieldIndexes, inputRow.values(), logFunction);
 
             if (fieldExists == false && actionIfNoSuchField == ActionIfNoSuchField.WARN) {
                 assertNotNull(logFunction.message);
@@ -645,14 +658,17 @@ public class JenaGroupMergeStepTest {
         // capturing log function
         final CapturingLogFunction logFunction = new CapturingLogFunction();
 
+        // resolve the positions of the merge fields
+        final int[] mergeFieldIndexes = GroupKey.indexesOf("Merge", meta.getMergeFields(), inputRow.getMeta());
+
         // execute and assert
         if (fieldIsNull && actionIfNull == ActionIfNull.ERROR) {
             assertThrows(KettleException.class, () -> {
-                JenaGroupMergeStep.checkForMergeFields(meta, inputRow.values(), inputRow.getMeta(), logFunction);
+                JenaGroupMergeStep.checkForMergeFields(meta, mergeFieldIndexes, inputRow.values(), logFunction);
             });
 
         } else {
-            JenaGroupMergeStep.checkForMergeFields(meta, inputRow.values(), inputRow.getMeta(), logFunction);
+            JenaGroupMergeStep.checkForMergeFields(meta, mergeFieldIndexes, inputRow.values(), logFunction);
 
             if (fieldIsNull && actionIfNull == ActionIfNull.WARN) {
                 assertNotNull(logFunction.message);
@@ -829,6 +845,114 @@ public class JenaGroupMergeStepTest {
         }
     }
 
+    @Test
+    public void mergeRowIntoGroup_adoptsLargerInputModel() throws KettlePluginException {
+
+        // setup one row which was already merged in groupMergedRow, with a small model
+        final Model groupMergedRow1Model = ModelWithSubject(1, "cats");
+        groupMergedRow1Model.setNsPrefix("ex", "http://example.com/first/");
+        groupMergedRow1Model.setNsPrefix("first", "http://first.example.com/");
+        final Row groupMergedRow1 = Row(
+                Field("id", TYPE_INTEGER, 1),
+                Field("model", TYPE_SERIALIZABLE, groupMergedRow1Model)
+        );
+
+        // setup an example input row, with a larger model
+        final Model inputRowModel = MergedModels(ModelWithSubject(1, "dogs"), ModelWithSubject(2, "birds"));
+        inputRowModel.setNsPrefix("ex", "http://example.com/input/");
+        final Row inputRow = Row(
+                Field("id", TYPE_INTEGER, 1),
+                Field("model", TYPE_SERIALIZABLE, inputRowModel)
+        );
+
+        final Model expectedMergedModel = MergedModels(groupMergedRow1Model, inputRowModel);
+
+        // setup the configuration for the step
+        final JenaGroupMergeStepMeta meta = JenaGroupMergeStepMeta(
+                GroupFields(GroupField("id", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR)),
+                MergeFields(MergeField("model", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR, MutateFirstModel.YES, null)),
+                true,
+                OtherFieldAction.DROP
+        );
+
+        final RowMetaInterface outputRowMeta = inputRow.copy().getMeta();
+        final JenaGroupMergeStepData data = JenaGroupMergeStepData(
+                groupMergedRow1.values(true),
+                outputRowMeta,
+                RemainingInputField("id", 0),
+                RemainingInputField("model", 1)
+        );
+
+        // execute
+        JenaGroupMergeStep.mergeRowIntoGroup(meta, data, inputRow.values());
+
+        // the larger input model has taken the place of the first model
+        final Model groupMergedRowModel = (Model) data.getGroupMergedRow()[outputRowMeta.indexOfValue("model")];
+        assertSame(inputRowModel, groupMergedRowModel);
+        assertFalse(groupMergedRowModel.isClosed());
+        assertTrue(groupMergedRow1Model.isClosed());
+        assertTrue(groupMergedRowModel.isIsomorphicWith(expectedMergedModel));
+
+        // prefixes from the later model take precedence
+        assertEquals("http://example.com/input/", groupMergedRowModel.getNsPrefixURI("ex"));
+        assertEquals("http://first.example.com/", groupMergedRowModel.getNsPrefixURI("first"));
+    }
+
+    @Test
+    public void maxTriplesPerGroup() {
+        final JenaGroupMergeStepMeta meta = new JenaGroupMergeStepMeta();
+        meta.setDefault();
+        assertEquals(0, JenaGroupMergeStep.maxTriplesPerGroup(meta));
+
+        meta.setMaxTriplesPerGroup(1000);
+        assertEquals(1000, JenaGroupMergeStep.maxTriplesPerGroup(meta));
+
+        // the smaller of the two limits applies
+        meta.setMaxMegabytesPerGroup(1);
+        assertEquals(1000, JenaGroupMergeStep.maxTriplesPerGroup(meta));
+
+        meta.setMaxTriplesPerGroup(0);
+        assertEquals(1024 * 1024 / JenaGroupMergeStep.ESTIMATED_BYTES_PER_TRIPLE, JenaGroupMergeStep.maxTriplesPerGroup(meta));
+    }
+
+    @Test
+    public void isGroupFull() throws KettlePluginException {
+        final Model groupMergedRowModel = MergedModels(ModelWithSubject(1, "cats"), ModelWithSubject(1, "dogs"));
+        final Row groupMergedRow = Row(
+                Field("id", TYPE_INTEGER, 1),
+                Field("model", TYPE_SERIALIZABLE, groupMergedRowModel)
+        );
+
+        final JenaGroupMergeStepMeta meta = JenaGroupMergeStepMeta(
+                GroupFields(GroupField("id", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR)),
+                MergeFields(MergeField("model", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR, MutateFirstModel.YES, null)),
+                false,
+                OtherFieldAction.DROP
+        );
+
+        final JenaGroupMergeStepData data = JenaGroupMergeStepData(
+                groupMergedRow.values(true),
+                groupMergedRow.getMeta(),
+                RemainingInputField("id", 0),
+                RemainingInputField("model", 1)
+        );
+
+        // no limit
+        assertFalse(JenaGroupMergeStep.isGroupFull(meta, data));
+
+        data.setMaxTriplesPerGroup(3);
+        assertFalse(JenaGroupMergeStep.isGroupFull(meta, data));
+
+        data.setMaxTriplesPerGroup(2);
+        assertTrue(JenaGroupMergeStep.isGroupFull(meta, data));
+
+        // models which are still to be merged count towards the limit
+        data.setMaxTriplesPerGroup(3);
+        data.setDeferredModels(new DeferredModels(data.getOutputFields(meta)));
+        data.getDeferredModels().add(1, ModelWithSubject(1, "birds"));
+        assertTrue(JenaGroupMergeStep.isGroupFull(meta, data));
+    }
+
     private static class CapturingLogFunction implements BiConsumer<String, String[]> {
         String[] params = null;
         String message = null;
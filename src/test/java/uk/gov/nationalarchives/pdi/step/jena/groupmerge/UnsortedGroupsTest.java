@@ -0,0 +1,334 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.groupmerge;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.exception.KettleException;
+import uk.gov.nationalarchives.pdi.step.jena.ActionIfNoSuchField;
+import uk.gov.nationalarchives.pdi.step.jena.ActionIfNull;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.pentaho.di.core.row.ValueMetaInterface.*;
+import static uk.gov.nationalarchives.pdi.step.jena.groupmerge.TestDSL.*;
+
+public class UnsortedGroupsTest {
+
+    @TempDir
+    File spillDirectory;
+
+    @BeforeAll
+    public static void setup() throws KettleException {
+        KettleEnvironment.init(false);
+    }
+
+    @Test
+    public void mergesGroupsSpilledToDisk() throws KettleException {
+        final Model model1 = ModelWithBlankNode(1, "cats");
+        final Model model2 = ModelWithSubject(2, "dogs");
+        final Model model3 = ModelWithBlankNode(1, "birds");
+        final Model model4 = ModelWithSubject(2, "fish");
+        final Model model5 = ModelWithSubject(1, "mice");
+        final Model expectedModel1 = MergedModels(model1, model3, model5);
+        final Model expectedModel2 = MergedModels(model2, model4);
+
+        final JenaGroupMergeStepMeta meta = JenaGroupMergeStepMeta(
+                GroupFields(GroupField("id", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR)),
+                MergeFields(MergeField("model", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR, MutateFirstModel.YES, null)),
+                false,
+                OtherFieldAction.DROP
+        );
+        meta.setSortedInput(false);
+        meta.setMaxTriplesInMemory(1);
+
+        final Row row = Row(
+                Field("id", TYPE_INTEGER, 1L),
+                Field("model", TYPE_SERIALIZABLE, null)
+        );
+        final JenaGroupMergeStepData data = JenaGroupMergeStepData(
+                row.getMeta(),
+                RemainingInputField("id", 0),
+                RemainingInputField("model", 1)
+        );
+        final GroupKey groupKey = GroupKey.compile(meta.getGroupFields(), row.getMeta());
+
+        final UnsortedGroups groups = new UnsortedGroups(meta, data, groupKey, spillDirectory, (message, args) -> {});
+        groups.add(new Object[] { 1L, model1 });
+        groups.add(new Object[] { 2L, model2 });
+        groups.add(new Object[] { 1L, model3 });
+        groups.add(new Object[] { 2L, model4 });
+        groups.add(new Object[] { 1L, model5 });
+        assertEquals(3, groups.getSpilledRuns());
+
+        final List<Object[]> output = new ArrayList<>();
+        groups.output((outputRow, continued) -> output.add(outputRow));
+
+        assertEquals(2, output.size());
+        assertEquals(1L, output.get(0)[0]);
+        assertTrue(((Model) output.get(0)[1]).isIsomorphicWith(expectedModel1));
+        assertEquals(2L, output.get(1)[0]);
+        assertTrue(((Model) output.get(1)[1]).isIsomorphicWith(expectedModel2));
+
+        // the runs are deleted once they are merged
+        assertEquals(0, spillDirectory.listFiles().length);
+    }
+
+    @Test
+    public void mergesRunsWhenTooManyAreSpilled() throws KettleException {
+        final JenaGroupMergeStepMeta meta = JenaGroupMergeStepMeta(
+                GroupFields(GroupField("id", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR)),
+                MergeFields(MergeField("model", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR, MutateFirstModel.YES, null)),
+                false,
+                OtherFieldAction.DROP
+        );
+        meta.setSortedInput(false);
+        meta.setMaxTriplesInMemory(1);
+
+        final Row row = Row(
+                Field("id", TYPE_INTEGER, 1L),
+                Field("model", TYPE_SERIALIZABLE, null)
+        );
+        final JenaGroupMergeStepData data = JenaGroupMergeStepData(
+                row.getMeta(),
+                RemainingInputField("id", 0),
+                RemainingInputField("model", 1)
+        );
+        final GroupKey groupKey = GroupKey.compile(meta.getGroupFields(), row.getMeta());
+
+        // every second row exceeds the budget, spilling both groups
+        final int spills = UnsortedGroups.MAX_MERGE_RUNS + 6;
+        final UnsortedGroups groups = new UnsortedGroups(meta, data, groupKey, spillDirectory, (message, args) -> {});
+        for (int i = 0; i < spills * 2; i++) {
+            final long id = (i % 2) + 1;
+            groups.add(new Object[] { id, ModelWithSubject((int) id, "subject" + i) });
+        }
+        assertEquals(spills, groups.getSpilledRuns());
+
+        // the first runs were merged into one
+        assertEquals(7, spillDirectory.listFiles().length);
+
+        final List<Object[]> output = new ArrayList<>();
+        groups.output((outputRow, continued) -> output.add(outputRow));
+
+        assertEquals(2, output.size());
+        assertEquals(1L, output.get(0)[0]);
+        assertEquals(spills, ((Model) output.get(0)[1]).size());
+        assertEquals(2L, output.get(1)[0]);
+        assertEquals(spills, ((Model) output.get(1)[1]).size());
+        assertEquals(0, spillDirectory.listFiles().length);
+    }
+
+    @Test
+    public void outputsGroupsWithoutSpilling() throws KettleException {
+        final JenaGroupMergeStepMeta meta = JenaGroupMergeStepMeta(
+                GroupFields(GroupField("id", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR)),
+                MergeFields(MergeField("model", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR, MutateFirstModel.YES, null)),
+                false,
+                OtherFieldAction.DROP
+        );
+        meta.setSortedInput(false);
+        meta.setMaxTriplesInMemory(100);
+
+        final Row row = Row(
+                Field("id", TYPE_INTEGER, 1L),
+                Field("model", TYPE_SERIALIZABLE, null)
+        );
+        final JenaGroupMergeStepData data = JenaGroupMergeStepData(
+                row.getMeta(),
+                RemainingInputField("id", 0),
+                RemainingInputField("model", 1)
+        );
+        final GroupKey groupKey = GroupKey.compile(meta.getGroupFields(), row.getMeta());
+
+        final UnsortedGroups groups = new UnsortedGroups(meta, data, groupKey, spillDirectory, (message, args) -> {});
+        groups.add(new Object[] { 1L, ModelWithSubject(1, "cats") });
+        groups.add(new Object[] { 2L, ModelWithSubject(2, "dogs") });
+        groups.add(new Object[] { 1L, ModelWithSubject(1, "birds") });
+        assertEquals(0, groups.getSpilledRuns());
+
+        final List<Object[]> output = new ArrayList<>();
+        groups.output((outputRow, continued) -> output.add(outputRow));
+
+        // in the order of the group fields
+        assertEquals(2, output.size());
+        assertEquals(1L, output.get(0)[0]);
+        assertEquals(2, ((Model) output.get(0)[1]).size());
+        assertEquals(2L, output.get(1)[0]);
+        assertEquals(1, ((Model) output.get(1)[1]).size());
+    }
+
+    @Test
+    public void groupsKeysWhichCompareEqual() throws KettleException {
+        final JenaGroupMergeStepMeta meta = BigNumberGroupMergeStepMeta(100);
+        final Row row = BigNumberRow();
+        final JenaGroupMergeStepData data = JenaGroupMergeStepData(
+                row.getMeta(),
+                RemainingInputField("id", 0),
+                RemainingInputField("model", 1)
+        );
+        final GroupKey groupKey = GroupKey.compile(meta.getGroupFields(), row.getMeta());
+
+        // 1.0 and 1.00 are not equal as objects, but are equal as Big Numbers
+        final UnsortedGroups groups = new UnsortedGroups(meta, data, groupKey, spillDirectory, (message, args) -> {});
+        groups.add(new Object[] { new BigDecimal("1.0"), ModelWithSubject(1, "cats") });
+        groups.add(new Object[] { new BigDecimal("1.00"), ModelWithSubject(1, "birds") });
+        assertEquals(0, groups.getSpilledRuns());
+
+        final List<Object[]> output = new ArrayList<>();
+        groups.output((outputRow, continued) -> output.add(outputRow));
+
+        assertEquals(1, output.size());
+        assertEquals(0, BigDecimal.ONE.compareTo((BigDecimal) output.get(0)[0]));
+        assertEquals(2, ((Model) output.get(0)[1]).size());
+    }
+
+    @Test
+    public void mergesSpilledAndInMemoryPartsOfGroup() throws KettleException {
+        final Model model1 = ModelWithSubject(1, "cats");
+        final Model model2 = ModelWithSubject(1, "birds");
+        final Model model3 = ModelWithSubject(2, "dogs");
+        final Model model4 = ModelWithSubject(1, "mice");
+        final Model expectedModel1 = MergedModels(model1, model2, model4);
+        final Model expectedModel2 = MergedModels(model3);
+
+        final JenaGroupMergeStepMeta meta = BigNumberGroupMergeStepMeta(2);
+        final Row row = BigNumberRow();
+        final JenaGroupMergeStepData data = JenaGroupMergeStepData(
+                row.getMeta(),
+                RemainingInputField("id", 0),
+                RemainingInputField("model", 1)
+        );
+        final GroupKey groupKey = GroupKey.compile(meta.getGroupFields(), row.getMeta());
+
+        final UnsortedGroups groups = new UnsortedGroups(meta, data, groupKey, spillDirectory, (message, args) -> {});
+        groups.add(new Object[] { new BigDecimal("1.0"), model1 });
+        groups.add(new Object[] { new BigDecimal("1.00"), model2 });
+
+        // exceeds the budget, spilling the least recently touched group 1
+        groups.add(new Object[] { new BigDecimal("2"), model3 });
+        assertEquals(1, groups.getSpilledRuns());
+
+        // opens group 1 again in memory
+        groups.add(new Object[] { new BigDecimal("1.000"), model4 });
+        assertEquals(1, groups.getSpilledRuns());
+
+        final List<Object[]> output = new ArrayList<>();
+        groups.output((outputRow, continued) -> output.add(outputRow));
+
+        assertEquals(2, output.size());
+        assertEquals(0, BigDecimal.ONE.compareTo((BigDecimal) output.get(0)[0]));
+        assertTrue(((Model) output.get(0)[1]).isIsomorphicWith(expectedModel1));
+        assertEquals(0, new BigDecimal("2").compareTo((BigDecimal) output.get(1)[0]));
+        assertTrue(((Model) output.get(1)[1]).isIsomorphicWith(expectedModel2));
+    }
+
+    @Test
+    public void outputsPartialGroupsWhenMergingRuns() throws KettleException {
+        final JenaGroupMergeStepMeta meta = JenaGroupMergeStepMeta(
+                GroupFields(GroupField("id", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR)),
+                MergeFields(MergeField("model", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR, MutateFirstModel.YES, null)),
+                false,
+                OtherFieldAction.DROP
+        );
+        meta.setSortedInput(false);
+        meta.setMaxTriplesInMemory(1);
+
+        final Row row = Row(
+                Field("id", TYPE_INTEGER, 1L),
+                Field("model", TYPE_SERIALIZABLE, null)
+        );
+        final JenaGroupMergeStepData data = JenaGroupMergeStepData(
+                row.getMeta(),
+                RemainingInputField("id", 0),
+                RemainingInputField("model", 1)
+        );
+        data.setMaxTriplesPerGroup(2);
+        final GroupKey groupKey = GroupKey.compile(meta.getGroupFields(), row.getMeta());
+
+        final UnsortedGroups groups = new UnsortedGroups(meta, data, groupKey, spillDirectory, (message, args) -> {});
+        groups.add(new Object[] { 1L, ModelWithSubject(1, "cats") });
+        groups.add(new Object[] { 2L, ModelWithSubject(2, "dogs") });
+        groups.add(new Object[] { 1L, ModelWithSubject(1, "birds") });
+        groups.add(new Object[] { 1L, ModelWithSubject(1, "mice") });
+        groups.add(new Object[] { 1L, ModelWithSubject(1, "fish") });
+        assertEquals(2, groups.getSpilledRuns());
+
+        final List<Object[]> output = new ArrayList<>();
+        final List<Boolean> continuations = new ArrayList<>();
+        groups.output((outputRow, continued) -> {
+            output.add(outputRow);
+            continuations.add(continued);
+        });
+
+        // group 1 reaches its limit after merging its two spilled parts, so its part in memory continues it
+        assertEquals(3, output.size());
+        assertEquals(1L, output.get(0)[0]);
+        assertEquals(3, ((Model) output.get(0)[1]).size());
+        assertTrue(continuations.get(0));
+        assertEquals(1L, output.get(1)[0]);
+        assertEquals(1, ((Model) output.get(1)[1]).size());
+        assertFalse(continuations.get(1));
+        assertEquals(2L, output.get(2)[0]);
+        assertEquals(1, ((Model) output.get(2)[1]).size());
+        assertFalse(continuations.get(2));
+    }
+
+    private static JenaGroupMergeStepMeta BigNumberGroupMergeStepMeta(final int maxTriplesInMemory) {
+        final JenaGroupMergeStepMeta meta = JenaGroupMergeStepMeta(
+                GroupFields(GroupField("id", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR)),
+                MergeFields(MergeField("model", ActionIfNoSuchField.ERROR, ActionIfNull.ERROR, MutateFirstModel.YES, null)),
+                false,
+                OtherFieldAction.DROP
+        );
+        meta.setSortedInput(false);
+        meta.setMaxTriplesInMemory(maxTriplesInMemory);
+        return meta;
+    }
+
+    private static Row BigNumberRow() {
+        return Row(
+                Field("id", TYPE_BIGNUMBER, BigDecimal.ONE),
+                Field("model", TYPE_SERIALIZABLE, null)
+        );
+    }
+
+    /**
+     * A model with a statement about a blank node whose label is the same for the same id.
+     */
+    private static Model ModelWithBlankNode(final int id, final String subject) {
+        final Model model = ModelWithSubject(id, subject);
+        final Resource blankNode = model.wrapAsResource(NodeFactory.createBlankNode("b" + id));
+        model.add(blankNode, model.createProperty("http://purl.org/dc/terms/", "subject"), subject);
+        return model;
+    }
+}
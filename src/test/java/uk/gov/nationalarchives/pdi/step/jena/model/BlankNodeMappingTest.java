@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.junit.jupiter.api.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.Variables;
+import uk.gov.nationalarchives.pdi.step.jena.ActionIfNull;
+
+import javax.xml.namespace.QName;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static uk.gov.nationalarchives.pdi.step.jena.Util.BLANK_NODE_FIELD_NAME;
+import static uk.gov.nationalarchives.pdi.step.jena.Util.BLANK_NODE_INTERNAL_URI;
+
+public class BlankNodeMappingTest {
+
+    @Test
+    public void countBlankNodes() throws KettleException {
+        final JenaModelStepMeta meta = createMeta();
+        meta.setDbToJenaMappings(new JenaModelStepMeta.DbToJenaMapping[] { label(), toBlankNode(0), toBlankNode(1) });
+        meta.setBlankNodeMappings(new JenaModelStepMeta.BlankNodeMapping[] {
+                blankNodeMapping(0, label(), toBlankNode(1)),
+                blankNodeMapping(1, label())
+        });
+        final MappingPlan plan = compile(meta);
+
+        // bNode:0 and its bNode:1, and a further bNode:1
+        assertEquals(3, plan.maxBlankNodes);
+    }
+
+    @Test
+    public void noBlankNodes() throws KettleException {
+        final JenaModelStepMeta meta = createMeta();
+        meta.setDbToJenaMappings(new JenaModelStepMeta.DbToJenaMapping[] { label() });
+        final MappingPlan plan = compile(meta);
+
+        assertEquals(0, plan.maxBlankNodes);
+    }
+
+    @Test
+    public void cycle() {
+        final JenaModelStepMeta meta = createMeta();
+        meta.setDbToJenaMappings(new JenaModelStepMeta.DbToJenaMapping[] { toBlankNode(0) });
+        meta.setBlankNodeMappings(new JenaModelStepMeta.BlankNodeMapping[] {
+                blankNodeMapping(0, toBlankNode(1)),
+                blankNodeMapping(1, label(), toBlankNode(2)),
+                blankNodeMapping(2, toBlankNode(0))
+        });
+
+        final KettleException e = assertThrows(KettleException.class, () -> compile(meta));
+        assertTrue(e.getMessage().contains("cycle"), e.getMessage());
+    }
+
+    @Test
+    public void selfCycle() {
+        final JenaModelStepMeta meta = createMeta();
+        meta.setDbToJenaMappings(new JenaModelStepMeta.DbToJenaMapping[] { toBlankNode(0) });
+        meta.setBlankNodeMappings(new JenaModelStepMeta.BlankNodeMapping[] {
+                blankNodeMapping(0, label(), toBlankNode(0))
+        });
+
+        assertThrows(KettleException.class, () -> compile(meta));
+    }
+
+    @Test
+    public void missingBlankNode() {
+        final JenaModelStepMeta meta = createMeta();
+        meta.setDbToJenaMappings(new JenaModelStepMeta.DbToJenaMapping[] { toBlankNode(1) });
+        meta.setBlankNodeMappings(new JenaModelStepMeta.BlankNodeMapping[] {
+                blankNodeMapping(0, label())
+        });
+
+        assertThrows(KettleException.class, () -> compile(meta));
+    }
+
+    private static JenaModelStepMeta createMeta() {
+        final JenaModelStepMeta meta = new JenaModelStepMeta();
+        meta.setDefault();
+        meta.setResourceUriField("uri");
+        return meta;
+    }
+
+    private static MappingPlan compile(final JenaModelStepMeta meta) throws KettleException {
+        final RowMetaInterface inputRowMeta = new RowMeta();
+        inputRowMeta.addValueMeta(new ValueMetaString("uri"));
+        inputRowMeta.addValueMeta(new ValueMetaString("label"));
+        return MappingPlan.compile(inputRowMeta, meta, new Variables(), mock(LogChannelInterface.class));
+    }
+
+    private static JenaModelStepMeta.DbToJenaMapping label() {
+        final JenaModelStepMeta.DbToJenaMapping mapping = new JenaModelStepMeta.DbToJenaMapping();
+        mapping.fieldName = "label";
+        mapping.rdfPropertyNameSource = new JenaModelStepMeta.RdfPropertyNameLiteralSource(
+                new QName("http://www.w3.org/2000/01/rdf-schema#", "label", "rdfs"));
+        mapping.actionIfNull = ActionIfNull.IGNORE;
+        return mapping;
+    }
+
+    private static JenaModelStepMeta.DbToJenaMapping toBlankNode(final int blankNodeId) {
+        final JenaModelStepMeta.DbToJenaMapping mapping = new JenaModelStepMeta.DbToJenaMapping();
+        mapping.fieldName = BLANK_NODE_FIELD_NAME;
+        mapping.rdfPropertyNameSource = new JenaModelStepMeta.RdfPropertyNameLiteralSource(
+                new QName("http://purl.org/dc/terms/", "date", "dct"));
+        mapping.rdfType = new QName(BLANK_NODE_INTERNAL_URI, String.valueOf(blankNodeId));
+        mapping.actionIfNull = ActionIfNull.IGNORE;
+        return mapping;
+    }
+
+    private static JenaModelStepMeta.BlankNodeMapping blankNodeMapping(final int id,
+            final JenaModelStepMeta.DbToJenaMapping... dbToJenaMappings) {
+        final JenaModelStepMeta.BlankNodeMapping blankNodeMapping = new JenaModelStepMeta.BlankNodeMapping();
+        blankNodeMapping.id = id;
+        blankNodeMapping.dbToJenaMappings = dbToJenaMappings;
+        return blankNodeMapping;
+    }
+}
@@ -22,6 +22,8 @@
  */
 package uk.gov.nationalarchives.pdi.step.jena.model;
 
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.vocabulary.RDF;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -37,13 +39,18 @@ import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.trans.step.RowHandler;
 import org.pentaho.di.trans.steps.mock.StepMockHelper;
 import uk.gov.nationalarchives.pdi.step.jena.Rdf11;
+import uk.gov.nationalarchives.pdi.step.jena.RowException;
 
 import javax.xml.namespace.QName;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
+import static uk.gov.nationalarchives.pdi.step.jena.Util.BLANK_NODE_FIELD_NAME;
+import static uk.gov.nationalarchives.pdi.step.jena.Util.BLANK_NODE_INTERNAL_URI;
 import static uk.gov.nationalarchives.pdi.step.jena.Util.Entry;
 import static uk.gov.nationalarchives.pdi.step.jena.Util.Map;
 
@@ -98,6 +105,119 @@ public class JenaModelStepIT {
         assertEquals(expectedFieldName, actualFieldName);
     }
 
+    @Test
+    public void diverts_row_with_null_uri_to_error_handling() throws KettleException {
+        final JenaModelStepMeta meta = getMeta();
+        final StepMockHelper<JenaModelStepMeta, JenaModelStepData> helper = mockHelper();
+        when(helper.stepMeta.isDoingErrorHandling()).thenReturn(true);
+        final JenaModelStep step = mockStep(helper, new Object[] { 0, null });
+        doNothing().when(step).putError(any(), any(), anyLong(), any(), any(), any());
+
+        final boolean rowProcessedSuccessfully = step.processRow(meta, helper.processRowsStepDataInterface);
+
+        assertTrue(rowProcessedSuccessfully);
+        verify(step).putError(any(), any(), eq(1L), any(), eq("uriField"), eq(JenaModelStep.ERROR_CODE_SUBJECT_URI));
+        verify(step, never()).putRow(any(), any());
+    }
+
+    @Test
+    public void fails_row_with_null_uri_without_error_handling() throws KettleException {
+        final JenaModelStepMeta meta = getMeta();
+        final StepMockHelper<JenaModelStepMeta, JenaModelStepData> helper = mockHelper();
+        final JenaModelStep step = mockStep(helper, new Object[] { 0, null });
+
+        final RowException e = assertThrows(RowException.class, () -> step.processRow(meta, helper.processRowsStepDataInterface));
+
+        assertEquals(JenaModelStep.ERROR_CODE_SUBJECT_URI, e.getErrorCode());
+    }
+
+    @Test
+    public void mints_distinct_uris_for_blank_node_referenced_twice() throws KettleException {
+        final JenaModelStepMeta meta = getMeta();
+        final JenaModelStepMeta.DbToJenaMapping field1Mapping = meta.getDbToJenaMappings()[0];
+
+        final JenaModelStepMeta.BlankNodeMapping blankNodeMapping = new JenaModelStepMeta.BlankNodeMapping();
+        blankNodeMapping.id = 0;
+        blankNodeMapping.dbToJenaMappings = new JenaModelStepMeta.DbToJenaMapping[] { field1Mapping };
+        blankNodeMapping.uriMinting = UriMintingStrategy.SEQUENCE;
+        blankNodeMapping.uriMintingPrefix = "http://example.com/resource/";
+        meta.setBlankNodeMappings(new JenaModelStepMeta.BlankNodeMapping[] { blankNodeMapping });
+        meta.setDbToJenaMappings(new JenaModelStepMeta.DbToJenaMapping[] {
+                field1Mapping,
+                toBlankNode("rdf:subject", 0),
+                toBlankNode("rdf:object", 0)
+        });
+
+        final StepMockHelper<JenaModelStepMeta, JenaModelStepData> helper = mockHelper();
+        final JenaModelStep step = mockStep(helper);
+        final SingleRowMetaObserver rowMetaObserver = new SingleRowMetaObserver(step.getRowHandler());
+        step.setRowHandler(rowMetaObserver);
+
+        step.processRow(meta, helper.processRowsStepDataInterface);
+
+        final Model model = (Model) rowMetaObserver.row[rowMetaObserver.meta.indexOfValue("targetField")];
+        final Resource subject = model.getResource("http://example.com/resource");
+        final Resource blankNode1 = subject.getPropertyResourceValue(RDF.subject);
+        final Resource blankNode2 = subject.getPropertyResourceValue(RDF.object);
+
+        // each reference is its own node, and the nodes are not merged with each other or the subject
+        assertNotEquals(blankNode1, blankNode2);
+        assertNotEquals(subject, blankNode1);
+        assertNotEquals(subject, blankNode2);
+        assertEquals(3, model.listSubjectsWithProperty(RDF.predicate).toList().size());
+    }
+
+    @Test
+    public void removes_fields_of_further_subject_without_resource_mappings() throws KettleException {
+        final JenaModelStepMeta meta = getMeta();
+        final JenaModelStepMeta.SubjectMapping subjectMapping = new JenaModelStepMeta.SubjectMapping();
+        subjectMapping.name = "second";
+        subjectMapping.uriField = "subjectUriField";
+        subjectMapping.dbToJenaMappings = meta.getDbToJenaMappings();
+        meta.setSubjectMappings(new JenaModelStepMeta.SubjectMapping[] { subjectMapping });
+        meta.setDbToJenaMappings(new JenaModelStepMeta.DbToJenaMapping[0]);
+        meta.setRemoveSelectedFields(true);
+
+        final RowMeta inputRowSchema = new RowMeta();
+        inputRowSchema.addValueMeta(new ValueMetaInteger("field1"));
+        inputRowSchema.addValueMeta(new ValueMetaString("uriField"));
+        inputRowSchema.addValueMeta(new ValueMetaString("subjectUriField"));
+        inputRowSchema.addValueMeta(new ValueMetaString("otherField"));
+
+        final StepMockHelper<JenaModelStepMeta, JenaModelStepData> helper = mockHelper();
+        final JenaModelStep step = mockStep(helper, inputRowSchema, new Object[] {
+                0,
+                "http://example.com/resource",
+                "http://example.com/subject",
+                "other"
+        });
+        final SingleRowMetaObserver rowMetaObserver = new SingleRowMetaObserver(step.getRowHandler());
+        step.setRowHandler(rowMetaObserver);
+
+        step.processRow(meta, helper.processRowsStepDataInterface);
+
+        // the fields of the further subject are removed, and the remaining fields keep their values
+        final RowMetaInterface outputRowMeta = rowMetaObserver.meta;
+        assertEquals(3, outputRowMeta.size());
+        assertEquals(-1, outputRowMeta.indexOfValue("field1"));
+        assertEquals(-1, outputRowMeta.indexOfValue("subjectUriField"));
+        assertEquals("http://example.com/resource", rowMetaObserver.row[outputRowMeta.indexOfValue("uriField")]);
+        assertEquals("other", rowMetaObserver.row[outputRowMeta.indexOfValue("otherField")]);
+
+        final Model model = (Model) rowMetaObserver.row[outputRowMeta.indexOfValue("targetField")];
+        assertTrue(model.getResource("http://example.com/subject").hasProperty(RDF.predicate));
+    }
+
+    @Test
+    public void stream_filename_per_copy() {
+        assertEquals("/tmp/out.nt", JenaModelStep.getStreamFilenameForCopy("/tmp/out.nt", 0, 1));
+        assertEquals("/tmp/out_0.nt", JenaModelStep.getStreamFilenameForCopy("/tmp/out.nt", 0, 2));
+        assertEquals("/tmp/out_1.nt", JenaModelStep.getStreamFilenameForCopy("/tmp/out.nt", 1, 2));
+        assertEquals("/tmp/out_1", JenaModelStep.getStreamFilenameForCopy("/tmp/out", 1, 2));
+        assertEquals("/tmp/data.d/out_1", JenaModelStep.getStreamFilenameForCopy("/tmp/data.d/out", 1, 2));
+        assertEquals("/tmp/.out_1", JenaModelStep.getStreamFilenameForCopy("/tmp/.out", 1, 2));
+    }
+
     private static JenaModelStepMeta getMeta() {
         final JenaModelStepMeta meta = new JenaModelStepMeta();
         meta.setDefault();
@@ -116,6 +236,14 @@ public class JenaModelStepIT {
         return meta;
     }
 
+    private static JenaModelStepMeta.DbToJenaMapping toBlankNode(final String property, final int blankNodeId) {
+        final JenaModelStepMeta.DbToJenaMapping mapping = new JenaModelStepMeta.DbToJenaMapping();
+        mapping.fieldName = BLANK_NODE_FIELD_NAME;
+        mapping.rdfPropertyNameSource = JenaModelStepMeta.RdfPropertyNameSource.fromString(Map(Entry(Rdf11.RDF_PREFIX, RDF.uri)), property);
+        mapping.rdfType = new QName(BLANK_NODE_INTERNAL_URI, String.valueOf(blankNodeId));
+        return mapping;
+    }
+
     private static StepMockHelper<JenaModelStepMeta, JenaModelStepData> mockHelper() {
         final StepMockHelper<JenaModelStepMeta, JenaModelStepData> helper = new StepMockHelper<>("Create Jena Model", JenaModelStepMeta.class, JenaModelStepData.class);
 
@@ -124,22 +252,34 @@ public class JenaModelStepIT {
 
         doCallRealMethod().when(helper.processRowsStepDataInterface).setOutputRowMeta(any(RowMetaInterface.class));
         when(helper.processRowsStepDataInterface.getOutputRowMeta()).thenCallRealMethod();
+        doCallRealMethod().when(helper.processRowsStepDataInterface).setMappingPlan(any(MappingPlan.class));
+        when(helper.processRowsStepDataInterface.getMappingPlan()).thenCallRealMethod();
+        doCallRealMethod().when(helper.processRowsStepDataInterface).setTargetFieldIndex(anyInt());
+        when(helper.processRowsStepDataInterface.getTargetFieldIndex()).thenCallRealMethod();
+        doCallRealMethod().when(helper.processRowsStepDataInterface).setRemainingInputFieldIndexes(any());
+        when(helper.processRowsStepDataInterface.getRemainingInputFieldIndexes()).thenCallRealMethod();
 
         return helper;
     }
 
     private static JenaModelStep mockStep(StepMockHelper<JenaModelStepMeta, JenaModelStepData> helper) throws KettleException {
-        final JenaModelStep step = Mockito.spy(new JenaModelStep(helper.stepMeta, helper.stepDataInterface, 0, helper.transMeta, helper.trans));
-
-        final Object[] inputRowValues = {
+        return mockStep(helper, new Object[] {
                 0,
                 "http://example.com/resource"
-        };
+        });
+    }
 
+    private static JenaModelStep mockStep(StepMockHelper<JenaModelStepMeta, JenaModelStepData> helper, final Object[] inputRowValues) throws KettleException {
         final RowMeta inputRowSchema = new RowMeta();
         inputRowSchema.addValueMeta(new ValueMetaInteger("field1"));
         inputRowSchema.addValueMeta(new ValueMetaString("uriField"));
 
+        return mockStep(helper, inputRowSchema, inputRowValues);
+    }
+
+    private static JenaModelStep mockStep(StepMockHelper<JenaModelStepMeta, JenaModelStepData> helper, final RowMeta inputRowSchema, final Object[] inputRowValues) throws KettleException {
+        final JenaModelStep step = Mockito.spy(new JenaModelStep(helper.stepMeta, helper.stepDataInterface, 0, helper.transMeta, helper.trans));
+
         doReturn(inputRowValues).when(step).getRow();
         doReturn(inputRowSchema).when(step).getInputRowMeta();
 
@@ -149,6 +289,7 @@ public class JenaModelStepIT {
     private static class SingleRowMetaObserver implements RowHandler {
         private final RowHandler original;
         private RowMetaInterface meta;
+        private Object[] row;
 
         public SingleRowMetaObserver(RowHandler original) {
             this.original = original;
@@ -163,6 +304,7 @@ public class JenaModelStepIT {
         public void putRow(RowMetaInterface rowMetaInterface, Object[] objects) throws KettleStepException {
             // Test this is used in only ever does one row anyway
             meta = rowMetaInterface;
+            row = objects;
 
             original.putRow(rowMetaInterface, objects);
         }
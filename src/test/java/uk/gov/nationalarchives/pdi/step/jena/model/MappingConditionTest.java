@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.junit.jupiter.api.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.Variables;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class MappingConditionTest {
+
+    private static final RowMetaInterface INPUT_ROW_META = new RowMeta();
+    static {
+        INPUT_ROW_META.addValueMeta(new ValueMetaString("uri"));
+        INPUT_ROW_META.addValueMeta(new ValueMetaString("flag"));
+        INPUT_ROW_META.addValueMeta(new ValueMetaInteger("year"));
+        INPUT_ROW_META.addValueMeta(new ValueMetaNumber("size"));
+    }
+
+    @Test
+    public void none() throws KettleException {
+        assertNull(MappingCondition.compile(MappingConditionOperator.NONE, "flag", "Y", INPUT_ROW_META));
+        assertNull(MappingCondition.compile(null, null, null, INPUT_ROW_META));
+    }
+
+    @Test
+    public void equals() throws KettleException {
+        final MappingPlan plan = createPlan();
+
+        final MappingCondition flag = MappingCondition.compile(MappingConditionOperator.EQUALS, "flag", "Y", INPUT_ROW_META);
+        assertTrue(flag.matches(plan, row("Y", 1914L, 1.0)));
+        assertFalse(flag.matches(plan, row("N", 1914L, 1.0)));
+        assertFalse(flag.matches(plan, row(null, 1914L, 1.0)));
+
+        final MappingCondition size = MappingCondition.compile(MappingConditionOperator.EQUALS, "size", "1", INPUT_ROW_META);
+        assertTrue(size.matches(plan, row("Y", 1914L, 1.0)));
+        assertFalse(size.matches(plan, row("Y", 1914L, 1.5)));
+    }
+
+    @Test
+    public void in() throws KettleException {
+        final MappingPlan plan = createPlan();
+
+        final MappingCondition flag = MappingCondition.compile(MappingConditionOperator.IN, "flag", "Y, y, true", INPUT_ROW_META);
+        assertTrue(flag.matches(plan, row("y", 1914L, 1.0)));
+        assertTrue(flag.matches(plan, row("true", 1914L, 1.0)));
+        assertFalse(flag.matches(plan, row("N", 1914L, 1.0)));
+
+        final MappingCondition year = MappingCondition.compile(MappingConditionOperator.IN, "year", "1914,1918.0", INPUT_ROW_META);
+        assertTrue(year.matches(plan, row("Y", 1918L, 1.0)));
+        assertFalse(year.matches(plan, row("Y", 1916L, 1.0)));
+    }
+
+    @Test
+    public void regex() throws KettleException {
+        final MappingPlan plan = createPlan();
+
+        final MappingCondition flag = MappingCondition.compile(MappingConditionOperator.REGEX, "flag", "[Yy].*", INPUT_ROW_META);
+        assertTrue(flag.matches(plan, row("yes", 1914L, 1.0)));
+        assertFalse(flag.matches(plan, row("no", 1914L, 1.0)));
+    }
+
+    @Test
+    public void range() throws KettleException {
+        final MappingPlan plan = createPlan();
+
+        final MappingCondition year = MappingCondition.compile(MappingConditionOperator.RANGE, "year", "1914..1918", INPUT_ROW_META);
+        assertTrue(year.matches(plan, row("Y", 1914L, 1.0)));
+        assertTrue(year.matches(plan, row("Y", 1918L, 1.0)));
+        assertFalse(year.matches(plan, row("Y", 1939L, 1.0)));
+        assertFalse(year.matches(plan, row("Y", null, 1.0)));
+
+        // numbers are not compared as strings
+        final MappingCondition size = MappingCondition.compile(MappingConditionOperator.RANGE, "size", "..10", INPUT_ROW_META);
+        assertTrue(size.matches(plan, row("Y", 1914L, 9.5)));
+        assertFalse(size.matches(plan, row("Y", 1914L, 100.0)));
+
+        final MappingCondition flag = MappingCondition.compile(MappingConditionOperator.RANGE, "flag", "b..", INPUT_ROW_META);
+        assertTrue(flag.matches(plan, row("c", 1914L, 1.0)));
+        assertFalse(flag.matches(plan, row("a", 1914L, 1.0)));
+    }
+
+    @Test
+    public void invalid() {
+        assertThrows(KettleException.class, () -> MappingCondition.compile(MappingConditionOperator.EQUALS, "other", "Y", INPUT_ROW_META));
+        assertThrows(KettleException.class, () -> MappingCondition.compile(MappingConditionOperator.EQUALS, null, "Y", INPUT_ROW_META));
+        assertThrows(KettleException.class, () -> MappingCondition.compile(MappingConditionOperator.EQUALS, "year", "abc", INPUT_ROW_META));
+        assertThrows(KettleException.class, () -> MappingCondition.compile(MappingConditionOperator.IN, "flag", "", INPUT_ROW_META));
+        assertThrows(KettleException.class, () -> MappingCondition.compile(MappingConditionOperator.REGEX, "flag", "[", INPUT_ROW_META));
+        assertThrows(KettleException.class, () -> MappingCondition.compile(MappingConditionOperator.RANGE, "year", "1914", INPUT_ROW_META));
+        assertThrows(KettleException.class, () -> MappingCondition.compile(MappingConditionOperator.RANGE, "year", "..", INPUT_ROW_META));
+    }
+
+    private static MappingPlan createPlan() throws KettleException {
+        final JenaModelStepMeta meta = new JenaModelStepMeta();
+        meta.setDefault();
+        meta.setResourceUriField("uri");
+        return MappingPlan.compile(INPUT_ROW_META, meta, new Variables(), mock(LogChannelInterface.class));
+    }
+
+    private static Object[] row(final String flag, final Long year, final Double size) {
+        return new Object[] { "http://example.com/item/1", flag, year, size };
+    }
+}
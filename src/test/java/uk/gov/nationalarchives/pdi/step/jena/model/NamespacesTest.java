@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.apache.jena.rdf.model.Model;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NamespacesTest {
+
+    private static Namespaces namespaces() {
+        final Map<String, String> map = new LinkedHashMap<>();
+        map.put("ex", "http://example.com/");
+        map.put("exa", "http://example.com/a/");
+        map.put("cat", "http://cat.example.com/");
+        return Namespaces.of(map);
+    }
+
+    @Test
+    public void expand() {
+        final Namespaces namespaces = namespaces();
+
+        assertEquals("http://example.com/thing", namespaces.expand("ex:thing"));
+        assertEquals("http://example.com/a/thing", namespaces.expand("exa:thing"));
+        assertEquals("http://cat.example.com/", namespaces.expand("cat:"));
+        assertNull(namespaces.expand("e:thing"));
+        assertNull(namespaces.expand("other:thing"));
+        assertNull(namespaces.expand("thing"));
+
+        assertEquals("http://example.com/", namespaces.getUri("xx ex yy", 3, 5));
+        assertNull(namespaces.getUri("xx ex yy", 3, 4));
+    }
+
+    @Test
+    public void shortForm() {
+        final Namespaces namespaces = namespaces();
+
+        assertEquals("ex:thing", namespaces.shortForm("http://example.com/thing"));
+        assertEquals("exa:thing", namespaces.shortForm("http://example.com/a/thing"));
+        assertEquals("ex:b/thing", namespaces.shortForm("http://example.com/b/thing"));
+        assertEquals("http://other.example.com/thing", namespaces.shortForm("http://other.example.com/thing"));
+    }
+
+    @Test
+    public void modelsSharePrefixesUntilChanged() {
+        final Namespaces namespaces = namespaces();
+        final Model model1 = namespaces.createModel();
+        final Model model2 = namespaces.createModel();
+
+        assertEquals("http://example.com/", model1.getNsPrefixURI("ex"));
+        assertEquals("ex", model1.getNsURIPrefix("http://example.com/"));
+        assertEquals(3, model1.getNsPrefixMap().size());
+        assertEquals("http://example.com/thing", model1.expandPrefix("ex:thing"));
+        assertEquals("exa:thing", model1.shortForm("http://example.com/a/thing"));
+
+        model1.setNsPrefix("other", "http://other.example.com/");
+        model1.removeNsPrefix("cat");
+
+        assertEquals("http://other.example.com/", model1.getNsPrefixURI("other"));
+        assertNull(model1.getNsPrefixURI("cat"));
+        assertEquals(3, model1.getNsPrefixMap().size());
+
+        // the other model, and the shared namespaces, are unchanged
+        assertNull(model2.getNsPrefixURI("other"));
+        assertEquals("http://cat.example.com/", model2.getNsPrefixURI("cat"));
+        assertEquals(3, model2.getNsPrefixMap().size());
+        assertEquals(namespaces.prefixToUri, model2.getNsPrefixMap());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NodeCacheTest {
+
+    @Test
+    public void reusesNodes() {
+        final NodeCache nodeCache = new NodeCache(100);
+
+        final Node uri = nodeCache.uri("http://example.com/a");
+        assertSame(uri, nodeCache.uri("http://example.com/a"));
+        assertEquals("http://example.com/a", uri.getURI());
+
+        final Node literal = nodeCache.literal("a", null);
+        assertSame(literal, nodeCache.literal("a", null));
+        assertNotSame(literal, nodeCache.literal("a", "en"));
+        assertEquals("en", nodeCache.literal("a", "en").getLiteralLanguage());
+
+        final Node typedLiteral = nodeCache.typedLiteral(123L, XSDDatatype.XSDlong);
+        assertSame(typedLiteral, nodeCache.typedLiteral(123L, XSDDatatype.XSDlong));
+        assertNotSame(typedLiteral, nodeCache.typedLiteral(123L, XSDDatatype.XSDinteger));
+
+        assertEquals(4, nodeCache.getHits());
+        assertEquals(5, nodeCache.getMisses());
+        assertEquals(4.0 / 9, nodeCache.getHitRate());
+    }
+
+    @Test
+    public void boundedSize() {
+        final NodeCache nodeCache = new NodeCache(32);
+        for (int i = 0; i < 1000; i++) {
+            nodeCache.uri("http://example.com/" + i);
+        }
+        assertTrue(nodeCache.size() <= 32);
+    }
+
+    @Test
+    public void sharedUntilReleased() {
+        final NodeCache nodeCache = NodeCache.acquire("trans:step", 10);
+        assertSame(nodeCache, NodeCache.acquire("trans:step", 10));
+        final NodeCache otherNodeCache = NodeCache.acquire("trans:other-step", 10);
+        assertNotSame(nodeCache, otherNodeCache);
+
+        assertNull(NodeCache.release("trans:step"));
+        assertSame(nodeCache, NodeCache.release("trans:step"));
+        assertSame(otherNodeCache, NodeCache.release("trans:other-step"));
+        assertNull(NodeCache.release("trans:other-step"));
+    }
+}
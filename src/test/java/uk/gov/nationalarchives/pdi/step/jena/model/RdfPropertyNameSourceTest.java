@@ -23,6 +23,9 @@
 package uk.gov.nationalarchives.pdi.step.jena.model;
 
 import org.junit.jupiter.api.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.w3c.dom.Document;
 import uk.gov.nationalarchives.pdi.step.jena.model.JenaModelStepMeta.RdfPropertyNameSource;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -58,4 +61,23 @@ public class RdfPropertyNameSourceTest {
         assertEquals("${var1}", source.toString());
         assertEquals("var1", ((JenaModelStepMeta.RdfPropertyNameVariableSource)source).getVariableName());
     }
+
+    @Test
+    public void variableSourceIsLoadedFromXml() throws KettleException {
+        final JenaModelStepMeta.DbToJenaMapping mapping = new JenaModelStepMeta.DbToJenaMapping();
+        mapping.fieldName = "field1";
+        mapping.rdfPropertyNameSource = RdfPropertyNameSource.fromString(null, "${var1}");
+
+        final JenaModelStepMeta meta = new JenaModelStepMeta();
+        meta.setDefault();
+        meta.setDbToJenaMappings(new JenaModelStepMeta.DbToJenaMapping[] { mapping });
+
+        final Document document = XMLHandler.loadXMLString("<step>" + meta.getXML() + "</step>");
+        final JenaModelStepMeta loadedMeta = new JenaModelStepMeta();
+        loadedMeta.loadXML(XMLHandler.getSubNode(document, "step"), null, null);
+
+        final RdfPropertyNameSource source = loadedMeta.getDbToJenaMappings()[0].rdfPropertyNameSource;
+        assertTrue(source instanceof JenaModelStepMeta.RdfPropertyNameVariableSource);
+        assertEquals("var1", ((JenaModelStepMeta.RdfPropertyNameVariableSource) source).getVariableName());
+    }
 }
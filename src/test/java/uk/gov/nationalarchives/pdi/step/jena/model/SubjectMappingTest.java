@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.junit.jupiter.api.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.Variables;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class SubjectMappingTest {
+
+    @Test
+    public void compileSubjects() throws KettleException {
+        final RowMetaInterface inputRowMeta = new RowMeta();
+        inputRowMeta.addValueMeta(new ValueMetaString("record"));
+        inputRowMeta.addValueMeta(new ValueMetaString("creator"));
+
+        final JenaModelStepMeta meta = new JenaModelStepMeta();
+        meta.setDefault();
+        meta.setResourceUriField("record");
+        meta.setSubjectMappings(new JenaModelStepMeta.SubjectMapping[] {
+                subjectMapping("creator", "creator", null),
+                subjectMapping("dataset", null, "http://example.com/dataset/{record}")
+        });
+        final MappingPlan plan = MappingPlan.compile(inputRowMeta, meta, new Variables(), mock(LogChannelInterface.class));
+
+        assertEquals(3, plan.subjects.length);
+
+        assertNull(plan.subjects[0].name);
+        assertEquals(0, plan.subjects[0].uriFieldIndex);
+
+        assertEquals("creator", plan.subjects[1].name);
+        assertEquals(1, plan.subjects[1].uriFieldIndex);
+        assertNull(plan.subjects[1].uriTemplate);
+
+        assertEquals("dataset", plan.subjects[2].name);
+        assertEquals("http://example.com/dataset/WO%2095", plan.subjects[2].uriTemplate.expand(plan, new Object[] { "WO 95", "x" }));
+    }
+
+    @Test
+    public void invalid() {
+        final RowMetaInterface inputRowMeta = new RowMeta();
+        inputRowMeta.addValueMeta(new ValueMetaString("record"));
+
+        final JenaModelStepMeta meta = new JenaModelStepMeta();
+        meta.setDefault();
+        meta.setResourceUriField("record");
+
+        meta.setSubjectMappings(new JenaModelStepMeta.SubjectMapping[] { subjectMapping("", "record", null) });
+        assertThrows(KettleException.class, () -> MappingPlan.compile(inputRowMeta, meta, new Variables(), mock(LogChannelInterface.class)));
+
+        meta.setSubjectMappings(new JenaModelStepMeta.SubjectMapping[] { subjectMapping("creator", "creator", null) });
+        assertThrows(KettleException.class, () -> MappingPlan.compile(inputRowMeta, meta, new Variables(), mock(LogChannelInterface.class)));
+    }
+
+    @Test
+    public void removeSelectedFieldsOfSubjects() throws KettleException {
+        final RowMetaInterface rowMeta = new RowMeta();
+        rowMeta.addValueMeta(new ValueMetaString("record"));
+        rowMeta.addValueMeta(new ValueMetaString("title"));
+        rowMeta.addValueMeta(new ValueMetaString("creator"));
+        rowMeta.addValueMeta(new ValueMetaString("creatorName"));
+        rowMeta.addValueMeta(new ValueMetaString("other"));
+
+        final JenaModelStepMeta meta = new JenaModelStepMeta();
+        meta.setDefault();
+        meta.setResourceUriField("record");
+        meta.setTargetFieldName("model");
+        meta.setRemoveSelectedFields(true);
+        meta.setDbToJenaMappings(new JenaModelStepMeta.DbToJenaMapping[] { mapping("title") });
+
+        // the second subject also maps a field which the first subject maps
+        final JenaModelStepMeta.SubjectMapping creator = subjectMapping("creator", "creator", null);
+        creator.dbToJenaMappings = new JenaModelStepMeta.DbToJenaMapping[] { mapping("creatorName"), mapping("title") };
+        meta.setSubjectMappings(new JenaModelStepMeta.SubjectMapping[] { creator });
+
+        meta.getFields(rowMeta, "test", null, null, new Variables(), null, null);
+
+        assertArrayEquals(new String[] { "record", "other", "model" }, rowMeta.getFieldNames());
+    }
+
+    private static JenaModelStepMeta.DbToJenaMapping mapping(final String fieldName) {
+        final JenaModelStepMeta.DbToJenaMapping mapping = new JenaModelStepMeta.DbToJenaMapping();
+        mapping.fieldName = fieldName;
+        return mapping;
+    }
+
+    private static JenaModelStepMeta.SubjectMapping subjectMapping(final String name, final String uriField, final String uriTemplate) {
+        final JenaModelStepMeta.SubjectMapping subjectMapping = new JenaModelStepMeta.SubjectMapping();
+        subjectMapping.name = name;
+        subjectMapping.uriField = uriField;
+        subjectMapping.uriTemplate = uriTemplate;
+        subjectMapping.dbToJenaMappings = new JenaModelStepMeta.DbToJenaMapping[0];
+        return subjectMapping;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.junit.jupiter.api.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.Variables;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class UriMinterTest {
+
+    @Test
+    public void murmur3() {
+        final byte[] data = "The quick brown fox jumps over the lazy dog".getBytes(UTF_8);
+        final long[] hash = UriMinter.murmur3x64x128(data, data.length);
+        assertEquals(0xe34bbc7bbc071b6cL, hash[0]);
+        assertEquals(0x7a433ca9c49a9347L, hash[1]);
+    }
+
+    @Test
+    public void mintByHash() throws KettleException {
+        final MappingPlan plan = compile(UriMintingStrategy.HASH, "cat:", "series, piece");
+
+        final String uri = plan.subjects[0].uriMinter.mint(plan, new Object[] { "WO 95", 12L }, 0, 0);
+        assertTrue(uri.matches("http://cat\\.example\\.com/[0-9a-f]{32}"), uri);
+        assertEquals(uri, plan.subjects[0].uriMinter.mint(plan, new Object[] { "WO 95", 12L }, 1, 0));
+        assertNotEquals(uri, plan.subjects[0].uriMinter.mint(plan, new Object[] { "WO 9", 512L }, 0, 0));
+        assertNotEquals(uri, plan.subjects[0].uriMinter.mint(plan, new Object[] { "WO 95", null }, 0, 0));
+    }
+
+    @Test
+    public void mintByUuid() throws KettleException {
+        final MappingPlan plan = compile(UriMintingStrategy.UUID, "", "");
+
+        final String uri = plan.subjects[0].uriMinter.mint(plan, new Object[] { "WO 95", 12L }, 0, 0);
+        assertTrue(uri.matches("urn:uuid:[0-9a-f]{8}-[0-9a-f]{4}-7[0-9a-f]{3}-[89ab][0-9a-f]{3}-[0-9a-f]{12}"), uri);
+        assertNotEquals(uri, plan.subjects[0].uriMinter.mint(plan, new Object[] { "WO 95", 12L }, 0, 0));
+    }
+
+    @Test
+    public void mintBySequence() throws KettleException {
+        final MappingPlan plan = compile(UriMintingStrategy.SEQUENCE, "http://example.com/item/", "");
+
+        assertEquals("http://example.com/item/7", plan.subjects[0].uriMinter.mint(plan, new Object[] { "WO 95", 12L }, 7, 0));
+    }
+
+    @Test
+    public void mintFurtherSubjectBySequence() throws KettleException {
+        final MappingPlan plan = compile(UriMintingStrategy.SEQUENCE, "http://example.com/item/", "");
+        final UriMinter minter = plan.subjects[0].uriMinter;
+        final Object[] row = new Object[] { "WO 95", 12L };
+
+        // distinct for each subject of the row which shares the prefix, and from its blank nodes
+        assertEquals("http://example.com/item/7-1", minter.mint(plan, row, 7, 1));
+        assertNotEquals(minter.mint(plan, row, 7, 0), minter.mint(plan, row, 7, 1));
+        assertNotEquals(minter.mint(plan, row, 7, 1), minter.mint(plan, row, 7, 2));
+        assertNotEquals(minter.mint(plan, row, 7, 1), minter.mintBlankNode(plan, row, 7, 1, 0));
+    }
+
+    @Test
+    public void mintBlankNodeBySequence() throws KettleException {
+        final MappingPlan plan = compile(UriMintingStrategy.SEQUENCE, "http://example.com/item/", "");
+        final UriMinter minter = plan.subjects[0].uriMinter;
+        final Object[] row = new Object[] { "WO 95", 12L };
+
+        assertEquals("http://example.com/item/7-0-0", minter.mintBlankNode(plan, row, 7, 0, 0));
+
+        // distinct for each occurrence, each blank node, and from a resource with the same prefix
+        assertNotEquals(minter.mintBlankNode(plan, row, 7, 0, 0), minter.mintBlankNode(plan, row, 7, 0, 1));
+        assertNotEquals(minter.mintBlankNode(plan, row, 7, 0, 0), minter.mintBlankNode(plan, row, 7, 1, 0));
+        assertNotEquals(minter.mint(plan, row, 7, 0), minter.mintBlankNode(plan, row, 7, 0, 0));
+    }
+
+    @Test
+    public void mintBlankNodeByHash() throws KettleException {
+        final MappingPlan plan = compile(UriMintingStrategy.HASH, "cat:", "series, piece");
+        final UriMinter minter = plan.subjects[0].uriMinter;
+        final Object[] row = new Object[] { "WO 95", 12L };
+
+        final String uri = minter.mintBlankNode(plan, row, 0, 0, 0);
+        assertTrue(uri.matches("http://cat\\.example\\.com/[0-9a-f]{32}"), uri);
+        assertEquals(uri, minter.mintBlankNode(plan, row, 1, 0, 0));
+
+        // distinct for each occurrence, each blank node, and from a resource with the same prefix
+        assertNotEquals(uri, minter.mintBlankNode(plan, row, 0, 0, 1));
+        assertNotEquals(uri, minter.mintBlankNode(plan, row, 0, 1, 0));
+        assertNotEquals(minter.mint(plan, row, 0, 0), uri);
+    }
+
+    @Test
+    public void invalid() {
+        assertThrows(KettleException.class, () -> compile(UriMintingStrategy.SEQUENCE, "", ""));
+        assertThrows(KettleException.class, () -> compile(UriMintingStrategy.HASH, "cat:", ""));
+        assertThrows(KettleException.class, () -> compile(UriMintingStrategy.HASH, "cat:", "series, box"));
+    }
+
+    private static MappingPlan compile(final UriMintingStrategy strategy, final String prefix, final String fields)
+            throws KettleException {
+        final RowMetaInterface inputRowMeta = new RowMeta();
+        inputRowMeta.addValueMeta(new ValueMetaString("series"));
+        inputRowMeta.addValueMeta(new ValueMetaInteger("piece"));
+
+        final JenaModelStepMeta meta = new JenaModelStepMeta();
+        meta.setDefault();
+        meta.getNamespaces().put("cat", "http://cat.example.com/");
+        meta.setResourceUriMinting(strategy);
+        meta.setResourceUriMintingPrefix(prefix);
+        meta.setResourceUriMintingFields(fields);
+        return MappingPlan.compile(inputRowMeta, meta, new Variables(), mock(LogChannelInterface.class));
+    }
+}
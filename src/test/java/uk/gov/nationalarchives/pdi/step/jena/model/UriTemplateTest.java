@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.junit.jupiter.api.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.Variables;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class UriTemplateTest {
+
+    @Test
+    public void expand() throws KettleException {
+        final RowMetaInterface inputRowMeta = new RowMeta();
+        inputRowMeta.addValueMeta(new ValueMetaString("series"));
+        inputRowMeta.addValueMeta(new ValueMetaInteger("piece"));
+        inputRowMeta.addValueMeta(new ValueMetaString("path"));
+
+        final JenaModelStepMeta meta = new JenaModelStepMeta();
+        meta.setDefault();
+        meta.getNamespaces().put("cat", "http://cat.example.com/");
+        meta.setResourceUriTemplate("cat:{series}/{piece}#{+path}");
+        final MappingPlan plan = MappingPlan.compile(inputRowMeta, meta, new Variables(), mock(LogChannelInterface.class));
+
+        assertEquals("http://cat.example.com/WO%2095/12#a/b?c=d", plan.subjects[0].uriTemplate.expand(plan, new Object[] { "WO 95", 12L, "a/b?c=d" }));
+        assertEquals("http://cat.example.com/%C3%A9/1#é", plan.subjects[0].uriTemplate.expand(plan, new Object[] { "é", 1L, "é" }));
+        assertNull(plan.subjects[0].uriTemplate.expand(plan, new Object[] { "WO 95", null, "a" }));
+    }
+
+    @Test
+    public void invalid() {
+        final RowMetaInterface inputRowMeta = new RowMeta();
+        inputRowMeta.addValueMeta(new ValueMetaString("series"));
+
+        assertThrows(KettleException.class, () -> UriTemplate.compile("http://example.com/{series", inputRowMeta, null));
+        assertThrows(KettleException.class, () -> UriTemplate.compile("http://example.com/{}", inputRowMeta, null));
+        assertThrows(KettleException.class, () -> UriTemplate.compile("http://example.com/{piece}", inputRowMeta, null));
+    }
+}
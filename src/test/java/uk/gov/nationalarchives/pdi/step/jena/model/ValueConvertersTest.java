@@ -0,0 +1,168 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.jupiter.api.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.value.ValueMetaBigNumber;
+import org.pentaho.di.core.row.value.ValueMetaBinary;
+import org.pentaho.di.core.row.value.ValueMetaBoolean;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ValueConvertersTest {
+
+    @Test
+    public void datesDefaultToUtc() throws KettleException {
+        assertEquals(ZoneOffset.UTC, MappingPlan.compileTimeZone(null));
+        assertEquals(ZoneOffset.UTC, MappingPlan.compileTimeZone(""));
+        assertEquals(ZoneId.systemDefault(), MappingPlan.compileTimeZone(MappingPlan.SYSTEM_TIME_ZONE));
+        assertEquals(ZoneId.of("Europe/London"), MappingPlan.compileTimeZone("Europe/London"));
+        assertThrows(KettleException.class, () -> MappingPlan.compileTimeZone("Nowhere/Nowhere"));
+    }
+
+    @Test
+    public void stringToLiteral() throws KettleException {
+        final LogChannelInterface log = mock(LogChannelInterface.class);
+
+        Node node = ValueConverters.select("f", new ValueMetaString("f"), null, null, ZoneOffset.UTC, log).convert("abc", null);
+        assertEquals("abc", node.getLiteralLexicalForm());
+        assertEquals("", node.getLiteralLanguage());
+
+        node = ValueConverters.select("f", new ValueMetaString("f"), null, "en", ZoneOffset.UTC, log).convert("abc", null);
+        assertEquals("abc", node.getLiteralLexicalForm());
+        assertEquals("en", node.getLiteralLanguage());
+
+        node = ValueConverters.select("f", new ValueMetaString("f"), XSDDatatype.XSDinteger, null, ZoneOffset.UTC, log).convert("123", null);
+        assertEquals(XSDDatatype.XSDinteger, node.getLiteralDatatype());
+        assertEquals(123, ((Number) node.getLiteralValue()).intValue());
+
+        verify(log, never()).logBasic(anyString());
+    }
+
+    @Test
+    public void nativeToTypedLiteral() throws KettleException {
+        final LogChannelInterface log = mock(LogChannelInterface.class);
+
+        Node node = ValueConverters.select("f", new ValueMetaInteger("f"), XSDDatatype.XSDlong, null, ZoneOffset.UTC, log).convert(123L, null);
+        assertEquals("123", node.getLiteralLexicalForm());
+        assertEquals(XSDDatatype.XSDlong, node.getLiteralDatatype());
+
+        node = ValueConverters.select("f", new ValueMetaInteger("f"), XSDDatatype.XSDdecimal, null, ZoneOffset.UTC, log).convert(123L, null);
+        assertEquals(new BigDecimal(123), node.getLiteralValue());
+
+        node = ValueConverters.select("f", new ValueMetaNumber("f"), XSDDatatype.XSDdouble, null, ZoneOffset.UTC, log).convert(1.5d, null);
+        assertEquals(1.5d, node.getLiteralValue());
+
+        node = ValueConverters.select("f", new ValueMetaBigNumber("f"), XSDDatatype.XSDdecimal, null, ZoneOffset.UTC, log).convert(new BigDecimal("1.25"), null);
+        assertEquals(new BigDecimal("1.25"), node.getLiteralValue());
+
+        node = ValueConverters.select("f", new ValueMetaBoolean("f"), XSDDatatype.XSDboolean, null, ZoneOffset.UTC, log).convert(Boolean.TRUE, null);
+        assertEquals("true", node.getLiteralLexicalForm());
+
+        // 2020-06-30T23:30:00Z
+        node = ValueConverters.select("f", new ValueMetaDate("f"), XSDDatatype.XSDdateTime, null, ZoneOffset.UTC, log).convert(new Date(1593559800000L), null);
+        assertEquals("2020-06-30T23:30:00Z", node.getLiteralLexicalForm());
+        assertEquals(XSDDatatype.XSDdateTime, node.getLiteralDatatype());
+
+        verify(log, never()).logBasic(anyString());
+    }
+
+    @Test
+    public void integerToGYear() throws KettleException {
+        final LogChannelInterface log = mock(LogChannelInterface.class);
+
+        final ValueConverter converter = ValueConverters.select("f", new ValueMetaInteger("f"), XSDDatatype.XSDgYear, null, ZoneOffset.UTC, log);
+        Node node = converter.convert(2020L, null);
+        assertEquals("2020", node.getLiteralLexicalForm());
+        assertEquals(XSDDatatype.XSDgYear, node.getLiteralDatatype());
+        assertTrue(node.getLiteral().isWellFormed());
+
+        // padded to four digits
+        node = converter.convert(123L, null);
+        assertEquals("0123", node.getLiteralLexicalForm());
+        assertTrue(node.getLiteral().isWellFormed());
+
+        node = converter.convert(-44L, null);
+        assertEquals("-0044", node.getLiteralLexicalForm());
+
+        // a value without a value meta is formatted the same
+        node = ValueConverters.select("f", null, XSDDatatype.XSDgYear, null, ZoneOffset.UTC, log).convert(123L, null);
+        assertEquals("0123", node.getLiteralLexicalForm());
+
+        verify(log, never()).logBasic(anyString());
+    }
+
+    @Test
+    public void mistypedReportedOnce() throws KettleException {
+        final LogChannelInterface log = mock(LogChannelInterface.class);
+
+        final ValueConverter converter = ValueConverters.select("f", new ValueMetaBoolean("f"), XSDDatatype.XSDdate, null, ZoneOffset.UTC, log);
+        converter.convert(Boolean.TRUE, null);
+        converter.convert(Boolean.FALSE, null);
+
+        verify(log, times(1)).logBasic(anyString());
+    }
+
+    @Test
+    public void markupLiteralsAreNotCached() throws KettleException {
+        final LogChannelInterface log = mock(LogChannelInterface.class);
+        final NodeCache nodeCache = new NodeCache(10);
+
+        final byte[] xml = "<p>abc</p>".getBytes(StandardCharsets.UTF_8);
+        final Node node = ValueConverters.select("f", new ValueMetaBinary("f"), RDF.dtXMLLiteral, null, ZoneOffset.UTC, log).convert(xml, nodeCache);
+        assertEquals("<p>abc</p>", node.getLiteralLexicalForm());
+        assertEquals(RDF.dtXMLLiteral.getURI(), node.getLiteralDatatypeURI());
+        assertEquals(0, nodeCache.size());
+
+        verify(log, never()).logBasic(anyString());
+    }
+
+    @Test
+    public void uncheckedXmlLiteral() throws KettleException {
+        final LogChannelInterface log = mock(LogChannelInterface.class);
+
+        final Node node = ValueConverters.select("f", new ValueMetaString("f"), UncheckedXMLLiteralType.INSTANCE, null, ZoneOffset.UTC, log).convert("<p>abc", null);
+        assertEquals("<p>abc", node.getLiteralLexicalForm());
+        assertEquals(RDF.dtXMLLiteral.getURI(), node.getLiteralDatatypeURI());
+        assertEquals("<p>abc", node.getLiteralValue());
+
+        verify(log, never()).logBasic(anyString());
+    }
+}
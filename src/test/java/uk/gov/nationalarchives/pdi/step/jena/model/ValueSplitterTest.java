@@ -0,0 +1,62 @@
+/*
+ * The MIT License
+ * Copyright © 2020 The National Archives
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package uk.gov.nationalarchives.pdi.step.jena.model;
+
+import org.junit.jupiter.api.Test;
+import org.pentaho.di.core.exception.KettleException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ValueSplitterTest {
+
+    @Test
+    public void splitByDelimiter() throws KettleException {
+        assertEquals(Arrays.asList("a", "b c", "d"), split(ValueSplitter.compile(";", false), " a;b c ; ;d;"));
+        assertEquals(Arrays.asList("a", "b"), split(ValueSplitter.compile(" | ", false), "a | b"));
+        assertEquals(Arrays.asList("abc"), split(ValueSplitter.compile(";", false), "abc"));
+        assertEquals(Arrays.asList(), split(ValueSplitter.compile(";", false), " ; "));
+    }
+
+    @Test
+    public void splitByRegex() throws KettleException {
+        assertEquals(Arrays.asList("a", "b", "c"), split(ValueSplitter.compile("[;,]", true), "a;b, c"));
+        assertEquals(Arrays.asList("a", "b"), split(ValueSplitter.compile("\\s+and\\s+", true), "a and b"));
+    }
+
+    @Test
+    public void invalid() {
+        assertThrows(KettleException.class, () -> ValueSplitter.compile("", false));
+        assertThrows(KettleException.class, () -> ValueSplitter.compile("[", true));
+    }
+
+    private static List<String> split(final ValueSplitter splitter, final String value) throws KettleException {
+        final List<String> values = new ArrayList<>();
+        final int count = splitter.split(value, values::add);
+        assertEquals(values.size(), count);
+        return values;
+    }
+}